@@ -1,162 +1,364 @@
 package com.ewjordan.evolution.sim;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import org.apache.commons.math.stat.descriptive.DescriptiveStatistics;
+import org.apache.commons.math.genetics.PackedBits;
+import org.apache.commons.math.random.JDKRandomGenerator;
 
+/**
+ * Evolves a population of bit strings whose fitness is the fraction of set bits,
+ * under asymmetric mutation (ones decay to zeros much faster than the reverse),
+ * and prints a CSV line of fitness statistics per generation.
+ *
+ * Each generation, every child is made by crossing two random parents and mutating
+ * the result; the fittest populationSize children become the next parents.
+ *
+ * All genomes live in two preallocated pools (parents and children) that trade
+ * arrays when children are selected, so the loop allocates no genomes after setup.
+ * Children are produced in fixed-size chunks, each with its own random stream, and
+ * the chunks are spread over a thread pool; since a chunk always uses the same stream,
+ * a run is reproducible from its seed regardless of the number of threads.
+ *
+ * Fitness is a count of set bits, so the survivors are chosen by quickselect on the
+ * counts and the summary line (including percentiles) is computed from a histogram
+ * of the counts rather than by sorting.
+ *
+ * @author eric
+ *
+ */
 public class SpeedLimit {
-	static private final Random rand = new Random();
-	static private final int genomeLength = 500;
-	static private final int populationSize = 5000; // Total population size (after unfit members die off)
-	static private final int generations = 1000;
-	static private final int childrenPerFamily = 8;
-	
-	static private final double crossoverRate = 0.01;
-	static private final double oneToZeroMutationRate = .01;
-	static private final double zeroToOneMutationRate = .00001;
-	static private final double initialFitnessProbability = 0.01; //probability that bits start off as true
-	
-	private List<Genome> population = new ArrayList<Genome>();
-	
+	static private final int childrenPerChunk = 512;
+
+	private int genomeLength = 500;
+	private int populationSize = 5000; // Total population size (after unfit members die off)
+	private int generations = 1000;
+	private int childrenPerFamily = 8;
+
+	private double crossoverRate = 0.01;
+	private double oneToZeroMutationRate = .01;
+	private double zeroToOneMutationRate = .00001;
+	private double initialFitnessProbability = 0.01; //probability that bits start off as true
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private long seed = System.nanoTime();
+	private PrintStream out = System.out;
+
+	//Working state, only valid during run()
+	private long[][] parents;
+	private long[][] children;
+	private int[] childOnes;
+	private int[] childIndex;
+	private int[] onesCounts;
+
 	static public void main(String[] args) {
 		doEvolution();
 	}
-	
+
 	static public void doEvolution() {
-		SpeedLimit test = new SpeedLimit();
+		new SpeedLimit().run();
+	}
+
+	/**
+	 * Run the simulation with the current parameters, printing one line per generation.
+	 */
+	public void run() {
+		int childCount = getChildCount();
+		if (childCount < populationSize) {
+			throw new IllegalArgumentException("Need at least 2 children per family to refill the population, got " + childrenPerFamily);
+		}
+		int words = PackedBits.wordCount(genomeLength);
+		JDKRandomGenerator rand = new JDKRandomGenerator();
+		rand.setSeed(seed);
+		parents = new long[populationSize][];
 		for (int i=0; i<populationSize; ++i) {
-			test.population.add(generateInitialGenome(genomeLength,initialFitnessProbability));
+			parents[i] = PackedBits.random(genomeLength, initialFitnessProbability, rand);
 		}
-		System.out.println("Generation,PopSize,"+getSummaryCSVTitleLine());
-		for (int i=0; i<generations; ++i) {
-			List<Genome> children = new ArrayList<Genome>(populationSize*childrenPerFamily/2);
-			int count = 0;
-			while (count < populationSize*childrenPerFamily/2) {
-				Genome parentA = test.population.get(rand.nextInt(test.population.size()));
-				Genome parentB = test.population.get(rand.nextInt(test.population.size()));
-				Genome child = Genome.cross(parentA, parentB, crossoverRate);
-				Genome.mutate(child, oneToZeroMutationRate, zeroToOneMutationRate);
-				children.add(child);
-				++count;
+		children = new long[childCount][words];
+		childOnes = new int[childCount];
+		childIndex = new int[childCount];
+		onesCounts = new int[genomeLength+1];
+
+		List<Callable<Object>> chunks = new ArrayList<Callable<Object>>();
+		for (int start=0; start<childCount; start+=childrenPerChunk) {
+			JDKRandomGenerator chunkRand = new JDKRandomGenerator();
+			chunkRand.setSeed(rand.nextLong());
+			chunks.add(new Chunk(start, Math.min(childCount, start+childrenPerChunk), chunkRand));
+		}
+		ExecutorService executor = (threads > 1 && chunks.size() > 1) ? Executors.newFixedThreadPool(threads) : null;
+
+		try {
+			out.println("Generation,PopSize,"+getSummaryCSVTitleLine());
+			for (int i=0; i<generations; ++i) {
+				produceChildren(chunks, executor);
+				selectSurvivors();
+				out.println(i + "," + populationSize + "," + getSummaryCSVLine());
 			}
-			test.population = children;
-			test.sortByFitness(false);
-			List<Genome> accepted = test.population.subList(0, populationSize);
-			test.population = new ArrayList<Genome>(accepted);
-			System.out.println(i + "," + test.population.size() + "," + test.getSummaryCSVLine());
+		} finally {
+			if (executor != null) executor.shutdown();
+			parents = null;
+			children = null;
+			childOnes = null;
+			childIndex = null;
+			onesCounts = null;
 		}
 	}
-	
-	static private Genome generateInitialGenome(int len, double probT) {
-		Genome g = new Genome(len);
-		for (int i=0; i<g.bits.length; ++i) {
-			g.bits[i] = (Math.random() < probT);
+
+	/**
+	 * Fills a range of the child pool, using its own random stream.
+	 */
+	private class Chunk implements Callable<Object> {
+		final int start;
+		final int end;
+		final JDKRandomGenerator rand;
+
+		Chunk(int start, int end, JDKRandomGenerator rand) {
+			this.start = start;
+			this.end = end;
+			this.rand = rand;
 		}
-		return g;
-	}
-	
-	private double getAverageFitness() {
-		double sum = 0.0;
-		for (Genome g : population) {
-			sum += computeFitness(g);
+
+		@Override
+		public Object call() {
+			for (int c=start; c<end; ++c) {
+				long[] parentA = parents[rand.nextInt(populationSize)];
+				long[] parentB = parents[rand.nextInt(populationSize)];
+				long[] child = children[c];
+				PackedBits.switchingCrossover(parentA, parentB, child, genomeLength, crossoverRate, rand.nextBoolean(), rand);
+				PackedBits.mutate(child, genomeLength, oneToZeroMutationRate, zeroToOneMutationRate, rand);
+				childOnes[c] = PackedBits.cardinality(child);
+			}
+			return null;
 		}
-		return sum / population.size();
-	}
-	
-	private double getStandardDeviation() {
-		return getSummary().getStandardDeviation();
 	}
-	
-	private String getSummaryCSVLine() {
-		String line = "";
-		DescriptiveStatistics summary = getSummary();
-		line += summary.getMean() + "," + summary.getMin() + "," + summary.getPercentile(25) + "," + summary.getPercentile(50) + "," +
-				summary.getPercentile(75) + "," + summary.getMax() + "," + summary.getStandardDeviation();
-		return line;
-	}
-	
-	private static String getSummaryCSVTitleLine() {
-		return "Mean,Min,25%,50%,75%,Max,Stdev";
-	}
-	
-	private DescriptiveStatistics getSummary() {
-		DescriptiveStatistics summary = new DescriptiveStatistics();
-		for (Genome g : population) {
-			summary.addValue(computeFitness(g));
+
+	private void produceChildren(List<Callable<Object>> chunks, ExecutorService executor) {
+		if (executor == null) {
+			for (int i=0; i<chunks.size(); ++i) {
+				((Chunk)chunks.get(i)).call();
+			}
+			return;
 		}
-		return summary;
-	}
-	
-	private double getMin() {
-		return getSummary().getMax();
-	}
-	
-	private double getMax() {
-		return getSummary().getMax();
-	}
-	
-	private double computeFitness(Genome g) {
-		if (!g.hasSavedFitness) {
-			// Count number of ones divided by total length
-			int count = 0;
-			for (int i=0; i<g.bits.length; ++i) {
-				if (g.bits[i]) ++count;
+		try {
+			for (Future<Object> f : executor.invokeAll(chunks)) {
+				f.get();
 			}
-			g.savedFitness = count / (1.0*g.bits.length);
-			g.hasSavedFitness = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			System.err.println("Could not produce children");
+			throw new RuntimeException(e.getCause());
 		}
-		return g.savedFitness;
-	}
-	
-	private void sortByFitness(final boolean ascending) {
-		Collections.sort(population, new Comparator<Genome>() {
-			@Override public int compare(Genome arg0, Genome arg1) {
-				double diff = computeFitness(arg1) - computeFitness(arg0);
-				if (ascending) {
-					diff *= -1;
-				}
-				if (diff > 0) {
-					return 1;
-				} else if (diff == 0) {
-					return 0;
-				} else {
-					return -1;
+	}
+
+	/**
+	 * Moves the fittest populationSize children into the parent pool (trading arrays,
+	 * so both pools stay fully allocated) and tallies their fitness histogram.
+	 */
+	private void selectSurvivors() {
+		int n = childOnes.length;
+		for (int i=0; i<n; ++i) {
+			childIndex[i] = i;
+		}
+		selectLargest(childOnes, childIndex, n, populationSize);
+		Arrays.fill(onesCounts, 0);
+		for (int i=0; i<populationSize; ++i) {
+			int c = childIndex[i];
+			long[] tmp = parents[i];
+			parents[i] = children[c];
+			children[c] = tmp;
+			++onesCounts[childOnes[c]];
+		}
+	}
+
+	/**
+	 * Partially reorders index[0, n) so that its first k entries point at the k largest values.
+	 */
+	static private void selectLargest(int[] values, int[] index, int n, int k) {
+		int lo = 0;
+		int hi = n - 1;
+		while (lo < hi) {
+			int pivot = values[index[(lo + hi) >>> 1]];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (values[index[i]] > pivot) ++i;
+				while (values[index[j]] < pivot) --j;
+				if (i <= j) {
+					int tmp = index[i];
+					index[i] = index[j];
+					index[j] = tmp;
+					++i;
+					--j;
 				}
 			}
-		});
-	}
-	
-	static private class Genome {
-		static void mutate(Genome g, double oneToZeroRate, double zeroToOneRate) {
-			for (int i=0; i<g.bits.length; ++i) {
-				if (g.bits[i]) {
-					if (Math.random() < oneToZeroRate) g.bits[i] = false;
-				} else {
-					if (Math.random() < zeroToOneRate) g.bits[i] = true;
-				}
+			if (k - 1 <= j) {
+				hi = j;
+			} else if (k - 1 >= i) {
+				lo = i;
+			} else {
+				return;
 			}
 		}
-		static Genome cross(Genome gA, Genome gB, double crossoverRate) {
-			int len = gA.bits.length;
-			Genome newGenome = new Genome(len);
-			boolean onA = (Math.random() < 0.5);
-			for (int i=0; i<len; ++i) {
-				newGenome.bits[i] = onA ? gA.bits[i] : gB.bits[i];
-				if (Math.random() < crossoverRate) {
-					onA = !onA;
-				}
-			}
-			return newGenome;
+	}
+
+	private String getSummaryCSVLine() {
+		int n = populationSize;
+		double len = genomeLength;
+		long sum = 0;
+		int min = -1;
+		int max = 0;
+		for (int ones=0; ones<onesCounts.length; ++ones) {
+			if (onesCounts[ones] == 0) continue;
+			if (min < 0) min = ones;
+			max = ones;
+			sum += (long)ones * onesCounts[ones];
 		}
-		boolean[] bits;
-		boolean hasSavedFitness = false;
-		double savedFitness = 0.0;
-		Genome(int length) {
-			bits = new boolean[length];
+		double mean = sum / (double)n;
+		double squares = 0.0;
+		for (int ones=min; ones<=max; ++ones) {
+			double d = ones - mean;
+			squares += d * d * onesCounts[ones];
 		}
+		double stdev = (n > 1) ? Math.sqrt(squares / (n - 1)) : 0.0;
+		return mean/len + "," + min/len + "," + percentile(25)/len + "," + percentile(50)/len + "," +
+				percentile(75)/len + "," + max/len + "," + stdev/len;
+	}
+
+	/**
+	 * Percentile of the survivors' set bit counts, estimated the same way as
+	 * {@link org.apache.commons.math.stat.descriptive.rank.Percentile}.
+	 */
+	private double percentile(double p) {
+		int n = populationSize;
+		double pos = p * (n + 1) / 100;
+		if (pos < 1) return orderStatistic(0);
+		if (pos >= n) return orderStatistic(n - 1);
+		int lower = (int)Math.floor(pos);
+		double lowerValue = orderStatistic(lower - 1);
+		double upperValue = orderStatistic(lower);
+		return lowerValue + (pos - lower) * (upperValue - lowerValue);
+	}
+
+	/**
+	 * The rank-th smallest set bit count among the survivors (zero based).
+	 */
+	private int orderStatistic(int rank) {
+		int seen = 0;
+		for (int ones=0; ones<onesCounts.length; ++ones) {
+			seen += onesCounts[ones];
+			if (seen > rank) return ones;
+		}
+		return onesCounts.length - 1;
+	}
+
+	private static String getSummaryCSVTitleLine() {
+		return "Mean,Min,25%,50%,75%,Max,Stdev";
+	}
+
+	public int getChildCount() {
+		return populationSize*childrenPerFamily/2;
+	}
+
+	public int getGenomeLength() {
+		return genomeLength;
+	}
+
+	public void setGenomeLength(int genomeLength) {
+		this.genomeLength = genomeLength;
+	}
+
+	public int getPopulationSize() {
+		return populationSize;
+	}
+
+	public void setPopulationSize(int populationSize) {
+		this.populationSize = populationSize;
+	}
+
+	public int getGenerations() {
+		return generations;
+	}
+
+	public void setGenerations(int generations) {
+		this.generations = generations;
+	}
+
+	public int getChildrenPerFamily() {
+		return childrenPerFamily;
+	}
+
+	public void setChildrenPerFamily(int childrenPerFamily) {
+		this.childrenPerFamily = childrenPerFamily;
+	}
+
+	public double getCrossoverRate() {
+		return crossoverRate;
+	}
+
+	public void setCrossoverRate(double crossoverRate) {
+		this.crossoverRate = crossoverRate;
+	}
+
+	public double getOneToZeroMutationRate() {
+		return oneToZeroMutationRate;
+	}
+
+	public void setOneToZeroMutationRate(double oneToZeroMutationRate) {
+		this.oneToZeroMutationRate = oneToZeroMutationRate;
+	}
+
+	public double getZeroToOneMutationRate() {
+		return zeroToOneMutationRate;
+	}
+
+	public void setZeroToOneMutationRate(double zeroToOneMutationRate) {
+		this.zeroToOneMutationRate = zeroToOneMutationRate;
+	}
+
+	public double getInitialFitnessProbability() {
+		return initialFitnessProbability;
+	}
+
+	public void setInitialFitnessProbability(double initialFitnessProbability) {
+		this.initialFitnessProbability = initialFitnessProbability;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Number of threads used to produce children; 1 runs everything on the calling thread.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public PrintStream getOut() {
+		return out;
+	}
+
+	/**
+	 * Where the CSV lines go; System.out by default.
+	 */
+	public void setOut(PrintStream out) {
+		this.out = out;
 	}
 }
@@ -1,9 +1,14 @@
 package com.ewjordan.util;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ArrayUtil {
 	/**
@@ -34,32 +39,117 @@ public class ArrayUtil {
 	
 	static public double[] toDoubleArray(DoubleList list) {
 		double[] arr = new double[list.size()];
-		for (int i=0; i<list.size(); ++i) {
-			arr[i] = (double)list.get(i);
-		}
+		list.copyRange(0, arr.length, arr, 0);
 		return arr;
 	}
 	
+	/** Mean of the array; rounds like {@link #sum(double[])}. */
 	static public double average(double[] arr) {
 		return sum(arr) / arr.length;
 	}
 	
+	/**
+	 * Sum of the array, accumulated in four partial sums by {@link DoubleArrays#sum(double[], int, int)}.
+	 * Rounding can differ in the last bits from a left-to-right loop, so results
+	 * aren't bit-for-bit what earlier versions returned.
+	 */
 	static public double sum(double[] arr) {
-		double sum = 0;
-		for (double d : arr) { sum += d; }
-		return sum;
+		return DoubleArrays.sum(arr, 0, arr.length);
 	}
 	
 	static public double min(double[] arr) {
-		double min = Double.MAX_VALUE;
-		for (double d : arr) { if (d < min) min = d; }
-		return min;
+		return DoubleArrays.min(arr, 0, arr.length);
 	}
 	
 	static public double max(double[] arr) {
-		double max = -Double.MAX_VALUE;
-		for (double d : arr) { if (d > max) max = d; }
-		return max;
+		return DoubleArrays.max(arr, 0, arr.length);
+	}
+	
+	/** Sizes above which {@link #sort(double[], int, int)} splits the work over several threads. */
+	static private final int parallelSortThreshold = 1 << 20;
+	
+	/**
+	 * Daemon threads shared by all parallel sorts, created on the first large sort
+	 * (the holder class is only loaded then).
+	 */
+	static private class SortExecutor {
+		static final ExecutorService executor = Executors.newFixedThreadPool(
+				Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "ArrayUtil.sort-" + count.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Sort arr[from, to) ascending, in the order of {@link java.util.Arrays#sort(double[])}.
+	 * Large ranges are cut into one piece per processor, the pieces sorted
+	 * on a shared pool of daemon threads (the caller sorts the first one) and then merged.
+	 */
+	static public void sort(double[] arr, int from, int to) {
+		int n = to - from;
+		int pieces = Math.min(Runtime.getRuntime().availableProcessors(), n / (parallelSortThreshold / 2));
+		if (n < parallelSortThreshold || pieces < 2) {
+			Arrays.sort(arr, from, to);
+			return;
+		}
+		final double[] a = arr;
+		final int[] bounds = new int[pieces+1];
+		List<Future<?>> futures = new ArrayList<Future<?>>(pieces-1);
+		for (int p=0; p<=pieces; ++p) {
+			bounds[p] = from + (int)((long)n * p / pieces);
+		}
+		for (int p=1; p<pieces; ++p) {
+			final int lo = bounds[p];
+			final int hi = bounds[p+1];
+			futures.add(SortExecutor.executor.submit(new Runnable() {
+				public void run() {
+					Arrays.sort(a, lo, hi);
+				}
+			}));
+		}
+		Arrays.sort(arr, bounds[0], bounds[1]);
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		//merge neighbouring runs pairwise until one is left
+		double[] scratch = new double[n];
+		for (int width=1; width<pieces; width*=2) {
+			for (int p=0; p+width<pieces; p+=2*width) {
+				int lo = bounds[p];
+				int mid = bounds[p+width];
+				int hi = bounds[Math.min(p+2*width, pieces)];
+				System.arraycopy(arr, lo, scratch, 0, mid-lo);
+				mergeSorted(scratch, 0, mid-lo, arr, mid, hi, arr, lo);
+			}
+		}
+	}
+	
+	/**
+	 * Merge sorted a[aFrom, aTo) and b[bFrom, bTo) into dest starting at destPos,
+	 * in the order of {@link Double#compare(double, double)}.  dest may be b, as
+	 * long as the output never overtakes the unread part of b (destPos + (aTo-aFrom) <= bFrom).
+	 */
+	static public void mergeSorted(double[] a, int aFrom, int aTo, double[] b, int bFrom, int bTo, double[] dest, int destPos) {
+		int i = aFrom;
+		int j = bFrom;
+		int out = destPos;
+		while (i < aTo && j < bTo) {
+			if (Double.compare(a[i], b[j]) <= 0) dest[out++] = a[i++];
+			else dest[out++] = b[j++];
+		}
+		while (i < aTo) dest[out++] = a[i++];
+		while (j < bTo) dest[out++] = b[j++];
 	}
 	
 	static public StoredObservationSummary storedSummary(double[] arr) {
@@ -76,57 +166,19 @@ public class ArrayUtil {
 		return storedSummary(fieldToDoubleArray(doubleFieldName,objects));
 	}
 	
+	/**
+	 * Read the named double field (or no-argument method) of each object.
+	 * @see DoubleFieldExtractor
+	 */
 	static public double[] fieldToDoubleArray(String doubleFieldName, List<? extends Object> objects) {
-		Class<?> clazz = objects.get(0).getClass();
-		double[] arr = new double[objects.size()];
-		try {
-			Field field = clazz.getDeclaredField(doubleFieldName);
-			field.setAccessible(true);
-			for (int i=0; i<objects.size(); ++i) {
-				arr[i] = field.getDouble(objects.get(i));
-			}
-		} catch (NoSuchFieldException e) {
-			Method m;
-			try {
-				m = clazz.getDeclaredMethod(doubleFieldName);
-				m.setAccessible(true);
-				for (int i=0; i<objects.size(); ++i) {
-					arr[i] = (Double) m.invoke(objects.get(i));
-				}
-			} catch (Exception e1) {
-				e.printStackTrace();
-				throw new RuntimeException(e1);
-			}
-		} catch (Exception e) {
-			throw new RuntimeException(e);
-		}
-		return arr;
+		return DoubleFieldExtractor.extract(objects, doubleFieldName);
 	}
 	
+	/**
+	 * Read the named double field (or no-argument method) of each object.
+	 * @see DoubleFieldExtractor
+	 */
 	static public double[] fieldToDoubleArray(String doubleFieldName, Object[] objects) {
-		Class<?> clazz = objects[0].getClass();
-		double[] arr = new double[objects.length];
-		try {
-			Field field = clazz.getDeclaredField(doubleFieldName);
-			field.setAccessible(true);
-			for (int i=0; i<objects.length; ++i) {
-				arr[i] = field.getDouble(objects[i]);
-			}
-		} catch (NoSuchFieldException e) {
-			Method m;
-			try {
-				m = clazz.getDeclaredMethod(doubleFieldName);
-				m.setAccessible(true);
-				for (int i=0; i<objects.length; ++i) {
-					arr[i] = (Double) m.invoke(objects[i]);
-				}
-			} catch (Exception e1) {
-				e.printStackTrace();
-				throw new RuntimeException(e1);
-			}
-		} catch (Exception e) {
-			throw new RuntimeException(e);
-		}
-		return arr;
+		return DoubleFieldExtractor.extract(objects, doubleFieldName);
 	}
 }
@@ -0,0 +1,267 @@
+package com.ewjordan.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Appends lines of text or rows of numbers to a file from a background
+ * thread, keeping the file open for its whole life.
+ * <p>
+ * {@link #append(String)} and {@link #appendRow(double...)} only put the
+ * line on a bounded queue (waiting if it is full), so callers in a tight
+ * loop don't pay for file access.  The background thread takes everything
+ * queued at once, formats it into a buffer, and writes the buffer out
+ * whenever it fills or when the flush interval has passed - so many lines
+ * go to the file in one write.  {@link #flush()} waits until everything
+ * appended so far has been written; {@link #close()} flushes and closes the
+ * file.  An appender that is never closed is closed when the JVM shuts down.
+ * <p>
+ * Appending and closing exclude each other, so every line appended before
+ * {@link #close()} is written and any appended after it is rejected.  Once
+ * writing has failed, appending throws an IllegalStateException rather than
+ * waiting on a queue nobody is draining.
+ *
+ * @author eric
+ */
+public class AsyncAppender {
+	static public final int defaultQueueCapacity = 8192;
+	static public final long defaultFlushMillis = 1000;
+	static public final int defaultDecimalPlaces = 9;
+
+	static private final Object closeMarker = new Object();
+
+	private final File file;
+	private final BlockingQueue<Object> queue;
+	private final long flushMillis;
+	private final NumericCSVWriter out;
+	private final Thread thread;
+	private final Thread shutdownHook;
+	/** Held (shared) while queueing, and exclusively to close, so nothing is queued behind the close marker. */
+	private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+	private volatile boolean closed;
+	private volatile IOException failure;
+
+	/** Appender with the default queue size, flush interval and 9 decimal places for rows. */
+	public AsyncAppender(File file) throws IOException {
+		this(file, defaultQueueCapacity, defaultFlushMillis, defaultDecimalPlaces);
+	}
+
+	/**
+	 * @param file file to append to, created if it doesn't exist
+	 * @param queueCapacity lines that can be waiting to be written before appending blocks
+	 * @param flushMillis longest time a line is held before being written to the file
+	 * @param decimalPlaces digits after the decimal point for rows of numbers
+	 */
+	public AsyncAppender(File file, int queueCapacity, long flushMillis, int decimalPlaces) throws IOException {
+		if (flushMillis <= 0) throw new IllegalArgumentException("Flush interval must be positive, got " + flushMillis);
+		this.file = file;
+		this.queue = new ArrayBlockingQueue<Object>(queueCapacity);
+		this.flushMillis = flushMillis;
+		this.out = new NumericCSVWriter(file, decimalPlaces, false, true);
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		}, "AsyncAppender " + file.getName());
+		thread.setDaemon(true);
+		thread.start();
+		this.shutdownHook = new Thread() {
+			@Override
+			public void run() {
+				closeQuietly();
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/** Queue a line of text (a line break is added). */
+	public void append(String line) {
+		enqueue(line);
+	}
+
+	/** Queue a row of numbers, written comma separated. */
+	public void appendRow(double ... values) {
+		enqueue(values.clone());
+	}
+
+	/**
+	 * Wait until everything appended so far is written to the file.
+	 * @throws IOException if writing has failed
+	 */
+	public void flush() throws IOException {
+		CountDownLatch done = new CountDownLatch(1);
+		enqueue(done);
+		try {
+			while (!done.await(100, TimeUnit.MILLISECONDS)) {
+				if (!thread.isAlive()) break;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while flushing " + file);
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Write everything appended so far and close the file.  Further appends
+	 * throw an IllegalStateException; closing again does nothing.
+	 * @throws IOException if writing has failed
+	 */
+	public void close() throws IOException {
+		closeLock.writeLock().lock();
+		try {
+			if (!closed) {
+				closed = true;
+				offerCloseMarker();
+			}
+		} finally {
+			closeLock.writeLock().unlock();
+		}
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while closing " + file);
+		}
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			//already shutting down
+		}
+		checkFailure();
+	}
+
+	private void closeQuietly() {
+		try {
+			close();
+		} catch (IOException e) {
+			System.err.println("Could not close " + file + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * True until the appender is closed or writing fails; after that, appending
+	 * throws and a new appender is needed.
+	 */
+	public boolean isOpen() {
+		return !closed && failure == null && thread.isAlive();
+	}
+
+	private void enqueue(Object o) {
+		closeLock.readLock().lock();
+		try {
+			if (closed) throw new IllegalStateException("Appender for " + file + " has been closed");
+			try {
+				while (!queue.offer(o, 100, TimeUnit.MILLISECONDS)) {
+					if (failure != null || !thread.isAlive()) break;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while appending to " + file);
+			}
+			if (failure != null || !thread.isAlive()) {
+				throw new IllegalStateException("Appender for " + file + " has failed", failure);
+			}
+		} finally {
+			closeLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Queue the close marker, waiting for room unless the writer thread has
+	 * died (after a failure), in which case there's nothing left to stop.
+	 */
+	private void offerCloseMarker() throws IOException {
+		try {
+			while (!queue.offer(closeMarker, 100, TimeUnit.MILLISECONDS)) {
+				if (!thread.isAlive()) return;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while closing " + file);
+		}
+	}
+
+	private void checkFailure() throws IOException {
+		if (failure != null) throw failure;
+	}
+
+	/**
+	 * Runs on the background thread: take everything queued, write it, and
+	 * flush when the buffer fills (done by the writer) or the interval passes.
+	 */
+	private void writeLoop() {
+		List<Object> batch = new ArrayList<Object>();
+		long lastFlush = System.currentTimeMillis();
+		boolean dirty = false;
+		try {
+			while (true) {
+				long wait = dirty ? Math.max(1, lastFlush + flushMillis - System.currentTimeMillis()) : flushMillis;
+				Object first = queue.poll(wait, TimeUnit.MILLISECONDS);
+				if (first != null) {
+					batch.add(first);
+					queue.drainTo(batch);
+				}
+				for (Object o : batch) {
+					if (o instanceof String) {
+						out.writeLine((String)o);
+						dirty = true;
+					} else if (o instanceof double[]) {
+						out.writeRow((double[])o);
+						dirty = true;
+					} else if (o instanceof CountDownLatch) {
+						out.flush();
+						dirty = false;
+						lastFlush = System.currentTimeMillis();
+						((CountDownLatch)o).countDown();
+					} else if (o == closeMarker) {
+						out.close();
+						return;
+					}
+				}
+				batch.clear();
+				if (dirty && System.currentTimeMillis() - lastFlush >= flushMillis) {
+					out.flush();
+					dirty = false;
+					lastFlush = System.currentTimeMillis();
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Could not write to " + file);
+			e.printStackTrace();
+			failure = e;
+		} catch (InterruptedException e) {
+			failure = new IOException("Appender thread for " + file + " was interrupted");
+		} finally {
+			if (failure != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					//already failed
+				}
+				releaseWaiters(batch);
+			}
+		}
+	}
+
+	/** After a failure, let flushes that are waiting (or queued) return. */
+	private void releaseWaiters(List<Object> batch) {
+		queue.drainTo(batch);
+		for (Object o : batch) {
+			if (o instanceof CountDownLatch) ((CountDownLatch)o).countDown();
+		}
+	}
+}
@@ -0,0 +1,467 @@
+package com.ewjordan.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A simple binary file of named numeric columns, for passing tables between
+ * programs without formatting and parsing text.
+ * <p>
+ * The file starts with a header (magic number, version, and the position of
+ * the column directory), followed by one block per column holding its values
+ * as little-endian doubles, ints or longs, each block starting on an 8 byte
+ * boundary.  The directory at the end lists each column's name, type, length,
+ * and where its block is.  A block can optionally be deflate compressed.
+ * <p>
+ * Columns are written one at a time with a {@link Writer}, so a table never has
+ * to be held in memory all at once.  Reading memory-maps the blocks:
+ * uncompressed columns can be used in place through {@link #getDoubleBuffer(String)}
+ * without copying, or copied out into arrays or {@link DoubleList}s.  A single
+ * column can hold at most 2GB.
+ *
+ * @author eric
+ */
+public class BinaryColumnFile {
+	static public final int DOUBLE = 1;
+	static public final int INT = 2;
+	static public final int LONG = 3;
+
+	static private final long fileMagic = 0x534E4D4C4F434A57L; //"WJCOLMNS" little-endian
+	static private final int fileVersion = 1;
+	static private final int headerBytes = 24;
+	static private final int blockBytes = 1 << 16;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final Map<String, Column> columns = new LinkedHashMap<String, Column>();
+
+	/**
+	 * Description of one column's block.
+	 */
+	static private class Column {
+		final String name;
+		final int type;
+		final boolean compressed;
+		final long length;
+		final long offset;
+		final long storedBytes;
+
+		Column(String name, int type, boolean compressed, long length, long offset, long storedBytes) {
+			this.name = name;
+			this.type = type;
+			this.compressed = compressed;
+			this.length = length;
+			this.offset = offset;
+			this.storedBytes = storedBytes;
+		}
+	}
+
+	/**
+	 * Open a file written by a {@link Writer} for reading.
+	 */
+	public BinaryColumnFile(File f) throws IOException {
+		file = new RandomAccessFile(f, "r");
+		try {
+			channel = file.getChannel();
+			ByteBuffer header = read(0, headerBytes);
+			if (header.getLong() != fileMagic) throw new IOException(f + " is not a binary column file");
+			int version = header.getInt();
+			if (version != fileVersion) throw new IOException("Unknown binary column file version " + version);
+			header.getInt();
+			long directoryOffset = header.getLong();
+			long fileSize = channel.size();
+			if (directoryOffset < headerBytes || directoryOffset > fileSize - 4 || fileSize - directoryOffset > Integer.MAX_VALUE) {
+				throw new IOException(f + " was not closed or is truncated: column directory at " + directoryOffset + " in " + fileSize + " bytes");
+			}
+			ByteBuffer dir = read(directoryOffset, (int)(fileSize - directoryOffset));
+			int count = dir.getInt();
+			for (int i=0; i<count; ++i) {
+				int nameLength = (dir.remaining() >= 4) ? dir.getInt() : -1;
+				if (nameLength < 0 || dir.remaining() < (long)nameLength + 2 + 24) throw new IOException(f + " has a truncated column directory");
+				byte[] name = new byte[nameLength];
+				dir.get(name);
+				int type = dir.get();
+				boolean compressed = dir.get() != 0;
+				Column column = new Column(new String(name, "UTF-8"), type, compressed, dir.getLong(), dir.getLong(), dir.getLong());
+				checkColumn(f, column, directoryOffset);
+				columns.put(column.name, column);
+			}
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		} catch (RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/** Deflate expands at most about 1032:1, plus the zlib header and trailer; bounds the values a compressed block can hold. */
+	static private final long maxInflateRatio = 1032;
+	static private final long inflateSlack = 64;
+
+	/**
+	 * Check that a column from the directory has a known type and lies within the file's data,
+	 * and that its stored bytes could hold its values, so a corrupt length can't make
+	 * {@link #bytes(Column)} allocate more than the data could inflate to.
+	 */
+	static private void checkColumn(File f, Column column, long directoryOffset) throws IOException {
+		if (column.type != DOUBLE && column.type != INT && column.type != LONG) {
+			throw new IOException("Column " + column.name + " in " + f + " has unknown type " + column.type);
+		}
+		long capacity = column.compressed ? column.storedBytes * maxInflateRatio + inflateSlack : column.storedBytes;
+		if (column.length < 0 || column.storedBytes < 0 || column.offset < headerBytes
+				|| column.offset > directoryOffset - column.storedBytes
+				|| column.length > capacity / width(column.type)) {
+			throw new IOException("Column " + column.name + " in " + f + " does not fit in the file: " + column.length
+					+ " values stored in " + column.storedBytes + " bytes at " + column.offset + ", before the directory at " + directoryOffset);
+		}
+	}
+
+	public int getColumnCount() {
+		return columns.size();
+	}
+
+	/** Column names, in the order they were written. */
+	public List<String> getColumnNames() {
+		return new ArrayList<String>(columns.keySet());
+	}
+
+	public boolean hasColumn(String name) {
+		return columns.containsKey(name);
+	}
+
+	/** {@link #DOUBLE}, {@link #INT} or {@link #LONG}. */
+	public int getType(String name) {
+		return column(name).type;
+	}
+
+	/** Number of values in the column. */
+	public long getLength(String name) {
+		return column(name).length;
+	}
+
+	public boolean isCompressed(String name) {
+		return column(name).compressed;
+	}
+
+	/**
+	 * The values of a double column as a read-only buffer.  For an uncompressed
+	 * column this is a view of the mapped file, and nothing is copied.
+	 */
+	public DoubleBuffer getDoubleBuffer(String name) throws IOException {
+		return bytes(column(name, DOUBLE)).asDoubleBuffer();
+	}
+
+	/** The values of an int column as a read-only buffer, mapped if uncompressed. */
+	public IntBuffer getIntBuffer(String name) throws IOException {
+		return bytes(column(name, INT)).asIntBuffer();
+	}
+
+	/** The values of a long column as a read-only buffer, mapped if uncompressed. */
+	public LongBuffer getLongBuffer(String name) throws IOException {
+		return bytes(column(name, LONG)).asLongBuffer();
+	}
+
+	/** A copy of a double column. */
+	public double[] getDoubles(String name) throws IOException {
+		DoubleBuffer buffer = getDoubleBuffer(name);
+		double[] values = new double[buffer.remaining()];
+		buffer.get(values);
+		return values;
+	}
+
+	/** A copy of a double column as a DoubleList. */
+	public DoubleList getDoubleList(String name) throws IOException {
+		double[] values = getDoubles(name);
+		DoubleList list = new DoubleList(Math.max(1, values.length));
+		list.addAll(values, 0, values.length);
+		return list;
+	}
+
+	/** A copy of an int column. */
+	public int[] getInts(String name) throws IOException {
+		IntBuffer buffer = getIntBuffer(name);
+		int[] values = new int[buffer.remaining()];
+		buffer.get(values);
+		return values;
+	}
+
+	/** A copy of a long column. */
+	public long[] getLongs(String name) throws IOException {
+		LongBuffer buffer = getLongBuffer(name);
+		long[] values = new long[buffer.remaining()];
+		buffer.get(values);
+		return values;
+	}
+
+	/**
+	 * Close the file.  Buffers already handed out stay valid (mappings are
+	 * released when garbage collected).
+	 */
+	public void close() throws IOException {
+		file.close();
+	}
+
+	private Column column(String name) {
+		Column column = columns.get(name);
+		if (column == null) throw new IllegalArgumentException("No column named " + name);
+		return column;
+	}
+
+	private Column column(String name, int type) {
+		Column column = column(name);
+		if (column.type != type) throw new IllegalArgumentException("Column " + name + " is of type " + typeName(column.type) + ", not " + typeName(type));
+		return column;
+	}
+
+	/** The column's values as little-endian bytes, mapped if stored uncompressed. */
+	private ByteBuffer bytes(Column column) throws IOException {
+		long byteLength = column.length * width(column.type);
+		if (byteLength > Integer.MAX_VALUE) throw new IOException("Column " + column.name + " is too big to read at once");
+		if (!column.compressed) {
+			ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, column.offset, byteLength);
+			return mapped.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		byte[] stored = new byte[(int)column.storedBytes];
+		ByteBuffer in = ByteBuffer.wrap(stored);
+		while (in.hasRemaining()) {
+			if (channel.read(in, column.offset + in.position()) < 0) throw new IOException("Unexpected end of file in column " + column.name);
+		}
+		byte[] values = new byte[(int)byteLength];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(stored);
+			int n = 0;
+			while (n < values.length) {
+				int inflated = inflater.inflate(values, n, values.length - n);
+				if (inflated == 0 && (inflater.finished() || inflater.needsInput())) throw new IOException("Column " + column.name + " is truncated");
+				n += inflated;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Column " + column.name + " is corrupt: " + e.getMessage());
+		} finally {
+			inflater.end();
+		}
+		return ByteBuffer.wrap(values).asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of file");
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	static private int width(int type) {
+		switch (type) {
+			case DOUBLE: return 8;
+			case INT: return 4;
+			case LONG: return 8;
+			default: throw new IllegalArgumentException("Unknown column type " + type);
+		}
+	}
+
+	static private String typeName(int type) {
+		switch (type) {
+			case DOUBLE: return "double";
+			case INT: return "int";
+			case LONG: return "long";
+			default: return "unknown (" + type + ")";
+		}
+	}
+
+	/**
+	 * Writes a binary column file a column at a time.  The file isn't readable
+	 * until {@link #close()} writes the column directory.
+	 */
+	static public class Writer {
+		private final RandomAccessFile file;
+		private final FileChannel channel;
+		private final List<Column> written = new ArrayList<Column>();
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(blockBytes).order(ByteOrder.LITTLE_ENDIAN);
+		private boolean compress;
+		private Deflater deflater;
+		private byte[] deflated;
+		private byte[] raw;
+
+		/** Create (or replace) a file. */
+		public Writer(File f) throws IOException {
+			file = new RandomAccessFile(f, "rw");
+			file.setLength(0);
+			channel = file.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+			header.putLong(fileMagic);
+			header.putInt(fileVersion);
+			header.putInt(0);
+			header.putLong(0); //directory offset, filled in on close
+			header.flip();
+			write(header);
+		}
+
+		/**
+		 * Deflate compress the columns added from now on.  Compressed columns
+		 * are smaller but have to be decompressed (and so copied) to be read.
+		 */
+		public void setCompression(boolean compress) {
+			this.compress = compress;
+		}
+
+		public void addColumn(String name, double[] values) throws IOException {
+			addColumn(name, values, 0, values.length);
+		}
+
+		/** Add a double column, copied straight from the list into the write buffer. */
+		public void addColumn(String name, DoubleList values) throws IOException {
+			long start = beginColumn(name);
+			int len = values.size();
+			int perBlock = blockBytes / 8;
+			for (int i=0; i<len; i+=perBlock) {
+				int n = Math.min(perBlock, len - i);
+				buffer.clear();
+				values.copyRange(i, i + n, buffer.asDoubleBuffer());
+				buffer.limit(n * 8);
+				writeBlock();
+			}
+			endColumn(name, DOUBLE, len, start);
+		}
+
+		/** Add values[off, off+len) as a double column. */
+		public void addColumn(String name, double[] values, int off, int len) throws IOException {
+			long start = beginColumn(name);
+			int perBlock = blockBytes / 8;
+			for (int i=0; i<len; i+=perBlock) {
+				int n = Math.min(perBlock, len - i);
+				buffer.clear();
+				buffer.asDoubleBuffer().put(values, off + i, n);
+				buffer.limit(n * 8);
+				writeBlock();
+			}
+			endColumn(name, DOUBLE, len, start);
+		}
+
+		public void addColumn(String name, int[] values) throws IOException {
+			long start = beginColumn(name);
+			int perBlock = blockBytes / 4;
+			for (int i=0; i<values.length; i+=perBlock) {
+				int n = Math.min(perBlock, values.length - i);
+				buffer.clear();
+				buffer.asIntBuffer().put(values, i, n);
+				buffer.limit(n * 4);
+				writeBlock();
+			}
+			endColumn(name, INT, values.length, start);
+		}
+
+		public void addColumn(String name, long[] values) throws IOException {
+			long start = beginColumn(name);
+			int perBlock = blockBytes / 8;
+			for (int i=0; i<values.length; i+=perBlock) {
+				int n = Math.min(perBlock, values.length - i);
+				buffer.clear();
+				buffer.asLongBuffer().put(values, i, n);
+				buffer.limit(n * 8);
+				writeBlock();
+			}
+			endColumn(name, LONG, values.length, start);
+		}
+
+		/** Write the column directory and close the file. */
+		public void close() throws IOException {
+			try {
+				long directoryOffset = channel.position();
+				int size = 4;
+				List<byte[]> names = new ArrayList<byte[]>();
+				for (Column column : written) {
+					byte[] name = column.name.getBytes("UTF-8");
+					names.add(name);
+					size += 4 + name.length + 2 + 24;
+				}
+				ByteBuffer dir = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+				dir.putInt(written.size());
+				for (int i=0; i<written.size(); ++i) {
+					Column column = written.get(i);
+					dir.putInt(names.get(i).length);
+					dir.put(names.get(i));
+					dir.put((byte)column.type);
+					dir.put((byte)(column.compressed ? 1 : 0));
+					dir.putLong(column.length);
+					dir.putLong(column.offset);
+					dir.putLong(column.storedBytes);
+				}
+				dir.flip();
+				write(dir);
+				ByteBuffer offset = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+				offset.putLong(0, directoryOffset);
+				while (offset.hasRemaining()) channel.write(offset, 16 + offset.position());
+			} finally {
+				if (deflater != null) deflater.end();
+				file.close();
+			}
+		}
+
+		/** Pad to an 8 byte boundary and return where the column starts. */
+		private long beginColumn(String name) throws IOException {
+			for (Column column : written) {
+				if (column.name.equals(name)) throw new IllegalArgumentException("Column " + name + " already written");
+			}
+			long position = channel.position();
+			int pad = (int)(-position & 7);
+			if (pad > 0) write(ByteBuffer.allocate(pad));
+			if (compress) {
+				if (deflater == null) {
+					deflater = new Deflater(Deflater.BEST_SPEED);
+					deflated = new byte[blockBytes];
+					raw = new byte[blockBytes];
+				}
+				deflater.reset();
+			}
+			return position + pad;
+		}
+
+		private void endColumn(String name, int type, long length, long start) throws IOException {
+			if (compress) {
+				deflater.finish();
+				while (!deflater.finished()) drainDeflater();
+			}
+			written.add(new Column(name, type, compress, length, start, channel.position() - start));
+		}
+
+		/** Write the buffer's contents [0, limit), through the deflater if compressing. */
+		private void writeBlock() throws IOException {
+			buffer.position(0);
+			if (!compress) {
+				write(buffer);
+				return;
+			}
+			int n = buffer.remaining();
+			buffer.get(raw, 0, n);
+			deflater.setInput(raw, 0, n);
+			while (!deflater.needsInput()) drainDeflater();
+		}
+
+		private void drainDeflater() throws IOException {
+			int n = deflater.deflate(deflated);
+			if (n > 0) write(ByteBuffer.wrap(deflated, 0, n));
+		}
+
+		private void write(ByteBuffer bytes) throws IOException {
+			while (bytes.hasRemaining()) channel.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,352 @@
+package com.ewjordan.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A growable list of doubles for very long series, stored in fixed-size chunks
+ * so that growing never copies existing values.
+ * <p>
+ * Chunks can live on the Java heap, off-heap in direct buffers, or in a
+ * memory-mapped file (see {@link #mapped(File)}), in which case the series can
+ * be larger than the heap and is still there when the file is mapped again.
+ * The file holds a small header (including the size) followed by the values
+ * as little-endian doubles.
+ * <p>
+ * Indices are longs, so a list can hold more than 2^31 values.  Ranges can be
+ * copied in and out in bulk, viewed without copying through {@link #slice(long, long)},
+ * and iterated over without boxing.
+ *
+ * @author eric
+ */
+public class ChunkedDoubleList {
+	static public final int defaultChunkBits = 16; //64k doubles, 512kb per chunk
+	static private final long fileMagic = 0x44424C4953543031L; //"DBLIST01"
+	static private final int headerBytes = 32;
+
+	private final int chunkBits;
+	private final int chunkSize;
+	private final int chunkMask;
+	private final boolean offHeap;
+	private DoubleBuffer[] chunks = new DoubleBuffer[8];
+	private int chunkCount;
+	private long size;
+	private boolean closed;
+
+	//Only used when memory mapped
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private MappedByteBuffer header;
+	private MappedByteBuffer[] mappedChunks;
+
+	/** An on-heap list with the default chunk size. */
+	public ChunkedDoubleList() {
+		this(defaultChunkBits, false);
+	}
+
+	/**
+	 * @param chunkBits log2 of the number of doubles per chunk
+	 * @param offHeap true to store chunks in direct buffers outside the Java heap
+	 */
+	public ChunkedDoubleList(int chunkBits, boolean offHeap) {
+		checkChunkBits(chunkBits);
+		this.chunkBits = chunkBits;
+		this.chunkSize = 1 << chunkBits;
+		this.chunkMask = chunkSize - 1;
+		this.offHeap = offHeap;
+	}
+
+	/**
+	 * A list backed by a memory-mapped file, created if it doesn't exist, with the default chunk size.
+	 * If the file already holds a list, its contents are kept.
+	 */
+	static public ChunkedDoubleList mapped(File f) throws IOException {
+		return mapped(f, defaultChunkBits);
+	}
+
+	/**
+	 * A list backed by a memory-mapped file.  If the file already holds a list,
+	 * its contents (and chunk size) are kept and chunkBits is ignored.  A missing
+	 * or empty file starts a new list; any other file that doesn't hold a list
+	 * is rejected with an IOException and left unchanged.
+	 */
+	static public ChunkedDoubleList mapped(File f, int chunkBits) throws IOException {
+		//a new list's chunk size is checked before the file is created or given a header it could never be opened with
+		if (f.length() == 0) checkChunkBits(chunkBits);
+		RandomAccessFile raf = new RandomAccessFile(f, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			//only an empty file is new; anything else must be a whole list, and is checked before mapping grows it
+			boolean existing = raf.length() > 0;
+			if (existing && raf.length() < headerBytes) throw new IOException(f + " does not hold a ChunkedDoubleList");
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerBytes);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			long size = 0;
+			if (existing) {
+				if (header.getLong(0) != fileMagic) throw new IOException(f + " does not hold a ChunkedDoubleList");
+				size = header.getLong(8);
+				chunkBits = header.getInt(16);
+				if (chunkBits < 4 || chunkBits > 27) throw new IOException(f + " has a bad chunk size of " + chunkBits + " bits");
+				//values are only written into mapped chunks, so a real list is never shorter than its size says
+				if (size < 0 || size > (raf.length() - headerBytes) / 8) {
+					throw new IOException(f + " has a size of " + size + " values, inconsistent with its length of " + raf.length() + " bytes");
+				}
+			} else {
+				header.putLong(0, fileMagic);
+				header.putLong(8, 0);
+				header.putInt(16, chunkBits);
+			}
+			ChunkedDoubleList list = new ChunkedDoubleList(chunkBits, false);
+			list.file = raf;
+			list.channel = channel;
+			list.header = header;
+			list.mappedChunks = new MappedByteBuffer[list.chunks.length];
+			while ((long)list.chunkCount << chunkBits < size) list.addChunk();
+			list.size = size;
+			return list;
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		} catch (RuntimeException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	static private void checkChunkBits(int chunkBits) {
+		if (chunkBits < 4 || chunkBits > 27) throw new IllegalArgumentException("Chunk bits must be between 4 and 27, got " + chunkBits);
+	}
+
+	public long size() {
+		return size;
+	}
+
+	public boolean isMapped() {
+		return channel != null;
+	}
+
+	public double get(long index) {
+		if (index < 0 || index >= size) throw new ArrayIndexOutOfBoundsException("Index " + index + " of list of size " + size);
+		return chunks[(int)(index >>> chunkBits)].get((int)index & chunkMask);
+	}
+
+	public void set(long index, double value) {
+		if (index < 0 || index >= size) throw new ArrayIndexOutOfBoundsException("Index " + index + " of list of size " + size);
+		chunks[(int)(index >>> chunkBits)].put((int)index & chunkMask, value);
+	}
+
+	public void add(double value) {
+		if (size == (long)chunkCount << chunkBits) addChunk();
+		chunks[(int)(size >>> chunkBits)].put((int)size & chunkMask, value);
+		setSize(size + 1);
+	}
+
+	/** Append all of arr. */
+	public void addAll(double[] arr) {
+		addAll(arr, 0, arr.length);
+	}
+
+	/** Append arr[off, off+len), a chunk-sized run at a time. */
+	public void addAll(double[] arr, int off, int len) {
+		if (off < 0 || len < 0 || off + len > arr.length) throw new ArrayIndexOutOfBoundsException("Range [" + off + ", " + (off+len) + ") of array of length " + arr.length);
+		long end = size;
+		while (len > 0) {
+			if (end == (long)chunkCount << chunkBits) addChunk();
+			int pos = (int)end & chunkMask;
+			int n = Math.min(len, chunkSize - pos);
+			DoubleBuffer chunk = chunks[(int)(end >>> chunkBits)].duplicate();
+			chunk.position(pos);
+			chunk.put(arr, off, n);
+			off += n;
+			len -= n;
+			end += n;
+		}
+		setSize(end);
+	}
+
+	/** Append all values of a DoubleList. */
+	public void addAll(DoubleList list) {
+		double[] buffer = new double[Math.min(chunkSize, list.size())];
+		for (int from=0; from<list.size(); from+=buffer.length) {
+			int n = Math.min(buffer.length, list.size() - from);
+			list.copyRange(from, from + n, buffer, 0);
+			addAll(buffer, 0, n);
+		}
+	}
+
+	/** Copy [from, from+len) into dest starting at off. */
+	public void copyRange(long from, double[] dest, int off, int len) {
+		if (from < 0 || len < 0 || from + len > size) throw new ArrayIndexOutOfBoundsException("Range [" + from + ", " + (from+len) + ") of list of size " + size);
+		while (len > 0) {
+			int pos = (int)from & chunkMask;
+			int n = Math.min(len, chunkSize - pos);
+			DoubleBuffer chunk = chunks[(int)(from >>> chunkBits)].duplicate();
+			chunk.position(pos);
+			chunk.get(dest, off, n);
+			off += n;
+			len -= n;
+			from += n;
+		}
+	}
+
+	/** All values as a new array. */
+	public double[] toArray() {
+		if (size > Integer.MAX_VALUE - 8) throw new IllegalStateException("List of size " + size + " is too big for an array");
+		double[] arr = new double[(int)size];
+		copyRange(0, arr, 0, arr.length);
+		return arr;
+	}
+
+	/** Discard all values, keeping the allocated chunks for reuse. */
+	public void clear() {
+		setSize(0);
+	}
+
+	/** Iterate over all values. */
+	public DoubleIterator iterator() {
+		return new Iter(0, size);
+	}
+
+	/**
+	 * A view of [from, to), sharing storage with this list: changes through
+	 * either are visible in both.  The view's range is fixed when created.
+	 */
+	public Slice slice(long from, long to) {
+		if (from < 0 || to > size || from > to) throw new ArrayIndexOutOfBoundsException("Range [" + from + ", " + to + ") of list of size " + size);
+		return new Slice(from, to);
+	}
+
+	/**
+	 * For a memory-mapped list, write changes through to the file.
+	 */
+	public void flush() {
+		if (channel == null) return;
+		for (int i=0; i<chunkCount; ++i) {
+			mappedChunks[i].force();
+		}
+		header.force();
+	}
+
+	/**
+	 * For a memory-mapped list, flush and close the file.  The list can't be
+	 * used afterwards.  (The mapping itself is released when garbage collected.)
+	 */
+	public void close() throws IOException {
+		if (channel == null) return;
+		flush();
+		file.close();
+		channel = null;
+		file = null;
+		header = null;
+		mappedChunks = null;
+		chunks = null;
+		chunkCount = 0;
+		size = 0;
+		closed = true;
+	}
+
+	private void setSize(long newSize) {
+		size = newSize;
+		if (header != null) header.putLong(8, newSize);
+	}
+
+	private void addChunk() {
+		if (closed) throw new IllegalStateException("List has been closed");
+		if (chunkCount == chunks.length) {
+			chunks = Arrays.copyOf(chunks, chunkCount * 2);
+			if (mappedChunks != null) mappedChunks = Arrays.copyOf(mappedChunks, chunkCount * 2);
+		}
+		DoubleBuffer chunk;
+		if (channel != null) {
+			try {
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, headerBytes + ((long)chunkCount << chunkBits) * 8, (long)chunkSize * 8);
+				mapped.order(ByteOrder.LITTLE_ENDIAN);
+				mappedChunks[chunkCount] = mapped;
+				chunk = mapped.asDoubleBuffer();
+			} catch (IOException e) {
+				throw new RuntimeException("Could not map chunk " + chunkCount, e);
+			}
+		} else if (offHeap) {
+			chunk = ByteBuffer.allocateDirect(chunkSize * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+		} else {
+			chunk = DoubleBuffer.wrap(new double[chunkSize]);
+		}
+		chunks[chunkCount++] = chunk;
+	}
+
+	/**
+	 * Walks a range chunk by chunk.
+	 */
+	private class Iter implements DoubleIterator {
+		private long next;
+		private final long end;
+
+		Iter(long from, long to) {
+			this.next = from;
+			this.end = to;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < end;
+		}
+
+		@Override
+		public double next() {
+			if (next >= end) throw new java.util.NoSuchElementException();
+			double value = chunks[(int)(next >>> chunkBits)].get((int)next & chunkMask);
+			++next;
+			return value;
+		}
+	}
+
+	/**
+	 * A fixed range of a {@link ChunkedDoubleList}, sharing its storage.
+	 */
+	public class Slice {
+		private final long from;
+		private final long to;
+
+		Slice(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		public long size() {
+			return to - from;
+		}
+
+		public double get(long index) {
+			if (index < 0 || index >= to - from) throw new ArrayIndexOutOfBoundsException("Index " + index + " of slice of size " + (to - from));
+			return ChunkedDoubleList.this.get(from + index);
+		}
+
+		public void set(long index, double value) {
+			if (index < 0 || index >= to - from) throw new ArrayIndexOutOfBoundsException("Index " + index + " of slice of size " + (to - from));
+			ChunkedDoubleList.this.set(from + index, value);
+		}
+
+		/** Copy [start, start+len) of the slice into dest starting at off. */
+		public void copyRange(long start, double[] dest, int off, int len) {
+			if (start < 0 || start + len > to - from) throw new ArrayIndexOutOfBoundsException("Range [" + start + ", " + (start+len) + ") of slice of size " + (to - from));
+			ChunkedDoubleList.this.copyRange(from + start, dest, off, len);
+		}
+
+		public DoubleIterator iterator() {
+			return new Iter(from, to);
+		}
+
+		/** A narrower view, relative to this one. */
+		public Slice slice(long start, long end) {
+			if (start < 0 || end > to - from || start > end) throw new ArrayIndexOutOfBoundsException("Range [" + start + ", " + end + ") of slice of size " + (to - from));
+			return new Slice(from + start, from + end);
+		}
+	}
+}
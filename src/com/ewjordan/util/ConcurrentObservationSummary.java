@@ -0,0 +1,102 @@
+package com.ewjordan.util;
+
+/**
+ * An {@link ObservationSummary} that many threads can add to at once.
+ * <p>
+ * Observations accumulate in a fixed set of striped summaries, each thread
+ * adding to the one chosen by its thread id, so adding rarely contends with
+ * other threads.  {@link #snapshot()} combines the stripes (with
+ * {@link ObservationSummary#merge(ObservationSummary)}) into a new, merged
+ * ObservationSummary, which is what statistics are read from.  Since the
+ * stripes are fixed, memory doesn't grow with the number of threads that
+ * have ever added, so short-lived threads are fine.
+ * <p>
+ * Each stripe is guarded by its own lock, so a snapshot taken while other
+ * threads are adding sees a consistent state of each stripe.
+ * 
+ * @author eric
+ */
+public class ConcurrentObservationSummary {
+	private final ObservationSummary[] stripes;
+	private final int stripeMask;
+	
+	/** Striped for twice the number of available processors, at most 64 stripes. */
+	public ConcurrentObservationSummary() {
+		this(2 * Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * @param concurrency expected number of concurrently adding threads;
+	 * rounded up to a power of two, at most 64
+	 */
+	public ConcurrentObservationSummary(int concurrency) {
+		int n = 1;
+		while (n < concurrency && n < 64) n <<= 1;
+		stripes = new ObservationSummary[n];
+		for (int i=0; i<n; ++i) {
+			stripes[i] = new ObservationSummary();
+		}
+		stripeMask = n - 1;
+	}
+	
+	private ObservationSummary stripe() {
+		return stripes[(int)Thread.currentThread().getId() & stripeMask];
+	}
+	
+	/** Add a new observation. */
+	public void add(double num) {
+		ObservationSummary stripe = stripe();
+		synchronized(stripe) {
+			stripe.add(num);
+		}
+	}
+	
+	/** Add a list of observations. */
+	public void add(double ... nums) {
+		ObservationSummary stripe = stripe();
+		synchronized(stripe) {
+			stripe.add(nums);
+		}
+	}
+	
+	/** Add a boolean value as an observation, with 1 <-> true and 0 <-> false. */
+	public void add(boolean bool) {
+		add(bool?1.0:0.0);
+	}
+	
+	/**
+	 * Merge a summary accumulated elsewhere into this one.
+	 */
+	public void merge(ObservationSummary other) {
+		ObservationSummary stripe = stripe();
+		synchronized(stripe) {
+			stripe.merge(other);
+		}
+	}
+	
+	/**
+	 * Combine the stripes into a new, merged summary.
+	 * The result is independent of this object.
+	 */
+	public ObservationSummary snapshot() {
+		ObservationSummary result = new ObservationSummary();
+		for (ObservationSummary stripe : stripes) {
+			synchronized(stripe) {
+				result.merge(stripe);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Discard all observations.  Observations added concurrently with
+	 * the reset may or may not survive it.
+	 */
+	public void reset() {
+		for (ObservationSummary stripe : stripes) {
+			synchronized(stripe) {
+				stripe.reset();
+			}
+		}
+	}
+}
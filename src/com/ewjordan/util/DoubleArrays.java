@@ -0,0 +1,168 @@
+package com.ewjordan.util;
+
+/**
+ * Bulk arithmetic over ranges of double arrays.
+ * <p>
+ * Every operation is a single counted loop over plain arrays with no calls or
+ * branches in its body (other than min/max), which is the shape the JIT
+ * unrolls and turns into SIMD instructions.  Sums are accumulated in four
+ * independent partial sums, so they aren't serialized on one addition chain;
+ * this changes the rounding slightly compared to a left-to-right sum.
+ * <p>
+ * Output arrays may be the same as input arrays, for in-place operation.
+ *
+ * @author eric
+ */
+public class DoubleArrays {
+
+	/** out[i] = a[i] + b[i] for i in [0, len). */
+	static public void add(double[] a, double[] b, double[] out, int len) {
+		for (int i=0; i<len; ++i) {
+			out[i] = a[i] + b[i];
+		}
+	}
+
+	/** out[i] = a[i] - b[i] for i in [0, len). */
+	static public void subtract(double[] a, double[] b, double[] out, int len) {
+		for (int i=0; i<len; ++i) {
+			out[i] = a[i] - b[i];
+		}
+	}
+
+	/** out[i] = a[i] * b[i] for i in [0, len). */
+	static public void multiply(double[] a, double[] b, double[] out, int len) {
+		for (int i=0; i<len; ++i) {
+			out[i] = a[i] * b[i];
+		}
+	}
+
+	/** out[i] = a[i] / b[i] for i in [0, len). */
+	static public void divide(double[] a, double[] b, double[] out, int len) {
+		for (int i=0; i<len; ++i) {
+			out[i] = a[i] / b[i];
+		}
+	}
+
+	/**
+	 * out[i] = a[i] / b[i] where b[i] is positive, otherwise nonPositiveValue,
+	 * for i in [0, len).  Useful for normalizing sums by counts.
+	 */
+	static public void divideByPositive(double[] a, double[] b, double[] out, int len, double nonPositiveValue) {
+		for (int i=0; i<len; ++i) {
+			double d = b[i];
+			out[i] = (d > 0.0) ? a[i] / d : nonPositiveValue;
+		}
+	}
+
+	/** out[i] = a[i] * factor for i in [0, len). */
+	static public void scale(double[] a, double factor, double[] out, int len) {
+		for (int i=0; i<len; ++i) {
+			out[i] = a[i] * factor;
+		}
+	}
+
+	/** out[i] = a[i] + offset for i in [0, len). */
+	static public void shift(double[] a, double offset, double[] out, int len) {
+		for (int i=0; i<len; ++i) {
+			out[i] = a[i] + offset;
+		}
+	}
+
+	/** Sum of a[from, to). */
+	static public double sum(double[] a, int from, int to) {
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int i = from;
+		for (; i+3<to; i+=4) {
+			s0 += a[i];
+			s1 += a[i+1];
+			s2 += a[i+2];
+			s3 += a[i+3];
+		}
+		for (; i<to; ++i) {
+			s0 += a[i];
+		}
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	/** Smallest of a[from, to), Double.MAX_VALUE if empty.  NaNs are skipped. */
+	static public double min(double[] a, int from, int to) {
+		double min = Double.MAX_VALUE;
+		for (int i=from; i<to; ++i) {
+			if (a[i] < min) min = a[i];
+		}
+		return min;
+	}
+
+	/** Largest of a[from, to), -Double.MAX_VALUE if empty.  NaNs are skipped. */
+	static public double max(double[] a, int from, int to) {
+		double max = -Double.MAX_VALUE;
+		for (int i=from; i<to; ++i) {
+			if (a[i] > max) max = a[i];
+		}
+		return max;
+	}
+
+	/**
+	 * Min, max and sum of a[from, to) in one pass, returned as {min, max, sum}.
+	 * Empty ranges give {Double.MAX_VALUE, -Double.MAX_VALUE, 0}.
+	 */
+	static public double[] minMaxSum(double[] a, int from, int to) {
+		double min = Double.MAX_VALUE;
+		double max = -Double.MAX_VALUE;
+		double s0 = 0, s1 = 0;
+		int i = from;
+		for (; i+1<to; i+=2) {
+			double x = a[i];
+			double y = a[i+1];
+			if (x < min) min = x;
+			if (x > max) max = x;
+			if (y < min) min = y;
+			if (y > max) max = y;
+			s0 += x;
+			s1 += y;
+		}
+		if (i < to) {
+			double x = a[i];
+			if (x < min) min = x;
+			if (x > max) max = x;
+			s0 += x;
+		}
+		return new double[] {min, max, s0 + s1};
+	}
+
+	/**
+	 * Inclusive prefix sums: out[i] = a[0] + ... + a[i] for i in [0, len).
+	 */
+	static public void prefixSum(double[] a, double[] out, int len) {
+		double running = 0;
+		for (int i=0; i<len; ++i) {
+			running += a[i];
+			out[i] = running;
+		}
+	}
+
+	/**
+	 * Scale a[0, len) into out so that it sums to 1.  Leaves out untouched and
+	 * returns false if the sum is zero.
+	 */
+	static public boolean normalize(double[] a, double[] out, int len) {
+		double sum = sum(a, 0, len);
+		if (sum == 0.0) return false;
+		scale(a, 1.0 / sum, out, len);
+		return true;
+	}
+
+	/**
+	 * Map a[0, len) linearly into out so that its min goes to 0 and its max to 1.
+	 * If all values are equal, they map to 0.
+	 */
+	static public void rescaleToUnit(double[] a, double[] out, int len) {
+		double[] mms = minMaxSum(a, 0, len);
+		double range = mms[1] - mms[0];
+		double factor = (range > 0) ? 1.0 / range : 0.0;
+		double min = mms[0];
+		for (int i=0; i<len; ++i) {
+			out[i] = (a[i] - min) * factor;
+		}
+	}
+}
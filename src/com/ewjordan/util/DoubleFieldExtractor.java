@@ -0,0 +1,173 @@
+package com.ewjordan.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads (and, for fields, writes) a numeric member of objects as doubles,
+ * across a whole list or array at a time.
+ * <p>
+ * The member is looked up by name once per (class, name) pair - first as a
+ * field, searching superclasses, then as a no-argument method - made
+ * accessible, and cached, so extracting a column from millions of objects
+ * costs one reflective read per object rather than a lookup as well.
+ *
+ * @author eric
+ */
+public class DoubleFieldExtractor {
+	static private final Map<Class<?>, Map<String, DoubleFieldExtractor>> cache =
+		new ConcurrentHashMap<Class<?>, Map<String, DoubleFieldExtractor>>();
+
+	private final Class<?> clazz;
+	private final String name;
+	private final Field field;
+	private final Method method;
+
+	private DoubleFieldExtractor(Class<?> clazz, String name, Field field, Method method) {
+		this.clazz = clazz;
+		this.name = name;
+		this.field = field;
+		this.method = method;
+	}
+
+	/**
+	 * The extractor for the named field (or, failing that, no-argument method) of clazz.
+	 * @throws IllegalArgumentException if there is no such member
+	 */
+	static public DoubleFieldExtractor forMember(Class<?> clazz, String name) {
+		Map<String, DoubleFieldExtractor> byName = cache.get(clazz);
+		if (byName == null) {
+			byName = new ConcurrentHashMap<String, DoubleFieldExtractor>();
+			cache.put(clazz, byName);
+		}
+		DoubleFieldExtractor extractor = byName.get(name);
+		if (extractor == null) {
+			extractor = resolve(clazz, name);
+			byName.put(name, extractor);
+		}
+		return extractor;
+	}
+
+	static private DoubleFieldExtractor resolve(Class<?> clazz, String name) {
+		for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+			try {
+				Field f = c.getDeclaredField(name);
+				f.setAccessible(true);
+				return new DoubleFieldExtractor(clazz, name, f, null);
+			} catch (NoSuchFieldException e) {
+				//keep looking
+			}
+		}
+		for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+			try {
+				Method m = c.getDeclaredMethod(name);
+				m.setAccessible(true);
+				return new DoubleFieldExtractor(clazz, name, null, m);
+			} catch (NoSuchMethodException e) {
+				//keep looking
+			}
+		}
+		throw new IllegalArgumentException("No field or method named " + name + " in " + clazz.getName());
+	}
+
+	/** The class the member was looked up in, which objects passed to {@link #get(Object)} are expected to be. */
+	public Class<?> getTargetClass() {
+		return clazz;
+	}
+
+	/** The class that declares the member: the target class or one of its superclasses. */
+	public Class<?> getDeclaringClass() {
+		return (field != null) ? field.getDeclaringClass() : method.getDeclaringClass();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/** True if the member is a field, and so can be written. */
+	public boolean isWritable() {
+		return field != null;
+	}
+
+	/** Read the member of o as a double. */
+	public double get(Object o) {
+		try {
+			if (field != null) return field.getDouble(o);
+			return ((Number)method.invoke(o)).doubleValue();
+		} catch (Exception e) {
+			System.err.println("Could not read " + name + " from " + o);
+			throw new RuntimeException(e);
+		}
+	}
+
+	/** Write value to the field of o (converting to the field's type). */
+	public void set(Object o, double value) {
+		if (field == null) throw new UnsupportedOperationException(name + " is a method of " + clazz.getName() + " and can't be written");
+		try {
+			Class<?> type = field.getType();
+			if (type == double.class) field.setDouble(o, value);
+			else if (type == float.class) field.setFloat(o, (float)value);
+			else if (type == long.class) field.setLong(o, (long)value);
+			else if (type == int.class) field.setInt(o, (int)value);
+			else if (type == short.class) field.setShort(o, (short)value);
+			else if (type == byte.class) field.setByte(o, (byte)value);
+			else field.set(o, value);
+		} catch (Exception e) {
+			System.err.println("Could not write " + name + " to " + o);
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Read the named member of every object into a new array.
+	 * The objects may be of different classes.
+	 */
+	static public double[] extract(List<?> objects, String name) {
+		double[] values = new double[objects.size()];
+		DoubleFieldExtractor extractor = null;
+		for (int i=0; i<values.length; ++i) {
+			Object o = objects.get(i);
+			extractor = extractorFor(extractor, o, name);
+			values[i] = extractor.get(o);
+		}
+		return values;
+	}
+
+	/**
+	 * Read the named member of every object into a new array.
+	 * The objects may be of different classes.
+	 */
+	static public double[] extract(Object[] objects, String name) {
+		double[] values = new double[objects.length];
+		DoubleFieldExtractor extractor = null;
+		for (int i=0; i<values.length; ++i) {
+			Object o = objects[i];
+			extractor = extractorFor(extractor, o, name);
+			values[i] = extractor.get(o);
+		}
+		return values;
+	}
+
+	/**
+	 * Write values[i] into the named field of objects.get(i).
+	 */
+	static public void store(double[] values, List<?> objects, String name) {
+		if (values.length != objects.size()) throw new IllegalArgumentException("Sizes of lists do not match.");
+		DoubleFieldExtractor extractor = null;
+		for (int i=0; i<values.length; ++i) {
+			Object o = objects.get(i);
+			extractor = extractorFor(extractor, o, name);
+			extractor.set(o, values[i]);
+		}
+	}
+
+	/** Reuse the previous extractor while consecutive objects share a class. */
+	static private DoubleFieldExtractor extractorFor(DoubleFieldExtractor previous, Object o, String name) {
+		Class<?> c = o.getClass();
+		if (previous != null && previous.clazz == c) return previous;
+		return forMember(c, name);
+	}
+}
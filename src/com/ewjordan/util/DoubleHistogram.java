@@ -3,6 +3,7 @@
  */
 package com.ewjordan.util;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -72,6 +73,24 @@ public class DoubleHistogram {
 		delta = (max - min) / buckets.length;
 	}
 	
+	/**
+	 * Set the bucket contents directly.
+	 */
+	public void setBuckets(final int[] bucketContents) {
+		buckets = bucketContents.clone();
+		maxCount = 0;
+		maxCountIndex = -1;
+		totalMembers = 0;
+		for (int i=0; i<buckets.length; ++i) {
+			totalMembers += buckets[i];
+			if (buckets[i] > maxCount) {
+				maxCount = buckets[i];
+				maxCountIndex = i;
+			}
+		}
+		delta = (max - min) / buckets.length;
+	}
+	
 	public int getNumberOfObservations() {
 		int sum = 0;
 		for (int i=0; i<buckets.length; ++i) {
@@ -196,23 +215,31 @@ public class DoubleHistogram {
 		this.title = title;
 	}
 	
+	/**
+	 * Lower bound of a bucket; getBucketMin(number of buckets) is the upper bound of the range.
+	 */
+	public double getBucketMin(int bucket) {
+		return min + this.delta * bucket;
+	}
+	
 	public String toExcelTSV() {
-		String res = "Min\tMax\tCount\n";
-		for (int i=0; i<buckets.length; ++i) {
-			double minValInBucket = min + this.delta * i;
-			double maxValInBucket = min + this.delta * (i+1);
-			res += minValInBucket+"\t"+maxValInBucket+"\t"+buckets[i]+"\n";
+		StringBuilder sb = new StringBuilder();
+		try {
+			HistogramWriter.writeTSV(this, sb);
+		} catch (IOException e) {
+			throw new RuntimeException(e); //StringBuilder doesn't throw
 		}
-		return res;
+		return sb.toString();
 	}
 	
 	public String toExcelTSVRow() {
-		String res = "";
-		for (int i=0; i<buckets.length; ++i) {
-			if (i != 0) res += "\t";
-			res += buckets[i];
+		StringBuilder sb = new StringBuilder();
+		try {
+			HistogramWriter.writeTSVRow(this, sb);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
 		}
-		return res;
+		return sb.toString();
 	}
 	
 	public String toString() {
@@ -225,44 +252,21 @@ public class DoubleHistogram {
 	
 	public String toString(final int charsWidth, String numberFormatString) {
 		StringBuilder sb = new StringBuilder();
-		sb.append("\n");
-		for (int i=0; i<charsWidth; ++i) {
-			sb.append("-");
-		}
-		sb.append("\n");
-		sb.append(getTitle()+" - "+totalMembers+" members.\n");
-		for (int i=0; i<charsWidth; ++i) {
-			sb.append("-");
-		}
-		sb.append("\n");
-		double scaleFactor = charsWidth * 1.0f / getMaxCount();
-		for (int i = 0; i < buckets.length; ++i) {
-			double minValInBucket = min + this.delta * i;
-			String s = String.format(numberFormatString, minValInBucket);
-			s += "\n\t|";
-			int ticks = (int) (buckets[i] * scaleFactor);
-			for (int j = 0; j < ticks; ++j) {
-				s += "#";
-			}
-			s += " ("+buckets[i]+")";
-			sb.append(s + "\n");
+		try {
+			HistogramWriter.writeText(this, charsWidth, numberFormatString, sb);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
 		}
-		sb.append(String.format("%.2f", (min + this.delta * buckets.length)) + "\n");
-		sb.append("\n");
-		for (int i=0; i<charsWidth; ++i) {
-			sb.append("-");
-		}
-		sb.append("\n");
-		sb.append("Total: "+this.getNumberOfObservations()+" observations.\n");
-		for (int i=0; i<charsWidth; ++i) {
-			sb.append("-");
-		}
-		sb.append("\n");
 		return sb.toString();
 	}
 	
 	public void printTextRepresentation(final int charsWidth, String numberFormatString) {
-		System.out.println(toString(charsWidth, numberFormatString));
+		try {
+			HistogramWriter.writeText(this, charsWidth, numberFormatString, System.out);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		System.out.println();
 	}
 	
 	/**
@@ -270,7 +274,7 @@ public class DoubleHistogram {
 	 * @param charsWidth
 	 */
 	public void printTextRepresentation(final int charsWidth) {
-		System.out.println(toString(charsWidth));
+		printTextRepresentation(charsWidth, "%3.2f");
 //		// TODO: turn into toString() method instead of print method...
 //		
 //		System.out.println("");
@@ -0,0 +1,14 @@
+package com.ewjordan.util;
+
+/**
+ * Iterates over primitive doubles without boxing them.
+ * 
+ * @author eric
+ */
+public interface DoubleIterator {
+	/** True if {@link #next()} has another value to return. */
+	public boolean hasNext();
+	
+	/** The next value. */
+	public double next();
+}
@@ -1,9 +1,14 @@
 package com.ewjordan.util;
 
+import java.nio.DoubleBuffer;
+
 /**
  * A quick substitute to handle the dual annoyances of
  * a) not being able to use arrays and collections with each other, and
  * b) the fact that collections take up 8x the space of primitive arrays and are slow
+ * <p>
+ * For very long series, see {@link ChunkedDoubleList}, which never copies on
+ * growth and can keep its values off-heap or in a memory-mapped file.
  * @author eric
  */
 public class DoubleList {
@@ -16,15 +21,71 @@ public class DoubleList {
 	 * Usually useful for normalization purposes.
 	 */
 	public DoubleList dividedBy(DoubleList counts, double divByZeroValue) {
-		if (this.size() != counts.size()) throw new IllegalArgumentException("DoubleLists must be same size to normalize one by another.");
-		DoubleList res = new DoubleList(counts.size());
-		for (int i=0; i<counts.size(); ++i) {
-			if (counts.get(i) > 0.0) res.add(this.get(i) / counts.get(i));
-			else res.add(divByZeroValue);
-		}
+		checkSameSize(counts, "normalize one by another");
+		DoubleList res = new DoubleList(size);
+		DoubleArrays.divideByPositive(doubles, counts.doubles, res.doubles, size, divByZeroValue);
+		res.size = size;
+		return res;
+	}
+	
+	/** Elementwise sum with another list of the same size. */
+	public DoubleList plus(DoubleList other) {
+		checkSameSize(other, "add them");
+		DoubleList res = new DoubleList(size);
+		DoubleArrays.add(doubles, other.doubles, res.doubles, size);
+		res.size = size;
+		return res;
+	}
+	
+	/** Elementwise difference with another list of the same size. */
+	public DoubleList minus(DoubleList other) {
+		checkSameSize(other, "subtract them");
+		DoubleList res = new DoubleList(size);
+		DoubleArrays.subtract(doubles, other.doubles, res.doubles, size);
+		res.size = size;
+		return res;
+	}
+	
+	/** Elementwise product with another list of the same size. */
+	public DoubleList times(DoubleList other) {
+		checkSameSize(other, "multiply them");
+		DoubleList res = new DoubleList(size);
+		DoubleArrays.multiply(doubles, other.doubles, res.doubles, size);
+		res.size = size;
+		return res;
+	}
+	
+	/** Multiply every element by factor, in place. */
+	public void scale(double factor) {
+		DoubleArrays.scale(doubles, factor, doubles, size);
+	}
+	
+	/** A new list of the running totals of this one. */
+	public DoubleList prefixSums() {
+		DoubleList res = new DoubleList(size);
+		DoubleArrays.prefixSum(doubles, res.doubles, size);
+		res.size = size;
 		return res;
 	}
 	
+	public double sum() {
+		return DoubleArrays.sum(doubles, 0, size);
+	}
+	
+	/** Smallest element, Double.MAX_VALUE if empty. */
+	public double min() {
+		return DoubleArrays.min(doubles, 0, size);
+	}
+	
+	/** Largest element, -Double.MAX_VALUE if empty. */
+	public double max() {
+		return DoubleArrays.max(doubles, 0, size);
+	}
+	
+	private void checkSameSize(DoubleList other, String action) {
+		if (this.size() != other.size()) throw new IllegalArgumentException("DoubleLists must be same size to " + action + ".");
+	}
+	
 	public String toString() {
 		StringBuffer sb = new StringBuffer();
 		for (int i=0; i<size; ++i) {
@@ -58,7 +119,7 @@ public class DoubleList {
 	public DoubleList(int capacity) {
 		this.size = 0;
 		doubles = new double[capacity];
-		multiplier = 1.1f;
+		multiplier = 1.5f;
 	}
 	
 	public DoubleList(int capacity, float multiplier) {
@@ -80,22 +141,48 @@ public class DoubleList {
 	}
 	
 	public void add(DoubleList dl) {
-		for (int i=0; i<dl.size(); ++i) {
-			add(dl.get(i));
-		}
+		addAll(dl.doubles, 0, dl.size);
 	}
 	
 	public void add(double[] arr) {
-		for (int i=0; i<arr.length; ++i) {
-			add(arr[i]);
+		addAll(arr, 0, arr.length);
+	}
+	
+	/** Append arr[off, off+len) in one copy. */
+	public void addAll(double[] arr, int off, int len) {
+		if (off < 0 || len < 0 || off + len > arr.length) throw new ArrayIndexOutOfBoundsException("Range [" + off + ", " + (off+len) + ") of array of length " + arr.length);
+		ensureCapacity(size + len);
+		System.arraycopy(arr, off, doubles, size, len);
+		size += len;
+	}
+	
+	/** Grow, if needed, so that minCapacity values fit without further copying. */
+	public void ensureCapacity(int minCapacity) {
+		if (minCapacity > doubles.length) {
+			resize(Math.max(minCapacity, (int)Math.min(Integer.MAX_VALUE - 8, (long)(doubles.length * multiplier) + 10)));
 		}
 	}
 	
+	/** Iterate over the values without boxing. */
+	public DoubleIterator iterator() {
+		return new DoubleIterator() {
+			private int next = 0;
+			
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+			
+			@Override
+			public double next() {
+				return get(next++);
+			}
+		};
+	}
+	
 	public void add(double newdouble) {
 		if (size == doubles.length) {
-			//copy array and re-make
-			int newSize = (int)(size * multiplier + 10);
-			resize(newSize);
+			ensureCapacity(size + 1);
 		}
 		doubles[size++] = newdouble;
 	}
@@ -111,8 +198,12 @@ public class DoubleList {
 		resize(size);
 	}
 	
+	/** 
+	 * The values as an array of exactly size() elements, shared with the list
+	 * until it next grows.  Only copies if there is spare capacity.
+	 */
 	public double[] getBackingArray() {
-		pack();
+		if (doubles.length != size) pack();
 		return doubles;
 	}
 	
@@ -121,6 +212,22 @@ public class DoubleList {
 		return doubles[index];
 	}
 	
+	/**
+	 * Copy elements [from, to) into dest, starting at destPos.
+	 */
+	public void copyRange(int from, int to, double[] dest, int destPos) {
+		if (from < 0 || to > size || from > to) throw new ArrayIndexOutOfBoundsException("Range [" + from + ", " + to + ") of list of size " + size);
+		System.arraycopy(doubles, from, dest, destPos, to - from);
+	}
+	
+	/**
+	 * Put elements [from, to) into dest at its position, advancing it.
+	 */
+	public void copyRange(int from, int to, DoubleBuffer dest) {
+		if (from < 0 || to > size || from > to) throw new ArrayIndexOutOfBoundsException("Range [" + from + ", " + to + ") of list of size " + size);
+		dest.put(doubles, from, to - from);
+	}
+	
 	public void set(int index, double value) {
 		if (index < 0 || index >= size) throw new ArrayIndexOutOfBoundsException(index);
 		doubles[index] = value;
@@ -0,0 +1,103 @@
+package com.ewjordan.util;
+
+/**
+ * Parses decimal numbers straight out of bytes (ASCII text), without
+ * building a String first.
+ * <p>
+ * Plain decimals with up to 15 or so significant digits and a small exponent
+ * - which is what nearly every numeric CSV file holds - are converted with a
+ * single exact multiply or divide by a power of ten, which is correctly
+ * rounded.  Anything else (long mantissas, big exponents, NaN, Infinity, hex,
+ * type suffixes) is handed to {@link Double#parseDouble(String)}, so the
+ * result is always the same as Double.parseDouble would give.
+ *
+ * @author eric
+ */
+public class FastDoubleParser {
+	static private final long maxExactMantissa = 1L << 53;
+	static private final double[] powersOfTen = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * Parse b[from, to) as a double, ignoring leading and trailing whitespace.
+	 * @throws NumberFormatException if the bytes are not a number
+	 */
+	static public double parse(byte[] b, int from, int to) {
+		while (from < to && (b[from] & 0xff) <= ' ') ++from;
+		while (to > from && (b[to-1] & 0xff) <= ' ') --to;
+		if (from == to) throw new NumberFormatException("empty String");
+		int i = from;
+		boolean negative = false;
+		if (b[i] == '-') {
+			negative = true;
+			++i;
+		} else if (b[i] == '+') {
+			++i;
+		}
+		long mantissa = 0;
+		int digits = 0; //significant digits in mantissa
+		int exponent = 0;
+		boolean anyDigits = false;
+		for (; i<to; ++i) {
+			int d = b[i] - '0';
+			if (d < 0 || d > 9) break;
+			anyDigits = true;
+			if (mantissa == 0 && d == 0) continue;
+			if (++digits > 18) return slowParse(b, from, to);
+			mantissa = mantissa * 10 + d;
+		}
+		if (i < to && b[i] == '.') {
+			for (++i; i<to; ++i) {
+				int d = b[i] - '0';
+				if (d < 0 || d > 9) break;
+				anyDigits = true;
+				--exponent;
+				if (mantissa == 0 && d == 0) continue;
+				if (++digits > 18) return slowParse(b, from, to);
+				mantissa = mantissa * 10 + d;
+			}
+		}
+		if (!anyDigits) return slowParse(b, from, to);
+		if (i < to && (b[i] == 'e' || b[i] == 'E')) {
+			++i;
+			boolean negativeExponent = false;
+			if (i < to && b[i] == '-') {
+				negativeExponent = true;
+				++i;
+			} else if (i < to && b[i] == '+') {
+				++i;
+			}
+			if (i == to) return slowParse(b, from, to);
+			int e = 0;
+			for (; i<to; ++i) {
+				int d = b[i] - '0';
+				if (d < 0 || d > 9) break;
+				if (e < 10000) e = e * 10 + d;
+			}
+			exponent += negativeExponent ? -e : e;
+		}
+		if (i != to) return slowParse(b, from, to);
+		if (mantissa == 0) return negative ? -0.0 : 0.0;
+		if (mantissa > maxExactMantissa || exponent < -22 || exponent > 22) return slowParse(b, from, to);
+		double value = (exponent >= 0) ? mantissa * powersOfTen[exponent] : mantissa / powersOfTen[-exponent];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parse a whole array of bytes as a double.
+	 * @throws NumberFormatException if the bytes are not a number
+	 */
+	static public double parse(byte[] b) {
+		return parse(b, 0, b.length);
+	}
+
+	static private double slowParse(byte[] b, int from, int to) {
+		char[] chars = new char[to - from];
+		for (int i=0; i<chars.length; ++i) {
+			chars[i] = (char)(b[from + i] & 0xff);
+		}
+		return Double.parseDouble(new String(chars));
+	}
+}
@@ -0,0 +1,169 @@
+package com.ewjordan.util;
+
+/**
+ * Maps values to histogram buckets, for {@link StreamingHistogram}.
+ * <p>
+ * Two layouts are available: {@link #linear(double, double, int)}, with
+ * equal-width buckets like {@link DoubleHistogram}, and
+ * {@link #logarithmic(double, double, int)}, with buckets whose width is a
+ * bounded fraction of their values (as in HdrHistogram), which suits
+ * quantities spanning many orders of magnitude, such as latencies.
+ * <p>
+ * Values outside a layout's range are counted in its first or last bucket.
+ *
+ * @author eric
+ */
+public abstract class HistogramLayout {
+
+	/** Number of buckets. */
+	public abstract int getBucketCount();
+
+	/** Bucket that value is counted in. */
+	public abstract int bucketOf(double value);
+
+	/** Lowest value of a bucket. */
+	public abstract double getBucketMin(int bucket);
+
+	/** Value above the highest value of a bucket (the lowest value of the next one). */
+	public abstract double getBucketMax(int bucket);
+
+	/**
+	 * nBuckets equal-width buckets covering [min, max).
+	 */
+	static public HistogramLayout linear(double min, double max, int nBuckets) {
+		return new Linear(min, max, nBuckets);
+	}
+
+	/**
+	 * Buckets covering [lowest, highest] for positive values, each no wider than
+	 * 2^-precisionBits of its lower bound: for example, 7 bits of precision gives
+	 * a relative error under 1% and 128 buckets per doubling of value.
+	 * <p>
+	 * A value's bucket is read straight off the exponent and leading mantissa
+	 * bits of its IEEE representation, so no logarithm is computed.
+	 */
+	static public HistogramLayout logarithmic(double lowest, double highest, int precisionBits) {
+		return new Logarithmic(lowest, highest, precisionBits);
+	}
+
+	static private final class Linear extends HistogramLayout {
+		private final double min;
+		private final double max;
+		private final double delta;
+		private final int nBuckets;
+
+		Linear(double min, double max, int nBuckets) {
+			if (!(max > min) || nBuckets <= 0) throw new IllegalArgumentException("Need min < max and a positive bucket count, got [" + min + ", " + max + ") in " + nBuckets + " buckets");
+			this.min = min;
+			this.max = max;
+			this.nBuckets = nBuckets;
+			this.delta = (max - min) / nBuckets;
+		}
+
+		@Override
+		public int getBucketCount() {
+			return nBuckets;
+		}
+
+		@Override
+		public int bucketOf(double value) {
+			double b = (value - min) / delta;
+			if (b < 0) return 0;
+			if (b >= nBuckets) return nBuckets - 1;
+			return (int)b;
+		}
+
+		@Override
+		public double getBucketMin(int bucket) {
+			return min + delta * bucket;
+		}
+
+		@Override
+		public double getBucketMax(int bucket) {
+			return (bucket == nBuckets - 1) ? max : min + delta * (bucket + 1);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Linear)) return false;
+			Linear l = (Linear)o;
+			return l.min == min && l.max == max && l.nBuckets == nBuckets;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * Double.valueOf(min).hashCode() + Double.valueOf(max).hashCode()) + nBuckets;
+		}
+
+		@Override
+		public String toString() {
+			return "linear[" + min + ", " + max + ") in " + nBuckets + " buckets";
+		}
+	}
+
+	static private final class Logarithmic extends HistogramLayout {
+		private final int shift;
+		private final long baseKey;
+		private final int nBuckets;
+		private final double lowest;
+		private final double highest;
+		private final int precisionBits;
+
+		Logarithmic(double lowest, double highest, int precisionBits) {
+			if (!(lowest > 0) || !(highest > lowest) || Double.isInfinite(highest)) {
+				throw new IllegalArgumentException("Need 0 < lowest < highest < infinity, got " + lowest + " and " + highest);
+			}
+			if (precisionBits < 0 || precisionBits > 20) throw new IllegalArgumentException("Precision must be between 0 and 20 bits, got " + precisionBits);
+			this.lowest = lowest;
+			this.highest = highest;
+			this.precisionBits = precisionBits;
+			this.shift = 52 - precisionBits;
+			this.baseKey = Double.doubleToRawLongBits(lowest) >>> shift;
+			long count = (Double.doubleToRawLongBits(highest) >>> shift) - baseKey + 1;
+			if (count > Integer.MAX_VALUE / 2) throw new IllegalArgumentException("Too many buckets (" + count + ") - reduce the range or the precision");
+			this.nBuckets = (int)count;
+		}
+
+		@Override
+		public int getBucketCount() {
+			return nBuckets;
+		}
+
+		@Override
+		public int bucketOf(double value) {
+			if (!(value > lowest)) return 0; //also catches NaN
+			//raw bits of positive doubles increase with the value
+			long b = (Double.doubleToRawLongBits(value) >>> shift) - baseKey;
+			return (b >= nBuckets) ? nBuckets - 1 : (int)b;
+		}
+
+		@Override
+		public double getBucketMin(int bucket) {
+			if (bucket == 0) return lowest;
+			return Double.longBitsToDouble((baseKey + bucket) << shift);
+		}
+
+		@Override
+		public double getBucketMax(int bucket) {
+			if (bucket == nBuckets - 1) return highest;
+			return Double.longBitsToDouble((baseKey + bucket + 1) << shift);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Logarithmic)) return false;
+			Logarithmic l = (Logarithmic)o;
+			return l.lowest == lowest && l.highest == highest && l.precisionBits == precisionBits;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * Double.valueOf(lowest).hashCode() + Double.valueOf(highest).hashCode()) + precisionBits;
+		}
+
+		@Override
+		public String toString() {
+			return "logarithmic[" + lowest + ", " + highest + "] at " + precisionBits + " bits in " + nBuckets + " buckets";
+		}
+	}
+}
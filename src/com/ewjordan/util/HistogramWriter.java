@@ -0,0 +1,212 @@
+package com.ewjordan.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Formatter;
+
+/**
+ * Renders {@link DoubleHistogram}s straight to an {@link Appendable} (text and
+ * tab separated values) or a {@link WritableByteChannel} (a compact binary
+ * form, read back by {@link #readBinary(ReadableByteChannel)}).
+ * <p>
+ * Output is produced in a single pass over the buckets, in time linear in
+ * the size of the output, without assembling it into a String first - so
+ * reports with thousands of buckets can go directly to a file or socket.
+ *
+ * @author eric
+ */
+public class HistogramWriter {
+	static private final int binaryMagic = 0x44485354; //"DHST"
+	static private final int binaryVersion = 1;
+	static private final int bufferSize = 8192;
+
+	/**
+	 * Write the ASCII "picture" of the histogram, as returned by
+	 * {@link DoubleHistogram#toString(int, String)}.
+	 * @param numberFormatString format for the bucket boundaries, as for {@link String#format(String, Object...)}
+	 */
+	static public void writeText(DoubleHistogram histogram, int charsWidth, String numberFormatString, Appendable out) throws IOException {
+		Formatter formatter = new Formatter(out);
+		CharSequence rule = repeat('-', charsWidth);
+		CharSequence hashes = null;
+		int[] buckets = histogram.getBuckets();
+		out.append('\n').append(rule).append('\n');
+		out.append(histogram.getTitle()).append(" - ");
+		appendLong(out, histogram.getNumberOfObservations());
+		out.append(" members.\n");
+		out.append(rule).append('\n');
+		double scaleFactor = charsWidth * 1.0f / histogram.getMaxCount();
+		for (int i=0; i<buckets.length; ++i) {
+			formatter.format(numberFormatString, histogram.getBucketMin(i));
+			out.append("\n\t|");
+			int ticks = (int) (buckets[i] * scaleFactor);
+			if (ticks > 0) {
+				if (hashes == null || hashes.length() < ticks) hashes = repeat('#', Math.max(ticks, charsWidth));
+				out.append(hashes, 0, ticks);
+			}
+			out.append(" (");
+			appendLong(out, buckets[i]);
+			out.append(")\n");
+		}
+		formatter.format("%.2f", histogram.getBucketMin(buckets.length));
+		out.append("\n\n");
+		out.append(rule).append('\n');
+		out.append("Total: ");
+		appendLong(out, histogram.getNumberOfObservations());
+		out.append(" observations.\n");
+		out.append(rule).append('\n');
+		formatter.flush();
+	}
+
+	/**
+	 * Write one line per bucket with its bounds and count, under a header line,
+	 * as returned by {@link DoubleHistogram#toExcelTSV()}.
+	 */
+	static public void writeTSV(DoubleHistogram histogram, Appendable out) throws IOException {
+		int[] buckets = histogram.getBuckets();
+		out.append("Min\tMax\tCount\n");
+		for (int i=0; i<buckets.length; ++i) {
+			appendDouble(out, histogram.getBucketMin(i));
+			out.append('\t');
+			appendDouble(out, histogram.getBucketMin(i+1));
+			out.append('\t');
+			appendLong(out, buckets[i]);
+			out.append('\n');
+		}
+	}
+
+	/**
+	 * Write the bucket counts on one tab separated line (without a line break),
+	 * as returned by {@link DoubleHistogram#toExcelTSVRow()}.
+	 */
+	static public void writeTSVRow(DoubleHistogram histogram, Appendable out) throws IOException {
+		int[] buckets = histogram.getBuckets();
+		for (int i=0; i<buckets.length; ++i) {
+			if (i != 0) out.append('\t');
+			appendLong(out, buckets[i]);
+		}
+	}
+
+	/**
+	 * Write the histogram's range, title and counts in a compact binary form:
+	 * a magic number and version, min and max as doubles, the title as
+	 * UTF-8 bytes preceded by their length, then the bucket count
+	 * and the buckets as ints, all big-endian.
+	 */
+	static public void writeBinary(DoubleHistogram histogram, WritableByteChannel out) throws IOException {
+		int[] buckets = histogram.getBuckets();
+		byte[] title = histogram.getTitle().getBytes("UTF-8");
+		ByteBuffer buffer = ByteBuffer.allocate(Math.max(bufferSize, 32 + title.length));
+		buffer.putInt(binaryMagic);
+		buffer.putInt(binaryVersion);
+		buffer.putDouble(histogram.getMinValue());
+		buffer.putDouble(histogram.getMaxValue());
+		buffer.putInt(title.length);
+		buffer.put(title);
+		buffer.putInt(buckets.length);
+		for (int i=0; i<buckets.length; ++i) {
+			if (buffer.remaining() < 4) drain(buffer, out);
+			buffer.putInt(buckets[i]);
+		}
+		drain(buffer, out);
+	}
+
+	/**
+	 * Read a histogram written by {@link #writeBinary(DoubleHistogram, WritableByteChannel)}.
+	 * The title and bucket lengths are checked before anything is allocated for them:
+	 * against the bytes left when reading from a {@link FileChannel}, and
+	 * otherwise by growing the arrays only as data actually arrives, so a corrupt or
+	 * foreign stream fails with an IOException.
+	 */
+	static public DoubleHistogram readBinary(ReadableByteChannel in) throws IOException {
+		ByteBuffer header = fill(ByteBuffer.allocate(28), in);
+		if (header.getInt() != binaryMagic) throw new IOException("Not a binary histogram");
+		int version = header.getInt();
+		if (version != binaryVersion) throw new IOException("Unknown binary histogram version " + version);
+		double min = header.getDouble();
+		double max = header.getDouble();
+		int titleLength = header.getInt();
+		long available = remaining(in);
+		if (titleLength < 0 || (available >= 0 && (long)titleLength + 4 > available)) {
+			throw new IOException("Bad binary histogram title length " + titleLength);
+		}
+		byte[] titleBytes = readBytes(in, titleLength);
+		String title = new String(titleBytes, 0, titleLength, "UTF-8");
+		int nBuckets = fill(ByteBuffer.allocate(4), in).getInt();
+		available = remaining(in);
+		if (nBuckets < 0 || (available >= 0 && 4L * nBuckets > available)) {
+			throw new IOException("Bad binary histogram bucket count " + nBuckets);
+		}
+		int[] counts = new int[Math.min(nBuckets, bufferSize)];
+		ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+		int read = 0;
+		while (read < nBuckets) {
+			buffer.clear();
+			buffer.limit((int)Math.min(bufferSize, 4L * (nBuckets - read)));
+			fill(buffer, in);
+			if (read + buffer.remaining() / 4 > counts.length) {
+				counts = Arrays.copyOf(counts, (int)Math.min(nBuckets, 2L * counts.length + buffer.remaining() / 4));
+			}
+			while (buffer.hasRemaining()) counts[read++] = buffer.getInt();
+		}
+		DoubleHistogram histogram = new DoubleHistogram(new double[0], nBuckets, min, max);
+		histogram.setBuckets(counts);
+		histogram.setTitle(title);
+		return histogram;
+	}
+
+	/** Bytes left in the channel, or -1 if it can't tell. */
+	static private long remaining(ReadableByteChannel in) throws IOException {
+		if (!(in instanceof FileChannel)) return -1;
+		FileChannel channel = (FileChannel)in;
+		return channel.size() - channel.position();
+	}
+
+	/** Read length bytes, growing the array as they arrive rather than trusting length up front. */
+	static private byte[] readBytes(ReadableByteChannel in, int length) throws IOException {
+		byte[] bytes = new byte[Math.min(length, bufferSize)];
+		int read = 0;
+		while (read < length) {
+			if (read == bytes.length) bytes = Arrays.copyOf(bytes, (int)Math.min(length, 2L * bytes.length));
+			ByteBuffer chunk = ByteBuffer.wrap(bytes, read, bytes.length - read);
+			if (in.read(chunk) < 0) throw new IOException("Unexpected end of histogram data");
+			read = chunk.position();
+		}
+		return bytes;
+	}
+
+	static private void drain(ByteBuffer buffer, WritableByteChannel out) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) out.write(buffer);
+		buffer.clear();
+	}
+
+	/** Read until buffer is full, then flip it for reading. */
+	static private ByteBuffer fill(ByteBuffer buffer, ReadableByteChannel in) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (in.read(buffer) < 0) throw new IOException("Unexpected end of histogram data");
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	static private CharSequence repeat(char c, int n) {
+		StringBuilder sb = new StringBuilder(Math.max(n, 0));
+		for (int i=0; i<n; ++i) sb.append(c);
+		return sb;
+	}
+
+	static private void appendLong(Appendable out, long value) throws IOException {
+		if (out instanceof StringBuilder) ((StringBuilder)out).append(value);
+		else out.append(Long.toString(value));
+	}
+
+	static private void appendDouble(Appendable out, double value) throws IOException {
+		if (out instanceof StringBuilder) ((StringBuilder)out).append(value);
+		else out.append(Double.toString(value));
+	}
+}
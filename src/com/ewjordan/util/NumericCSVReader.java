@@ -0,0 +1,429 @@
+package com.ewjordan.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads numeric CSV (or tab separated) files a buffer at a time from a
+ * {@link FileChannel}, tokenizing the bytes in place and parsing fields with
+ * {@link FastDoubleParser} - no Strings, no regular expressions and no boxing.
+ * <p>
+ * Rows can either be collected into one {@link DoubleList} per column
+ * ({@link #readColumns(File)}), or streamed to a {@link RowHandler} as they
+ * are parsed ({@link #readRows(File, RowHandler)}), in which case memory use
+ * doesn't grow with the file.
+ * <p>
+ * Large files can also be split into chunks that are parsed on several
+ * threads at once ({@link #readColumnsParallel(File)}).
+ * <p>
+ * Lines that don't parse as numbers (typically a header row) are skipped, as
+ * are blank lines.  By default both commas and tabs separate fields, and a
+ * delimiter at the end of a line is ignored.  Lines may end with "\n", "\r\n"
+ * or "\r"; files using lone "\r" breaks are read on one thread, since chunks
+ * are only split at "\n".
+ * Progress and skipped lines are reported to an optional {@link Listener}.
+ *
+ * @author eric
+ */
+public class NumericCSVReader {
+	static public final int defaultBufferSize = 1 << 20;
+	/** Smallest range of a file worth parsing on its own thread. */
+	static public final int minChunkBytes = 4 << 20;
+
+	/**
+	 * Receives parsed rows.
+	 */
+	static public interface RowHandler {
+		/**
+		 * Called for each row that parses.  The array is reused for the next row,
+		 * so copy out of it rather than keeping it.
+		 * @param values the row's values in [0, count)
+		 * @param count number of values in the row
+		 */
+		public void row(double[] values, int count);
+	}
+
+	/**
+	 * Receives progress reports while a file is read.
+	 */
+	static public interface Listener {
+		/** Called after each buffer of the file is parsed. */
+		public void progress(long bytesRead, long totalBytes, long rows);
+
+		/** Called for a non-blank line that was skipped because it didn't parse. */
+		public void lineSkipped(long lineNumber);
+	}
+
+	private int delimiter = -1;
+	private int bufferSize = defaultBufferSize;
+	private int expectedRows = 16;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private Listener listener;
+
+	/** Use a single field separator, rather than both commas and tabs. */
+	public void setDelimiter(char delimiter) {
+		this.delimiter = delimiter;
+	}
+
+	/** Treat both commas and tabs as field separators (the default). */
+	public void setAutoDelimiter() {
+		this.delimiter = -1;
+	}
+
+	public void setBufferSize(int bufferSize) {
+		if (bufferSize < 16) throw new IllegalArgumentException("Buffer size must be at least 16, got " + bufferSize);
+		this.bufferSize = bufferSize;
+	}
+
+	/** Initial capacity of the column lists created by {@link #readColumns(File)}. */
+	public void setExpectedRows(int expectedRows) {
+		this.expectedRows = Math.max(1, expectedRows);
+	}
+
+	/** Number of threads used by {@link #readColumnsParallel(File)}, by default the number of processors. */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Parse every row of the file and pass it to handler.
+	 * @return the number of rows parsed
+	 */
+	public long readRows(File file, RowHandler handler) throws IOException {
+		return read(file, new LineParser(handler, delimiter, listener));
+	}
+
+	/**
+	 * Load the file as one list per column.  The first row that parses sets
+	 * the number of columns; later rows with a different number of values are skipped.
+	 */
+	public List<DoubleList> readColumns(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			return readColumns(in.getChannel());
+		} finally {
+			in.close();
+		}
+	}
+
+	private List<DoubleList> readColumns(FileChannel channel) throws IOException {
+		ColumnCollector collector = new ColumnCollector(expectedRows);
+		LineParser parser = new LineParser(collector, delimiter, listener);
+		parser.fixedWidth = true;
+		parseRange(channel, 0, channel.size(), parser, listener, 0, channel.size());
+		return collector.columns;
+	}
+
+	private long read(File file, LineParser parser) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			parseRange(channel, 0, channel.size(), parser, listener, 0, channel.size());
+			return parser.rows;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Feed bytes [from, to) of the channel through parser a buffer at a time,
+	 * using positional reads so that several ranges can be read at once.
+	 */
+	private void parseRange(FileChannel channel, long from, long to, LineParser parser, Listener progress, long progressBase, long total) throws IOException {
+		byte[] buf = new byte[(int)Math.max(16, Math.min(bufferSize, to - from))];
+		long position = from;
+		int end = 0;
+		while (position < to) {
+			ByteBuffer bb = ByteBuffer.wrap(buf, end, (int)Math.min(buf.length - end, to - position));
+			int n = channel.read(bb, position);
+			if (n < 0) break;
+			end += n;
+			position += n;
+			int consumed = parser.parseLines(buf, 0, end);
+			if (consumed > 0) {
+				System.arraycopy(buf, consumed, buf, 0, end - consumed);
+				end -= consumed;
+			} else if (end == buf.length) {
+				buf = Arrays.copyOf(buf, buf.length * 2); //line longer than the buffer
+			}
+			if (progress != null) progress.progress(progressBase + position - from, total, parser.rows);
+		}
+		if (end > 0) parser.parseLine(buf, 0, end); //last line had no line break
+	}
+
+	/**
+	 * Load the file as in {@link #readColumns(File)}, but split it at line breaks into
+	 * chunks that are parsed concurrently, then joined in order.  Progress and skipped
+	 * lines are reported (on the calling thread) once each chunk is done.
+	 * Small files, and files whose first buffer holds no parseable row, are read
+	 * on the calling thread.
+	 */
+	public List<DoubleList> readColumnsParallel(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			final FileChannel channel = in.getChannel();
+			final long size = channel.size();
+			int width = probeWidth(channel);
+			int nChunks = (int)Math.min(threads * 4L, size / minChunkBytes);
+			if (threads < 2 || nChunks < 2 || width < 0) return readColumns(channel);
+			long[] bounds = chunkBounds(channel, size, nChunks);
+			List<Callable<Chunk>> tasks = new ArrayList<Callable<Chunk>>();
+			for (int i=0; i+1<bounds.length; ++i) {
+				final Chunk chunk = new Chunk(bounds[i], bounds[i+1], delimiter, width, (int)Math.min(expectedRows, (bounds[i+1] - bounds[i]) / 2 + 1));
+				tasks.add(new Callable<Chunk>() {
+					@Override
+					public Chunk call() throws IOException {
+						parseRange(channel, chunk.from, chunk.to, chunk.parser, null, 0, size);
+						return chunk;
+					}
+				});
+			}
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+			List<Chunk> chunks = new ArrayList<Chunk>();
+			try {
+				List<Future<Chunk>> futures = executor.invokeAll(tasks);
+				long lines = 0;
+				long rows = 0;
+				for (Future<Chunk> future : futures) {
+					Chunk chunk = future.get();
+					chunks.add(chunk);
+					rows += chunk.parser.rows;
+					if (listener != null) {
+						for (int i=0; i<chunk.skipped.size(); ++i) {
+							listener.lineSkipped(lines + chunk.skipped.get(i));
+						}
+						listener.progress(chunk.to, size, rows);
+					}
+					lines += chunk.parser.lineNumber;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while reading " + file);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+				throw new RuntimeException(e.getCause());
+			} finally {
+				executor.shutdown();
+			}
+			return join(chunks, width);
+		} finally {
+			in.close();
+		}
+	}
+
+	/** Number of values in the first row that parses in the first buffer of the file, or -1. */
+	private int probeWidth(FileChannel channel) throws IOException {
+		ByteBuffer bb = ByteBuffer.allocate((int)Math.min(bufferSize, channel.size()));
+		while (bb.hasRemaining() && channel.read(bb, bb.position()) >= 0);
+		final int[] width = {-1};
+		LineParser parser = new LineParser(new RowHandler() {
+			@Override
+			public void row(double[] values, int count) {
+				if (width[0] < 0) width[0] = count;
+			}
+		}, delimiter, null);
+		parser.parseLines(bb.array(), 0, bb.position());
+		return width[0];
+	}
+
+	/**
+	 * Chunk boundaries: 0, size, and in between the positions just past the
+	 * first line break at or after each multiple of size / nChunks.
+	 */
+	static private long[] chunkBounds(FileChannel channel, long size, int nChunks) throws IOException {
+		long[] bounds = new long[nChunks + 1];
+		int n = 1;
+		ByteBuffer bb = ByteBuffer.allocate(4096);
+		for (int i=1; i<nChunks; ++i) {
+			long position = Math.max(size / nChunks * i, bounds[n-1] + 1) - 1;
+			long bound = size;
+			search:
+			while (position < size) {
+				bb.clear();
+				int read = channel.read(bb, position);
+				if (read < 0) break;
+				for (int j=0; j<read; ++j) {
+					if (bb.get(j) == '\n') {
+						bound = position + j + 1;
+						break search;
+					}
+				}
+				position += read;
+			}
+			if (bound >= size) break;
+			bounds[n++] = bound;
+		}
+		bounds[n++] = size;
+		return Arrays.copyOf(bounds, n);
+	}
+
+	/** Concatenate the chunks' columns in order. */
+	static private List<DoubleList> join(List<Chunk> chunks, int width) {
+		int total = 0;
+		for (Chunk chunk : chunks) {
+			total += (int)chunk.parser.rows;
+		}
+		List<DoubleList> columns = new ArrayList<DoubleList>(width);
+		for (int c=0; c<width; ++c) {
+			DoubleList column = new DoubleList(Math.max(total, 1));
+			for (Chunk chunk : chunks) {
+				if (chunk.collector.columns.isEmpty()) continue;
+				DoubleList part = chunk.collector.columns.get(c);
+				column.add(part);
+				chunk.collector.columns.set(c, null); //let it go as soon as it's copied
+			}
+			columns.add(column);
+		}
+		return columns;
+	}
+
+	/**
+	 * One range of the file being read in parallel, with its own parser and columns.
+	 */
+	static private class Chunk {
+		final long from;
+		final long to;
+		final ColumnCollector collector;
+		final LineParser parser;
+		final List<Long> skipped = new ArrayList<Long>();
+
+		Chunk(long from, long to, int delimiter, int width, int expectedRows) {
+			this.from = from;
+			this.to = to;
+			this.collector = new ColumnCollector(expectedRows);
+			this.parser = new LineParser(collector, delimiter, new Listener() {
+				@Override
+				public void progress(long bytesRead, long totalBytes, long rows) {
+				}
+
+				@Override
+				public void lineSkipped(long lineNumber) {
+					skipped.add(lineNumber);
+				}
+			});
+			parser.fixedWidth = true;
+			parser.width = width;
+		}
+	}
+
+	/**
+	 * Splits bytes into lines and fields and hands parsed rows on.
+	 * Keeps its state between calls, so it can be fed a buffer at a time.
+	 */
+	static class LineParser {
+		private final RowHandler handler;
+		private final int delimiter;
+		private final Listener listener;
+		private double[] row = new double[16];
+		/** If true, the first row fixes the number of values every row must have. */
+		boolean fixedWidth;
+		int width = -1;
+		long lineNumber;
+		long rows;
+		/** True if the last byte seen ended a line with '\r', so that a '\n' right after it belongs to the same break. */
+		private boolean afterCR;
+
+		LineParser(RowHandler handler, int delimiter, Listener listener) {
+			this.handler = handler;
+			this.delimiter = delimiter;
+			this.listener = listener;
+		}
+
+		/**
+		 * Parse the complete lines in buf[from, to).  Lines end with "\n", "\r\n" or a lone "\r".
+		 * @return the index just past the last line break, where the next call should resume
+		 */
+		int parseLines(byte[] buf, int from, int to) {
+			int lineStart = from;
+			for (int i=from; i<to; ++i) {
+				byte b = buf[i];
+				if (b == '\n' || b == '\r') {
+					if (b == '\n' && afterCR) { //second half of "\r\n"
+						afterCR = false;
+						lineStart = i + 1;
+						continue;
+					}
+					parseLine(buf, lineStart, i);
+					lineStart = i + 1;
+					afterCR = (b == '\r');
+				} else {
+					afterCR = false;
+				}
+			}
+			return lineStart;
+		}
+
+		/** Parse a single line, without its line break. */
+		void parseLine(byte[] buf, int from, int to) {
+			if (to > from && buf[to-1] == '\r') --to;
+			++lineNumber;
+			if (to == from) return;
+			int count = 0;
+			int fieldStart = from;
+			try {
+				for (int i=from; i<=to; ++i) {
+					if (i == to || buf[i] == delimiter || (delimiter < 0 && (buf[i] == ',' || buf[i] == '\t'))) {
+						if (i == to && fieldStart == to && count > 0) break; //trailing delimiter, not an empty field
+						if (count == row.length) row = Arrays.copyOf(row, count * 2);
+						row[count++] = FastDoubleParser.parse(buf, fieldStart, i);
+						fieldStart = i + 1;
+					}
+				}
+			} catch (NumberFormatException e) {
+				if (listener != null) listener.lineSkipped(lineNumber);
+				return;
+			}
+			if (fixedWidth) {
+				if (width < 0) width = count;
+				else if (count != width) {
+					if (listener != null) listener.lineSkipped(lineNumber);
+					return;
+				}
+			}
+			++rows;
+			handler.row(row, count);
+		}
+	}
+
+	/**
+	 * Appends each row to one DoubleList per column.
+	 */
+	static class ColumnCollector implements RowHandler {
+		final List<DoubleList> columns = new ArrayList<DoubleList>();
+		private final int expectedRows;
+		private DoubleList[] lists;
+
+		ColumnCollector(int expectedRows) {
+			this.expectedRows = expectedRows;
+		}
+
+		@Override
+		public void row(double[] values, int count) {
+			if (lists == null) {
+				lists = new DoubleList[count];
+				for (int i=0; i<count; ++i) {
+					lists[i] = new DoubleList(expectedRows);
+					columns.add(lists[i]);
+				}
+			}
+			for (int i=0; i<count; ++i) {
+				lists[i].add(values[i]);
+			}
+		}
+	}
+}
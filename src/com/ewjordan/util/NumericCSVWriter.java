@@ -0,0 +1,251 @@
+package com.ewjordan.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes numeric CSV files, formatting doubles to a fixed number of decimal
+ * places straight into a reusable byte buffer that is flushed to a
+ * {@link java.nio.channels.FileChannel} (or through gzip compression).
+ * <p>
+ * Formatting a value doesn't usually allocate: it is scaled to a long and its
+ * digits written out one at a time.  Values too large to scale exactly, or
+ * too near a half-way point to round reliably that way, fall back to
+ * {@link BigDecimal}, so output is the same as {@code String.format("%.nf", value)}.
+ *
+ * @author eric
+ */
+public class NumericCSVWriter {
+	static private final int bufferSize = 1 << 16;
+	static private final int maxFieldBytes = 400; //enough for Double.MAX_VALUE with max decimals
+	static private final long[] powersOfTen = new long[19];
+	static {
+		powersOfTen[0] = 1;
+		for (int i=1; i<powersOfTen.length; ++i) powersOfTen[i] = powersOfTen[i-1] * 10;
+	}
+
+	private final WritableByteChannel channel;
+	private final int decimalPlaces;
+	private final double scale;
+	private final byte[] lineSeparator = System.getProperty("line.separator").getBytes();
+	private final byte[] buf = new byte[bufferSize];
+	private final ByteBuffer byteBuffer = ByteBuffer.wrap(buf);
+	private int pos;
+
+	/**
+	 * @param file file to write, replaced if it exists
+	 * @param decimalPlaces digits after the decimal point, 0 to 18
+	 * @param gzip true to gzip the output (at the fastest compression level)
+	 */
+	public NumericCSVWriter(File file, int decimalPlaces, boolean gzip) throws IOException {
+		this(file, decimalPlaces, gzip, false);
+	}
+
+	/**
+	 * @param file file to write
+	 * @param decimalPlaces digits after the decimal point, 0 to 18
+	 * @param gzip true to gzip the output (at the fastest compression level)
+	 * @param append true to add to the end of the file rather than replacing it
+	 */
+	public NumericCSVWriter(File file, int decimalPlaces, boolean gzip, boolean append) throws IOException {
+		if (decimalPlaces < 0 || decimalPlaces > 18) throw new IllegalArgumentException("Decimal places must be between 0 and 18, got " + decimalPlaces);
+		FileOutputStream out = new FileOutputStream(file, append);
+		this.channel = gzip ? Channels.newChannel(new FastGZIPOutputStream(out)) : out.getChannel();
+		this.decimalPlaces = decimalPlaces;
+		this.scale = powersOfTen[decimalPlaces];
+	}
+
+	/** Write a line of column titles separated by commas (nothing if titles is null). */
+	public void writeHeader(String[] titles) throws IOException {
+		if (titles == null) return;
+		for (int i=0; i<titles.length; ++i) {
+			if (i != 0) writeByte(',');
+			writeString(titles[i]);
+		}
+		endLine();
+	}
+
+	/** Write a string followed by a line break. */
+	public void writeLine(String line) throws IOException {
+		writeString(line);
+		endLine();
+	}
+
+	/** Write one row of values. */
+	public void writeRow(double ... values) throws IOException {
+		writeRow(values, values.length);
+	}
+
+	/** Write values[0, count) as one row. */
+	public void writeRow(double[] values, int count) throws IOException {
+		for (int i=0; i<count; ++i) {
+			if (i != 0) writeByte(',');
+			writeDouble(values[i]);
+		}
+		endLine();
+	}
+
+	/**
+	 * Write a matrix given as columns, one row per index, with as many rows as the first column.
+	 */
+	public void writeColumns(double[][] columns) throws IOException {
+		int rows = (columns.length > 0) ? columns[0].length : 0;
+		for (int i=0; i<rows; ++i) {
+			for (int j=0; j<columns.length; ++j) {
+				if (j != 0) writeByte(',');
+				writeDouble(columns[j][i]);
+			}
+			endLine();
+		}
+	}
+
+	/**
+	 * Write a matrix given as DoubleList columns, with as many rows as the first column.
+	 */
+	public void writeDoubleListColumns(List<DoubleList> columns) throws IOException {
+		DoubleList[] lists = columns.toArray(new DoubleList[columns.size()]);
+		int rows = (lists.length > 0) ? lists[0].size() : 0;
+		for (int i=0; i<rows; ++i) {
+			for (int j=0; j<lists.length; ++j) {
+				if (j != 0) writeByte(',');
+				writeDouble(lists[j].get(i));
+			}
+			endLine();
+		}
+	}
+
+	/**
+	 * Write a matrix given as boxed columns, with as many rows as the first column.
+	 * Each column is unboxed into an array first.
+	 */
+	public void writeBoxedColumns(List<List<Double>> columns) throws IOException {
+		double[][] arrays = new double[columns.size()][];
+		for (int j=0; j<arrays.length; ++j) {
+			List<Double> column = columns.get(j);
+			arrays[j] = new double[column.size()];
+			int i = 0;
+			for (Double d : column) {
+				arrays[j][i++] = d;
+			}
+		}
+		writeColumns(arrays);
+	}
+
+	/** Write a single value, without a separator or line break. */
+	public void writeDouble(double value) throws IOException {
+		if (pos + maxFieldBytes > buf.length) drain();
+		pos = format(value, decimalPlaces, scale, buf, pos);
+	}
+
+	/** End the current row. */
+	public void endLine() throws IOException {
+		if (pos + lineSeparator.length > buf.length) drain();
+		for (byte b : lineSeparator) buf[pos++] = b;
+	}
+
+	/** Write everything buffered so far. */
+	public void flush() throws IOException {
+		drain();
+	}
+
+	/** Flush and close the file. */
+	public void close() throws IOException {
+		drain();
+		channel.close();
+	}
+
+	private void writeByte(char c) throws IOException {
+		if (pos == buf.length) drain();
+		buf[pos++] = (byte)c;
+	}
+
+	private void writeString(String s) throws IOException {
+		byte[] bytes = s.getBytes("UTF-8");
+		for (int off=0; off<bytes.length; ) {
+			if (pos == buf.length) drain();
+			int n = Math.min(bytes.length - off, buf.length - pos);
+			System.arraycopy(bytes, off, buf, pos, n);
+			pos += n;
+			off += n;
+		}
+	}
+
+	private void drain() throws IOException {
+		byteBuffer.clear();
+		byteBuffer.limit(pos);
+		while (byteBuffer.hasRemaining()) channel.write(byteBuffer);
+		pos = 0;
+	}
+
+	/**
+	 * Format value with the given number of decimal places into dest at pos,
+	 * returning the position after the last byte written.
+	 * @param scale 10 to the power decimalPlaces
+	 */
+	static int format(double value, int decimalPlaces, double scale, byte[] dest, int pos) {
+		if (value != value) return writeAscii("NaN", dest, pos);
+		if (value == Double.POSITIVE_INFINITY) return writeAscii("Infinity", dest, pos);
+		if (value == Double.NEGATIVE_INFINITY) return writeAscii("-Infinity", dest, pos);
+		boolean negative = (Double.doubleToRawLongBits(value) < 0);
+		double abs = Math.abs(value);
+		double scaled = abs * scale;
+		long digits = (long)(scaled + 0.5);
+		if (scaled >= 1e15 || Math.abs(Math.abs(digits - scaled) - 0.5) <= 4 * Math.ulp(scaled)) {
+			//too big to scale exactly, or too close to half-way to be sure which way to round
+			return writeAscii(BigDecimal.valueOf(value).setScale(decimalPlaces, RoundingMode.HALF_UP).toPlainString(), dest, pos);
+		}
+		if (negative) dest[pos++] = '-';
+		long whole = digits / powersOfTen[decimalPlaces];
+		long fraction = digits - whole * powersOfTen[decimalPlaces];
+		pos = writeLong(whole, dest, pos);
+		if (decimalPlaces > 0) {
+			dest[pos++] = '.';
+			int end = pos + decimalPlaces;
+			for (int i=end-1; i>=pos; --i) {
+				dest[i] = (byte)('0' + fraction % 10);
+				fraction /= 10;
+			}
+			pos = end;
+		}
+		return pos;
+	}
+
+	/** Write a non-negative long in decimal. */
+	static private int writeLong(long value, byte[] dest, int pos) {
+		int len = 1;
+		while (len < 19 && value >= powersOfTen[len]) ++len;
+		for (int i=pos+len-1; i>=pos; --i) {
+			dest[i] = (byte)('0' + value % 10);
+			value /= 10;
+		}
+		return pos + len;
+	}
+
+	static private int writeAscii(String s, byte[] dest, int pos) {
+		for (int i=0; i<s.length(); ++i) {
+			dest[pos++] = (byte)s.charAt(i);
+		}
+		return pos;
+	}
+
+	/**
+	 * Gzip at the fastest level; numeric text compresses nearly as well at it,
+	 * several times faster than at the default level.
+	 */
+	static private class FastGZIPOutputStream extends GZIPOutputStream {
+		FastGZIPOutputStream(OutputStream out) throws IOException {
+			super(out, bufferSize);
+			def.setLevel(Deflater.BEST_SPEED);
+		}
+	}
+}
@@ -2,9 +2,14 @@ package com.ewjordan.util;
 
 /**
  * A holder for summary statistics for observations of a particular value
- * that stores mean and standard deviation.  Unable to handle medians or
- * other distributional characteristics because the observations are not
- * stored.
+ * that stores mean, standard deviation, skewness and kurtosis.  Unable to
+ * handle medians or other distributional characteristics because the
+ * observations are not stored.
+ * <p>
+ * The moments are kept as a running mean and running sums of powers of
+ * deviations from it (Welford's method, extended to the third and fourth
+ * moments), and the geometric mean as a running sum of logarithms, so
+ * precision does not degrade and nothing overflows as the count grows.
  * <p>
  * This class is meant to be used for extremely large numbers of observations -
  * if you have less than a million, more functionality is available in
@@ -15,12 +20,16 @@ package com.ewjordan.util;
 public class ObservationSummary {
 	/** Number of observations. */
 	protected long observationCount;
-	/** Sum of observations. */
-	protected double sum;
-	/** Product of observations. */
-	protected double product;
-	/** Sum of squares of observations. */
-	protected double sumOfSquares;
+	/** Mean of observations. */
+	protected double mean;
+	/** Sum of squared deviations from the mean. */
+	protected double m2;
+	/** Sum of cubed deviations from the mean. */
+	protected double m3;
+	/** Sum of fourth powers of deviations from the mean. */
+	protected double m4;
+	/** Sum of logarithms of observations. */
+	protected double logSum;
 	/** Min */
 	protected double min;
 	/** Max */
@@ -28,9 +37,20 @@ public class ObservationSummary {
 	
 	/** Create a new ObservationSummary. */
 	public ObservationSummary() {
-		sum = 0.0;
-		product = 1.0;
-		sumOfSquares = 0.0;
+		clear();
+	}
+	
+	/** Discard all observations. */
+	public void reset() {
+		clear();
+	}
+	
+	private void clear() {
+		mean = 0.0;
+		m2 = 0.0;
+		m3 = 0.0;
+		m4 = 0.0;
+		logSum = 0.0;
 		observationCount = 0;
 		min = Double.MAX_VALUE;
 		max = -Double.MAX_VALUE;
@@ -41,10 +61,17 @@ public class ObservationSummary {
 	 * @param num new observation to add
 	 */
 	public void add(double num) {
-		sum += num;
-		product *= num;
-		sumOfSquares += num*num;
-		++observationCount;
+		double n1 = observationCount;
+		double n = ++observationCount;
+		double delta = num - mean;
+		double deltaN = delta / n;
+		double deltaN2 = deltaN * deltaN;
+		double term1 = delta * deltaN * n1;
+		mean += deltaN;
+		m4 += term1 * deltaN2 * (n*n - 3*n + 3) + 6 * deltaN2 * m2 - 4 * deltaN * m3;
+		m3 += term1 * deltaN * (n - 2) - 3 * deltaN * m2;
+		m2 += term1;
+		logSum += Math.log(num);
 		if (num > max) max = num;
 		if (num < min) min = num;
 	}
@@ -61,6 +88,36 @@ public class ObservationSummary {
 		add(bool?1.0:0.0);
 	}
 
+	/**
+	 * Fold another summary's observations into this one, as if they had all
+	 * been added here.  The other summary is not modified.
+	 * Useful for combining summaries accumulated separately, for instance
+	 * on different threads (see {@link ConcurrentObservationSummary}).
+	 * @param other summary to merge in
+	 */
+	public void merge(ObservationSummary other) {
+		if (other.observationCount == 0) return;
+		//Pairwise combination of central moments (Chan et al., extended by Pebay)
+		double na = observationCount;
+		double nb = other.observationCount;
+		double n = na + nb;
+		double delta = other.mean - mean;
+		double delta2 = delta * delta;
+		double otherM2 = other.m2;
+		double otherM3 = other.m3;
+		m4 += other.m4 + delta2 * delta2 * na * nb * (na*na - na*nb + nb*nb) / (n*n*n)
+				+ 6 * delta2 * (na*na*otherM2 + nb*nb*m2) / (n*n)
+				+ 4 * delta * (na*otherM3 - nb*m3) / n;
+		m3 += otherM3 + delta2 * delta * na * nb * (na - nb) / (n*n)
+				+ 3 * delta * (na*otherM2 - nb*m2) / n;
+		m2 += otherM2 + delta2 * na * nb / n;
+		mean += delta * nb / n;
+		logSum += other.logSum;
+		observationCount += other.observationCount;
+		if (other.max > max) max = other.max;
+		if (other.min < min) min = other.min;
+	}
+	
 	/** Get the number of observations. */
 	public long getCount() {
 		return observationCount;
@@ -91,20 +148,20 @@ public class ObservationSummary {
 	public double getArithmeticMean() {
 		if (zeroMeansIfNoData && observationCount <= 0) return 0.0;
 		if (observationCount <= 0) return Double.MAX_VALUE;
-		return sum / observationCount;
+		return mean;
 	}
 	
 	/** Return the estimated geometric mean of the sample. */
 	public double getGeometricMean() {
 		if (zeroMeansIfNoData && observationCount <= 0) return 1.0;
 		if (observationCount <= 0) return Double.MAX_VALUE;
-		return Math.pow(product, 1.0 / observationCount);
+		return Math.exp(logSum / observationCount);
 	}
 	
 	/** Return an unbiased estimate of the sample variance. */
 	public double getVariance() {
 		if (observationCount <= 1) return Double.MAX_VALUE;
-		return (sumOfSquares/(observationCount-1) - sum*sum/(observationCount*(observationCount-1)));
+		return m2 / (observationCount-1);
 	}
 	
 	/** Return an unbiased estimate of the sample standard deviation. */
@@ -114,6 +171,33 @@ public class ObservationSummary {
 		return Math.sqrt(getVariance());
 	}
 	
+	/**
+	 * Return the bias-corrected sample skewness, computed the same way as
+	 * {@link org.apache.commons.math.stat.descriptive.moment.Skewness}.
+	 */
+	public double getSkewness() {
+		if (zeroMeansIfNoData && observationCount <= 2) return 0.0;
+		if (observationCount <= 2) return Double.MAX_VALUE;
+		if (m2 == 0.0) return 0.0;
+		double n = observationCount;
+		double variance = m2 / (n - 1);
+		return n * m3 / ((n - 1) * (n - 2) * variance * Math.sqrt(variance));
+	}
+	
+	/**
+	 * Return the bias-corrected sample excess kurtosis (0 for a normal distribution),
+	 * computed the same way as {@link org.apache.commons.math.stat.descriptive.moment.Kurtosis}.
+	 */
+	public double getKurtosis() {
+		if (zeroMeansIfNoData && observationCount <= 3) return 0.0;
+		if (observationCount <= 3) return Double.MAX_VALUE;
+		if (m2 == 0.0) return 0.0;
+		double n = observationCount;
+		double variance = m2 / (n - 1);
+		return n * (n + 1) * m4 / ((n - 1) * (n - 2) * (n - 3) * variance * variance)
+				- 3 * (n - 1) * (n - 1) / ((n - 2) * (n - 3));
+	}
+	
 	/** Return the z score of the input relative to this set of observations. */
 	public double getZScore(double num) {
 		return ((num - getArithmeticMean()) / getStandardDeviation());
@@ -195,6 +279,8 @@ public class ObservationSummary {
 		System.out.println("Mean is "+summary.getArithmeticMean()+": should be ~4.76");
 		System.out.println("Variance is "+summary.getVariance()+": should be ~6.44");
 		System.out.println("Stdev is "+summary.getStandardDeviation()+": should be ~2.54");
+		System.out.println("Skewness is "+summary.getSkewness()+": should be ~0.039");
+		System.out.println("Kurtosis is "+summary.getKurtosis()+": should be ~-1.17");
 		System.out.println("95% confidence interval around mean is +/-"+summary.getMeanConfidence(0.95)+": should be +/- ~1.206");
 	}
 }
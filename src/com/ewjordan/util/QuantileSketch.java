@@ -0,0 +1,306 @@
+package com.ewjordan.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A bounded-memory summary of a stream of doubles that answers approximate
+ * quantile and rank queries (a KLL sketch, after Karnin, Lang and Liberty).
+ * <p>
+ * Observations are kept in a stack of compactors; level h holds items that
+ * each stand for 2^h observations.  When a level fills up it is sorted and
+ * every other item (starting at a random offset) is promoted to the level
+ * above, the rest discarded.  Capacities shrink geometrically going down the
+ * stack, so the total size stays around 3k items no matter how many
+ * observations are added.
+ * <p>
+ * The rank error of a query is roughly 1.7/k of the observation count with
+ * high probability, so k=200 gives about 1% error; see {@link #forRankError(double)}.
+ * Sketches can be merged, and written to and read from a compact binary form,
+ * so per-shard sketches can be combined.
+ *
+ * @author eric
+ */
+public class QuantileSketch {
+	static private final double capacityRatio = 2.0/3.0;
+	static private final int minCapacity = 2;
+	static private final int serialVersion = 1;
+
+	private final int k;
+	private final List<double[]> levels = new ArrayList<double[]>();
+	private int[] levelSizes = new int[0];
+	private int[] capacities = new int[0];
+	private int maxSize;
+	private long count;
+	private double min = Double.MAX_VALUE;
+	private double max = -Double.MAX_VALUE;
+	private int size;
+	private final Random random = new Random();
+
+	//Query view, rebuilt lazily after modifications
+	private double[] sortedValues;
+	private long[] cumulativeWeights;
+
+	/**
+	 * @param k accuracy parameter - larger is more accurate and takes more memory
+	 */
+	public QuantileSketch(int k) {
+		if (k < 8) throw new IllegalArgumentException("Sketch accuracy parameter must be at least 8, got " + k);
+		this.k = k;
+		addLevel();
+	}
+
+	/** Sketch with k=200, about 1% rank error. */
+	public QuantileSketch() {
+		this(200);
+	}
+
+	/**
+	 * Sketch whose rank error is about epsilon (as a proportion of the count).
+	 */
+	static public QuantileSketch forRankError(double epsilon) {
+		if (epsilon <= 0 || epsilon >= 1) throw new IllegalArgumentException("Rank error must be in (0,1), got " + epsilon);
+		return new QuantileSketch(Math.max(8, (int)Math.ceil(1.7 / epsilon)));
+	}
+
+	public int getK() {
+		return k;
+	}
+
+	/** Number of observations summarized. */
+	public long getCount() {
+		return count;
+	}
+
+	/** Number of items retained. */
+	public int getRetainedItems() {
+		return size;
+	}
+
+	public double getMin() {
+		return min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	/** Seed the random choices made when compacting, for reproducible results. */
+	public void setSeed(long seed) {
+		random.setSeed(seed);
+	}
+
+	/** Add an observation. */
+	public void add(double value) {
+		if (Double.isNaN(value)) return;
+		if (value < min) min = value;
+		if (value > max) max = value;
+		++count;
+		append(0, value);
+		if (size >= maxSize) compress();
+		sortedValues = null;
+	}
+
+	/**
+	 * Fold another sketch into this one.  The other sketch is not modified.
+	 */
+	public void merge(QuantileSketch other) {
+		if (other.count == 0) return;
+		while (levels.size() < other.levels.size()) addLevel();
+		for (int h=0; h<other.levels.size(); ++h) {
+			double[] items = other.levels.get(h);
+			int n = other.levelSizes[h];
+			for (int i=0; i<n; ++i) {
+				append(h, items[i]);
+			}
+		}
+		count += other.count;
+		if (other.min < min) min = other.min;
+		if (other.max > max) max = other.max;
+		while (size >= maxSize) {
+			int before = size;
+			compress();
+			if (size == before) break;
+		}
+		sortedValues = null;
+	}
+
+	/**
+	 * Approximate value at the given proportion of the distribution, so that
+	 * getQuantile(0.5) is the median.  Returns 0.0 if there are no observations.
+	 */
+	public double getQuantile(double fraction) {
+		if (count == 0) return 0.0;
+		if (fraction <= 0) return min;
+		if (fraction >= 1) return max;
+		buildView();
+		long target = (long)Math.floor(fraction * count);
+		int index = upperBound(cumulativeWeights, target);
+		if (index >= sortedValues.length) return max;
+		return sortedValues[index];
+	}
+
+	/**
+	 * Approximate proportion of observations strictly lower than value.
+	 */
+	public double getRank(double value) {
+		if (count == 0) return 0.0;
+		if (value <= min) return 0.0;
+		if (value > max) return 1.0;
+		buildView();
+		//number of retained items below value
+		int lo = 0;
+		int hi = sortedValues.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sortedValues[mid] < value) lo = mid + 1;
+			else hi = mid;
+		}
+		if (lo == 0) return 0.0;
+		return cumulativeWeights[lo-1] / (double)count;
+	}
+
+	/**
+	 * Write the sketch in a compact binary form, readable by {@link #read(DataInput)}.
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeByte(serialVersion);
+		out.writeInt(k);
+		out.writeLong(count);
+		out.writeDouble(min);
+		out.writeDouble(max);
+		out.writeInt(levels.size());
+		for (int h=0; h<levels.size(); ++h) {
+			double[] items = levels.get(h);
+			out.writeInt(levelSizes[h]);
+			for (int i=0; i<levelSizes[h]; ++i) {
+				out.writeDouble(items[i]);
+			}
+		}
+	}
+
+	/**
+	 * Read a sketch written by {@link #write(DataOutput)}.
+	 */
+	static public QuantileSketch read(DataInput in) throws IOException {
+		int version = in.readByte();
+		if (version != serialVersion) throw new IOException("Unknown sketch format version " + version);
+		QuantileSketch sketch = new QuantileSketch(in.readInt());
+		sketch.count = in.readLong();
+		sketch.min = in.readDouble();
+		sketch.max = in.readDouble();
+		int nLevels = in.readInt();
+		while (sketch.levels.size() < nLevels) sketch.addLevel();
+		for (int h=0; h<nLevels; ++h) {
+			int n = in.readInt();
+			for (int i=0; i<n; ++i) {
+				sketch.append(h, in.readDouble());
+			}
+		}
+		return sketch;
+	}
+
+	private void addLevel() {
+		levels.add(new double[minCapacity]);
+		int nLevels = levels.size();
+		levelSizes = Arrays.copyOf(levelSizes, nLevels);
+		//capacities depend on the depth below the top level, so they all change
+		capacities = new int[nLevels];
+		maxSize = 0;
+		for (int h=0; h<nLevels; ++h) {
+			int depth = nLevels - h - 1;
+			capacities[h] = Math.max(minCapacity, (int)Math.ceil(k * Math.pow(capacityRatio, depth)));
+			maxSize += capacities[h];
+		}
+	}
+
+	private void append(int level, double value) {
+		double[] items = levels.get(level);
+		int n = levelSizes[level];
+		if (n == items.length) {
+			items = Arrays.copyOf(items, Math.max(minCapacity, n * 2));
+			levels.set(level, items);
+		}
+		items[n] = value;
+		levelSizes[level] = n + 1;
+		++size;
+	}
+
+	/**
+	 * Compact the lowest level that is over capacity, promoting half its items.
+	 */
+	private void compress() {
+		for (int h=0; h<levels.size(); ++h) {
+			if (levelSizes[h] < capacities[h]) continue;
+			if (h + 1 == levels.size()) addLevel();
+			double[] items = levels.get(h);
+			int n = levelSizes[h];
+			Arrays.sort(items, 0, n);
+			//with an odd count, the smallest item stays behind
+			int start = n & 1;
+			int offset = random.nextBoolean() ? 1 : 0;
+			for (int i=start+offset; i<n; i+=2) {
+				append(h+1, items[i]);
+			}
+			size -= (n - start);
+			levelSizes[h] = start;
+			return;
+		}
+	}
+
+	private void buildView() {
+		if (sortedValues != null) return;
+		double[] values = new double[size];
+		long[] weights = new long[size];
+		double[] scratchValues = new double[size];
+		long[] scratchWeights = new long[size];
+		int n = 0;
+		//merge the levels in one at a time, each sorted in place
+		for (int h=0; h<levels.size(); ++h) {
+			double[] items = levels.get(h);
+			int m = levelSizes[h];
+			if (m == 0) continue;
+			Arrays.sort(items, 0, m);
+			long weight = 1L << h;
+			int i = 0;
+			int j = 0;
+			int out = 0;
+			while (i < n || j < m) {
+				if (j >= m || (i < n && values[i] <= items[j])) {
+					scratchValues[out] = values[i];
+					scratchWeights[out++] = weights[i++];
+				} else {
+					scratchValues[out] = items[j++];
+					scratchWeights[out++] = weight;
+				}
+			}
+			double[] tv = values; values = scratchValues; scratchValues = tv;
+			long[] tw = weights; weights = scratchWeights; scratchWeights = tw;
+			n = out;
+		}
+		for (int i=1; i<n; ++i) {
+			weights[i] += weights[i-1];
+		}
+		sortedValues = values;
+		cumulativeWeights = weights;
+	}
+
+	/**
+	 * First index whose cumulative weight exceeds target.
+	 */
+	static private int upperBound(long[] cumulative, long target) {
+		int lo = 0;
+		int hi = cumulative.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (cumulative[mid] <= target) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+}
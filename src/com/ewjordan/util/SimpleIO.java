@@ -2,6 +2,7 @@ package com.ewjordan.util;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -12,7 +13,10 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A class with static methods to perform simple loading
@@ -33,9 +37,18 @@ public class SimpleIO {
 	/** If true, you must use full paths when using SimpleIO. */
 	static public boolean USE_ABSOLUTE_PATHS = false;
 	
+	/**
+	 * Most files kept open by {@link #appendToFile(String, String)} at once; opening
+	 * another closes the one appended to least recently.
+	 */
+	static public int MAX_OPEN_APPENDERS = 16;
+	
+	/** Open appenders, least recently used first. */
+	static private final Map<String, AsyncAppender> appenders = new LinkedHashMap<String, AsyncAppender>(16, 0.75f, true);
+	
 	/** Save a Serializable object to a file. */
 	static public void serializeObject(Object obj, String toFilename) {
-		String outputPath = getOutputPath(toFilename);
+		String outputPath = pathForWriting(toFilename);
 		FileOutputStream fos = null;
 		ObjectOutputStream oos = null;
 		
@@ -53,7 +66,7 @@ public class SimpleIO {
 	
 	/** Load a Serializable object from a file.  It must be cast to its type after loading. */
 	static public Object unserializeObject(String fromFilename) {
-		String inputPath = getOutputPath(fromFilename);
+		String inputPath = pathForReading(fromFilename);
 		FileInputStream fis = null;
 		ObjectInputStream ois = null;
 		
@@ -104,7 +117,7 @@ public class SimpleIO {
 	
 	/** Load a list of strings from a CSV file. Each string is one row. */
 	static public List<String> stringsFromFile(final String filename) {
-		String fullPath = getOutputPath(filename);
+		String fullPath = pathForReading(filename);
 		ArrayList<String> res = new ArrayList<String>();
 		BufferedReader in = null;
 		try {
@@ -128,135 +141,84 @@ public class SimpleIO {
 	}
 	
 	
-	/** Returns a list of rows loaded from a CSV file, parsed into DoubleList form (one DoubleList for each row). */
+	/**
+	 * Returns a list of columns loaded from a CSV (or tab separated) file, parsed into DoubleList
+	 * form (one DoubleList for each column).  Lines that don't parse, like a header, are skipped.
+	 * Large files are parsed on several threads.
+	 * @see NumericCSVReader#readColumnsParallel(File)
+	 */
 	static public List<DoubleList> doubleListColumnListFromFile(final String filename, int expectedSize) {
-		String fullPath = getOutputPath(filename);
-		ArrayList<DoubleList> res = new ArrayList<DoubleList>();
-		BufferedReader in = null;
+		String fullPath = pathForReading(filename);
+		NumericCSVReader reader = new NumericCSVReader();
+		reader.setExpectedRows(expectedSize);
 		try {
-	        in = new BufferedReader(new FileReader(fullPath));
-	        String str;
-	        boolean inited = false;
-	        int nCols = -1;
-	        int count = 0;
-	        while ((str = in.readLine()) != null) {
-	        	++count;
-	        	if (count % 1000 == 0) System.out.println(count);
-	        	try {
-	        		String[] split = str.split(",");
-	        		if (split.length < 2 && split[0].contains("\t")) {
-	        			split = str.split("\t");
-	        		}
-	        		if (!inited) {
-	        			nCols = split.length;
-	        			for (int i=0; i<nCols; ++i) {
-	        				res.add(new DoubleList(expectedSize));
-	        			}
-	        			System.out.println("Created "+nCols+" columns.");
-	        			inited = true;
-	        		}
-	        		for (int j=0; j<split.length; ++j) {
-	        			double f = Double.parseDouble(split[j]);
-	        			res.get(j).add(f);
-	        		}
-	        	} catch (NumberFormatException e) {
-	        		//skip header line
-	        		System.out.println("Line skipped");
-//	        		e.printStackTrace();
-	        	}
-	        }
-	    } catch (FileNotFoundException e) {
-	    	System.err.println("File not found: "+fullPath);
-	    } catch (IOException e) {
-	    	e.printStackTrace();
-	    } finally {
-	    	try{
-	    		if (in != null) in.close();
-	    	} catch (IOException e) {
-	    		e.printStackTrace();
-	    	}
-	    }
-	    
-	    return res;
+			return reader.readColumnsParallel(new File(fullPath));
+		} catch (FileNotFoundException e) {
+			System.err.println("File not found: "+fullPath);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return new ArrayList<DoubleList>();
+	}
+	
+	/**
+	 * Stream the rows of a CSV (or tab separated) file to handler as they are parsed,
+	 * without keeping them in memory.  Lines that don't parse, like a header, are skipped.
+	 * @return the number of rows read
+	 */
+	static public long streamRowsFromFile(final String filename, NumericCSVReader.RowHandler handler) {
+		String fullPath = pathForReading(filename);
+		try {
+			return new NumericCSVReader().readRows(new File(fullPath), handler);
+		} catch (FileNotFoundException e) {
+			System.err.println("File not found: "+fullPath);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return 0;
 	}
 	
 	
 	/** Returns a list of columns loaded from a CSV file, parsed into List<Double> form (one for each column). */
 	static public List<List<Double>> doubleColumnListFromFile(final String filename) {
-		List<List<Double>> list = doubleRowListFromFile(filename);
-		return transposeMatrix(list);
+		List<DoubleList> columns = doubleListColumnListFromFile(filename, 16);
+		List<List<Double>> res = new ArrayList<List<Double>>(columns.size());
+		for (DoubleList column : columns) {
+			ArrayList<Double> list = new ArrayList<Double>(column.size());
+			for (int i=0; i<column.size(); ++i) {
+				list.add(column.get(i));
+			}
+			res.add(list);
+		}
+		return res;
 	}
 	
 	/** Returns a list of rows loaded from a CSV file. */
 	static public List<List<Double>> doubleRowListFromFile(final String filename) {
-		String fullPath = getOutputPath(filename);
-		ArrayList<List<Double>> res = new ArrayList<List<Double>>();
-		BufferedReader in = null;
-		try {
-	        in = new BufferedReader(new FileReader(fullPath));
-	        String str;
-	        while ((str = in.readLine()) != null) {
-	    		ArrayList<Double> row = new ArrayList<Double>();
-	        	try {
-	        		String[] split = str.split(",");
-	        		for (String num:split) {
-	        			double f = Double.parseDouble(num);
-	        			row.add(f);
-	        		}
-	        		res.add(row);
-	        	} catch (NumberFormatException e) {
-	        		//skip header line
-	        	}
-	        }
-	    } catch (FileNotFoundException e) {
-	    	System.err.println("File not found: "+fullPath);
-	    } catch (IOException e) {
-	    	e.printStackTrace();
-	    } finally {
-	    	try{
-	    		if (in != null) in.close();
-	    	} catch (IOException e) {
-	    		e.printStackTrace();
-	    	}
-	    }
-	    
+		final ArrayList<List<Double>> res = new ArrayList<List<Double>>();
+		streamRowsFromFile(filename, new NumericCSVReader.RowHandler() {
+			@Override
+			public void row(double[] values, int count) {
+				ArrayList<Double> row = new ArrayList<Double>(count);
+				for (int i=0; i<count; ++i) {
+					row.add(values[i]);
+				}
+				res.add(row);
+			}
+		});
 	    return res;
 	}
 	
 	/** Return an array of doubles from a newline-separated list in a file. */
 	static public double[] doublesFromFile(final String filename) {
-		String fullPath = getOutputPath(filename);
-		ArrayList<Double> doubles = new ArrayList<Double>();
-		BufferedReader in = null;
-		try {
-	        in = new BufferedReader(new FileReader(fullPath));
-	        String str;
-	        
-	        while ((str = in.readLine()) != null) {
-	        	try {
-	        		double f = Double.parseDouble(str);
-	        		doubles.add(f);
-	        	} catch (NumberFormatException e) {
-	        		//skip header line
-	        	}
-	        }
-	    } catch (FileNotFoundException e) {
-	    	System.err.println("File not found: "+fullPath);
-	    } catch (IOException e) {
-	    	e.printStackTrace();
-	    } finally {
-	    	try{
-	    		if (in != null) in.close();
-	    	} catch (IOException e) {
-	    		e.printStackTrace();
-	    	}
-	    }
-	    
-	    double[] res = new double[doubles.size()];
-	    for (int i=0; i<res.length; ++i) {
-	    	res[i] = doubles.get(i);
-	    }
-	    return res;
+		final DoubleList doubles = new DoubleList();
+		streamRowsFromFile(filename, new NumericCSVReader.RowHandler() {
+			@Override
+			public void row(double[] values, int count) {
+				if (count == 1) doubles.add(values[0]);
+			}
+		});
+	    return doubles.getBackingArray();
 	}
 	
 	/** 
@@ -276,6 +238,50 @@ public class SimpleIO {
 		return System.getProperty("user.dir")+"/output/"+fileName;
 	}
 	
+	/**
+	 * {@link #getOutputPath(String)} for a file about to be read: anything appended
+	 * to it through {@link #appender(String)} is written first.
+	 */
+	static private String pathForReading(String fileName) {
+		String path = getOutputPath(fileName);
+		AsyncAppender appender;
+		synchronized (appenders) {
+			appender = appenders.get(path);
+		}
+		if (appender != null) {
+			try {
+				appender.flush();
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.err.println("Could not flush file: "+path);
+			} catch (IllegalStateException e) {
+				//closed or failed, so nothing is left queued
+			}
+		}
+		return path;
+	}
+	
+	/**
+	 * {@link #getOutputPath(String)} for a file about to be overwritten: its appender,
+	 * if any, is closed first, so no queued line can land after the new contents.
+	 */
+	static private String pathForWriting(String fileName) {
+		String path = getOutputPath(fileName);
+		AsyncAppender appender;
+		synchronized (appenders) {
+			appender = appenders.remove(path);
+		}
+		if (appender != null) {
+			try {
+				appender.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.err.println("Could not close file: "+path);
+			}
+		}
+		return path;
+	}
+	
 	/** Save a double array to a file as a newline separated list. */
 	static public void saveToFile(final double[] doubles, final String filename) {
 		saveToFile(doubles, filename, "Values");
@@ -283,57 +289,41 @@ public class SimpleIO {
 	
 	/** Save a double array to a file as a newline separated list with the given column title. */
 	static public void saveToFile(final double[] doubles, final String _filename, final String columnTitle) {
-		BufferedWriter out = null;
-		String filename = getOutputPath(_filename);
+		NumericCSVWriter out = null;
+		String filename = pathForWriting(_filename);
 		try {
-			out = new BufferedWriter(new FileWriter(filename),8192*4);
-			out.write(columnTitle);
-			out.newLine();
+			out = csvWriter(filename, 9);
+			out.writeLine(columnTitle);
 			for (int i=0; i<doubles.length; ++i) {
-				out.write(String.format("%.9f", doubles[i]));
-				out.newLine();
+				out.writeDouble(doubles[i]);
+				out.endLine();
 			}
 			System.out.println("Saved double array to "+filename);
 		} catch (Exception e) {
 	    	e.printStackTrace();
 	    	System.err.println("Could not save file: "+filename);
 	    } finally {
-	    	try{
-	    		if (out != null) {
-	    			out.flush();
-	    			out.close();
-	    		}
-	    	} catch (IOException e) {
-	    		e.printStackTrace();
-	    	}
+	    	close(out);
 	    }
 	}
 	
 	/** Save a List<Double> to a CSV file as a column with a title row. */
 	static public void saveToFile(List<Double> doubles, final String _filename, final String columnTitle) {
-		BufferedWriter out = null;
-		String filename = getOutputPath(_filename);
+		NumericCSVWriter out = null;
+		String filename = pathForWriting(_filename);
 		try {
-			out = new BufferedWriter(new FileWriter(filename),8192*4);
-			out.write(columnTitle);
-			out.newLine();
-			for (int i=0; i<doubles.size(); ++i) {
-				out.write(String.format("%.5f", doubles.get(i)));
-				out.newLine();
+			out = csvWriter(filename, 5);
+			out.writeLine(columnTitle);
+			for (Double d : doubles) {
+				out.writeDouble(d);
+				out.endLine();
 			}
 			System.out.println("Saved double list to "+filename);
 		} catch (Exception e) {
 	    	e.printStackTrace();
 	    	System.err.println("Could not save file: "+filename);
 	    } finally {
-	    	try{
-	    		if (out != null) {
-	    			out.flush();
-	    			out.close();
-	    		}
-	    	} catch (IOException e) {
-	    		e.printStackTrace();
-	    	}
+	    	close(out);
 	    }
 	}
 	
@@ -346,7 +336,7 @@ public class SimpleIO {
 	/** Save strings to a file as a newline separated list. */
 	static public void saveToFile(List<String> strings, final String _filename) {
 		BufferedWriter out = null;
-		String filename = getOutputPath(_filename);
+		String filename = pathForWriting(_filename);
 		try {
 			out = new BufferedWriter(new FileWriter(filename),8192*4);
 //			out.newLine();
@@ -370,65 +360,165 @@ public class SimpleIO {
 	    }
 	}
 	
-	/** Append a list of strings to the end of a file, separated by newlines. */
+	/**
+	 * Append a list of strings to the end of a file, separated by newlines.
+	 * The strings are written in the background; see {@link #appender(String)}.
+	 */
 	static public void appendToFile(List<String> strings, final String _filename) {
-		BufferedWriter out = null;
 		String filename = getOutputPath(_filename);
 		try {
-			out = new BufferedWriter(new FileWriter(filename,true),8192*4);
-//			out.newLine();
+			AsyncAppender out = appenderForPath(filename);
 			for (int i=0; i<strings.size(); ++i) {
-				out.write(strings.get(i));
-				out.newLine();
+				try {
+					out.append(strings.get(i));
+				} catch (IllegalStateException e) {
+					//closed to make room for another file, or failed: go on with a new one
+					out = appenderForPath(filename);
+					out.append(strings.get(i));
+				}
 			}
 			System.out.println("Appended string list to "+filename);
 		} catch (Exception e) {
 	    	e.printStackTrace();
 	    	System.err.println("Could not save file: "+filename);
-	    } finally {
-	    	try{
-	    		if (out != null) {
-	    			out.flush();
-	    			out.close();
-	    		}
-	    	} catch (IOException e) {
-	    		e.printStackTrace();
-	    	}
 	    }
 	}
 	
-	/** Append a string to the end of a file, followed by a newline. Returns true if successful.*/
+	/**
+	 * Append a string to the end of a file, followed by a newline.
+	 * The string is written in the background (see {@link #appender(String)}), so
+	 * this returns true once it is queued, not once it is written: a later write
+	 * failure is only reported on System.err, and by {@link #flushAppenders()}.
+	 * Returns false if the string couldn't be queued.
+	 * <BR><BR>
+	 * Reading the file back through SimpleIO waits for everything queued to be
+	 * written, and saving over it closes the file's appender first.  Other code
+	 * reading the file should call {@link #flushAppenders()} first.
+	 */
 	static public boolean appendToFile(String string, final String _filename) {
-		BufferedWriter out = null;
 		String filename = getOutputPath(_filename);
-		boolean retval;
 		try {
-			out = new BufferedWriter(new FileWriter(filename,true),8192*4);
-//			out.newLine();
-			out.write(string);
-			out.newLine();
-			retval = true;
+			try {
+				appenderForPath(filename).append(string);
+			} catch (IllegalStateException e) {
+				//closed to make room for another file, or failed: try a new one
+				appenderForPath(filename).append(string);
+			}
+			return true;
 		} catch (Exception e) {
 	    	e.printStackTrace();
 	    	System.err.println("Could not save file: "+filename);
-	    	retval = false;
-	    } finally {
-	    	try{
-	    		if (out != null) {
-	    			out.flush();
-	    			out.close();
-	    		}
-	    	} catch (IOException e) {
-	    		e.printStackTrace();
-	    	}
+	    	return false;
 	    }
-	    return retval;
+	}
+	
+	/**
+	 * The shared {@link AsyncAppender} for a file, opened on first use and kept
+	 * open, that {@link #appendToFile(String, String)} writes through.  Lines reach
+	 * the file within a second or so.  SimpleIO's own loaders flush the file's
+	 * appender before reading, and its savers close it before overwriting; otherwise
+	 * call {@link #flushAppenders()} before reading the file back, and
+	 * {@link #closeAppenders()} when done with it (any still open are closed when
+	 * the JVM exits).  If the appender has been closed or has failed, a new one is
+	 * opened in its place.
+	 * <BR><BR>
+	 * At most {@link #MAX_OPEN_APPENDERS} appenders are kept: opening one more
+	 * closes the least recently used, so don't hold on to the returned appender
+	 * while appending to other files - ask for it again instead.
+	 */
+	static public AsyncAppender appender(final String _filename) throws IOException {
+		return appenderForPath(getOutputPath(_filename));
+	}
+	
+	static private AsyncAppender appenderForPath(String filename) throws IOException {
+		synchronized (appenders) {
+			AsyncAppender appender = appenders.get(filename);
+			if (appender != null && !appender.isOpen()) {
+				try {
+					appender.close();
+				} catch (IOException e) {
+					//failure was already reported by its writer thread
+				}
+				appender = null;
+			}
+			if (appender == null) {
+				appender = new AsyncAppender(new File(filename));
+				appenders.put(filename, appender);
+				closeLeastRecentlyUsed();
+			}
+			return appender;
+		}
+	}
+	
+	/**
+	 * Close appenders past {@link #MAX_OPEN_APPENDERS}, least recently used first.
+	 * Called holding the map's lock, so the file can't be reopened until
+	 * everything queued on its old appender has been written.
+	 */
+	static private void closeLeastRecentlyUsed() {
+		Iterator<AsyncAppender> eldest = appenders.values().iterator();
+		while (appenders.size() > Math.max(1, MAX_OPEN_APPENDERS)) {
+			AsyncAppender appender = eldest.next();
+			eldest.remove();
+			try {
+				appender.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.err.println("Could not close file: "+appender.getFile());
+			}
+		}
+	}
+	
+	/**
+	 * Wait until everything appended through {@link #appender(String)} has been written.
+	 * Appenders that have been closed or have failed are dropped (and reopened on next
+	 * use), reporting the failure if there was one.
+	 */
+	static public void flushAppenders() {
+		List<AsyncAppender> open;
+		synchronized (appenders) {
+			open = new ArrayList<AsyncAppender>(appenders.values());
+		}
+		for (AsyncAppender appender : open) {
+			try {
+				if (appender.isOpen()) {
+					appender.flush();
+				} else {
+					synchronized (appenders) {
+						appenders.values().remove(appender);
+					}
+					appender.close(); //throws the failure, if any
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.err.println("Could not flush file: "+appender.getFile());
+			} catch (IllegalStateException e) {
+				//closed or failed while flushing, dropped on next use
+			}
+		}
+	}
+	
+	/** Close all files opened through {@link #appender(String)}. */
+	static public void closeAppenders() {
+		List<AsyncAppender> open;
+		synchronized (appenders) {
+			open = new ArrayList<AsyncAppender>(appenders.values());
+			appenders.clear();
+		}
+		for (AsyncAppender appender : open) {
+			try {
+				appender.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.err.println("Could not close file: "+appender.getFile());
+			}
+		}
 	}
 	
 	/** Save a string to a text file. */
 	static public void saveToFile(String string, final String _filename) {
 		BufferedWriter out = null;
-		String filename = getOutputPath(_filename);
+		String filename = pathForWriting(_filename);
 		try {
 			out = new BufferedWriter(new FileWriter(filename),8192*4);
 //			out.newLine();
@@ -451,39 +541,18 @@ public class SimpleIO {
 	
 	/** Save a matrix to a file with column titles (or without if columnTitles is null) */
 	static public void saveToFile(double[][] doubles, final String _filename, final String[] columnTitles) {
-		BufferedWriter out = null;
-		String filename = getOutputPath(_filename);
+		NumericCSVWriter out = null;
+		String filename = pathForWriting(_filename);
 		try {
-			out = new BufferedWriter(new FileWriter(filename),8192*4);
-			if (columnTitles != null) {
-				for (int i=0; i<columnTitles.length; ++i) {
-					out.write(columnTitles[i]);
-					if (i != columnTitles.length-1) out.write(",");
-				}
-				out.newLine();
-			}
-			int cols = doubles.length;
-			int rows = (cols>0)?doubles[0].length:0;
-			for (int i=0; i<rows; ++i) {//lines
-				for (int j=0; j<cols; ++j) {
-					out.write(String.format("%.9f", doubles[j][i]));
-					if (j != cols-1) out.write(",");
-				}
-				out.newLine();
-			}
+			out = csvWriter(filename, 9);
+			out.writeHeader(columnTitles);
+			out.writeColumns(doubles);
 			System.out.println("Saved double matrix to "+filename);
 		} catch (Exception e) {
 	    	e.printStackTrace();
 	    	System.err.println("Could not save file: "+filename);
 	    } finally {
-	    	try{
-	    		if (out != null) {
-	    			out.flush();
-	    			out.close();
-	    		}
-	    	} catch (IOException e) {
-	    		e.printStackTrace();
-	    	}
+	    	close(out);
 	    }
 	}
 	
@@ -498,39 +567,18 @@ public class SimpleIO {
 	 * @param columnTitles
 	 */
 	static public void saveToFile(List<List<Double>> doubles, final String _filename, final String[] columnTitles) {
-		BufferedWriter out = null;
-		String filename = getOutputPath(_filename);
+		NumericCSVWriter out = null;
+		String filename = pathForWriting(_filename);
 		try {
-			out = new BufferedWriter(new FileWriter(filename),8192*4);
-			if (columnTitles != null) {
-				for (int i=0; i<columnTitles.length; ++i) {
-					out.write(columnTitles[i]);
-					if (i != columnTitles.length-1) out.write(",");
-				}
-				out.newLine();
-			}
-			int cols = doubles.size();
-			int rows = (cols>0)?doubles.get(0).size():0;
-			for (int i=0; i<rows; ++i) {//lines
-				for (int j=0; j<cols; ++j) {
-					out.write(String.format("%.9f", doubles.get(j).get(i)));
-					if (j != cols-1) out.write(",");
-				}
-				out.newLine();
-			}
+			out = csvWriter(filename, 9);
+			out.writeHeader(columnTitles);
+			out.writeBoxedColumns(doubles);
 			System.out.println("Saved double matrix to "+filename);
 		} catch (Exception e) {
 	    	e.printStackTrace();
 	    	System.err.println("Could not save file: "+filename);
 	    } finally {
-	    	try{
-	    		if (out != null) {
-	    			out.flush();
-	    			out.close();
-	    		}
-	    	} catch (IOException e) {
-	    		e.printStackTrace();
-	    	}
+	    	close(out);
 	    }
 	}
 	
@@ -567,46 +615,116 @@ public class SimpleIO {
 	 * @param columnTitles
 	 */
 	static public void saveDoubleListsToFile(List<DoubleList> doubles, final String _filename, final String[] columnTitles, int decimalPlaces) {
-		BufferedWriter out = null;
-		String filename = getOutputPath(_filename);
+		NumericCSVWriter out = null;
+		String filename = pathForWriting(_filename);
 		try {
-			out = new BufferedWriter(new FileWriter(filename),8192*4);
-			if (columnTitles != null) {
-				for (int i=0; i<columnTitles.length; ++i) {
-					out.write(columnTitles[i]);
-					if (i != columnTitles.length-1) out.write(",");
-				}
-				out.newLine();
+			out = csvWriter(filename, decimalPlaces);
+			out.writeHeader(columnTitles);
+			out.writeDoubleListColumns(doubles);
+			System.out.println("Saved double matrix to "+filename);
+		} catch (Exception e) {
+	    	e.printStackTrace();
+	    	System.err.println("Could not save file: "+filename);
+	    } finally {
+	    	close(out);
+	    }
+	}
+	
+	/**
+	 * Save a matrix (as a list of columns) to a {@link BinaryColumnFile}, with the given
+	 * column titles ("column 0", "column 1"... if columnTitles is null).
+	 */
+	static public void saveToBinaryFile(double[][] columns, final String _filename, final String[] columnTitles) {
+		BinaryColumnFile.Writer out = null;
+		String filename = pathForWriting(_filename);
+		try {
+			out = new BinaryColumnFile.Writer(new File(filename));
+			for (int i=0; i<columns.length; ++i) {
+				out.addColumn(columnTitle(columnTitles, i), columns[i]);
 			}
-			int cols = doubles.size();
-			int rows = (cols>0)?doubles.get(0).size():0;
-			for (int i=0; i<rows; ++i) {//lines
-				for (int j=0; j<cols; ++j) {
-					out.write(String.format("%."+decimalPlaces+"f", doubles.get(j).get(i)));
-					if (j != cols-1) out.write(",");
-				}
-				out.newLine();
+			System.out.println("Saved binary double matrix to "+filename);
+		} catch (Exception e) {
+	    	e.printStackTrace();
+	    	System.err.println("Could not save file: "+filename);
+	    } finally {
+	    	close(out);
+	    }
+	}
+	
+	/**
+	 * Save DoubleList columns to a {@link BinaryColumnFile}, with the given
+	 * column titles ("column 0", "column 1"... if columnTitles is null).
+	 */
+	static public void saveDoubleListsToBinaryFile(List<DoubleList> columns, final String _filename, final String[] columnTitles) {
+		BinaryColumnFile.Writer out = null;
+		String filename = pathForWriting(_filename);
+		try {
+			out = new BinaryColumnFile.Writer(new File(filename));
+			for (int i=0; i<columns.size(); ++i) {
+				out.addColumn(columnTitle(columnTitles, i), columns.get(i));
 			}
-			System.out.println("Saved double matrix to "+filename);
+			System.out.println("Saved binary double matrix to "+filename);
 		} catch (Exception e) {
 	    	e.printStackTrace();
 	    	System.err.println("Could not save file: "+filename);
 	    } finally {
-	    	try{
-	    		if (out != null) {
-	    			out.flush();
-	    			out.close();
-	    		}
+	    	close(out);
+	    }
+	}
+	
+	/** Load the double columns of a {@link BinaryColumnFile}, in order, as DoubleLists. */
+	static public List<DoubleList> doubleListColumnListFromBinaryFile(final String filename) {
+		String fullPath = pathForReading(filename);
+		List<DoubleList> res = new ArrayList<DoubleList>();
+		BinaryColumnFile in = null;
+		try {
+			in = new BinaryColumnFile(new File(fullPath));
+			for (String name : in.getColumnNames()) {
+				if (in.getType(name) == BinaryColumnFile.DOUBLE) res.add(in.getDoubleList(name));
+			}
+		} catch (FileNotFoundException e) {
+	    	System.err.println("File not found: "+fullPath);
+	    } catch (IOException e) {
+	    	e.printStackTrace();
+	    } finally {
+	    	try {
+	    		if (in != null) in.close();
 	    	} catch (IOException e) {
 	    		e.printStackTrace();
 	    	}
 	    }
+		return res;
+	}
+	
+	static private String columnTitle(String[] columnTitles, int i) {
+		return (columnTitles != null) ? columnTitles[i] : "column "+i;
+	}
+	
+	static private void close(BinaryColumnFile.Writer out) {
+		try {
+			if (out != null) out.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/** A writer for numeric CSV, gzipped if the filename ends with ".gz". */
+	static private NumericCSVWriter csvWriter(String fullPath, int decimalPlaces) throws IOException {
+		return new NumericCSVWriter(new File(fullPath), decimalPlaces, fullPath.endsWith(".gz"));
+	}
+	
+	static private void close(NumericCSVWriter out) {
+		try {
+			if (out != null) out.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 	
 	/** Save an integer matrix to a file, with column titles (or without if columnTitles is null) */
 	static public void saveIntsToFile(List<List<Integer>> ints, final String _filename, final String[] columnTitles) {
 		BufferedWriter out = null;
-		String filename = getOutputPath(_filename);
+		String filename = pathForWriting(_filename);
 		try {
 			out = new BufferedWriter(new FileWriter(filename),8192*4);
 			if (columnTitles != null) {
@@ -1,8 +1,5 @@
 package com.ewjordan.util;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.Random;
 
 /**
@@ -10,13 +7,27 @@ import java.util.Random;
  * This class is able to calculate distributional characteristics
  * apart from mean and variance because it stores the observations
  * in addition to the summary statistics.
+ * <p>
+ * For very large numbers of observations, a summary created with
+ * {@link #StoredObservationSummary(QuantileSketch)} keeps a bounded-size
+ * {@link QuantileSketch} instead of the observations, and answers the
+ * distributional queries approximately.  Such a summary has no
+ * observation list, so it can't build histograms.
+ * <p>
+ * In exact mode, queries work on a sorted primitive copy of the observations,
+ * answered by binary search.  Observations added after a query are sorted on
+ * their own at the next query and merged into the sorted copy, so alternating
+ * adds and queries on a growing dataset doesn't re-sort everything each time.
  * 
  * @author eric
  */
 public class StoredObservationSummary extends ObservationSummary {
 	protected DoubleList observations;
-	private List<Double> sortedObservations;
-	private boolean isSorted;
+	/** Sketch replacing the observations in bounded-memory mode, otherwise null. */
+	protected QuantileSketch sketch;
+	/** Sorted copy of observations [0, sortedCount); may have spare capacity. */
+	private double[] sorted;
+	private int sortedCount;
 	
 	/**
 	 * Constructor.
@@ -24,7 +35,26 @@ public class StoredObservationSummary extends ObservationSummary {
 	public StoredObservationSummary() {
 		super();
 		observations = new DoubleList();
-		isSorted = false;
+	}
+	
+	/**
+	 * Bounded-memory summary, answering distributional queries from the
+	 * given (normally empty) sketch rather than from stored observations.
+	 * @see QuantileSketch#forRankError(double)
+	 */
+	public StoredObservationSummary(QuantileSketch sketch) {
+		super();
+		this.sketch = sketch;
+	}
+	
+	/** True if observations are summarized by a sketch rather than stored. */
+	public boolean isSketched() {
+		return sketch != null;
+	}
+	
+	/** The sketch used in bounded-memory mode, or null if observations are stored. */
+	public QuantileSketch getSketch() {
+		return sketch;
 	}
 	
 	/**
@@ -32,57 +62,139 @@ public class StoredObservationSummary extends ObservationSummary {
 	 */
 	@Override
 	public void add(double value) {
-		observations.add(value);
+		if (sketch != null) sketch.add(value);
+		else observations.add(value);
 		super.add(value);
-		isSorted = false;
 	}
 	
+	/**
+	 * @see com.ewjordan.util.ObservationSummary#reset()
+	 */
+	@Override
+	public void reset() {
+		super.reset();
+		if (sketch != null) sketch = new QuantileSketch(sketch.getK());
+		else observations = new DoubleList();
+		sorted = null;
+		sortedCount = 0;
+	}
+	
+	/**
+	 * Merge in another summary, which must also store its observations.
+	 * @see com.ewjordan.util.ObservationSummary#merge(ObservationSummary)
+	 */
+	@Override
+	public void merge(ObservationSummary other) {
+		if (!(other instanceof StoredObservationSummary)) {
+			throw new IllegalArgumentException("Can only merge a StoredObservationSummary into a StoredObservationSummary, got " + other.getClass().getSimpleName());
+		}
+		StoredObservationSummary stored = (StoredObservationSummary)other;
+		if (sketch != null) {
+			if (stored.sketch != null) {
+				sketch.merge(stored.sketch);
+			} else {
+				for (int i=0; i<stored.observations.size(); ++i) {
+					sketch.add(stored.observations.get(i));
+				}
+			}
+		} else {
+			if (stored.sketch != null) throw new IllegalArgumentException("Can't merge a sketched summary into one storing exact observations.");
+			observations.add(stored.observations);
+		}
+		super.merge(other);
+	}
+	
+	/** The stored observations, or null in bounded-memory mode. */
 	public DoubleList getObservations() {
 		return observations;
 	}
 	
+	private DoubleList requireObservations() {
+		if (observations == null) throw new IllegalStateException("Observations are not stored by a sketched summary.");
+		return observations;
+	}
+	
+	/**
+	 * Bring the sorted copy up to date: sort the observations added since the
+	 * last query and merge them in, or sort everything the first time.
+	 */
 	private void sortObservations() {
-		if (isSorted) return;
-		sortedObservations = new ArrayList<Double>();
-		for (int i=0; i<observations.size(); ++i) {
-			sortedObservations.add(observations.get(i));
+		int size = observations.size();
+		if (sorted != null && sortedCount == size) return;
+		if (sorted == null || sortedCount == 0 || sortedCount > size) {
+			sorted = new double[size];
+			observations.copyRange(0, size, sorted, 0);
+			ArrayUtil.sort(sorted, 0, size);
+			sortedCount = size;
+			return;
+		}
+		int tailLength = size - sortedCount;
+		double[] tail = new double[tailLength];
+		observations.copyRange(sortedCount, size, tail, 0);
+		ArrayUtil.sort(tail, 0, tailLength);
+		if (sorted.length < size) {
+			double[] grown = new double[Math.max(size, (int)(sorted.length * 1.5))];
+			System.arraycopy(sorted, 0, grown, 0, sortedCount);
+			sorted = grown;
+		}
+		//merge from the back, so no scratch copy of the sorted part is needed
+		int i = sortedCount - 1;
+		int j = tailLength - 1;
+		int out = size - 1;
+		while (j >= 0) {
+			if (i >= 0 && Double.compare(sorted[i], tail[j]) > 0) sorted[out--] = sorted[i--];
+			else sorted[out--] = tail[j--];
 		}
-		Collections.sort(sortedObservations);
-		isSorted = true;
+		sortedCount = size;
+	}
+	
+	/** Number of sorted observations strictly below value. */
+	private int countBelow(double value) {
+		int lo = 0;
+		int hi = sortedCount;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sorted[mid] < value) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+	
+	/** Number of sorted observations less than or equal to value. */
+	private int countAtOrBelow(double value) {
+		int lo = 0;
+		int hi = sortedCount;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sorted[mid] <= value) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
 	}
 	
 	/** Return the median value of the distribution. */
 	public double getMedian() {
+		if (sketch != null) return sketch.getQuantile(0.5);
 		sortObservations();
-		int size = sortedObservations.size();
+		int size = sortedCount;
 		if (size == 0) return 0.0;
-		if (size % 2 == 0) return .5*(sortedObservations.get(size/2) + sortedObservations.get(size/2-1));
-		else return sortedObservations.get(size/2);
+		if (size % 2 == 0) return .5*(sorted[size/2] + sorted[size/2-1]);
+		else return sorted[size/2];
 	}
 	
 	/** 
 	 * Return the proportion of observations that are lower than this value.
 	 */
 	public double getProportionAtValue(double value) {
-		//TODO: test this
+		if (sketch != null) return sketch.getRank(value);
 		sortObservations();
-		if (sortedObservations.size() == 0) return 0.0;
-		if (sortedObservations.size() == 1) return (value > sortedObservations.get(0)) ? 1.0 : 0.0;
-		int size = sortedObservations.size();
-		int lastIndexBelow = -1;
-		int firstIndexAbove = size;
-		for (int i=0; i<size; ++i) {
-			double d = sortedObservations.get(i);
-			if (d < value) lastIndexBelow = i;
-			if (d > value && firstIndexAbove == size) firstIndexAbove = i;
-		}
-//		System.out.println(lastIndexBelow + " " + firstIndexAbove + " " + value);
-		if (firstIndexAbove >= size) return 1.0;
-		if (lastIndexBelow <= -1) return 0.0;
-		double proportion = (lastIndexBelow+1.0) / size;
-//		double effectiveIndex = MathUtil.map(value, sortedObservations.get(lastIndexBelow), sortedObservations.get(firstIndexAbove), lastIndexBelow, firstIndexAbove);
-//		double proportion = MathUtil.map(effectiveIndex, 0, size, 0.0, 1.0);
-		return proportion;
+		int size = sortedCount;
+		if (size == 0) return 0.0;
+		if (size == 1) return (value > sorted[0]) ? 1.0 : 0.0;
+		if (countAtOrBelow(value) >= size) return 1.0; //nothing above value
+		int below = countBelow(value);
+		if (below == 0) return 0.0;
+		return below / (double)size;
 	}
 	
 	/** 
@@ -90,11 +202,11 @@ public class StoredObservationSummary extends ObservationSummary {
 	 * For example, getValueAtProportion(0.5) will give the median of the distribution.
 	 */
 	public double getValueAtProportion(double fraction) {
-		if (sortedObservations == null) return 0.0;
-		if (sortedObservations.size() == 0) return 0.0;
-		if (sortedObservations.size() == 1) return sortedObservations.get(0);
+		if (sketch != null) return sketch.getQuantile(fraction);
 		sortObservations();
-		int size = sortedObservations.size();
+		int size = sortedCount;
+		if (size == 0) return 0.0;
+		if (size == 1) return sorted[0];
 		int lowIndex = (int) (fraction * (size-1));
 		int highIndex = lowIndex + 1;
 		
@@ -105,9 +217,8 @@ public class StoredObservationSummary extends ObservationSummary {
 		if (highIndex >= size) highIndex = size-1;
 		
 		double proportion = fraction*(size-1) - lowIndex;
-		double lowValue = sortedObservations.get(lowIndex);
-		double highValue = sortedObservations.get(highIndex);
-		//System.out.println(proportion + " " +lowValue + " " +highValue + ": "+lowIndex+" "+highIndex);
+		double lowValue = sorted[lowIndex];
+		double highValue = sorted[highIndex];
 		return MathUtil.map(proportion, 0, 1, lowValue, highValue);
 	}
 	
@@ -116,7 +227,7 @@ public class StoredObservationSummary extends ObservationSummary {
 		System.out.println("Stdev: "+getStandardDeviation());
 		System.out.println("Median: "+getMedian());
 		System.out.println("Confidence interval of mean @ 95%: +/- " + getMeanConfidence(0.95));
-		double[] doubles = ArrayUtil.toDoubleArray(observations);
+		double[] doubles = ArrayUtil.toDoubleArray(requireObservations());
 		DoubleHistogram histo = new DoubleHistogram(doubles, 20);
 		histo.setTitle("Distribution of observations");
 		histo.printTextRepresentation(80);
@@ -127,19 +238,19 @@ public class StoredObservationSummary extends ObservationSummary {
 		System.out.println("Stdev: "+getStandardDeviation());
 		System.out.println("Median: "+getMedian());
 		System.out.println("Confidence interval of mean @ 95%: +/- " + getMeanConfidence(0.95));
-		double[] doubles = ArrayUtil.toDoubleArray(observations);
+		double[] doubles = ArrayUtil.toDoubleArray(requireObservations());
 		DoubleHistogram histo = new DoubleHistogram(doubles, 20);
 		histo.setTitle("Distribution of observations");
 		histo.printTextRepresentation(80, numberFormatString);
 	}
 	
 	public DoubleHistogram getDoubleHistogram(int nBuckets) {
-		double[] doubles = ArrayUtil.toDoubleArray(observations);
+		double[] doubles = ArrayUtil.toDoubleArray(requireObservations());
 		return new DoubleHistogram(doubles, nBuckets);
 	}
 	
 	public DoubleHistogram getDoubleHistogram(int nBuckets, double minVal, double maxVal) {
-		double[] doubles = ArrayUtil.toDoubleArray(observations);
+		double[] doubles = ArrayUtil.toDoubleArray(requireObservations());
 		return new DoubleHistogram(doubles, nBuckets, minVal, maxVal);
 	}
 
@@ -0,0 +1,242 @@
+package com.ewjordan.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram that values are added to one at a time, possibly from many
+ * threads at once, with buckets laid out by a {@link HistogramLayout}.
+ * <p>
+ * Unlike {@link DoubleHistogram}, the range is fixed up front by the layout
+ * rather than computed from the data, so values can be recorded as they
+ * arrive, and counts are longs.  To keep concurrent recording cheap the
+ * counts are striped: each thread increments one of several copies of the
+ * bucket array (chosen by thread id), and the copies are summed when read.
+ * <p>
+ * Histograms with equal layouts can be added together, and one subtracted
+ * from another, so that interval counts can be obtained from two
+ * {@link #snapshot()}s of a running histogram.  Memory is 8 bytes per
+ * bucket per stripe.
+ *
+ * @author eric
+ */
+public class StreamingHistogram {
+	static public final int defaultMaxStripes = 8;
+
+	private final HistogramLayout layout;
+	private final AtomicLongArray[] stripes;
+	private final int stripeMask;
+	private final AtomicLong minBits = new AtomicLong(Double.doubleToLongBits(Double.MAX_VALUE));
+	private final AtomicLong maxBits = new AtomicLong(Double.doubleToLongBits(-Double.MAX_VALUE));
+
+	/**
+	 * Histogram striped for the number of available processors, but with at
+	 * most {@link #defaultMaxStripes} stripes.  Each stripe holds 8 bytes per
+	 * bucket, so with a fine logarithmic layout of tens of thousands of
+	 * buckets this is already a few megabytes; use the other constructor with
+	 * a concurrency of 1 for histograms only recorded from one thread.
+	 */
+	public StreamingHistogram(HistogramLayout layout) {
+		this(layout, Math.min(defaultMaxStripes, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Memory used is 8 bytes per bucket per stripe, so a high concurrency with
+	 * many buckets is costly (64 stripes of a 40,000 bucket layout take 20MB).
+	 * @param layout bucket layout
+	 * @param concurrency expected number of concurrently recording threads;
+	 * rounded up to a power of two, at most 64, and 1 for a histogram used by
+	 * a single thread
+	 */
+	public StreamingHistogram(HistogramLayout layout, int concurrency) {
+		this.layout = layout;
+		int n = 1;
+		while (n < concurrency && n < 64) n <<= 1;
+		stripes = new AtomicLongArray[n];
+		for (int i=0; i<n; ++i) {
+			stripes[i] = new AtomicLongArray(layout.getBucketCount());
+		}
+		stripeMask = n - 1;
+	}
+
+	public HistogramLayout getLayout() {
+		return layout;
+	}
+
+	/** Record a value.  NaN is ignored. */
+	public void addValue(double value) {
+		addValue(value, 1);
+	}
+
+	/** Record a value count times.  NaN is ignored. */
+	public void addValue(double value, long count) {
+		if (Double.isNaN(value)) return;
+		int bucket = layout.bucketOf(value);
+		stripes[(int)Thread.currentThread().getId() & stripeMask].addAndGet(bucket, count);
+		updateMin(value);
+		updateMax(value);
+	}
+
+	/** Record several values. */
+	public void addValues(double ... values) {
+		for (double v : values) {
+			addValue(v);
+		}
+	}
+
+	private void updateMin(double value) {
+		while (true) {
+			long bits = minBits.get();
+			if (value >= Double.longBitsToDouble(bits)) return;
+			if (minBits.compareAndSet(bits, Double.doubleToLongBits(value))) return;
+		}
+	}
+
+	private void updateMax(double value) {
+		while (true) {
+			long bits = maxBits.get();
+			if (value <= Double.longBitsToDouble(bits)) return;
+			if (maxBits.compareAndSet(bits, Double.doubleToLongBits(value))) return;
+		}
+	}
+
+	/** Number of values recorded in a bucket. */
+	public long getCount(int bucket) {
+		long sum = 0;
+		for (AtomicLongArray stripe : stripes) {
+			sum += stripe.get(bucket);
+		}
+		return sum;
+	}
+
+	/** Bucket counts, summed over the stripes. */
+	public long[] getCounts() {
+		long[] counts = new long[layout.getBucketCount()];
+		for (AtomicLongArray stripe : stripes) {
+			for (int i=0; i<counts.length; ++i) {
+				counts[i] += stripe.get(i);
+			}
+		}
+		return counts;
+	}
+
+	/** Total number of values recorded. */
+	public long getNumberOfObservations() {
+		long sum = 0;
+		for (AtomicLongArray stripe : stripes) {
+			for (int i=0; i<stripe.length(); ++i) {
+				sum += stripe.get(i);
+			}
+		}
+		return sum;
+	}
+
+	/** Lowest value recorded (Double.MAX_VALUE if none). */
+	public double getMinValue() {
+		return Double.longBitsToDouble(minBits.get());
+	}
+
+	/** Highest value recorded (-Double.MAX_VALUE if none). */
+	public double getMaxValue() {
+		return Double.longBitsToDouble(maxBits.get());
+	}
+
+	/**
+	 * A single-stripe copy of the current counts.  Taken while other threads
+	 * are recording, each bucket count is exact as of some moment during the call.
+	 */
+	public StreamingHistogram snapshot() {
+		StreamingHistogram copy = new StreamingHistogram(layout, 1);
+		copy.add(this);
+		return copy;
+	}
+
+	/**
+	 * Add the counts of another histogram with an equal layout to this one.
+	 */
+	public void add(StreamingHistogram other) {
+		checkLayout(other);
+		long[] counts = other.getCounts();
+		AtomicLongArray stripe = stripes[(int)Thread.currentThread().getId() & stripeMask];
+		for (int i=0; i<counts.length; ++i) {
+			if (counts[i] != 0) stripe.addAndGet(i, counts[i]);
+		}
+		updateMin(other.getMinValue());
+		updateMax(other.getMaxValue());
+	}
+
+	/**
+	 * Subtract the counts of another histogram with an equal layout, typically an
+	 * earlier snapshot of this one, leaving the counts recorded in between.
+	 * The min and max values are not changed, since they can't be recovered.
+	 * <p>
+	 * This is not atomic: the counts are checked and then subtracted, so if
+	 * other threads are recording into this histogram at the same time, a
+	 * reader may see the counts part way through.  Apply it to a snapshot
+	 * (e.g. {@code later.snapshot()} minus an earlier snapshot), not to the
+	 * live histogram.
+	 * @throws IllegalArgumentException if a bucket count would become negative
+	 */
+	public void subtract(StreamingHistogram other) {
+		checkLayout(other);
+		long[] theirs = other.getCounts();
+		long[] ours = getCounts();
+		for (int i=0; i<theirs.length; ++i) {
+			if (theirs[i] > ours[i]) throw new IllegalArgumentException("Bucket " + i + " would go negative: " + ours[i] + " - " + theirs[i]);
+		}
+		AtomicLongArray stripe = stripes[(int)Thread.currentThread().getId() & stripeMask];
+		for (int i=0; i<theirs.length; ++i) {
+			if (theirs[i] != 0) stripe.addAndGet(i, -theirs[i]);
+		}
+	}
+
+	private void checkLayout(StreamingHistogram other) {
+		if (!layout.equals(other.layout)) throw new IllegalArgumentException("Histogram layouts differ: " + layout + " vs. " + other.layout);
+	}
+
+	/**
+	 * Value at the given proportion of the recorded distribution, so that
+	 * getValueAtProportion(0.5) estimates the median.  The value is interpolated
+	 * linearly within its bucket, so its error is within the bucket width.
+	 * Returns 0.0 if nothing has been recorded.
+	 */
+	public double getValueAtProportion(double fraction) {
+		long[] counts = getCounts();
+		long total = 0;
+		for (long c : counts) total += c;
+		if (total == 0) return 0.0;
+		double target = Math.max(0.0, Math.min(1.0, fraction)) * total;
+		long seen = 0;
+		for (int i=0; i<counts.length; ++i) {
+			if (counts[i] == 0) continue;
+			if (seen + counts[i] >= target) {
+				double within = (target - seen) / counts[i];
+				double lo = Math.max(layout.getBucketMin(i), getMinValue());
+				double hi = Math.min(layout.getBucketMax(i), getMaxValue());
+				if (hi < lo) hi = lo;
+				return lo + within * (hi - lo);
+			}
+			seen += counts[i];
+		}
+		return getMaxValue();
+	}
+
+	/**
+	 * Estimated proportion of recorded values lower than value, interpolating
+	 * linearly within the bucket that contains it.
+	 */
+	public double getProportionAtValue(double value) {
+		long[] counts = getCounts();
+		long total = 0;
+		for (long c : counts) total += c;
+		if (total == 0) return 0.0;
+		int bucket = layout.bucketOf(value);
+		long below = 0;
+		for (int i=0; i<bucket; ++i) below += counts[i];
+		double lo = layout.getBucketMin(bucket);
+		double hi = layout.getBucketMax(bucket);
+		double within = (hi > lo) ? (value - lo) / (hi - lo) : 0.0;
+		within = Math.max(0.0, Math.min(1.0, within));
+		return (below + within * counts[bucket]) / total;
+	}
+}
@@ -0,0 +1,37 @@
+package com.ewjordan.util.objectWrap;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * A {@link WrappedObjectFactory} that copies objects by calling the copy
+ * constructor of their class (a constructor taking a single argument of
+ * the class itself).  The constructor may be private.
+ * 
+ * @author eric
+ *
+ */
+public class CopyConstructorFactory implements WrappedObjectFactory {
+	private Class<?> klazz = null;
+	private Constructor<?> constructor = null;
+	
+	@Override
+	public Object copy(Object original) {
+		try {
+			return getConstructor(original.getClass()).newInstance(original);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException("Class " + original.getClass().getCanonicalName()
+					+ " does not declare a copy constructor", e);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private synchronized Constructor<?> getConstructor(Class<?> c) throws NoSuchMethodException {
+		if (c != klazz) {
+			constructor = c.getDeclaredConstructor(c);
+			constructor.setAccessible(true);
+			klazz = c;
+		}
+		return constructor;
+	}
+}
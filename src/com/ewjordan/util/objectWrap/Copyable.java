@@ -0,0 +1,22 @@
+package com.ewjordan.util.objectWrap;
+
+/**
+ * An {@link OptimizableWrappedObject} that can be moved to another target
+ * object with the same objective, so that
+ * {@link ObjectOptimizer#optimize(OptimizableWrappedObject, org.apache.commons.math.optimization.GoalType, WrappedObjectFactory, java.util.concurrent.ExecutorService)}
+ * can evaluate it on copies made by a {@link WrappedObjectFactory}.
+ * The wrappers made by {@link WrappedObject#optimizable()} and
+ * {@link WrappedObject#optimizable(WrappedObjectToDoubleFunction)} implement it.
+ * 
+ * @author eric
+ *
+ */
+public interface Copyable {
+	/**
+	 * Wrap the same fields of target, starting from the same values, with the
+	 * same objective; see {@link WrappedObject#copyOnto(Object)}.
+	 * @param target object of the same class as the wrapped one
+	 * @return the new wrapper
+	 */
+	OptimizableWrappedObject copyOnto(Object target);
+}
@@ -0,0 +1,215 @@
+package com.ewjordan.util.objectWrap;
+
+import java.util.concurrent.Executor;
+
+import org.apache.commons.math.analysis.MultivariateRealFunction;
+
+/**
+ * Computes finite-difference gradients of an objective function over the
+ * values of a {@link WrappedObject}.
+ *
+ * The step used for each field is a base step scaled by the field's
+ * {@link MutationInfo#standardDeviation()}, and probes are kept inside the
+ * field's {@link MutationInfo#minimum()}/{@link MutationInfo#maximum()} range
+ * by falling back to a one-sided difference at the edges.
+ *
+ * The probes can be split across an {@link Executor}: the components are divided
+ * into contiguous blocks, each with its own preallocated scratch point, and the
+ * calling thread works on the first block itself.  The objective must be thread
+ * safe for this (see {@link WrappedObjectPool}).  All scratch storage is allocated
+ * up front, so {@link #gradient(double[], double[])} creates no garbage of its own.
+ *
+ * The point passed in is never modified.  An instance computes one gradient at a
+ * time; concurrent calls are serialized.
+ *
+ * @author eric
+ *
+ */
+public class FiniteDifferenceGradient {
+	public enum Method {
+		/** (f(x+h) - f(x)) / h : n+1 evaluations, first order accurate */
+		FORWARD,
+		/** (f(x+h) - f(x-h)) / 2h : 2n evaluations, second order accurate */
+		CENTRAL
+	}
+
+	private final MultivariateRealFunction objective;
+	private final Method method;
+	private final double[] steps;
+	private final double[] minValues;
+	private final double[] maxValues;
+	private final Executor executor;
+
+	private final Block[] blocks;
+	private double[] point; //point being differentiated, only valid during a gradient call
+	private double[] result;
+	private double baseValue;
+	private int pending;
+	private RuntimeException failure;
+
+	/**
+	 * A contiguous range of gradient components and the scratch point used to probe them.
+	 */
+	private final class Block implements Runnable {
+		final int start;
+		final int end;
+		final double[] probe;
+
+		Block(int start, int end, int length) {
+			this.start = start;
+			this.end = end;
+			this.probe = new double[length];
+		}
+
+		@Override
+		public void run() {
+			try {
+				System.arraycopy(point, 0, probe, 0, probe.length);
+				for (int k=start; k<end; ++k) {
+					result[k] = partial(k, probe, baseValue);
+				}
+			} catch (RuntimeException e) {
+				synchronized(FiniteDifferenceGradient.this) {
+					if (failure == null) failure = e;
+				}
+			} finally {
+				synchronized(FiniteDifferenceGradient.this) {
+					if (--pending == 0) FiniteDifferenceGradient.this.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param objective the function to differentiate
+	 * @param wrapped the wrapped object whose references give the per-field ranges and step scales
+	 * @param method the difference formula
+	 * @param baseStep the step for a field with standard deviation scale 1.0
+	 * @param executor executor used to split the work, or null to compute on the calling thread
+	 * @param parallelism number of blocks to split the components into when executor is non-null
+	 */
+	public FiniteDifferenceGradient(MultivariateRealFunction objective, WrappedObject wrapped, Method method,
+			double baseStep, Executor executor, int parallelism) {
+		int n = wrapped.getNumberOfMembers();
+		this.objective = objective;
+		this.method = method;
+		this.executor = executor;
+		this.steps = new double[n];
+		this.minValues = new double[n];
+		this.maxValues = new double[n];
+		for (int i=0; i<n; ++i) {
+			PrimitiveReference ref = wrapped.getReferenceAt(i);
+			steps[i] = baseStep * ref.getStandardDeviationScale();
+			minValues[i] = ref.getMinValue();
+			maxValues[i] = ref.getMaxValue();
+		}
+		int nBlocks = (executor == null) ? 1 : Math.max(1, Math.min(parallelism, n));
+		this.blocks = new Block[nBlocks];
+		for (int b=0; b<nBlocks; ++b) {
+			blocks[b] = new Block((int)((long)n*b/nBlocks), (int)((long)n*(b+1)/nBlocks), n);
+		}
+	}
+
+	public FiniteDifferenceGradient(MultivariateRealFunction objective, WrappedObject wrapped, Method method, double baseStep) {
+		this(objective, wrapped, method, baseStep, null, 1);
+	}
+
+	public int getDimension() {
+		return steps.length;
+	}
+
+	public Method getMethod() {
+		return method;
+	}
+
+	/**
+	 * Compute the gradient at point into out.
+	 * @return out
+	 */
+	public synchronized double[] gradient(double[] point, double[] out) {
+		if (point.length != steps.length || out.length != steps.length) {
+			throw new IllegalArgumentException("Expected arrays of length " + steps.length
+					+ ", got point of length " + point.length + " and output of length " + out.length);
+		}
+		this.point = point;
+		this.result = out;
+		this.failure = null;
+		try {
+			baseValue = (method == Method.FORWARD) ? objective.value(point) : Double.NaN;
+			pending = blocks.length;
+			int started = 0;
+			try {
+				for (int b=1; b<blocks.length; ++b) {
+					try {
+						executor.execute(blocks[b]);
+						++started;
+					} catch (RuntimeException e) {
+						//rejected (executor shut down, queue full...): compute it here
+						++started;
+						blocks[b].run();
+					}
+				}
+				++started;
+				blocks[0].run();
+			} finally {
+				//blocks never started won't count themselves down; wait for the rest
+				//even if something escaped, so none is left running on this point
+				pending -= blocks.length - started;
+				boolean interrupted = false;
+				while (pending > 0) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			return out;
+		} finally {
+			this.point = null;
+			this.result = null;
+		}
+	}
+
+	/**
+	 * Compute a single partial derivative at point.
+	 */
+	public synchronized double partialDerivative(int k, double[] point) {
+		double[] probe = blocks[0].probe;
+		System.arraycopy(point, 0, probe, 0, probe.length);
+		double base = (method == Method.FORWARD) ? objective.value(point) : Double.NaN;
+		return partial(k, probe, base);
+	}
+
+	/**
+	 * Difference along component k.  Probe must hold the point and is restored before returning.
+	 * For forward differences, base is the objective at the point.
+	 */
+	private double partial(int k, double[] probe, double base) {
+		double x = probe[k];
+		double h = steps[k];
+		double up = Math.min(x + h, maxValues[k]);
+		double down = (method == Method.CENTRAL) ? Math.max(x - h, minValues[k]) : x;
+		if (up == x) { //at the upper bound, step the other way
+			down = Math.max(x - h, minValues[k]);
+		}
+		if (up == down) {
+			return 0.0;
+		}
+		double fUp = (up == x && method == Method.FORWARD) ? base : probe(k, probe, up);
+		double fDown = (down == x && method == Method.FORWARD) ? base : probe(k, probe, down);
+		probe[k] = x;
+		return (fUp - fDown) / (up - down);
+	}
+
+	private double probe(int k, double[] probe, double value) {
+		probe[k] = value;
+		return objective.value(probe);
+	}
+}
@@ -1,5 +1,9 @@
 package com.ewjordan.util.objectWrap;
 
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+@Retention(RetentionPolicy.RUNTIME)
 public @interface MutationInfo {
 	double minimum() default -Double.MAX_VALUE;
 	double maximum() default Double.MAX_VALUE;
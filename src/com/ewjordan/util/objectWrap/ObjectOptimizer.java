@@ -1,6 +1,7 @@
 package com.ewjordan.util.objectWrap;
 
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.math.analysis.DifferentiableMultivariateRealFunction;
 import org.apache.commons.math.analysis.MultivariateRealFunction;
@@ -41,6 +42,13 @@ import org.apache.commons.math.optimization.general.NonLinearConjugateGradientOp
  * procedure is used to transform the chromosome (i.e. the object's fields)
  * into the final structure that is then tested for fitness.
  * 
+ * By default the objective is evaluated on the wrapped object itself, so all
+ * evaluations are serialized on it.  If a {@link WrappedObjectFactory} is
+ * supplied, evaluations instead run on a pool of independent copies of the
+ * wrapped object, and may run concurrently (including the components of the
+ * finite-difference gradient, if an {@link ExecutorService} is supplied - see
+ * {@link FiniteDifferenceGradient}).
+ * 
  * @author Eric
  *
  */
@@ -48,6 +56,7 @@ public class ObjectOptimizer {
 	static private double derivativeDelta = 0.001;
 	static private final Random rand = new Random();
 	static private int maxIterations = 100;
+	static private FiniteDifferenceGradient.Method gradientMethod = FiniteDifferenceGradient.Method.CENTRAL;
 	
 	static public void setMaxIterations(int val) {
 		maxIterations = val;
@@ -55,6 +64,16 @@ public class ObjectOptimizer {
 	
 	static public int getMaxIterations() { return maxIterations; }
 	
+	/**
+	 * Set the finite difference formula used for gradients of objects that are
+	 * created after this call.
+	 */
+	static public void setGradientMethod(FiniteDifferenceGradient.Method method) {
+		gradientMethod = method;
+	}
+	
+	static public FiniteDifferenceGradient.Method getGradientMethod() { return gradientMethod; }
+	
 	static private CrossoverPolicy defaultWrappedObjectCrossoverPolicy = new CrossoverPolicy() {
 		@Override
 		public ChromosomePair crossover(Chromosome first,
@@ -133,6 +152,11 @@ public class ObjectOptimizer {
 			public double fitness() {
 				return opt.getValue();
 			}
+			
+			@Override
+			protected Object getProblem() {
+				return opt;
+			}
 		};
 		return chromosome;
 	}
@@ -177,6 +201,35 @@ public class ObjectOptimizer {
 		return pair.getPoint();
 	}
 	
+	/** 
+	 * Optimize an OptimizableWrappedObject using the nonlinear conjugate gradient method,
+	 * evaluating the objective on copies of the wrapped object made by the factory.
+	 * Each copy is wrapped with {@link Copyable#copyOnto(Object)}, so it
+	 * keeps the objective and the fields of opt, which must implement {@link Copyable}.
+	 * 
+	 * Returns number of evaluations.
+	 * @param opt the object to optimize
+	 * @param goalType whether to minimize or maximize
+	 * @param factory makes independent copies of the wrapped object
+	 * @param executor used to compute gradient components in parallel, or null to compute them serially
+	 * @throws OptimizationException 
+	 * @throws IllegalArgumentException if opt isn't {@link Copyable}
+	 */
+	static public final int optimize(final OptimizableWrappedObject opt, GoalType goalType,
+			WrappedObjectFactory factory, ExecutorService executor) throws OptimizationException, IllegalArgumentException {
+		if (!(opt instanceof Copyable)) {
+			throw new IllegalArgumentException(opt.getClass().getName() + " is not Copyable, so it can't be optimized on copies;"
+					+ " implement Copyable, or use optimize(opt, goalType) instead");
+		}
+		NonLinearConjugateGradientOptimizer optimizer = new NonLinearConjugateGradientOptimizer(ConjugateGradientFormula.FLETCHER_REEVES);
+		opt.pullValuesFromObject();
+		RealPointValuePair pair = optimizer.optimize(maxIterations, 
+				getDifferentiableMultivariateRealFunction(new WrappedObjectPool(opt, factory), executor), goalType, opt.getValues());
+		opt.setValues(pair.getPoint());
+		opt.pushValuesToObject();
+		return optimizer.getEvaluations();
+	}
+	
 	/** 
 	 * Optimize an OptimizableWrappedObject using the Nelder Mead direct search method.
 	 * Returns number of iterations, or -1 if an exception was thrown.
@@ -218,6 +271,56 @@ public class ObjectOptimizer {
 		return func;
 	}
 
+	/**
+	 * Get a differentiable objective function that evaluates points on copies of the
+	 * wrapped object taken from pool.  The function is thread safe.  If executor is
+	 * non-null, the probes making up the gradient are split across it.
+	 */
+	static final DifferentiableMultivariateRealFunction getDifferentiableMultivariateRealFunction(
+			final WrappedObjectPool pool, final ExecutorService executor) {
+		DifferentiableMultivariateRealFunction func = new DifferentiableMultivariateRealFunction() {
+			@Override
+			public double value(double[] point) throws IllegalArgumentException {
+				return pool.value(point);
+			}
+			
+			private final FiniteDifferenceGradient engine = new FiniteDifferenceGradient(this, pool.getPrototype(),
+					gradientMethod, derivativeDelta, executor, Runtime.getRuntime().availableProcessors());
+			
+			@Override
+			public MultivariateRealFunction partialDerivative(final int k) {
+				return getPartialDerivative(engine, k);
+			}
+			
+			private final MultivariateVectorialFunction grad = getGradient(engine);
+			
+			@Override
+			public MultivariateVectorialFunction gradient() {
+				return grad;
+			}
+		};
+		return func;
+	}
+	
+	static private MultivariateRealFunction getPartialDerivative(final FiniteDifferenceGradient engine, final int k) {
+		return new MultivariateRealFunction() {
+			@Override
+			public double value(double[] point) throws IllegalArgumentException {
+				return engine.partialDerivative(k, point);
+			}
+		};
+	}
+	
+	static private MultivariateVectorialFunction getGradient(final FiniteDifferenceGradient engine) {
+		return new MultivariateVectorialFunction() {
+			@Override
+			public double[] value(double[] point) throws IllegalArgumentException {
+				// the optimizers hold on to returned gradients, so this one array can't be reused
+				return engine.gradient(point, new double[point.length]);
+			}
+		};
+	}
+	
 	static final DifferentiableMultivariateRealFunction getDifferentiableMultivariateRealFunction(final OptimizableWrappedObject opt) {
 		DifferentiableMultivariateRealFunction func = new DifferentiableMultivariateRealFunction() {
 			private double[] prevVals = null;
@@ -240,15 +343,8 @@ public class ObjectOptimizer {
 				return value;
 			}
 
-			private double getPartialDerivativeAtPoint(int k, double[] point) throws IllegalArgumentException {
-				double initialValue = point[k];
-				point[k] = initialValue + derivativeDelta;
-				double resultPlus = value(point);
-				point[k] = initialValue - derivativeDelta;
-				double resultMinus = value(point);
-				point[k] = initialValue;
-				return (resultPlus - resultMinus) / (2 * derivativeDelta);
-			}
+			private final FiniteDifferenceGradient engine = 
+				new FiniteDifferenceGradient(this, opt, gradientMethod, derivativeDelta);
 
 			private MultivariateRealFunction[] partials = 
 				new MultivariateRealFunction[opt.getNumberOfMembers()];
@@ -256,28 +352,12 @@ public class ObjectOptimizer {
 			@Override
 			public MultivariateRealFunction partialDerivative(final int k) {
 				if (partials[k] == null) {
-					partials[k] = new MultivariateRealFunction() {
-						@Override
-						public double value(double[] point)
-								throws IllegalArgumentException {
-							return getPartialDerivativeAtPoint(k, point);
-						}
-					};
+					partials[k] = getPartialDerivative(engine, k);
 				}
 				return partials[k];
 			}
 
-			private final MultivariateVectorialFunction grad = new MultivariateVectorialFunction() {
-				@Override
-				public double[] value(double[] point)
-						throws IllegalArgumentException {
-					double[] returnValue = new double[point.length];
-					for (int i = 0; i < point.length; ++i) {
-						returnValue[i] = getPartialDerivativeAtPoint(i, point);
-					}
-					return returnValue;
-				}
-			};
+			private final MultivariateVectorialFunction grad = getGradient(engine);
 
 			@Override
 			public MultivariateVectorialFunction gradient() {
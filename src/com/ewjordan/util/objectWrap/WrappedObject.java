@@ -21,11 +21,12 @@ public class WrappedObject {
 	private Object object;
 	private double[] values;
 	
-	private static final double booleanThreshold = 0.5;
-	private static final double defaultBooleanFalse = 0.25;
-	private static final double defaultBooleanTrue = 0.75;
+	static final double booleanThreshold = 0.5;
+	static final double defaultBooleanFalse = 0.25;
+	static final double defaultBooleanTrue = 0.75;
 	
 	private PrimitiveReference[] references; //fields that correspond to values stored here
+	private WrappedObjectAccessor accessor; //bulk accessor, null if references span several objects
 	
 	public WrappedObject(PrimitiveReference ... references) {
 		this.references = references;
@@ -36,6 +37,7 @@ public class WrappedObject {
 	public WrappedObject(Object objectToWrap) {
 		this(PrimitiveReference.getAllReferencesFrom(objectToWrap, true));
 		object = objectToWrap;
+		accessor = WrappedObjectAccessor.forReferences(object, references);
 	}
 	
 	/**
@@ -50,10 +52,44 @@ public class WrappedObject {
 		this.values = new double[cloneMe.values.length];
 		this.references = new PrimitiveReference[cloneMe.references.length];
 		this.object = cloneMe.object;
+		this.accessor = cloneMe.accessor;
 		System.arraycopy(cloneMe.values,0,this.values,0,cloneMe.values.length);
 		System.arraycopy(cloneMe.references,0,this.references,0,cloneMe.references.length);
 	}
 	
+	/**
+	 * Wrap the same fields of another object (usually a copy of this one's
+	 * target), starting from the same values.  The references are cloned and
+	 * reseated on the new target, so this wrapper is unaffected.  Every
+	 * reference must be to a field of this wrapper's own target, not of an
+	 * object it holds.
+	 * 
+	 * @param target object of the same class as the wrapped one
+	 */
+	public WrappedObject copyOnto(Object target) {
+		return new WrappedObject(this, target);
+	}
+	
+	/**
+	 * Clone the wrapper onto a new target, see {@link #copyOnto(Object)}.
+	 */
+	protected WrappedObject(WrappedObject cloneMe, Object target) {
+		Object source = cloneMe.object;
+		this.values = new double[cloneMe.values.length];
+		this.references = new PrimitiveReference[cloneMe.references.length];
+		System.arraycopy(cloneMe.values,0,this.values,0,cloneMe.values.length);
+		for (int i=0; i<references.length; ++i) {
+			if (source == null || cloneMe.references[i].object != source) {
+				throw new IllegalArgumentException("Reference to " + cloneMe.references[i].getFieldName()
+						+ " is not a field of the wrapped object, so it can't be moved to a copy");
+			}
+			references[i] = cloneMe.references[i].clone();
+			references[i].object = target;
+		}
+		this.object = target;
+		this.accessor = WrappedObjectAccessor.forReferences(target, references);
+	}
+	
 	/**
 	 * Save the current values to an {@link ObjectOutputStream}.
 	 * Does not save the object or the references - these must be
@@ -128,7 +164,11 @@ public class WrappedObject {
 	public OptimizableWrappedObject optimizable() {
 		final WrappedObject obj = this;
 		if (obj.getObject() instanceof HasValue) {
-			return new OptimizableWrappedObject(this) {
+			class HasValueOptimizable extends OptimizableWrappedObject implements Copyable {
+				HasValueOptimizable(WrappedObject cloneMe) {
+					super(cloneMe);
+				}
+				
 				// Note that from here on, "this" refers to the OptimizableWrappedObject,
 				// and NOT the WrappedObject (obj).  It's very important not to confuse
 				// the two, otherwise values won't get pushed properly
@@ -138,7 +178,13 @@ public class WrappedObject {
 					double val = ((HasValue)this.getObject()).getValue();
 					return val;
 				}
-			};
+				
+				@Override
+				public OptimizableWrappedObject copyOnto(Object target) {
+					return new WrappedObject(this, target).optimizable();
+				}
+			}
+			return new HasValueOptimizable(this);
 		} else {
 			throw new RuntimeException("Base object " + obj.getObject() + " does not implement HasValue interface");
 		}
@@ -146,18 +192,29 @@ public class WrappedObject {
 	
 	/**
 	 * Create an OptimizableWrappedObject with a given function as
-	 * the objective function.
+	 * the objective function.  The function is passed the optimizable
+	 * wrapper itself, after its values have been pushed to the object.
 	 * @param func
 	 * @return
 	 */
 	public OptimizableWrappedObject optimizable(final WrappedObjectToDoubleFunction func) {
-		final WrappedObject obj = this;
-		OptimizableWrappedObject opt = new OptimizableWrappedObject(this) {
+		class FunctionOptimizable extends OptimizableWrappedObject implements Copyable {
+			FunctionOptimizable(WrappedObject cloneMe) {
+				super(cloneMe);
+			}
+			
 			@Override
 			public double getValue() {
-				return func.evaluate(obj);
+				this.pushValuesToObject();
+				return func.evaluate(this);
+			}
+			
+			@Override
+			public OptimizableWrappedObject copyOnto(Object target) {
+				return new WrappedObject(this, target).optimizable(func);
 			}
-		};
+		}
+		OptimizableWrappedObject opt = new FunctionOptimizable(this);
 		return opt;
 	}
 	
@@ -179,6 +236,7 @@ public class WrappedObject {
 		for (int i=0; i<references.length; ++i) {
 			references[i].object = o;
 		}
+		accessor = WrappedObjectAccessor.forReferences(o, references);
 	}
 	public Object getObject() { return object; }
 	
@@ -204,6 +262,10 @@ public class WrappedObject {
 	 * Pulls values from object into WrappedObject's member array.
 	 */
 	public double[] pullValuesFromObject() {
+		if (accessor != null) {
+			accessor.pull(object, values);
+			return getValues();
+		}
 		for (int i=0; i<references.length; ++i) {
 			try {
 				switch(references[i].type) {
@@ -232,6 +294,10 @@ public class WrappedObject {
 	}
 	
 	public void pushValuesToObject() {
+		if (accessor != null) {
+			accessor.push(values, object);
+			return;
+		}
 		for (int i=0; i<references.length; ++i) {
 			try {
 				switch(references[i].type) {
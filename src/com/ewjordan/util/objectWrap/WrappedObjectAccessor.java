@@ -0,0 +1,265 @@
+/**
+ *
+ */
+package com.ewjordan.util.objectWrap;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Copies all wrapped values of an object in or out of a <code>double[]</code>
+ * in one pass, instead of going through a {@link PrimitiveReference} (and a
+ * reflective {@link Field} access) per value.
+ *
+ * The references are compiled once into a list of segments: each scalar field
+ * is its own segment, and each run of consecutive elements of a primitive array
+ * field is collapsed into a single segment, so the array is fetched from the
+ * object once per push/pull and its elements are copied in a tight typed loop.
+ *
+ * Accessors are only built for reference sets that all point at a single target
+ * object (the usual result of {@link PrimitiveReference#getAllReferencesFrom(Object, boolean)}
+ * on an object without nested wrapped members); they are cached by class, so
+ * wrapping many instances of the same class compiles the layout once.
+ *
+ * @author eric
+ *
+ */
+final class WrappedObjectAccessor {
+	static private final Map<Class<?>, WrappedObjectAccessor> cache =
+		new ConcurrentHashMap<Class<?>, WrappedObjectAccessor>();
+
+	private final Segment[] segments;
+	private final int length;
+
+	/**
+	 * A run of values backed by a single field - either a scalar, or
+	 * a contiguous range of elements in a primitive array.
+	 */
+	static private final class Segment {
+		final Field field;
+		final ReferenceType type;
+		final boolean array;
+		final int valueOffset; //start index in the values array
+		final int arrayOffset; //start index in the backing array (0 for scalars)
+		final int length;
+
+		Segment(Field field, ReferenceType type, boolean array, int valueOffset, int arrayOffset, int length) {
+			this.field = field;
+			this.type = type;
+			this.array = array;
+			this.valueOffset = valueOffset;
+			this.arrayOffset = arrayOffset;
+			this.length = length;
+		}
+	}
+
+	private WrappedObjectAccessor(Segment[] segments, int length) {
+		this.segments = segments;
+		this.length = length;
+	}
+
+	/**
+	 * Get an accessor for the given references, all of which must point at target.
+	 * Returns null if the references can't be handled by a single-target accessor,
+	 * in which case the caller should fall back to per-reference access.
+	 */
+	static WrappedObjectAccessor forReferences(Object target, PrimitiveReference[] references) {
+		if (target == null) return null;
+		for (int i=0; i<references.length; ++i) {
+			if (references[i].object != target) return null;
+		}
+		Class<?> klazz = target.getClass();
+		WrappedObjectAccessor accessor = cache.get(klazz);
+		if (accessor != null && accessor.matches(references)) {
+			return accessor;
+		}
+		accessor = compile(references);
+		cache.put(klazz, accessor);
+		return accessor;
+	}
+
+	static private WrappedObjectAccessor compile(PrimitiveReference[] references) {
+		List<Segment> segments = new ArrayList<Segment>();
+		int i = 0;
+		while (i < references.length) {
+			PrimitiveReference ref = references[i];
+			if (!ref.isArrayMember()) {
+				segments.add(new Segment(ref.field, ref.type, false, i, 0, 1));
+				++i;
+				continue;
+			}
+			int start = ((PrimitiveReferenceIntoArray)ref).indexInArray;
+			int end = i+1;
+			while (end < references.length
+					&& references[end].isArrayMember()
+					&& references[end].field.equals(ref.field)
+					&& ((PrimitiveReferenceIntoArray)references[end]).indexInArray == start + (end-i)) {
+				++end;
+			}
+			segments.add(new Segment(ref.field, ref.type, true, i, start, end-i));
+			i = end;
+		}
+		return new WrappedObjectAccessor(segments.toArray(new Segment[segments.size()]), references.length);
+	}
+
+	/**
+	 * Checks whether this accessor's layout is the one described by the references.
+	 */
+	private boolean matches(PrimitiveReference[] references) {
+		if (references.length != length) return false;
+		for (int s=0; s<segments.length; ++s) {
+			Segment seg = segments[s];
+			PrimitiveReference first = references[seg.valueOffset];
+			PrimitiveReference last = references[seg.valueOffset + seg.length - 1];
+			if (first.isArrayMember() != seg.array || !first.field.equals(seg.field)
+					|| !last.field.equals(seg.field)) {
+				return false;
+			}
+			if (seg.array && (((PrimitiveReferenceIntoArray)first).indexInArray != seg.arrayOffset
+					|| ((PrimitiveReferenceIntoArray)last).indexInArray != seg.arrayOffset + seg.length - 1)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads all wrapped values out of target into values.
+	 */
+	void pull(Object target, double[] values) {
+		for (int s=0; s<segments.length; ++s) {
+			Segment seg = segments[s];
+			try {
+				if (seg.array) {
+					pullArray(seg, seg.field.get(target), values);
+				} else {
+					values[seg.valueOffset] = pullScalar(seg, target);
+				}
+			} catch (Exception e) {
+				System.err.println("Could not retrieve values from index " + seg.valueOffset + ", field " + seg.field.getName());
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * Writes all values into the wrapped fields of target.
+	 */
+	void push(double[] values, Object target) {
+		for (int s=0; s<segments.length; ++s) {
+			Segment seg = segments[s];
+			try {
+				if (seg.array) {
+					pushArray(seg, values, seg.field.get(target));
+				} else {
+					pushScalar(seg, values[seg.valueOffset], target);
+				}
+			} catch (Exception e) {
+				System.err.println("Could not update index " + seg.valueOffset + ", field " + seg.field.getName());
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	static private double pullScalar(Segment seg, Object target) throws IllegalAccessException {
+		switch(seg.type) {
+		case BOOLEAN:
+			return seg.field.getBoolean(target)?WrappedObject.defaultBooleanTrue:WrappedObject.defaultBooleanFalse;
+		case INT:
+			return seg.field.getInt(target);
+		case LONG:
+			return seg.field.getLong(target);
+		case FLOAT:
+			return seg.field.getFloat(target);
+		default:
+			return seg.field.getDouble(target);
+		}
+	}
+
+	static private void pushScalar(Segment seg, double value, Object target) throws IllegalAccessException {
+		switch(seg.type) {
+		case BOOLEAN:
+			seg.field.setBoolean(target, value > WrappedObject.booleanThreshold);
+			break;
+		case INT:
+			seg.field.setInt(target, (int)value);
+			break;
+		case LONG:
+			seg.field.setLong(target, (long)value);
+			break;
+		case FLOAT:
+			seg.field.setFloat(target, (float)value);
+			break;
+		default:
+			seg.field.setDouble(target, value);
+			break;
+		}
+	}
+
+	static private void pullArray(Segment seg, Object array, double[] values) {
+		int from = seg.arrayOffset;
+		int to = seg.valueOffset;
+		int n = seg.length;
+		switch(seg.type) {
+		case BOOLEAN: {
+			boolean[] arr = (boolean[])array;
+			for (int i=0; i<n; ++i) {
+				values[to+i] = arr[from+i]?WrappedObject.defaultBooleanTrue:WrappedObject.defaultBooleanFalse;
+			}
+			break;
+		}
+		case INT: {
+			int[] arr = (int[])array;
+			for (int i=0; i<n; ++i) values[to+i] = arr[from+i];
+			break;
+		}
+		case LONG: {
+			long[] arr = (long[])array;
+			for (int i=0; i<n; ++i) values[to+i] = arr[from+i];
+			break;
+		}
+		case FLOAT: {
+			float[] arr = (float[])array;
+			for (int i=0; i<n; ++i) values[to+i] = arr[from+i];
+			break;
+		}
+		default:
+			System.arraycopy((double[])array, from, values, to, n);
+			break;
+		}
+	}
+
+	static private void pushArray(Segment seg, double[] values, Object array) {
+		int from = seg.valueOffset;
+		int to = seg.arrayOffset;
+		int n = seg.length;
+		switch(seg.type) {
+		case BOOLEAN: {
+			boolean[] arr = (boolean[])array;
+			for (int i=0; i<n; ++i) arr[to+i] = values[from+i] > WrappedObject.booleanThreshold;
+			break;
+		}
+		case INT: {
+			int[] arr = (int[])array;
+			for (int i=0; i<n; ++i) arr[to+i] = (int)values[from+i];
+			break;
+		}
+		case LONG: {
+			long[] arr = (long[])array;
+			for (int i=0; i<n; ++i) arr[to+i] = (long)values[from+i];
+			break;
+		}
+		case FLOAT: {
+			float[] arr = (float[])array;
+			for (int i=0; i<n; ++i) arr[to+i] = (float)values[from+i];
+			break;
+		}
+		default:
+			System.arraycopy(values, from, (double[])array, to, n);
+			break;
+		}
+	}
+}
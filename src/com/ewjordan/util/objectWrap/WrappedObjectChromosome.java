@@ -1,8 +1,10 @@
 package com.ewjordan.util.objectWrap;
 
+import java.util.Arrays;
 import java.util.Random;
 
 import org.apache.commons.math.genetics.Chromosome;
+import org.apache.commons.math.genetics.FitnessCache;
 
 public class WrappedObjectChromosome extends Chromosome {
 	static private Random rand = new Random();
@@ -68,6 +70,41 @@ public class WrappedObjectChromosome extends Chromosome {
 		return newVal;
 	}
 	
+	/**
+	 * Chromosomes with equal values are the same solution.
+	 */
+	@Override
+	protected boolean isSame(Chromosome another) {
+		if (!(another instanceof WrappedObjectChromosome)) return false;
+		return Arrays.equals(wrappedObject.getValues(), ((WrappedObjectChromosome)another).wrappedObject.getValues());
+	}
+	
+	/**
+	 * Keyed by the problem and a copy of the wrapped values, see {@link FitnessCache}.
+	 */
+	@Override
+	protected Object getFitnessCacheKey() {
+		return FitnessCache.keyOf(getProblem(), FitnessCache.keyOf(wrappedObject.getValues()));
+	}
+	
+	/**
+	 * The object that determines the fitness besides the values; chromosomes
+	 * only share cached fitness when this is the identical object.  By default
+	 * the wrapped target, override if the objective is defined elsewhere.
+	 */
+	protected Object getProblem() {
+		return wrappedObject.getObject();
+	}
+	
+	/**
+	 * Evaluating pushes values into the wrapped target object, so chromosomes
+	 * wrapping the same target are evaluated one at a time.
+	 */
+	@Override
+	protected Object getEvaluationLock() {
+		return wrappedObject.getObject();
+	}
+	
 	@Override
 	public double fitness() {
 		// TODO Auto-generated method stub
@@ -0,0 +1,16 @@
+package com.ewjordan.util.objectWrap;
+
+/**
+ * Creates independent copies of a wrapped target object, so that several
+ * copies can be evaluated at the same time without sharing any state.
+ * 
+ * @author eric
+ *
+ */
+public interface WrappedObjectFactory {
+	/**
+	 * @param original the object to copy
+	 * @return a new object of the same class, sharing no mutable state with original
+	 */
+	Object copy(Object original);
+}
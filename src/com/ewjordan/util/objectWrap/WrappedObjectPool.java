@@ -0,0 +1,82 @@
+package com.ewjordan.util.objectWrap;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A pool of independent copies of a wrapped object, used to evaluate an
+ * objective function from several threads at once.
+ * 
+ * Each copy is a separate target object (made by a {@link WrappedObjectFactory})
+ * with its own {@link OptimizableWrappedObject}, made by
+ * {@link Copyable#copyOnto(Object)} so that it keeps the
+ * prototype's objective and references, so evaluating a point on a copy
+ * needs no locking and no save/restore of the original's values - the
+ * original object is never touched.  Copies are created lazily, so the pool
+ * only grows to the number of evaluations that actually run concurrently
+ * (one is made up front, so a prototype that can't be copied fails early).
+ * 
+ * @author eric
+ *
+ */
+class WrappedObjectPool {
+	private final OptimizableWrappedObject prototype; //also Copyable
+	private final WrappedObjectFactory factory;
+	private final Queue<OptimizableWrappedObject> free = new ConcurrentLinkedQueue<OptimizableWrappedObject>();
+	
+	WrappedObjectPool(OptimizableWrappedObject prototype, WrappedObjectFactory factory) {
+		this.prototype = prototype;
+		this.factory = factory;
+		free.offer(newCopy());
+	}
+	
+	int getNumberOfMembers() {
+		return prototype.getNumberOfMembers();
+	}
+	
+	/**
+	 * @return the wrapper the copies are made from
+	 */
+	OptimizableWrappedObject getPrototype() {
+		return prototype;
+	}
+	
+	/**
+	 * Get a copy for exclusive use by the calling thread; hand it
+	 * back with {@link #release(OptimizableWrappedObject)}.
+	 */
+	OptimizableWrappedObject acquire() {
+		OptimizableWrappedObject copy = free.poll();
+		if (copy == null) {
+			copy = newCopy();
+		}
+		return copy;
+	}
+	
+	private OptimizableWrappedObject newCopy() {
+		synchronized(prototype.getObject()) {
+			return ((Copyable)prototype).copyOnto(factory.copy(prototype.getObject()));
+		}
+	}
+	
+	void release(OptimizableWrappedObject copy) {
+		free.offer(copy);
+	}
+	
+	/**
+	 * Evaluate the objective at a point on one of the copies.
+	 */
+	double value(double[] point) {
+		if (point.length != prototype.getNumberOfMembers()) {
+			throw new IllegalArgumentException("The array of values passed had length " + point.length
+					+ ", but this object has " + prototype.getNumberOfMembers() + " fields to be set.");
+		}
+		OptimizableWrappedObject copy = acquire();
+		try {
+			copy.setValues(point);
+			return copy.getValue(); //pushes the values before evaluating
+		} finally {
+			release(copy);
+		}
+	}
+}
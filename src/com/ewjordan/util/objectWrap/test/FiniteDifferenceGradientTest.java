@@ -0,0 +1,94 @@
+package com.ewjordan.util.objectWrap.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math.analysis.MultivariateRealFunction;
+import org.junit.Test;
+
+import com.ewjordan.util.objectWrap.FiniteDifferenceGradient;
+import com.ewjordan.util.objectWrap.WrappedObject;
+
+public class FiniteDifferenceGradientTest {
+	static public class Vector {
+		public double[] x = {0.5, -1.0, 2.0, 0.25, 3.0, -0.75, 1.5, 0.1};
+	}
+
+	static private final MultivariateRealFunction objective = new MultivariateRealFunction() {
+		public double value(double[] p) {
+			double sum = 0;
+			for (int i=0; i<p.length; ++i) sum += (i + 1) * p[i] * p[i] + p[i] * p[(i + 1) % p.length];
+			return sum;
+		}
+	};
+
+	static private double[] serialGradient(WrappedObject w, FiniteDifferenceGradient.Method method) {
+		double[] out = new double[w.getNumberOfMembers()];
+		return new FiniteDifferenceGradient(objective, w, method, 1e-6).gradient(w.getValues(), out);
+	}
+
+	/** Blocks spread over an executor give exactly the serial result. */
+	@Test
+	public void testParallelMatchesSerial() {
+		WrappedObject w = new WrappedObject(new Vector());
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			for (FiniteDifferenceGradient.Method method : FiniteDifferenceGradient.Method.values()) {
+				FiniteDifferenceGradient g = new FiniteDifferenceGradient(objective, w, method, 1e-6, executor, 4);
+				double[] out = new double[w.getNumberOfMembers()];
+				for (int i=0; i<3; ++i) {
+					assertTrue(Arrays.equals(g.gradient(w.getValues(), out), serialGradient(w, method)));
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/** Blocks the executor rejects are computed on the calling thread, before and after a shutdown. */
+	@Test
+	public void testRejectedBlocksRunOnCaller() throws Exception {
+		WrappedObject w = new WrappedObject(new Vector());
+		double[] expected = serialGradient(w, FiniteDifferenceGradient.Method.CENTRAL);
+		//one thread, kept busy, with room for one more task: the other blocks are rejected
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1));
+		final CountDownLatch release = new CountDownLatch(1);
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					//done
+				}
+			}
+		});
+		final FiniteDifferenceGradient g = new FiniteDifferenceGradient(objective, w,
+				FiniteDifferenceGradient.Method.CENTRAL, 1e-6, executor, 4);
+		final double[] point = w.getValues().clone();
+		final double[] out = new double[point.length];
+		Thread caller = new Thread() {
+			@Override
+			public void run() {
+				g.gradient(point, out);
+			}
+		};
+		caller.start();
+		Thread.sleep(200);
+		release.countDown(); //lets the one queued block run
+		caller.join(5000);
+		assertTrue(!caller.isAlive());
+		assertTrue(Arrays.equals(out, expected));
+
+		executor.shutdown();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+		double[] again = new double[point.length];
+		assertTrue(Arrays.equals(g.gradient(point, again), expected));
+	}
+}
@@ -0,0 +1,140 @@
+package com.ewjordan.util.objectWrap.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.math.optimization.GoalType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ewjordan.util.objectWrap.CopyConstructorFactory;
+import com.ewjordan.util.objectWrap.Copyable;
+import com.ewjordan.util.objectWrap.HasValue;
+import com.ewjordan.util.objectWrap.ObjectOptimizer;
+import com.ewjordan.util.objectWrap.OptimizableWrappedObject;
+import com.ewjordan.util.objectWrap.PrimitiveReference;
+import com.ewjordan.util.objectWrap.WrappedObject;
+import com.ewjordan.util.objectWrap.WrappedObjectToDoubleFunction;
+
+public class PooledOptimizationTest {
+	/** Its own value is minimized at the origin, unlike the objective used below. */
+	static public class Point implements HasValue {
+		public double x = 0.3;
+		public double y = -0.2;
+		public double z = 1.0;
+
+		public Point() { }
+
+		public Point(Point p) {
+			x = p.x;
+			y = p.y;
+			z = p.z;
+		}
+
+		public double getValue() {
+			return x*x + y*y + z*z;
+		}
+	}
+
+	/** Minimized at (1, -2, 3), reading the values from the wrapper and z from the object. */
+	static private final WrappedObjectToDoubleFunction objective = new WrappedObjectToDoubleFunction() {
+		public double evaluate(WrappedObject obj) {
+			double x = obj.getValue(0);
+			double y = obj.getValue(1);
+			double z = ((Point)obj.getObject()).z;
+			return (x-1)*(x-1) + (y+2)*(y+2) + 4*(x*y - 0.5)*(x*y - 0.5) + (z-3)*(z-3);
+		}
+	};
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(3);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	/** Wrap x and y only, with the custom objective. */
+	static private OptimizableWrappedObject optimizable(Point p) {
+		List<PrimitiveReference> refs = new ArrayList<PrimitiveReference>();
+		for (PrimitiveReference ref : PrimitiveReference.getAllReferencesFrom(p, true)) {
+			if (!ref.getFieldName().equals("z")) refs.add(ref);
+		}
+		WrappedObject w = new WrappedObject(refs.toArray(new PrimitiveReference[refs.size()]));
+		w.setObject(p);
+		return w.optimizable(objective);
+	}
+
+	/**
+	 * Evaluating on pooled copies must optimize the same objective over the
+	 * same fields as evaluating on the object itself, taking the same steps.
+	 */
+	@Test
+	public void testPooledMatchesSerial() throws Exception {
+		Point serial = new Point();
+		Point pooled = new Point();
+		int serialEvaluations = ObjectOptimizer.optimize(optimizable(serial), GoalType.MINIMIZE);
+		int pooledEvaluations = ObjectOptimizer.optimize(optimizable(pooled), GoalType.MINIMIZE,
+				new CopyConstructorFactory(), executor);
+		assertTrue(serial.x == pooled.x);
+		assertTrue(serial.y == pooled.y);
+		assertTrue(serialEvaluations == pooledEvaluations);
+		assertTrue(pooled.z == 1.0); //not wrapped, so never changed
+		assertTrue(objective.evaluate(optimizable(pooled)) < objective.evaluate(optimizable(new Point())));
+	}
+
+	/** Without an executor, the pooled gradient is computed serially on copies. */
+	@Test
+	public void testPooledWithoutExecutor() throws Exception {
+		Point serial = new Point();
+		Point pooled = new Point();
+		ObjectOptimizer.optimize(optimizable(serial), GoalType.MINIMIZE);
+		ObjectOptimizer.optimize(optimizable(pooled), GoalType.MINIMIZE, new CopyConstructorFactory(), null);
+		assertTrue(serial.x == pooled.x);
+		assertTrue(serial.y == pooled.y);
+	}
+
+	/** A wrapper can't be moved to a copy if it wraps fields of other objects. */
+	@Test(expected=IllegalArgumentException.class)
+	public void testCopyOntoRejectsForeignReferences() {
+		Point p = new Point();
+		WrappedObject w = new WrappedObject(PrimitiveReference.getAllReferencesFrom(p, true));
+		w.copyOnto(new Point());
+	}
+
+	/** A wrapper subclass that isn't Copyable is rejected before anything is evaluated. */
+	@Test
+	public void testRejectsWrapperWithoutCopyOnto() throws Exception {
+		final Point p = new Point();
+		final int[] evaluations = {0};
+		OptimizableWrappedObject opt = new OptimizableWrappedObject(p) {
+			@Override
+			public double getValue() {
+				++evaluations[0];
+				pushValuesToObject();
+				return p.getValue();
+			}
+		};
+		assertTrue(!(opt instanceof Copyable));
+		assertTrue(optimizable(p) instanceof Copyable);
+		assertTrue(new WrappedObject(p).optimizable() instanceof Copyable);
+		try {
+			ObjectOptimizer.optimize(opt, GoalType.MINIMIZE, new CopyConstructorFactory(), executor);
+			fail("expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		assertTrue(evaluations[0] == 0);
+		assertTrue(p.x == 0.3 && p.y == -0.2 && p.z == 1.0);
+	}
+}
@@ -0,0 +1,81 @@
+package com.ewjordan.util.objectWrap.test;
+
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.math.genetics.Chromosome;
+import org.apache.commons.math.genetics.FitnessCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ewjordan.util.objectWrap.OptimizableWrappedObject;
+import com.ewjordan.util.objectWrap.WrappedObject;
+import com.ewjordan.util.objectWrap.WrappedObjectChromosome;
+import com.ewjordan.util.objectWrap.WrappedObjectToDoubleFunction;
+
+public class WrappedObjectChromosomeTest {
+	static public class Genes {
+		public double a = 1.0;
+		public double b = 2.0;
+	}
+
+	/** One chromosome class for every objective, like the optimizer uses. */
+	static private class ObjectiveChromosome extends WrappedObjectChromosome {
+		private final OptimizableWrappedObject opt;
+
+		ObjectiveChromosome(OptimizableWrappedObject opt) {
+			super(opt);
+			this.opt = opt;
+		}
+
+		@Override
+		public double fitness() {
+			return opt.getValue();
+		}
+	}
+
+	private FitnessCache cache;
+
+	@Before
+	public void setUp() {
+		cache = new FitnessCache(100);
+		Chromosome.setFitnessCache(cache);
+	}
+
+	@After
+	public void tearDown() {
+		Chromosome.setFitnessCache(null);
+	}
+
+	static private OptimizableWrappedObject optimizable(final double weight) {
+		return new WrappedObject(new Genes()).optimizable(new WrappedObjectToDoubleFunction() {
+			public double evaluate(WrappedObject obj) {
+				return weight * obj.getValue(0) + obj.getValue(1);
+			}
+		});
+	}
+
+	/**
+	 * Equal genes evaluated against different objectives must not be given
+	 * each other's cached fitness.
+	 */
+	@Test
+	public void testDifferentObjectivesDoNotShareFitness() {
+		Chromosome first = new ObjectiveChromosome(optimizable(1.0));
+		Chromosome second = new ObjectiveChromosome(optimizable(10.0));
+		assertTrue(first.getFitness() == 3.0);
+		assertTrue(second.getFitness() == 12.0);
+		assertTrue(cache.getHits() == 0);
+	}
+
+	/** Equal genes evaluated against the same objective are only computed once. */
+	@Test
+	public void testSameObjectiveSharesFitness() {
+		OptimizableWrappedObject opt = optimizable(1.0);
+		Chromosome first = new ObjectiveChromosome(opt);
+		Chromosome second = new ObjectiveChromosome(opt);
+		assertTrue(first.getFitness() == 3.0);
+		assertTrue(second.getFitness() == 3.0);
+		assertTrue(cache.getHits() == 1);
+	}
+}
@@ -73,6 +73,30 @@ public class WrappedObjectTest {
 		
 	}
 
+	/**
+	 * Checks that values survive a push/pull round trip through the bulk accessor.
+	 */
+	@Test
+	public void testPushPullRoundTrip() {
+		double[] vals = myObject.getValues();
+		vals[0] = -3.5;
+		vals[2] = 0.1; //boolean false
+		for (int i=3; i<8; ++i) {
+			vals[i] = i;
+		}
+		myObject.pushValuesToObject();
+		assertTrue(myHolder.publicDouble == -3.5);
+		assertTrue(myHolder.protectedBoolean == false);
+		assertTrue(myHolder.publicDoubleArray[4] == 7.0);
+		assertTrue(myHolder.publicIntArray[0] == -5);
+		
+		myHolder.publicDoubleArray[1] = 42.0;
+		myHolder.protectedBoolean = true;
+		myObject.pullValuesFromObject();
+		assertTrue(myObject.getValue(4) == 42.0);
+		assertTrue(myObject.getValue(2) > 0.5);
+	}
+
 	/**
 	 * Test method for {@link com.ewjordan.objectWrap.WrappedObject#pushValuesToObject()}.
 	 */
@@ -1,68 +1,47 @@
 package com.ewjordan.util.random;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+
+import com.ewjordan.util.DoubleFieldExtractor;
 
 public class Shuffler {
+	static private final Random random = new Random();
 
 	/** Shuffle a list in-place */
 	static public void shuffleInPlace(List<? extends Object> objects) {
 		Collections.shuffle(objects);
 	}
 	
-	static private List<Double> yankDoubles(List<? extends Object> objects, String fieldName) {
-		try {
-			List<Double> doubles = new ArrayList<Double>(objects.size());
-			for (Object o : objects) {
-				Class<?> clazz = o.getClass();
-				Field field;
-				field = clazz.getDeclaredField(fieldName);
-				double dub = field.getDouble(o);
-				doubles.add(dub);
-			}
-			return doubles;
-		} catch (Exception e) {
-			throw new RuntimeException(e);
-		}
+	/** Fisher-Yates shuffle of an array in place. */
+	static public void shuffle(double[] arr) {
+		shuffle(arr, random);
 	}
 	
-	static private void putDoubles(List<Double> doubles, List<? extends Object> objects, String fieldName) {
-		if (doubles.size() != objects.size()) {
-			throw new IllegalArgumentException("Sizes of lists do not match.");
-		}
-		try {
-			for (int i=0; i<objects.size(); ++i) {
-				Object o = objects.get(i);
-				Class<?> clazz = o.getClass();
-				Field field = clazz.getDeclaredField(fieldName);
-				field.setDouble(o, doubles.get(i));
-			}
-		} catch (Exception e) {
-			throw new RuntimeException(e);
+	/** Fisher-Yates shuffle of an array in place, using the given source of randomness. */
+	static public void shuffle(double[] arr, Random rand) {
+		for (int i=arr.length-1; i>0; --i) {
+			int j = rand.nextInt(i+1);
+			double tmp = arr[i];
+			arr[i] = arr[j];
+			arr[j] = tmp;
 		}
 	}
 	
+	/** Shuffle the values of a double field among a list of objects, leaving the objects in place. */
 	static public void shuffleDoubleFieldInPlace(List<?> objects, String fieldName) {
-		List<Double> pulled = yankDoubles(objects, fieldName);
-		Collections.shuffle(pulled);
-		putDoubles(pulled, objects, fieldName);
+		double[] pulled = DoubleFieldExtractor.extract(objects, fieldName);
+		shuffle(pulled);
+		DoubleFieldExtractor.store(pulled, objects, fieldName);
 	}
 	
 	/** Extract a list of doubles from a list of objects, shuffle it, and return it as a double array */
 	static public double[] getShuffledDoubleFields(List<? extends Object> objects, String fieldName) {
-		try {
-			List<Double> doubles = yankDoubles(objects, fieldName);
-			Collections.shuffle(doubles);
-			double[] arr = new double[doubles.size()];
-			for (int i=0; i<doubles.size(); ++i) {
-				arr[i] = doubles.get(i);
-			}
-			return arr;
-		} catch (Exception e) {
-			throw new RuntimeException(e);
-		}
+		double[] arr = DoubleFieldExtractor.extract(objects, fieldName);
+		shuffle(arr);
+		return arr;
 	}
 
 	/* EXAMPLE USAGE BELOW */
@@ -0,0 +1,33 @@
+package com.ewjordan.util.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.ewjordan.util.ArrayUtil;
+
+public class ArrayUtilTest {
+	/** Large sorts give the order of Arrays.sort, and leave no non-daemon threads behind. */
+	@Test
+	public void testLargeSortMatchesArraysSort() {
+		Random random = new Random(7);
+		double[] arr = new double[(1 << 21) + 3];
+		for (int i=0; i<arr.length; ++i) {
+			arr[i] = (i % 97 == 0) ? -0.0 : random.nextGaussian();
+		}
+		arr[5] = Double.NaN;
+		arr[6] = 0.0;
+		double[] expected = arr.clone();
+		Arrays.sort(expected, 1, expected.length - 1);
+		ArrayUtil.sort(arr, 1, arr.length - 1);
+		assertTrue(Arrays.equals(arr, expected));
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().startsWith("ArrayUtil.sort")) {
+				assertTrue(thread.isDaemon());
+			}
+		}
+	}
+}
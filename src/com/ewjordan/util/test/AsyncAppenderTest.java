@@ -0,0 +1,152 @@
+package com.ewjordan.util.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ewjordan.util.AsyncAppender;
+import com.ewjordan.util.SimpleIO;
+
+public class AsyncAppenderTest {
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("appender", ".txt");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	static private List<String> lines(File f) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader in = new BufferedReader(new FileReader(f));
+		try {
+			for (String line; (line = in.readLine()) != null; ) lines.add(line);
+		} finally {
+			in.close();
+		}
+		return lines;
+	}
+
+	/** Lines and rows are written in order, and flush makes them visible. */
+	@Test
+	public void testAppendAndFlush() throws IOException {
+		AsyncAppender out = new AsyncAppender(file, 16, 60000, 2);
+		for (int i=0; i<1000; ++i) {
+			if (i % 2 == 0) out.append("line " + i);
+			else out.appendRow(i, 0.5);
+		}
+		out.flush();
+		List<String> lines = lines(file);
+		assertTrue(lines.size() == 1000);
+		assertTrue(lines.get(0).equals("line 0") && lines.get(1).equals("1.00,0.50"));
+		out.close();
+		out.close(); //does nothing
+		assertTrue(!out.isOpen());
+	}
+
+	/**
+	 * Every append that returns before or while the appender is closed is
+	 * written; every one after the close throws.  Nothing is silently lost.
+	 */
+	@Test
+	public void testCloseRace() throws Exception {
+		for (int round=0; round<20; ++round) {
+			final AsyncAppender out = new AsyncAppender(file, 4, 1, 0);
+			final Set<String> accepted = Collections.synchronizedSet(new HashSet<String>());
+			final AtomicInteger rejected = new AtomicInteger();
+			Thread[] threads = new Thread[4];
+			for (int t=0; t<threads.length; ++t) {
+				final int id = t;
+				threads[t] = new Thread() {
+					@Override
+					public void run() {
+						for (int i=0; i<2000; ++i) {
+							String line = id + ":" + i;
+							try {
+								out.append(line);
+								accepted.add(line);
+							} catch (IllegalStateException e) {
+								rejected.incrementAndGet();
+							}
+						}
+					}
+				};
+				threads[t].start();
+			}
+			Thread.sleep(round % 5);
+			out.close();
+			for (Thread t : threads) t.join();
+			assertTrue(new HashSet<String>(lines(file)).equals(accepted));
+			assertTrue(accepted.size() + rejected.get() == 8000);
+			file.delete();
+		}
+	}
+
+	/** Closing doesn't wait forever when the writer thread has died with a full queue. */
+	@Test
+	public void testCloseAfterWriterDied() throws Exception {
+		final AsyncAppender out = new AsyncAppender(file, 1, 60000, 0);
+		for (Thread t : Thread.getAllStackTraces().keySet()) {
+			if (t.getName().equals("AsyncAppender " + file.getName())) {
+				t.interrupt();
+				t.join();
+			}
+		}
+		assertTrue(!out.isOpen());
+		try {
+			out.append("after failure"); //may fill the queue before failing
+			fail("Appended after the writer died");
+		} catch (IllegalStateException e) {
+			//expected
+		}
+		final boolean[] threw = {false};
+		Thread closer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					out.close();
+				} catch (IOException e) {
+					threw[0] = true;
+				}
+			}
+		};
+		closer.start();
+		closer.join(5000);
+		assertTrue(!closer.isAlive());
+		assertTrue(threw[0]);
+	}
+
+	/** SimpleIO replaces an appender that was closed, instead of failing from then on. */
+	@Test
+	public void testSimpleIOReopensAfterClose() throws IOException {
+		String path = file.getAbsolutePath();
+		assertTrue(SimpleIO.appendToFile("first", path));
+		AsyncAppender first = SimpleIO.appender(path);
+		first.close();
+		assertTrue(SimpleIO.appendToFile("second", path));
+		AsyncAppender second = SimpleIO.appender(path);
+		assertTrue(second != first && second.isOpen());
+		SimpleIO.flushAppenders();
+		assertTrue(lines(file).size() == 2 && lines(file).get(1).equals("second"));
+		SimpleIO.closeAppenders();
+		assertTrue(!second.isOpen());
+	}
+}
@@ -0,0 +1,157 @@
+package com.ewjordan.util.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ewjordan.util.BinaryColumnFile;
+import com.ewjordan.util.DoubleList;
+
+public class BinaryColumnFileTest {
+	private File file;
+	private double[] doubles;
+	private int[] ints;
+	private long[] longs;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("columns", ".bin");
+		Random r = new Random(24);
+		doubles = new double[100000]; //several write blocks
+		for (int i=0; i<doubles.length; ++i) doubles[i] = r.nextGaussian();
+		ints = new int[1001];
+		for (int i=0; i<ints.length; ++i) ints[i] = r.nextInt();
+		longs = new long[]{Long.MIN_VALUE, -1, 0, Long.MAX_VALUE};
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	private void writeAll() throws IOException {
+		BinaryColumnFile.Writer out = new BinaryColumnFile.Writer(file);
+		out.addColumn("doubles", doubles);
+		out.addColumn("ints", ints);
+		DoubleList list = new DoubleList(2 * doubles.length); //spare capacity
+		list.add(doubles);
+		out.addColumn("list", list);
+		out.addColumn("empty", new double[0]);
+		out.setCompression(true);
+		out.addColumn("compressed", doubles);
+		out.addColumn("longs", longs);
+		out.close();
+	}
+
+	/** Every column reads back as written, in order, compressed or not. */
+	@Test
+	public void testRoundTrip() throws IOException {
+		writeAll();
+		BinaryColumnFile in = new BinaryColumnFile(file);
+		assertTrue(in.getColumnNames().equals(Arrays.asList("doubles", "ints", "list", "empty", "compressed", "longs")));
+		assertTrue(Arrays.equals(in.getDoubles("doubles"), doubles));
+		assertTrue(Arrays.equals(in.getInts("ints"), ints));
+		assertTrue(Arrays.equals(in.getDoubles("list"), doubles));
+		assertTrue(in.getLength("empty") == 0 && in.getDoubles("empty").length == 0);
+		assertTrue(in.isCompressed("compressed") && !in.isCompressed("doubles"));
+		assertTrue(Arrays.equals(in.getDoubles("compressed"), doubles));
+		assertTrue(Arrays.equals(in.getLongs("longs"), longs));
+		assertTrue(in.getType("ints") == BinaryColumnFile.INT);
+		DoubleBuffer mapped = in.getDoubleBuffer("doubles");
+		assertTrue(mapped.remaining() == doubles.length && mapped.get(12345) == doubles[12345]);
+		DoubleList list = in.getDoubleList("list");
+		assertTrue(list.size() == doubles.length && list.get(doubles.length - 1) == doubles[doubles.length - 1]);
+		in.close();
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testWrongType() throws IOException {
+		writeAll();
+		BinaryColumnFile in = new BinaryColumnFile(file);
+		try {
+			in.getDoubles("ints");
+		} finally {
+			in.close();
+		}
+	}
+
+	/** A file whose writer was never closed has no directory, and is rejected. */
+	@Test
+	public void testUnclosedWriter() throws IOException {
+		BinaryColumnFile.Writer out = new BinaryColumnFile.Writer(file);
+		out.addColumn("doubles", doubles);
+		try {
+			new BinaryColumnFile(file).close();
+			fail("Opened a file with no directory");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("not closed"));
+		} finally {
+			out.close();
+		}
+	}
+
+	/** A file cut short loses its directory, and is rejected. */
+	@Test(expected=IOException.class)
+	public void testTruncated() throws IOException {
+		writeAll();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() / 2);
+		raf.close();
+		new BinaryColumnFile(file).close();
+	}
+
+	/** A directory entry pointing past the data is rejected when the file is opened. */
+	@Test(expected=IOException.class)
+	public void testColumnOutsideFile() throws IOException {
+		writeAll();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.seek(16);
+		long directory = Long.reverseBytes(raf.readLong());
+		//count, name length, "doubles", type, compressed flag, length, then the offset
+		raf.seek(directory + 4 + 4 + "doubles".length() + 2 + 8);
+		raf.writeLong(Long.reverseBytes(raf.length()));
+		raf.close();
+		new BinaryColumnFile(file).close();
+	}
+
+	/** Offset of a column's directory entry, for corrupting it. */
+	static private long directoryEntry(RandomAccessFile raf, String... before) throws IOException {
+		raf.seek(16);
+		long position = Long.reverseBytes(raf.readLong()) + 4;
+		for (String name : before) position += 4 + name.length() + 2 + 24;
+		return position;
+	}
+
+	/** A name length near Integer.MAX_VALUE is rejected rather than overflowing the bounds check. */
+	@Test(expected=IOException.class)
+	public void testHugeNameLength() throws IOException {
+		writeAll();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.seek(directoryEntry(raf));
+		raf.writeInt(Integer.reverseBytes(Integer.MAX_VALUE - 10));
+		raf.close();
+		new BinaryColumnFile(file).close();
+	}
+
+	/** A compressed column claiming far more values than its bytes could inflate to is rejected on open. */
+	@Test(expected=IOException.class)
+	public void testImplausibleCompressedLength() throws IOException {
+		writeAll();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		//name length, "compressed", type, compressed flag, then the length
+		raf.seek(directoryEntry(raf, "doubles", "ints", "list", "empty") + 4 + "compressed".length() + 2);
+		raf.writeLong(Long.reverseBytes(Integer.MAX_VALUE / 8));
+		raf.close();
+		new BinaryColumnFile(file).close();
+	}
+}
@@ -0,0 +1,183 @@
+package com.ewjordan.util.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ewjordan.util.ChunkedDoubleList;
+import com.ewjordan.util.DoubleIterator;
+
+public class ChunkedDoubleListTest {
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("chunked", ".dbl");
+		file.delete();
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	/** A mapped list reopened from its file has the same values and chunk size, and can keep growing. */
+	@Test
+	public void testMappedReopen() throws IOException {
+		ChunkedDoubleList list = ChunkedDoubleList.mapped(file, 4);
+		for (int i=0; i<1000; ++i) list.add(i * 0.5);
+		list.set(17, -1.0);
+		list.close();
+
+		list = ChunkedDoubleList.mapped(file, 10); //chunk size is taken from the file
+		assertTrue(list.isMapped());
+		assertTrue(list.size() == 1000);
+		assertTrue(list.get(17) == -1.0);
+		assertTrue(list.get(999) == 999 * 0.5);
+		double[] more = new double[100];
+		for (int i=0; i<more.length; ++i) more[i] = -i;
+		list.addAll(more);
+		list.close();
+
+		list = ChunkedDoubleList.mapped(file);
+		assertTrue(list.size() == 1100);
+		double[] all = list.toArray();
+		for (int i=0; i<1000; ++i) assertTrue(all[i] == ((i == 17) ? -1.0 : i * 0.5));
+		for (int i=0; i<100; ++i) assertTrue(all[1000 + i] == -i);
+		list.close();
+	}
+
+	/** A file that wasn't written by a ChunkedDoubleList is rejected. */
+	@Test(expected=IOException.class)
+	public void testMappedRejectsOtherFiles() throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(new byte[64]);
+		out.close();
+		ChunkedDoubleList.mapped(file);
+	}
+
+	/** A non-empty file too short for a header is rejected, not overwritten. */
+	@Test
+	public void testMappedRejectsShortFiles() throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(new byte[] {1, 2, 3});
+		out.close();
+		try {
+			ChunkedDoubleList.mapped(file);
+			assertTrue(false);
+		} catch (IOException e) {
+			//expected
+		}
+		assertTrue(file.length() == 3);
+	}
+
+	/** A header size that is negative or runs past the end of the file is rejected, and the file left alone. */
+	@Test
+	public void testMappedRejectsBadSize() throws IOException {
+		for (long badSize : new long[] {-1, Long.MIN_VALUE, 17, Long.MAX_VALUE}) {
+			ChunkedDoubleList list = ChunkedDoubleList.mapped(file, 4);
+			for (int i=0; i<10; ++i) list.add(i);
+			list.close();
+			long length = file.length();
+			patchHeader(8, ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(badSize).array());
+			try {
+				ChunkedDoubleList.mapped(file);
+				fail("Size " + badSize + " was accepted");
+			} catch (IOException e) {
+				assertTrue(e.getMessage().contains("size"));
+			}
+			assertTrue(file.length() == length);
+			file.delete();
+		}
+	}
+
+	@Test(expected=IOException.class)
+	public void testMappedRejectsBadChunkBits() throws IOException {
+		ChunkedDoubleList list = ChunkedDoubleList.mapped(file, 4);
+		list.add(1.0);
+		list.close();
+		patchHeader(16, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(99).array());
+		ChunkedDoubleList.mapped(file);
+	}
+
+	/** A bad chunk size for a new list is rejected before the file is created or written. */
+	@Test
+	public void testMappedRejectsBadChunkBitsForNewFile() throws IOException {
+		try {
+			ChunkedDoubleList.mapped(file, 40);
+			fail("Chunk bits of 40 were accepted");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		assertTrue(!file.exists());
+		new FileOutputStream(file).close();
+		try {
+			ChunkedDoubleList.mapped(file, 2);
+			fail("Chunk bits of 2 were accepted");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		assertTrue(file.length() == 0);
+		ChunkedDoubleList list = ChunkedDoubleList.mapped(file, 4);
+		list.add(1.0);
+		list.close();
+		//an existing list keeps its own chunk size, whatever is asked for
+		list = ChunkedDoubleList.mapped(file, 40);
+		assertTrue(list.size() == 1 && list.get(0) == 1.0);
+		list.close();
+	}
+
+	private void patchHeader(long offset, byte[] bytes) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(offset);
+			raf.write(bytes);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/** An empty file starts a new list. */
+	@Test
+	public void testMappedEmptyFile() throws IOException {
+		new FileOutputStream(file).close();
+		ChunkedDoubleList list = ChunkedDoubleList.mapped(file);
+		list.add(2.5);
+		list.close();
+		list = ChunkedDoubleList.mapped(file);
+		assertTrue(list.size() == 1 && list.get(0) == 2.5);
+		list.close();
+	}
+
+	/** Bulk copies, slices and iteration work across chunk boundaries, on and off heap. */
+	@Test
+	public void testAcrossChunks() {
+		for (boolean offHeap : new boolean[] {false, true}) {
+			ChunkedDoubleList list = new ChunkedDoubleList(4, offHeap);
+			double[] values = new double[100];
+			for (int i=0; i<values.length; ++i) values[i] = i;
+			list.addAll(values, 3, 90);
+			assertTrue(list.size() == 90);
+			double[] out = new double[40];
+			list.copyRange(10, out, 0, 40);
+			for (int i=0; i<40; ++i) assertTrue(out[i] == 13 + i);
+			ChunkedDoubleList.Slice slice = list.slice(20, 50);
+			slice.set(0, -5);
+			assertTrue(list.get(20) == -5);
+			assertTrue(slice.size() == 30 && slice.get(29) == 52);
+			double sum = 0;
+			for (DoubleIterator it = list.iterator(); it.hasNext(); ) sum += it.next();
+			assertTrue(sum == (3 + 92) * 90 / 2 - 23 - 5);
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package com.ewjordan.util.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.ewjordan.util.ArrayUtil;
+import com.ewjordan.util.DoubleArrays;
+import com.ewjordan.util.DoubleList;
+
+public class DoubleArraysTest {
+	static private final int maxLength = 13; //covers every remainder mod 4 a few times over
+
+	/** Elementwise operations match a plain loop exactly, for every tail length, and leave the rest of out alone. */
+	@Test
+	public void testElementwiseMatchesLoop() {
+		Random r = new Random(3);
+		for (int len=0; len<=maxLength; ++len) {
+			double[] a = random(r, maxLength);
+			double[] b = random(r, maxLength);
+			double[] out = new double[maxLength];
+			double[] expected = new double[maxLength];
+
+			DoubleArrays.add(a, b, out, len);
+			for (int i=0; i<len; ++i) expected[i] = a[i] + b[i];
+			assertTrue(Arrays.equals(out, expected));
+
+			DoubleArrays.subtract(a, b, out, len);
+			for (int i=0; i<len; ++i) expected[i] = a[i] - b[i];
+			assertTrue(Arrays.equals(out, expected));
+
+			DoubleArrays.multiply(a, b, out, len);
+			for (int i=0; i<len; ++i) expected[i] = a[i] * b[i];
+			assertTrue(Arrays.equals(out, expected));
+
+			DoubleArrays.divide(a, b, out, len);
+			for (int i=0; i<len; ++i) expected[i] = a[i] / b[i];
+			assertTrue(Arrays.equals(out, expected));
+
+			DoubleArrays.scale(a, -2.5, out, len);
+			for (int i=0; i<len; ++i) expected[i] = a[i] * -2.5;
+			assertTrue(Arrays.equals(out, expected));
+
+			DoubleArrays.shift(a, 0.125, out, len);
+			for (int i=0; i<len; ++i) expected[i] = a[i] + 0.125;
+			assertTrue(Arrays.equals(out, expected));
+
+			DoubleArrays.prefixSum(a, out, len);
+			double running = 0;
+			for (int i=0; i<len; ++i) expected[i] = (running += a[i]);
+			assertTrue(Arrays.equals(out, expected));
+		}
+	}
+
+	/** Output may alias an input. */
+	@Test
+	public void testInPlace() {
+		double[] a = {1, 2, 3, 4, 5, 6, 7};
+		DoubleArrays.add(a, a, a, a.length);
+		assertTrue(Arrays.equals(a, new double[] {2, 4, 6, 8, 10, 12, 14}));
+		DoubleArrays.prefixSum(a, a, a.length);
+		assertTrue(Arrays.equals(a, new double[] {2, 6, 12, 20, 30, 42, 56}));
+	}
+
+	/** Sums, mins and maxes of every sub-range, including empty ones and ones not starting at 0. */
+	@Test
+	public void testReductionsOverRanges() {
+		Random r = new Random(5);
+		double[] a = random(r, maxLength);
+		for (int from=0; from<=maxLength; ++from) {
+			for (int to=from; to<=maxLength; ++to) {
+				double sum = 0;
+				double min = Double.MAX_VALUE;
+				double max = -Double.MAX_VALUE;
+				for (int i=from; i<to; ++i) {
+					sum += a[i];
+					min = Math.min(min, a[i]);
+					max = Math.max(max, a[i]);
+				}
+				assertTrue(Math.abs(DoubleArrays.sum(a, from, to) - sum) <= 1e-12);
+				assertTrue(DoubleArrays.min(a, from, to) == min);
+				assertTrue(DoubleArrays.max(a, from, to) == max);
+				double[] mms = DoubleArrays.minMaxSum(a, from, to);
+				assertTrue(mms[0] == min && mms[1] == max);
+				assertTrue(Math.abs(mms[2] - sum) <= 1e-12);
+			}
+		}
+	}
+
+	/** Integers sum exactly whichever accumulator they land in, so the tail must be counted once and only once. */
+	@Test
+	public void testSumTailsExactly() {
+		for (int len=0; len<=maxLength; ++len) {
+			double[] a = new double[len + 2];
+			for (int i=0; i<a.length; ++i) a[i] = 1 << i;
+			double expected = 0;
+			for (int i=1; i<=len; ++i) expected += a[i];
+			assertTrue(DoubleArrays.sum(a, 1, len + 1) == expected);
+			assertTrue(DoubleArrays.minMaxSum(a, 1, len + 1)[2] == expected);
+		}
+	}
+
+	@Test
+	public void testEmptyRanges() {
+		double[] a = {4, 2, 9};
+		assertTrue(DoubleArrays.sum(a, 2, 2) == 0.0);
+		assertTrue(DoubleArrays.min(a, 1, 1) == Double.MAX_VALUE);
+		assertTrue(DoubleArrays.max(a, 3, 3) == -Double.MAX_VALUE);
+		assertTrue(Arrays.equals(DoubleArrays.minMaxSum(a, 0, 0), new double[] {Double.MAX_VALUE, -Double.MAX_VALUE, 0}));
+		assertTrue(!DoubleArrays.normalize(a, a, 0));
+		assertTrue(Arrays.equals(a, new double[] {4, 2, 9}));
+	}
+
+	/** NaNs are skipped by min and max, as the old ArrayUtil loops did. */
+	@Test
+	public void testMinMaxSkipNaN() {
+		double[] a = {Double.NaN, 3, Double.NaN, -1, 7, Double.NaN};
+		assertTrue(DoubleArrays.min(a, 0, a.length) == -1);
+		assertTrue(DoubleArrays.max(a, 0, a.length) == 7);
+		double[] mms = DoubleArrays.minMaxSum(a, 0, a.length);
+		assertTrue(mms[0] == -1 && mms[1] == 7 && Double.isNaN(mms[2]));
+	}
+
+	@Test
+	public void testNormalizeAndRescale() {
+		double[] a = {1, 2, 0, 4, 1};
+		double[] out = new double[a.length];
+		assertTrue(DoubleArrays.normalize(a, out, a.length));
+		assertTrue(Arrays.equals(out, new double[] {0.125, 0.25, 0, 0.5, 0.125}));
+		assertTrue(!DoubleArrays.normalize(new double[] {1, -1}, out, 2));
+
+		DoubleArrays.rescaleToUnit(a, out, a.length);
+		assertTrue(Arrays.equals(out, new double[] {0.25, 0.5, 0, 1, 0.25}));
+		DoubleArrays.rescaleToUnit(new double[] {6, 6, 6}, out, 3);
+		assertTrue(out[0] == 0 && out[1] == 0 && out[2] == 0);
+	}
+
+	/** divideByPositive gives exactly what dividedBy did with get() and add(), including zero, negative and NaN counts. */
+	@Test
+	public void testDivideByPositiveMatchesOldDividedBy() {
+		Random r = new Random(11);
+		double[] special = {0.0, -0.0, -3.0, Double.NaN, Double.MIN_VALUE, Double.POSITIVE_INFINITY};
+		for (int len=0; len<=maxLength; ++len) {
+			DoubleList sums = new DoubleList();
+			DoubleList counts = new DoubleList();
+			for (int i=0; i<len; ++i) {
+				sums.add(r.nextGaussian() * 100);
+				counts.add((i % 3 == 0) ? special[r.nextInt(special.length)] : r.nextInt(50));
+			}
+			for (double divByZeroValue : new double[] {0.0, -1.0, Double.NaN}) {
+				double[] expected = ArrayUtil.toDoubleArray(oldDividedBy(sums, counts, divByZeroValue));
+				double[] actual = ArrayUtil.toDoubleArray(sums.dividedBy(counts, divByZeroValue));
+				assertTrue(Arrays.equals(actual, expected));
+			}
+		}
+	}
+
+	/** The DoubleList bulk operations agree with element by element loops over get(). */
+	@Test
+	public void testDoubleListBulkOperations() {
+		Random r = new Random(13);
+		for (int len=0; len<=maxLength; ++len) {
+			DoubleList a = new DoubleList(1); //grown by add, so the backing arrays are longer than the lists
+			DoubleList b = new DoubleList(1);
+			for (int i=0; i<len; ++i) {
+				a.add(r.nextGaussian());
+				b.add(r.nextGaussian());
+			}
+			DoubleList plus = a.plus(b);
+			DoubleList minus = a.minus(b);
+			DoubleList times = a.times(b);
+			DoubleList prefix = a.prefixSums();
+			assertTrue(plus.size() == len && minus.size() == len && times.size() == len && prefix.size() == len);
+			double running = 0;
+			double min = Double.MAX_VALUE;
+			double max = -Double.MAX_VALUE;
+			for (int i=0; i<len; ++i) {
+				assertTrue(plus.get(i) == a.get(i) + b.get(i));
+				assertTrue(minus.get(i) == a.get(i) - b.get(i));
+				assertTrue(times.get(i) == a.get(i) * b.get(i));
+				running += a.get(i);
+				assertTrue(prefix.get(i) == running);
+				min = Math.min(min, a.get(i));
+				max = Math.max(max, a.get(i));
+			}
+			assertTrue(a.min() == min);
+			assertTrue(a.max() == max);
+			assertTrue(Math.abs(a.sum() - running) <= 1e-12);
+
+			double[] before = ArrayUtil.toDoubleArray(a);
+			a.scale(3.0);
+			assertTrue(a.size() == len);
+			for (int i=0; i<len; ++i) assertTrue(a.get(i) == before[i] * 3.0);
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testDoubleListSizeMismatch() {
+		DoubleList a = new DoubleList();
+		a.add(1.0);
+		a.plus(new DoubleList());
+	}
+
+	/** DoubleList.dividedBy as it was before it ran on the backing arrays. */
+	static private DoubleList oldDividedBy(DoubleList sums, DoubleList counts, double divByZeroValue) {
+		if (sums.size() != counts.size()) throw new IllegalArgumentException("DoubleLists must be same size to normalize one by another.");
+		DoubleList res = new DoubleList(counts.size());
+		for (int i=0; i<counts.size(); ++i) {
+			if (counts.get(i) > 0.0) res.add(sums.get(i) / counts.get(i));
+			else res.add(divByZeroValue);
+		}
+		return res;
+	}
+
+	static private double[] random(Random r, int length) {
+		double[] a = new double[length];
+		for (int i=0; i<length; ++i) a[i] = r.nextGaussian();
+		return a;
+	}
+}
@@ -0,0 +1,48 @@
+package com.ewjordan.util.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.ewjordan.util.DoubleFieldExtractor;
+
+public class DoubleFieldExtractorTest {
+	static public class Base {
+		public double x = 1.5;
+
+		public int twice() {
+			return (int)(2 * x);
+		}
+	}
+
+	static public class Derived extends Base {
+		public float y = 0.25f;
+	}
+
+	/** Members inherited from a superclass report it as their declaring class. */
+	@Test
+	public void testTargetAndDeclaringClass() {
+		DoubleFieldExtractor x = DoubleFieldExtractor.forMember(Derived.class, "x");
+		assertTrue(x.getTargetClass() == Derived.class);
+		assertTrue(x.getDeclaringClass() == Base.class);
+		DoubleFieldExtractor y = DoubleFieldExtractor.forMember(Derived.class, "y");
+		assertTrue(y.getDeclaringClass() == Derived.class);
+		DoubleFieldExtractor twice = DoubleFieldExtractor.forMember(Derived.class, "twice");
+		assertTrue(!twice.isWritable());
+		assertTrue(twice.getDeclaringClass() == Base.class);
+	}
+
+	/** Fields and methods are read as doubles, and fields can be written. */
+	@Test
+	public void testReadAndWrite() {
+		Derived d = new Derived();
+		DoubleFieldExtractor x = DoubleFieldExtractor.forMember(Derived.class, "x");
+		x.set(d, 2.0);
+		assertTrue(d.x == 2.0);
+		assertTrue(DoubleFieldExtractor.forMember(Derived.class, "twice").get(d) == 4.0);
+		double[] ys = DoubleFieldExtractor.extract(Arrays.asList(d, new Derived()), "y");
+		assertTrue(ys.length == 2 && ys[0] == 0.25 && ys[1] == 0.25);
+	}
+}
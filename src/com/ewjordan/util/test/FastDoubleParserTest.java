@@ -0,0 +1,85 @@
+package com.ewjordan.util.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.ewjordan.util.FastDoubleParser;
+
+public class FastDoubleParserTest {
+	/** Bytes random strings are built from, including ones outside ASCII. */
+	static private final byte[] alphabet = {
+		'0', '1', '2', '5', '9', '0', '7', '.', '.', 'e', 'E', '-', '+', ' ', '\t',
+		'N', 'a', 'I', 'n', 'f', 'x', 'd', 'F',
+		(byte)0x80, (byte)0xa0, (byte)0xe9, (byte)0xff
+	};
+
+	/**
+	 * The result must be what Double.parseDouble gives for the same bytes read
+	 * as Latin-1 text: the same bits, or a NumberFormatException from both.
+	 */
+	static private void check(byte[] b) throws UnsupportedEncodingException {
+		String s = new String(b, "ISO-8859-1");
+		Double expected;
+		try {
+			expected = Double.parseDouble(s);
+		} catch (NumberFormatException e) {
+			expected = null;
+		}
+		Double actual;
+		try {
+			actual = FastDoubleParser.parse(b);
+		} catch (NumberFormatException e) {
+			actual = null;
+		}
+		assertTrue("\"" + s + "\": expected " + expected + ", got " + actual,
+				(expected == null) ? actual == null : actual != null
+						&& Double.doubleToLongBits(expected) == Double.doubleToLongBits(actual));
+	}
+
+	static private byte[] ascii(String s) throws UnsupportedEncodingException {
+		return s.getBytes("US-ASCII");
+	}
+
+	/** Random strings of numeric-looking bytes, valid or not. */
+	@Test
+	public void testRandomBytes() throws UnsupportedEncodingException {
+		Random r = new Random(21);
+		for (int i=0; i<200000; ++i) {
+			byte[] b = new byte[1 + r.nextInt(12)];
+			for (int j=0; j<b.length; ++j) b[j] = alphabet[r.nextInt(alphabet.length)];
+			check(b);
+		}
+	}
+
+	/** Bytes 0x80-0xFF are not whitespace, wherever they appear. */
+	@Test
+	public void testNonAsciiIsNotWhitespace() throws UnsupportedEncodingException {
+		for (int c=0x80; c<=0xff; ++c) {
+			check(new byte[] {(byte)c, '1'});
+			check(new byte[] {'1', (byte)c});
+			check(new byte[] {'1', '.', '5', (byte)c});
+		}
+		check(new byte[] {' ', '1', '\t'});
+	}
+
+	/** Printed doubles of all magnitudes parse back exactly. */
+	@Test
+	public void testRoundTrip() throws UnsupportedEncodingException {
+		Random r = new Random(22);
+		for (int i=0; i<100000; ++i) {
+			double d = Double.longBitsToDouble(r.nextLong());
+			check(ascii(Double.toString(d)));
+			double e = (r.nextDouble() - 0.5) * Math.pow(10, r.nextInt(30) - 15);
+			check(ascii(Double.toString(e)));
+			check(ascii(String.format("%.6f", e)));
+		}
+		String[] special = {"0", "-0", "+0.0", "1e22", "1e23", "9007199254740993", "4.9e-324",
+				"1.7976931348623157e308", "NaN", "-Infinity", "0x1p3", "1.5d", ".5", "5.", "-.5e-3",
+				"", " ", "-", "e5", "1e", "1e+", "1..2", "00012.5000"};
+		for (String s : special) check(ascii(s));
+	}
+}
@@ -0,0 +1,207 @@
+package com.ewjordan.util.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ewjordan.util.DoubleHistogram;
+import com.ewjordan.util.HistogramWriter;
+
+public class HistogramWriterTest {
+	private DoubleHistogram histogram;
+
+	@Before
+	public void setUp() {
+		Random r = new Random(17);
+		double[] vals = new double[5000];
+		for (int i=0; i<vals.length; ++i) vals[i] = r.nextGaussian();
+		histogram = new DoubleHistogram(vals, 37, -3.0, 3.0);
+		histogram.setTitle("Gaussian");
+	}
+
+	/** The streamed text output is character for character what the old string building produced. */
+	@Test
+	public void testTextMatchesOldImplementation() {
+		assertTrue(histogram.toString().equals(oldToString(histogram, 80, "%3.2f")));
+		assertTrue(histogram.toString(13, "%.4e").equals(oldToString(histogram, 13, "%.4e")));
+		assertTrue(histogram.toExcelTSV().equals(oldToExcelTSV(histogram)));
+		assertTrue(histogram.toExcelTSVRow().equals(oldToExcelTSVRow(histogram)));
+	}
+
+	@Test
+	public void testEmptyHistogramMatchesOldImplementation() {
+		DoubleHistogram empty = new DoubleHistogram(new double[0], 5, 0.0, 1.0);
+		assertTrue(empty.toString().equals(oldToString(empty, 80, "%3.2f")));
+		assertTrue(empty.toExcelTSV().equals(oldToExcelTSV(empty)));
+		assertTrue(empty.toExcelTSVRow().equals(oldToExcelTSVRow(empty)));
+	}
+
+	@Test
+	public void testBinaryRoundTrip() throws IOException {
+		DoubleHistogram read = HistogramWriter.readBinary(Channels.newChannel(new ByteArrayInputStream(binary(histogram))));
+		assertSame(histogram, read);
+	}
+
+	/** Reading from a file takes the FileChannel path, which checks lengths against the file size. */
+	@Test
+	public void testBinaryRoundTripThroughFile() throws IOException {
+		File file = File.createTempFile("histogram", ".bin");
+		try {
+			writeFile(file, binary(histogram));
+			FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+			try {
+				assertSame(histogram, HistogramWriter.readBinary(channel));
+			} finally {
+				channel.close();
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(expected=IOException.class)
+	public void testNegativeTitleLength() throws IOException {
+		byte[] bytes = binary(histogram);
+		ByteBuffer.wrap(bytes).putInt(24, -1);
+		HistogramWriter.readBinary(Channels.newChannel(new ByteArrayInputStream(bytes)));
+	}
+
+	/** A huge title length on a stream that can't report its size runs out of data, not memory. */
+	@Test(expected=IOException.class)
+	public void testHugeTitleLength() throws IOException {
+		byte[] bytes = binary(histogram);
+		ByteBuffer.wrap(bytes).putInt(24, Integer.MAX_VALUE);
+		HistogramWriter.readBinary(Channels.newChannel(new ByteArrayInputStream(bytes)));
+	}
+
+	@Test(expected=IOException.class)
+	public void testNegativeBucketCount() throws IOException {
+		byte[] bytes = binary(histogram);
+		ByteBuffer.wrap(bytes).putInt(28 + "Gaussian".length(), -5);
+		HistogramWriter.readBinary(Channels.newChannel(new ByteArrayInputStream(bytes)));
+	}
+
+	@Test(expected=IOException.class)
+	public void testHugeBucketCount() throws IOException {
+		byte[] bytes = binary(histogram);
+		ByteBuffer.wrap(bytes).putInt(28 + "Gaussian".length(), Integer.MAX_VALUE);
+		HistogramWriter.readBinary(Channels.newChannel(new ByteArrayInputStream(bytes)));
+	}
+
+	@Test
+	public void testLengthsCheckedAgainstFileSize() throws IOException {
+		byte[] bytes = binary(histogram);
+		ByteBuffer.wrap(bytes).putInt(24, 1 << 30);
+		File file = File.createTempFile("histogram", ".bin");
+		try {
+			writeFile(file, bytes);
+			FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+			try {
+				HistogramWriter.readBinary(channel);
+				fail("Expected IOException");
+			} catch (IOException e) {
+				assertTrue(e.getMessage().contains("title length"));
+			} finally {
+				channel.close();
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(expected=IOException.class)
+	public void testForeignStream() throws IOException {
+		byte[] bytes = "Min\tMax\tCount\n0.0\t1.0\t5\n".getBytes("UTF-8");
+		HistogramWriter.readBinary(Channels.newChannel(new ByteArrayInputStream(bytes)));
+	}
+
+	static private void assertSame(DoubleHistogram expected, DoubleHistogram actual) {
+		assertTrue(expected.getTitle().equals(actual.getTitle()));
+		assertTrue(expected.getMinValue() == actual.getMinValue());
+		assertTrue(expected.getMaxValue() == actual.getMaxValue());
+		assertTrue(Arrays.equals(expected.getBuckets(), actual.getBuckets()));
+		assertTrue(expected.getNumberOfObservations() == actual.getNumberOfObservations());
+		assertTrue(expected.toString().equals(actual.toString()));
+	}
+
+	static private byte[] binary(DoubleHistogram h) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		HistogramWriter.writeBinary(h, Channels.newChannel(bytes));
+		return bytes.toByteArray();
+	}
+
+	static private void writeFile(File file, byte[] bytes) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+
+	/*
+	 * The DoubleHistogram text methods as they were before they were moved
+	 * onto HistogramWriter, kept here as the reference output.
+	 */
+
+	static private String oldToExcelTSV(DoubleHistogram h) {
+		int[] buckets = h.getBuckets();
+		String res = "Min\tMax\tCount\n";
+		for (int i=0; i<buckets.length; ++i) {
+			res += h.getBucketMin(i)+"\t"+h.getBucketMin(i+1)+"\t"+buckets[i]+"\n";
+		}
+		return res;
+	}
+
+	static private String oldToExcelTSVRow(DoubleHistogram h) {
+		int[] buckets = h.getBuckets();
+		String res = "";
+		for (int i=0; i<buckets.length; ++i) {
+			if (i != 0) res += "\t";
+			res += buckets[i];
+		}
+		return res;
+	}
+
+	static private String oldToString(DoubleHistogram h, int charsWidth, String numberFormatString) {
+		int[] buckets = h.getBuckets();
+		StringBuilder sb = new StringBuilder();
+		sb.append("\n");
+		for (int i=0; i<charsWidth; ++i) sb.append("-");
+		sb.append("\n");
+		sb.append(h.getTitle()+" - "+h.getNumberOfObservations()+" members.\n");
+		for (int i=0; i<charsWidth; ++i) sb.append("-");
+		sb.append("\n");
+		double scaleFactor = charsWidth * 1.0f / h.getMaxCount();
+		for (int i = 0; i < buckets.length; ++i) {
+			String s = String.format(numberFormatString, h.getBucketMin(i));
+			s += "\n\t|";
+			int ticks = (int) (buckets[i] * scaleFactor);
+			for (int j = 0; j < ticks; ++j) s += "#";
+			s += " ("+buckets[i]+")";
+			sb.append(s + "\n");
+		}
+		sb.append(String.format("%.2f", h.getBucketMin(buckets.length)) + "\n");
+		sb.append("\n");
+		for (int i=0; i<charsWidth; ++i) sb.append("-");
+		sb.append("\n");
+		sb.append("Total: "+h.getNumberOfObservations()+" observations.\n");
+		for (int i=0; i<charsWidth; ++i) sb.append("-");
+		sb.append("\n");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,99 @@
+package com.ewjordan.util.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ewjordan.util.DoubleList;
+import com.ewjordan.util.NumericCSVReader;
+import com.ewjordan.util.NumericCSVWriter;
+
+public class NumericCSVReaderTest {
+	/** Enough rows for several chunks of at least {@link NumericCSVReader#minChunkBytes}. */
+	static private final int rows = 600000;
+	static private final int badEvery = 100003;
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("numeric", ".csv");
+		NumericCSVWriter out = new NumericCSVWriter(file, 6, false);
+		out.writeHeader(new String[] {"i", "quarter", "eighth"});
+		for (int i=0; i<rows; ++i) {
+			out.writeRow(i, i * 0.25, -i / 8.0);
+			if (i % badEvery == 0) {
+				out.writeLine("not,a,number");
+				out.writeLine("");
+				out.writeLine("1,2"); //wrong width
+			}
+		}
+		out.close();
+		assertTrue(file.length() > 3 * NumericCSVReader.minChunkBytes);
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	static private class SkipRecorder implements NumericCSVReader.Listener {
+		final List<Long> skipped = new ArrayList<Long>();
+
+		public void progress(long bytesRead, long totalBytes, long rows) { }
+
+		public void lineSkipped(long lineNumber) {
+			skipped.add(lineNumber);
+		}
+	}
+
+	static private void checkColumns(List<DoubleList> columns) {
+		assertTrue(columns.size() == 3);
+		for (DoubleList column : columns) assertTrue(column.size() == rows);
+		for (int i=0; i<rows; ++i) {
+			assertTrue(columns.get(0).get(i) == i);
+			assertTrue(columns.get(1).get(i) == i * 0.25);
+			assertTrue(columns.get(2).get(i) == -i / 8.0);
+		}
+	}
+
+	/** Reading in parallel chunks gives the same columns and skipped lines as reading serially. */
+	@Test
+	public void testParallelMatchesSerial() throws IOException {
+		NumericCSVReader serial = new NumericCSVReader();
+		SkipRecorder serialSkips = new SkipRecorder();
+		serial.setListener(serialSkips);
+		checkColumns(serial.readColumns(file));
+
+		NumericCSVReader parallel = new NumericCSVReader();
+		parallel.setThreads(4);
+		SkipRecorder parallelSkips = new SkipRecorder();
+		parallel.setListener(parallelSkips);
+		checkColumns(parallel.readColumnsParallel(file));
+
+		assertTrue(!serialSkips.skipped.isEmpty());
+		assertTrue(serialSkips.skipped.equals(parallelSkips.skipped));
+	}
+
+	/** Rows streamed to a handler arrive in order. */
+	@Test
+	public void testReadRows() throws IOException {
+		final long[] next = {0};
+		long count = new NumericCSVReader().readRows(file, new NumericCSVReader.RowHandler() {
+			public void row(double[] values, int count) {
+				if (count == 3) {
+					assertTrue(values[0] == next[0]++);
+				}
+			}
+		});
+		assertTrue(next[0] == rows);
+		assertTrue(count >= rows);
+	}
+}
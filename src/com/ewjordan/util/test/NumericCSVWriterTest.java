@@ -0,0 +1,145 @@
+package com.ewjordan.util.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ewjordan.util.DoubleList;
+import com.ewjordan.util.NumericCSVWriter;
+
+public class NumericCSVWriterTest {
+	static private final String newline = System.getProperty("line.separator");
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("writer", ".csv");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	static private String read(InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buf = new byte[8192];
+			for (int n; (n = in.read(buf)) > 0; ) bytes.write(buf, 0, n);
+			return bytes.toString("UTF-8");
+		} finally {
+			in.close();
+		}
+	}
+
+	/** Every value is written exactly as String.format would, at every precision. */
+	@Test
+	public void testMatchesStringFormat() throws IOException {
+		Random r = new Random(23);
+		double[] values = new double[20000];
+		for (int i=0; i<values.length; ++i) {
+			switch (i % 5) {
+			case 0: values[i] = (r.nextDouble() - 0.5) * Math.pow(10, r.nextInt(24) - 8); break;
+			case 1: values[i] = r.nextInt(20000) / 8.0 + 0.5 * Math.pow(10, -r.nextInt(8)); break; //half-way cases
+			case 2: values[i] = Double.longBitsToDouble(r.nextLong()); break;
+			case 3: values[i] = r.nextInt(1000) - 500; break;
+			default: values[i] = r.nextGaussian() * 1e-3; break;
+			}
+		}
+		double[] special = {0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.MAX_VALUE, -Double.MAX_VALUE, Double.MIN_VALUE, 0.5, 1.5, 2.5, -0.5, 0.125, 9.9999999995, 1e15, 1e16};
+		for (int places : new int[] {0, 1, 3, 6, 9, 12, 18}) {
+			NumericCSVWriter out = new NumericCSVWriter(file, places, false);
+			StringBuilder expected = new StringBuilder();
+			for (double[] vs : new double[][] {values, special}) {
+				for (double v : vs) {
+					out.writeRow(v);
+					expected.append(Double.isNaN(v) || Double.isInfinite(v) ? Double.toString(v)
+							: String.format(Locale.US, "%." + places + "f", v)).append(newline);
+				}
+			}
+			out.close();
+			String actual = read(new FileInputStream(file));
+			if (!actual.equals(expected.toString())) {
+				String[] a = actual.split(newline);
+				String[] e = expected.toString().split(newline);
+				for (int i=0; i<Math.min(a.length, e.length); ++i) {
+					assertTrue(places + " places: expected " + e[i] + ", got " + a[i], a[i].equals(e[i]));
+				}
+				assertTrue(a.length == e.length);
+			}
+		}
+	}
+
+	/** Columns in any of the supported forms are written as the same rows, through gzip too. */
+	@Test
+	public void testColumnsAndGzip() throws IOException {
+		double[][] columns = {{1, 2, 3}, {0.25, -0.5, 1e6}};
+		List<DoubleList> lists = new ArrayList<DoubleList>();
+		List<List<Double>> boxed = new ArrayList<List<Double>>();
+		for (double[] column : columns) {
+			DoubleList list = new DoubleList(100); //spare capacity
+			list.add(column);
+			lists.add(list);
+			List<Double> b = new ArrayList<Double>();
+			for (double d : column) b.add(d);
+			boxed.add(b);
+		}
+		String expected = "a,b" + newline + "1.00,0.25" + newline + "2.00,-0.50" + newline + "3.00,1000000.00" + newline;
+
+		NumericCSVWriter out = new NumericCSVWriter(file, 2, false);
+		out.writeHeader(new String[] {"a", "b"});
+		out.writeColumns(columns);
+		out.close();
+		assertTrue(read(new FileInputStream(file)).equals(expected));
+
+		out = new NumericCSVWriter(file, 2, false);
+		out.writeHeader(new String[] {"a", "b"});
+		out.writeDoubleListColumns(lists);
+		out.close();
+		assertTrue(read(new FileInputStream(file)).equals(expected));
+		assertTrue(Arrays.equals(lists.get(1).getBackingArray(), columns[1]));
+
+		out = new NumericCSVWriter(file, 2, true);
+		out.writeHeader(new String[] {"a", "b"});
+		out.writeBoxedColumns(boxed);
+		out.close();
+		assertTrue(read(new GZIPInputStream(new FileInputStream(file))).equals(expected));
+	}
+
+	/** Appending adds to the end of an existing file; more than a buffer's worth is written intact. */
+	@Test
+	public void testAppendAndLargeOutput() throws IOException {
+		NumericCSVWriter out = new NumericCSVWriter(file, 0, false);
+		out.writeLine("first");
+		out.close();
+		out = new NumericCSVWriter(file, 0, false, true);
+		StringBuilder expected = new StringBuilder("first" + newline);
+		for (int i=0; i<100000; ++i) {
+			out.writeRow(i, -i);
+			expected.append(i).append(',').append(-i).append(newline);
+		}
+		out.close();
+		assertTrue(read(new FileInputStream(file)).equals(expected.toString()));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testDecimalPlacesChecked() throws IOException {
+		new NumericCSVWriter(file, 19, false);
+	}
+}
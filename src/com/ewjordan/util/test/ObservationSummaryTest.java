@@ -0,0 +1,244 @@
+package com.ewjordan.util.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.apache.commons.math.stat.descriptive.DescriptiveStatistics;
+import org.junit.Test;
+
+import com.ewjordan.util.ConcurrentObservationSummary;
+import com.ewjordan.util.ObservationSummary;
+
+public class ObservationSummaryTest {
+	static private boolean close(double a, double b, double relative) {
+		return Math.abs(a - b) <= relative * Math.max(1.0, Math.max(Math.abs(a), Math.abs(b)));
+	}
+
+	/** Whether two summaries agree on every statistic. */
+	static private boolean same(ObservationSummary a, ObservationSummary b) {
+		return a.getCount() == b.getCount()
+				&& a.getMin() == b.getMin() && a.getMax() == b.getMax()
+				&& close(a.getArithmeticMean(), b.getArithmeticMean(), 1e-12)
+				&& close(a.getGeometricMean(), b.getGeometricMean(), 1e-12)
+				&& close(a.getVariance(), b.getVariance(), 1e-10)
+				&& close(a.getSkewness(), b.getSkewness(), 1e-9)
+				&& close(a.getKurtosis(), b.getKurtosis(), 1e-9);
+	}
+
+	/** Skewed positive data, so every moment is far from zero. */
+	static private double[] data(long seed, int n) {
+		Random random = new Random(seed);
+		double[] data = new double[n];
+		for (int i=0; i<n; ++i) data[i] = Math.exp(random.nextGaussian()) + 0.1;
+		return data;
+	}
+
+	static private ObservationSummary summary(double[] data, int from, int to) {
+		ObservationSummary summary = new ObservationSummary();
+		for (int i=from; i<to; ++i) summary.add(data[i]);
+		return summary;
+	}
+
+	/** Summaries of the parts of a dataset merge into the summary of the whole, wherever it is split. */
+	@Test
+	public void testMergeMatchesSinglePass() {
+		double[] data = data(11, 1000);
+		ObservationSummary whole = summary(data, 0, data.length);
+		for (int split : new int[] {1, 2, 3, 4, 500, 997, 999}) {
+			ObservationSummary merged = summary(data, 0, split);
+			merged.merge(summary(data, split, data.length));
+			assertTrue(same(merged, whole));
+		}
+		// many uneven parts, merged one after another
+		ObservationSummary merged = new ObservationSummary();
+		int from = 0;
+		for (int size = 1; from < data.length; size *= 3) {
+			int to = Math.min(data.length, from + size);
+			merged.merge(summary(data, from, to));
+			from = to;
+		}
+		assertTrue(same(merged, whole));
+	}
+
+	/** Merging leaves the other summary alone. */
+	@Test
+	public void testMergeDoesNotModifyOther() {
+		double[] data = data(12, 100);
+		ObservationSummary other = summary(data, 50, 100);
+		ObservationSummary merged = summary(data, 0, 50);
+		merged.merge(other);
+		assertTrue(same(other, summary(data, 50, 100)));
+	}
+
+	@Test
+	public void testMergeEmpty() {
+		double[] data = data(13, 100);
+		ObservationSummary full = summary(data, 0, data.length);
+
+		ObservationSummary intoFull = summary(data, 0, data.length);
+		intoFull.merge(new ObservationSummary());
+		assertTrue(same(intoFull, full));
+
+		ObservationSummary intoEmpty = new ObservationSummary();
+		intoEmpty.merge(full);
+		assertTrue(same(intoEmpty, full));
+
+		ObservationSummary empty = new ObservationSummary();
+		empty.merge(new ObservationSummary());
+		assertTrue(empty.getCount() == 0);
+		assertTrue(empty.getMin() == Double.MAX_VALUE && empty.getMax() == -Double.MAX_VALUE);
+		empty.add(2.0);
+		assertTrue(empty.getArithmeticMean() == 2.0 && empty.getMin() == 2.0 && empty.getMax() == 2.0);
+	}
+
+	/** Several threads adding at once end up with the same summary as adding serially. */
+	@Test
+	public void testConcurrentMatchesSerial() throws InterruptedException {
+		final double[] data = data(14, 400000);
+		final ConcurrentObservationSummary concurrent = new ConcurrentObservationSummary(4);
+		final int threads = 6;
+		Thread[] workers = new Thread[threads];
+		for (int t=0; t<threads; ++t) {
+			final int offset = t;
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i=offset; i<data.length; i+=threads) {
+						if (i % 1000 == 0) {
+							concurrent.add(data[i], data[i+1]); //varargs path; i+1 is skipped below
+						} else if (i % 1000 != 1) {
+							concurrent.add(data[i]);
+						}
+					}
+				}
+			};
+		}
+		for (Thread worker : workers) worker.start();
+		for (Thread worker : workers) worker.join();
+		assertTrue(same(concurrent.snapshot(), summary(data, 0, data.length)));
+	}
+
+	/** A snapshot taken while threads are adding is a consistent summary of part of the data. */
+	@Test
+	public void testSnapshotWhileAdding() throws InterruptedException {
+		final ConcurrentObservationSummary concurrent = new ConcurrentObservationSummary(4);
+		Thread[] workers = new Thread[4];
+		for (int t=0; t<workers.length; ++t) {
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i=0; i<200000; ++i) concurrent.add(i % 2 == 0 ? 1.0 : 3.0, 2.0);
+				}
+			};
+			workers[t].start();
+		}
+		for (int i=0; i<20; ++i) {
+			ObservationSummary snapshot = concurrent.snapshot();
+			// every stripe only ever holds whole (1 or 3, 2) pairs
+			assertTrue(snapshot.getCount() % 2 == 0);
+			if (snapshot.getCount() > 0) {
+				assertTrue(close(snapshot.getArithmeticMean(), 2.0, 0.5));
+				assertTrue(snapshot.getMin() >= 1.0 && snapshot.getMax() <= 3.0);
+			}
+		}
+		for (Thread worker : workers) worker.join();
+		ObservationSummary done = concurrent.snapshot();
+		assertTrue(done.getCount() == 4 * 200000 * 2);
+		assertTrue(close(done.getArithmeticMean(), 2.0, 1e-12));
+		concurrent.reset();
+		assertTrue(concurrent.snapshot().getCount() == 0);
+	}
+
+	/** A summary accumulated elsewhere merges into the concurrent one. */
+	@Test
+	public void testConcurrentMerge() {
+		double[] data = data(15, 1000);
+		ConcurrentObservationSummary concurrent = new ConcurrentObservationSummary();
+		for (int i=0; i<600; ++i) concurrent.add(data[i]);
+		concurrent.merge(summary(data, 600, 1000));
+		assertTrue(same(concurrent.snapshot(), summary(data, 0, 1000)));
+	}
+
+	static private DescriptiveStatistics reference(double[] data) {
+		DescriptiveStatistics stats = new DescriptiveStatistics();
+		for (double d : data) stats.addValue(d);
+		return stats;
+	}
+
+	/** Whether the summary agrees with commons-math on the same data. */
+	static private boolean matches(ObservationSummary summary, DescriptiveStatistics stats, double relative) {
+		return summary.getCount() == stats.getN()
+				&& summary.getMin() == stats.getMin() && summary.getMax() == stats.getMax()
+				&& close(summary.getArithmeticMean(), stats.getMean(), relative)
+				&& close(summary.getGeometricMean(), stats.getGeometricMean(), relative)
+				&& close(summary.getVariance(), stats.getVariance(), relative)
+				&& close(summary.getStandardDeviation(), stats.getStandardDeviation(), relative)
+				&& close(summary.getSkewness(), stats.getSkewness(), relative)
+				&& close(summary.getKurtosis(), stats.getKurtosis(), relative);
+	}
+
+	/** The small dataset of the main() demo. */
+	@Test
+	public void testMomentsOfSmallData() {
+		double[] data = {1,2,3,4,5,6,7,8,9,8,7,6,5,4,3,2,1};
+		ObservationSummary summary = new ObservationSummary();
+		summary.add(data);
+		assertTrue(matches(summary, reference(data), 1e-12));
+		assertTrue(close(summary.getArithmeticMean(), 81.0 / 17, 1e-14));
+	}
+
+	@Test
+	public void testMomentsOfSkewedData() {
+		double[] data = data(21, 100000);
+		assertTrue(matches(summary(data, 0, data.length), reference(data), 1e-9));
+	}
+
+	/**
+	 * Data with a large offset and a small spread: the old formula, sum of
+	 * squares minus the squared sum over n, cancels away most of the digits
+	 * of the variance, but the running deviations keep them.
+	 */
+	@Test
+	public void testMomentsWithLargeOffset() {
+		Random random = new Random(22);
+		double[] data = new double[100000];
+		for (int i=0; i<data.length; ++i) data[i] = 1e9 + random.nextDouble();
+		ObservationSummary summary = summary(data, 0, data.length);
+		DescriptiveStatistics stats = reference(data);
+		assertTrue(close(summary.getVariance(), stats.getVariance(), 1e-6));
+		assertTrue(Math.abs(summary.getVariance() - 1.0/12) < 0.01);
+		assertTrue(Math.abs(summary.getSkewness() - stats.getSkewness()) < 1e-3);
+		assertTrue(Math.abs(summary.getKurtosis() - stats.getKurtosis()) < 1e-3);
+		assertTrue(close(summary.getArithmeticMean(), stats.getMean(), 1e-13));
+
+		double sum = 0;
+		double sumOfSquares = 0;
+		for (double d : data) {
+			sum += d;
+			sumOfSquares += d * d;
+		}
+		double naive = (sumOfSquares - sum * sum / data.length) / (data.length - 1);
+		assertTrue(!close(naive, stats.getVariance(), 0.1));
+	}
+
+	/** The geometric mean is kept as a sum of logarithms, so a long product doesn't overflow. */
+	@Test
+	public void testGeometricMeanDoesNotOverflow() {
+		double[] data = new double[10000];
+		for (int i=0; i<data.length; ++i) data[i] = (i % 2 == 0) ? 1e100 : 1e-50;
+		ObservationSummary summary = summary(data, 0, data.length);
+		assertTrue(close(summary.getGeometricMean(), 1e25, 1e-9));
+		assertTrue(close(summary.getGeometricMean(), reference(data).getGeometricMean(), 1e-9));
+	}
+
+	/** Constant data has no spread, and skewness and kurtosis are reported as 0 rather than NaN. */
+	@Test
+	public void testConstantData() {
+		ObservationSummary summary = new ObservationSummary();
+		for (int i=0; i<10; ++i) summary.add(5.0);
+		assertTrue(summary.getVariance() == 0.0);
+		assertTrue(summary.getSkewness() == 0.0 && summary.getKurtosis() == 0.0);
+		assertTrue(summary.getArithmeticMean() == 5.0);
+	}
+}
@@ -0,0 +1,107 @@
+package com.ewjordan.util.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ewjordan.util.QuantileSketch;
+
+public class QuantileSketchTest {
+	static private final int n = 100000;
+	static private final int k = 200;
+	/** Twice the nominal 1.7/k, so the seeded runs below aren't borderline. */
+	static private final double tolerance = 2 * 1.7 / k;
+
+	/** The values 0 ... n-1 in random order, so a value's true rank is value/n. */
+	private double[] values;
+
+	@Before
+	public void setUp() {
+		values = new double[n];
+		for (int i=0; i<n; ++i) values[i] = i;
+		Random r = new Random(1234);
+		for (int i=n-1; i>0; --i) {
+			int j = r.nextInt(i+1);
+			double tmp = values[i];
+			values[i] = values[j];
+			values[j] = tmp;
+		}
+	}
+
+	static private void checkError(QuantileSketch sketch) {
+		for (int i=1; i<100; ++i) {
+			double q = i / 100.0;
+			double rank = sketch.getQuantile(q) / n;
+			assertTrue("quantile " + q + " has rank " + rank, Math.abs(rank - q) <= tolerance);
+			assertTrue("rank of " + q*n + " is " + sketch.getRank(q*n), Math.abs(sketch.getRank(q*n) - q) <= tolerance);
+		}
+	}
+
+	/** Quantiles and ranks are within the stated error, in bounded memory. */
+	@Test
+	public void testErrorBound() {
+		QuantileSketch sketch = new QuantileSketch(k);
+		sketch.setSeed(1);
+		for (double v : values) sketch.add(v);
+		assertTrue(sketch.getCount() == n);
+		assertTrue(sketch.getMin() == 0 && sketch.getMax() == n-1);
+		assertTrue(sketch.getRetainedItems() < 4*k);
+		assertTrue(sketch.getQuantile(0) == 0 && sketch.getQuantile(1) == n-1);
+		checkError(sketch);
+	}
+
+	/** Sketches of parts of the data merge into a sketch of the whole. */
+	@Test
+	public void testMerge() {
+		QuantileSketch merged = new QuantileSketch(k);
+		merged.setSeed(2);
+		int parts = 8;
+		for (int p=0; p<parts; ++p) {
+			QuantileSketch part = new QuantileSketch(k);
+			part.setSeed(100 + p);
+			for (int i=p*n/parts; i<(p+1)*n/parts; ++i) part.add(values[i]);
+			long before = part.getCount();
+			merged.merge(part);
+			assertTrue(part.getCount() == before);
+		}
+		assertTrue(merged.getCount() == n);
+		assertTrue(merged.getMin() == 0 && merged.getMax() == n-1);
+		assertTrue(merged.getRetainedItems() < 4*k);
+		checkError(merged);
+	}
+
+	/** A sketch read back from its binary form answers queries identically. */
+	@Test
+	public void testWriteRead() throws Exception {
+		QuantileSketch sketch = new QuantileSketch(k);
+		sketch.setSeed(3);
+		for (double v : values) sketch.add(v);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		sketch.write(new DataOutputStream(bytes));
+		QuantileSketch read = QuantileSketch.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertTrue(read.getCount() == sketch.getCount());
+		assertTrue(read.getRetainedItems() == sketch.getRetainedItems());
+		for (int i=0; i<=100; ++i) {
+			assertTrue(read.getQuantile(i / 100.0) == sketch.getQuantile(i / 100.0));
+		}
+	}
+
+	/** An empty sketch answers 0, and merging it changes nothing. */
+	@Test
+	public void testEmpty() {
+		QuantileSketch sketch = new QuantileSketch(k);
+		assertTrue(sketch.getQuantile(0.5) == 0.0);
+		assertTrue(sketch.getRank(1.0) == 0.0);
+		QuantileSketch other = new QuantileSketch(k);
+		other.add(5);
+		other.merge(sketch);
+		assertTrue(other.getCount() == 1 && other.getQuantile(0.5) == 5);
+	}
+}
@@ -0,0 +1,154 @@
+package com.ewjordan.util.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ewjordan.util.AsyncAppender;
+import com.ewjordan.util.DoubleList;
+import com.ewjordan.util.NumericCSVReader;
+import com.ewjordan.util.SimpleIO;
+
+public class SimpleIOTest {
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("simpleio", ".csv");
+	}
+
+	@After
+	public void tearDown() {
+		SimpleIO.closeAppenders();
+		SimpleIO.MAX_OPEN_APPENDERS = 16;
+		file.delete();
+	}
+
+	private void write(String contents) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(contents.getBytes("US-ASCII"));
+		out.close();
+	}
+
+	static private List<List<Double>> rows(double[]... rows) {
+		List<List<Double>> res = new ArrayList<List<Double>>();
+		for (double[] row : rows) {
+			List<Double> list = new ArrayList<Double>();
+			for (double d : row) list.add(d);
+			res.add(list);
+		}
+		return res;
+	}
+
+	/** A delimiter at the end of each line doesn't add an empty field, or make the row unparseable. */
+	@Test
+	public void testTrailingDelimiter() throws IOException {
+		write("a,b,c\n1,2,3,\n4,5,6,\n");
+		String path = file.getAbsolutePath();
+		assertTrue(SimpleIO.doubleRowListFromFile(path).equals(rows(new double[] {1, 2, 3}, new double[] {4, 5, 6})));
+		assertTrue(SimpleIO.doubleColumnListFromFile(path).equals(rows(new double[] {1, 4}, new double[] {2, 5}, new double[] {3, 6})));
+		List<DoubleList> columns = SimpleIO.doubleListColumnListFromFile(path, 2);
+		assertTrue(columns.size() == 3 && columns.get(2).size() == 2 && columns.get(2).get(1) == 6.0);
+	}
+
+	/** Empty fields inside a line still make it unparseable. */
+	@Test
+	public void testEmptyFieldIsSkipped() throws IOException {
+		write("1,,3\n4,5,6\n,\n");
+		assertTrue(SimpleIO.doubleRowListFromFile(file.getAbsolutePath()).equals(rows(new double[] {4, 5, 6})));
+	}
+
+	/** "\n", "\r\n" and lone "\r" all end lines, and line numbers count each break once, whatever the buffer size. */
+	@Test
+	public void testLineBreaks() throws IOException {
+		write("not_a_number_xx\r\n1\r2\nx\r\n3\r4"); //the first "\r\n" straddles the small buffer
+		for (int bufferSize : new int[] {1 << 20, 16}) {
+			NumericCSVReader reader = new NumericCSVReader();
+			reader.setBufferSize(bufferSize);
+			final List<Long> skipped = new ArrayList<Long>();
+			reader.setListener(new NumericCSVReader.Listener() {
+				public void progress(long bytesRead, long totalBytes, long rows) { }
+
+				public void lineSkipped(long lineNumber) {
+					skipped.add(lineNumber);
+				}
+			});
+			final List<Double> values = new ArrayList<Double>();
+			reader.readRows(file, new NumericCSVReader.RowHandler() {
+				public void row(double[] row, int count) {
+					values.add(row[0]);
+				}
+			});
+			assertTrue(values.equals(Arrays.asList(1.0, 2.0, 3.0, 4.0)));
+			assertTrue(skipped.equals(Arrays.asList(1L, 4L)));
+		}
+	}
+
+	/** Lines appended through SimpleIO are all there when the file is read straight back. */
+	@Test
+	public void testAppendThenRead() {
+		String path = file.getAbsolutePath();
+		for (int i=1; i<=5; ++i) {
+			assertTrue(SimpleIO.appendToFile(Integer.toString(i), path));
+		}
+		double[] read = SimpleIO.doublesFromFile(path);
+		assertTrue(Arrays.equals(read, new double[] {1, 2, 3, 4, 5}));
+		SimpleIO.appendToFile(Arrays.asList("6", "7"), path);
+		assertTrue(SimpleIO.doublesFromFile(path).length == 7);
+	}
+
+	/** Saving over an appended file replaces everything queued before it, and appending afterwards reopens it. */
+	@Test
+	public void testAppendThenSave() {
+		String path = file.getAbsolutePath();
+		for (int i=0; i<100; ++i) {
+			SimpleIO.appendToFile("-1", path);
+		}
+		SimpleIO.saveToFile(new double[] {1, 2}, path);
+		assertTrue(Arrays.equals(SimpleIO.doublesFromFile(path), new double[] {1, 2}));
+		SimpleIO.appendToFile("3", path);
+		assertTrue(Arrays.equals(SimpleIO.doublesFromFile(path), new double[] {1, 2, 3}));
+	}
+
+	/** Appending to many files keeps only a few open, without losing or reordering lines. */
+	@Test
+	public void testAppendersAreBounded() throws IOException {
+		SimpleIO.MAX_OPEN_APPENDERS = 2;
+		List<File> files = new ArrayList<File>();
+		try {
+			for (int i=0; i<5; ++i) files.add(File.createTempFile("simpleio", ".csv"));
+			for (int round=0; round<3; ++round) {
+				for (int i=0; i<files.size(); ++i) {
+					assertTrue(SimpleIO.appendToFile(Integer.toString(round), files.get(i).getAbsolutePath()));
+				}
+			}
+			//only the writer threads of the last two files are left
+			int writers = 0;
+			for (Thread thread : Thread.getAllStackTraces().keySet()) {
+				for (File f : files) {
+					if (thread.isAlive() && thread.getName().equals("AsyncAppender " + f.getName())) ++writers;
+				}
+			}
+			assertTrue(writers <= 2);
+			AsyncAppender first = SimpleIO.appender(files.get(0).getAbsolutePath());
+			SimpleIO.appender(files.get(1).getAbsolutePath());
+			SimpleIO.appender(files.get(2).getAbsolutePath());
+			assertTrue(!first.isOpen());
+			for (File f : files) {
+				assertTrue(Arrays.equals(SimpleIO.doublesFromFile(f.getAbsolutePath()), new double[] {0, 1, 2}));
+			}
+		} finally {
+			SimpleIO.closeAppenders();
+			for (File f : files) f.delete();
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package com.ewjordan.util.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.ewjordan.util.HistogramLayout;
+import com.ewjordan.util.StreamingHistogram;
+
+public class StreamingHistogramTest {
+
+	/** Linear buckets are equal width, and out of range values go to the end buckets. */
+	@Test
+	public void testLinearLayout() {
+		HistogramLayout layout = HistogramLayout.linear(-1.0, 1.0, 20);
+		assertTrue(layout.getBucketCount() == 20);
+		for (int b=0; b<20; ++b) {
+			assertTrue(Math.abs(layout.getBucketMax(b) - layout.getBucketMin(b) - 0.1) < 1e-12);
+			double mid = 0.5 * (layout.getBucketMin(b) + layout.getBucketMax(b));
+			assertTrue(layout.bucketOf(mid) == b);
+		}
+		assertTrue(layout.getBucketMin(0) == -1.0 && layout.getBucketMax(19) == 1.0);
+		assertTrue(layout.bucketOf(-5.0) == 0);
+		assertTrue(layout.bucketOf(1.0) == 19);
+		assertTrue(layout.bucketOf(Double.POSITIVE_INFINITY) == 19);
+		assertTrue(layout.equals(HistogramLayout.linear(-1.0, 1.0, 20)));
+		assertTrue(layout.hashCode() == HistogramLayout.linear(-1.0, 1.0, 20).hashCode());
+		assertTrue(!layout.equals(HistogramLayout.linear(-1.0, 1.0, 10)));
+	}
+
+	/** Every value lands in a bucket that contains it, no wider than the stated precision. */
+	@Test
+	public void testLogarithmicLayout() {
+		int bits = 7;
+		HistogramLayout layout = HistogramLayout.logarithmic(1e-3, 1e6, bits);
+		for (int b=1; b<layout.getBucketCount()-1; ++b) {
+			double lo = layout.getBucketMin(b);
+			double hi = layout.getBucketMax(b);
+			assertTrue(hi > lo && (hi - lo) / lo <= Math.pow(2, -bits) * (1 + 1e-12));
+			assertTrue(layout.getBucketMin(b+1) == hi);
+		}
+		Random r = new Random(5);
+		for (int i=0; i<100000; ++i) {
+			double v = Math.pow(10, -3 + 9 * r.nextDouble());
+			int b = layout.bucketOf(v);
+			assertTrue(layout.getBucketMin(b) <= v && (v < layout.getBucketMax(b) || b == layout.getBucketCount()-1));
+		}
+		assertTrue(layout.bucketOf(0.0) == 0);
+		assertTrue(layout.bucketOf(-1.0) == 0);
+		assertTrue(layout.bucketOf(Double.NaN) == 0);
+		assertTrue(layout.bucketOf(1e300) == layout.getBucketCount()-1);
+		assertTrue(!layout.equals(HistogramLayout.logarithmic(1e-3, 1e6, 6)));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testLogarithmicNeedsPositiveRange() {
+		HistogramLayout.logarithmic(0.0, 1.0, 7);
+	}
+
+	/** Counts recorded from several threads are all there, whatever the striping. */
+	@Test
+	public void testConcurrentRecording() throws Exception {
+		final StreamingHistogram h = new StreamingHistogram(HistogramLayout.linear(0, 100, 100), 4);
+		Thread[] threads = new Thread[6];
+		for (int t=0; t<threads.length; ++t) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i=0; i<10000; ++i) h.addValue(i % 100 + 0.5);
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread t : threads) t.join();
+		assertTrue(h.getNumberOfObservations() == 60000);
+		for (int b=0; b<100; ++b) assertTrue(h.getCount(b) == 600);
+		assertTrue(h.getMinValue() == 0.5 && h.getMaxValue() == 99.5);
+		assertTrue(Math.abs(h.getValueAtProportion(0.5) - 50) <= 1.0);
+		assertTrue(Math.abs(h.getProportionAtValue(25) - 0.25) <= 0.01);
+	}
+
+	/** Subtracting an earlier snapshot from a later one leaves the interval's counts. */
+	@Test
+	public void testSnapshotInterval() {
+		StreamingHistogram h = new StreamingHistogram(HistogramLayout.linear(0, 10, 10));
+		h.addValues(1.5, 2.5, 2.5);
+		StreamingHistogram before = h.snapshot();
+		h.addValues(2.5, 7.5);
+		StreamingHistogram interval = h.snapshot();
+		interval.subtract(before);
+		assertTrue(interval.getNumberOfObservations() == 2);
+		assertTrue(interval.getCount(2) == 1 && interval.getCount(7) == 1 && interval.getCount(1) == 0);
+		assertTrue(h.getNumberOfObservations() == 5);
+		StreamingHistogram sum = before.snapshot();
+		sum.add(interval);
+		assertTrue(Arrays.equals(sum.getCounts(), h.getCounts()));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testSubtractBelowZero() {
+		StreamingHistogram h = new StreamingHistogram(HistogramLayout.linear(0, 10, 10), 1);
+		StreamingHistogram other = new StreamingHistogram(HistogramLayout.linear(0, 10, 10), 1);
+		other.addValue(3);
+		h.subtract(other);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testLayoutsMustMatch() {
+		StreamingHistogram h = new StreamingHistogram(HistogramLayout.linear(0, 10, 10), 1);
+		h.add(new StreamingHistogram(HistogramLayout.linear(0, 10, 20), 1));
+	}
+}
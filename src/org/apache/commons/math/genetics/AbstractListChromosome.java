@@ -79,6 +79,15 @@ public abstract class AbstractListChromosome<T> extends Chromosome {
         return getRepresentation().size();
     }
 
+    /**
+     * The representation list is immutable, so it serves as its own key.
+     * @return the representation of the chromosome
+     */
+    @Override
+    protected Object getFitnessCacheKey() {
+        return getRepresentation();
+    }
+
     /**
      * Creates a new instance of the same class as <code>this</code> is, with a
      * given <code>arrayRepresentation</code>. This is needed in crossover and
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+import org.apache.commons.math.random.RandomGenerator;
+
+/**
+ * Walker/Vose alias table: after an O(n) build, draws an index with
+ * probability proportional to its weight in O(1), using one uniform integer
+ * and one uniform double. Arrays are grown as needed and reused between
+ * builds, so rebuilding for a population of the same size allocates nothing.
+ *
+ * @version $Id$
+ */
+final class AliasTable {
+
+    /** probability of keeping the drawn column rather than taking its alias */
+    private double[] probability = new double[0];
+
+    /** alias of each column */
+    private int[] alias = new int[0];
+
+    /** work lists for the build */
+    private int[] small = new int[0];
+    private int[] large = new int[0];
+
+    /** number of columns */
+    private int size;
+
+    /**
+     * Build the table for the given non-negative weights. If all weights are
+     * zero, every index is equally likely.
+     *
+     * @param weights the weights
+     * @param n number of weights to use
+     */
+    void build(double[] weights, int n) {
+        if (probability.length < n) {
+            probability = new double[n];
+            alias = new int[n];
+            small = new int[n];
+            large = new int[n];
+        }
+        size = n;
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            if (weights[i] < 0 || Double.isNaN(weights[i])) {
+                throw new IllegalArgumentException("Selection weights must be non-negative.");
+            }
+            total += weights[i];
+        }
+        int nSmall = 0;
+        int nLarge = 0;
+        for (int i = 0; i < n; i++) {
+            // scale so the average column holds exactly 1
+            probability[i] = (total > 0) ? weights[i] * n / total : 1.0;
+            if (probability[i] < 1.0) {
+                small[nSmall++] = i;
+            } else {
+                large[nLarge++] = i;
+            }
+        }
+        while (nSmall > 0 && nLarge > 0) {
+            int less = small[--nSmall];
+            int more = large[--nLarge];
+            alias[less] = more;
+            probability[more] = (probability[more] + probability[less]) - 1.0;
+            if (probability[more] < 1.0) {
+                small[nSmall++] = more;
+            } else {
+                large[nLarge++] = more;
+            }
+        }
+        // whatever is left is 1 up to rounding
+        while (nLarge > 0) {
+            probability[large[--nLarge]] = 1.0;
+        }
+        while (nSmall > 0) {
+            probability[small[--nSmall]] = 1.0;
+        }
+    }
+
+    /**
+     * Draw an index.
+     * @param randGen source of randomness
+     * @return an index in [0, n) of the last build
+     */
+    int sample(RandomGenerator randGen) {
+        int column = randGen.nextInt(size);
+        return (randGen.nextDouble() < probability[column]) ? column : alias[column];
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+/**
+ * Crossover of two rows of an {@link ArrayPopulation} gene matrix, in place.
+ *
+ * @version $Id$
+ */
+public interface ArrayCrossoverPolicy {
+    /**
+     * Cross the two rows over. On entry the rows hold copies of the parents;
+     * on exit they must hold the offspring.
+     *
+     * @param genes gene matrix
+     * @param first offset of the first row
+     * @param second offset of the second row
+     * @param length number of genes in a row
+     */
+    void crossover(double[] genes, int first, int second, int length);
+}
@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+/**
+ * Fitness function for the rows of an {@link ArrayPopulation}.
+ *
+ * @version $Id$
+ */
+public interface ArrayFitnessFunction {
+    /**
+     * Compute the fitness of one individual. The bigger the fitness, the
+     * better the individual. Must not modify <code>genes</code>, and must be
+     * thread safe if the population is evaluated on an executor.
+     *
+     * @param genes gene matrix of the population
+     * @param offset index of the first gene of the individual in <code>genes</code>
+     * @param length number of genes of the individual
+     * @return the fitness
+     */
+    double fitness(double[] genes, int offset, int length);
+}
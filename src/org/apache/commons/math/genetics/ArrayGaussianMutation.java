@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+import org.apache.commons.math.random.RandomGenerator;
+
+/**
+ * Mutation for {@link ArrayPopulation} rows. Adds a gaussian step to one
+ * randomly chosen gene, and clamps the result to a range.
+ *
+ * @version $Id$
+ */
+public class ArrayGaussianMutation implements ArrayMutationPolicy {
+
+    /** standard deviation of the step */
+    private final double standardDeviation;
+
+    /** smallest allowed gene value */
+    private final double minimum;
+
+    /** largest allowed gene value */
+    private final double maximum;
+
+    /**
+     * Creates a new unbounded mutation.
+     * @param standardDeviation standard deviation of the step
+     */
+    public ArrayGaussianMutation(double standardDeviation) {
+        this(standardDeviation, -Double.MAX_VALUE, Double.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new bounded mutation.
+     * @param standardDeviation standard deviation of the step
+     * @param minimum smallest allowed gene value
+     * @param maximum largest allowed gene value
+     */
+    public ArrayGaussianMutation(double standardDeviation, double minimum, double maximum) {
+        if (minimum > maximum) {
+            throw new IllegalArgumentException("minimum must not be greater than maximum");
+        }
+        this.standardDeviation = standardDeviation;
+        this.minimum = minimum;
+        this.maximum = maximum;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void mutate(double[] genes, int offset, int length) {
+        RandomGenerator randGen = GeneticAlgorithm.getRandomGenerator();
+        int geneIndex = offset + randGen.nextInt(length);
+        double value = genes[geneIndex] + randGen.nextGaussian() * standardDeviation;
+        genes[geneIndex] = Math.max(minimum, Math.min(maximum, value));
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+/**
+ * One point crossover on {@link ArrayPopulation} rows: a random crossover point
+ * is chosen and the tails of the two rows after it are swapped in place.
+ * See {@link OnePointCrossover} for the list based version.
+ *
+ * @version $Id$
+ */
+public class ArrayOnePointCrossover implements ArrayCrossoverPolicy {
+
+    /**
+     * {@inheritDoc}
+     */
+    public void crossover(double[] genes, int first, int second, int length) {
+        if (length < 2) {
+            return;
+        }
+        // select a crossover point at random (0 and length makes no sense)
+        int crossoverIndex = 1 + GeneticAlgorithm.getRandomGenerator().nextInt(length - 1);
+        for (int i = crossoverIndex; i < length; i++) {
+            double tmp = genes[first + i];
+            genes[first + i] = genes[second + i];
+            genes[second + i] = tmp;
+        }
+    }
+
+}
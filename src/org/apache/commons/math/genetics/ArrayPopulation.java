@@ -0,0 +1,492 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.math.exception.NotPositiveException;
+import org.apache.commons.math.exception.util.LocalizedFormats;
+import org.apache.commons.math.util.FastMath;
+
+/**
+ * Population of fixed length real valued individuals stored as a
+ * structure of arrays: one contiguous gene matrix (row <code>i</code> holds
+ * the genes of individual <code>i</code>) and one primitive fitness column.
+ *
+ * Unlike a {@link ListPopulation}, no object is allocated per individual:
+ * offspring are produced by copying parent rows into the next generation's
+ * matrix and applying an {@link ArrayCrossoverPolicy} and
+ * {@link ArrayMutationPolicy} to the rows in place, and elitism and selection
+ * work on primitive indices. The elite is picked by partial selection in
+ * O(n) and is not kept in any particular order.
+ *
+ * Populations of this class can be evolved by {@link GeneticAlgorithm}, which
+ * then uses the rates of the algorithm and the array policies of the population
+ * (the chromosome policies of the algorithm are not used). The {@link Population}
+ * methods that deal in {@link Chromosome}s are supported through {@link Row}
+ * snapshots, which copy the genes and fitness of an individual and so stay
+ * valid after the population's matrix has been reused.
+ *
+ * Two matrices are reused from one generation to the next, but only among
+ * populations created by {@link #nextGeneration()}: such a population writes
+ * into the matrix of its grandparent, if that was created by
+ * {@link #nextGeneration()} too. A population built by the caller is never
+ * written to, while one created by {@link #nextGeneration()} stays readable
+ * until its grandchild generation is created.
+ *
+ * @version $Id$
+ */
+public class ArrayPopulation implements Population {
+
+    /** number of genes per individual */
+    private final int length;
+
+    /** maximal size of the population */
+    private final int populationLimit;
+
+    /** percentage of individuals copied to the next generation */
+    private final double elitismRate;
+
+    /** operators */
+    private final ArrayFitnessFunction fitnessFunction;
+    private final ArrayCrossoverPolicy crossoverPolicy;
+    private final ArrayMutationPolicy mutationPolicy;
+    private final ArraySelectionPolicy selectionPolicy;
+
+    /** gene matrix, <code>populationLimit * length</code> values plus one scratch row */
+    private final double[] genes;
+
+    /** fitness column, NaN where not computed yet, plus one scratch entry */
+    private final double[] fitness;
+
+    /** matrix and column for the next generation to write into */
+    private double[] spareGenes;
+    private double[] spareFitness;
+
+    /** scratch index array used for elitism */
+    private int[] order;
+
+    /** current number of individuals */
+    private int size;
+
+    /** true if created by {@link #nextGeneration()}, so its buffers may be reused */
+    private final boolean generated;
+
+    /**
+     * Creates a new empty ArrayPopulation.
+     *
+     * @param length number of genes per individual
+     * @param populationLimit maximal size of the population
+     * @param elitismRate how many best individuals will be directly transferred
+     *            to the next generation [in %]
+     * @param fitnessFunction fitness of an individual
+     * @param crossoverPolicy crossover operator on rows
+     * @param mutationPolicy mutation operator on rows
+     * @param selectionPolicy selection of parent rows
+     */
+    public ArrayPopulation(int length, int populationLimit, double elitismRate,
+                           ArrayFitnessFunction fitnessFunction,
+                           ArrayCrossoverPolicy crossoverPolicy,
+                           ArrayMutationPolicy mutationPolicy,
+                           ArraySelectionPolicy selectionPolicy) {
+        if (populationLimit < 0) {
+            throw new NotPositiveException(LocalizedFormats.POPULATION_LIMIT_NOT_POSITIVE, populationLimit);
+        }
+        if (length <= 0) {
+            throw new IllegalArgumentException("Individuals must have at least one gene.");
+        }
+        if (elitismRate < 0 || elitismRate > 1) {
+            throw new IllegalArgumentException("Elitism rate has to be in [0,1]");
+        }
+        this.length = length;
+        this.populationLimit = populationLimit;
+        this.elitismRate = elitismRate;
+        this.fitnessFunction = fitnessFunction;
+        this.crossoverPolicy = crossoverPolicy;
+        this.mutationPolicy = mutationPolicy;
+        this.selectionPolicy = selectionPolicy;
+        this.genes = new double[(populationLimit + 1) * length];
+        this.fitness = new double[populationLimit + 1];
+        this.spareGenes = null;
+        this.spareFitness = null;
+        this.order = null;
+        this.size = 0;
+        this.generated = false;
+    }
+
+    /**
+     * Creates the next generation of <code>previous</code>, reusing the
+     * buffers <code>previous</code> got from its own parent, if any. The
+     * buffers of <code>previous</code> are only kept for reuse if it was
+     * itself created by {@link #nextGeneration()}.
+     *
+     * @param previous the current generation
+     */
+    private ArrayPopulation(ArrayPopulation previous) {
+        this.length = previous.length;
+        this.populationLimit = previous.populationLimit;
+        this.elitismRate = previous.elitismRate;
+        this.fitnessFunction = previous.fitnessFunction;
+        this.crossoverPolicy = previous.crossoverPolicy;
+        this.mutationPolicy = previous.mutationPolicy;
+        this.selectionPolicy = previous.selectionPolicy;
+        this.genes = (previous.spareGenes != null) ? previous.spareGenes : new double[previous.genes.length];
+        this.fitness = (previous.spareFitness != null) ? previous.spareFitness : new double[previous.fitness.length];
+        this.spareGenes = previous.generated ? previous.genes : null;
+        this.spareFitness = previous.generated ? previous.fitness : null;
+        this.size = 0;
+        this.generated = true;
+        // the parent must not hand the same buffers out twice
+        previous.spareGenes = null;
+        previous.spareFitness = null;
+    }
+
+    /**
+     * Add an individual.
+     *
+     * @param individual genes of the individual, copied into the population
+     */
+    public void addIndividual(double[] individual) {
+        if (individual.length != length) {
+            throw new IllegalArgumentException("Individuals must have " + length + " genes.");
+        }
+        int row = newRow();
+        System.arraycopy(individual, 0, genes, row * length, length);
+    }
+
+    /**
+     * Add the given chromosome to the population. Only {@link Row}s of
+     * an ArrayPopulation with the same length are accepted.
+     * @param chromosome the chromosome to add.
+     */
+    public void addChromosome(Chromosome chromosome) {
+        if (!(chromosome instanceof Row)) {
+            throw new IllegalArgumentException("ArrayPopulation only accepts rows of an ArrayPopulation.");
+        }
+        Row other = (Row) chromosome;
+        if (other.genes.length != length) {
+            throw new IllegalArgumentException("Individuals must have " + length + " genes.");
+        }
+        int row = newRow();
+        System.arraycopy(other.genes, 0, genes, row * length, length);
+        fitness[row] = other.rowFitness;
+    }
+
+    /**
+     * Claim the next free row.
+     * @return index of the row
+     */
+    private int newRow() {
+        if (size >= populationLimit) {
+            throw new IllegalStateException("Population is full.");
+        }
+        fitness[size] = Double.NaN;
+        return size++;
+    }
+
+    /**
+     * Start the population for the next generation. The
+     * <code>elitismRate</code> percents of the best individuals are directly
+     * copied to the next generation.
+     *
+     * @return the beginnings of the next generation.
+     */
+    public ArrayPopulation nextGeneration() {
+        ArrayPopulation next = new ArrayPopulation(this);
+        if (order == null) {
+            order = new int[populationLimit];
+        }
+        next.order = order;
+        for (int i = 0; i < size; i++) {
+            getFitness(i);
+            order[i] = i;
+        }
+
+        // index of the last "not good enough" individual
+        int boundIndex = (int) FastMath.ceil((1.0 - elitismRate) * size);
+        if (boundIndex < size) {
+            // only which individuals are elite matters, not their order
+            FitnessIndexSort.select(fitness, order, size, boundIndex);
+        }
+        for (int i = boundIndex; i < size; i++) {
+            int row = next.newRow();
+            System.arraycopy(genes, order[i] * length, next.genes, row * length, length);
+            next.fitness[row] = fitness[order[i]];
+        }
+        return next;
+    }
+
+    /**
+     * Fill this population with offspring of <code>parents</code>, as
+     * {@link GeneticAlgorithm#nextGeneration(Population)} does for chromosomes.
+     *
+     * @param parents the population parents are selected from
+     * @param crossoverRate the probability of applying crossover to a pair
+     * @param mutationRate the probability of applying mutation to a pair
+     */
+    void breed(ArrayPopulation parents, double crossoverRate, double mutationRate) {
+        while (size < populationLimit) {
+            // select parent rows
+            int firstParent = selectionPolicy.select(parents);
+            int secondParent = selectionPolicy.select(parents);
+
+            // if there is no place for the second offspring, it goes to the scratch row
+            int firstRow = newRow();
+            int secondRow = (size < populationLimit) ? newRow() : populationLimit;
+            int first = firstRow * length;
+            int second = secondRow * length;
+            System.arraycopy(parents.genes, firstParent * length, genes, first, length);
+            System.arraycopy(parents.genes, secondParent * length, genes, second, length);
+            // plain copies keep their parents' fitness
+            fitness[firstRow] = parents.fitness[firstParent];
+            fitness[secondRow] = parents.fitness[secondParent];
+
+            // crossover?
+            if (GeneticAlgorithm.getRandomGenerator().nextDouble() < crossoverRate) {
+                crossoverPolicy.crossover(genes, first, second, length);
+                fitness[firstRow] = Double.NaN;
+                fitness[secondRow] = Double.NaN;
+            }
+
+            // mutation?
+            if (GeneticAlgorithm.getRandomGenerator().nextDouble() < mutationRate) {
+                mutationPolicy.mutate(genes, first, length);
+                mutationPolicy.mutate(genes, second, length);
+                fitness[firstRow] = Double.NaN;
+                fitness[secondRow] = Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * Access the fitness of an individual, computing and caching it if needed.
+     *
+     * @param row index of the individual
+     * @return the fitness
+     */
+    public double getFitness(int row) {
+        checkRow(row);
+        double f = fitness[row];
+        if (Double.isNaN(f)) {
+            f = fitnessFunction.fitness(genes, row * length, length);
+            fitness[row] = f;
+        }
+        return f;
+    }
+
+    /**
+     * @param row index of the individual
+     * @return whether the fitness of the individual has been computed
+     */
+    public boolean isFitnessCached(int row) {
+        checkRow(row);
+        return !Double.isNaN(fitness[row]);
+    }
+
+    /**
+     * Copy the genes of an individual.
+     *
+     * @param row index of the individual
+     * @param out array of at least {@link #getLength()} values receiving the genes
+     * @return out
+     */
+    public double[] getGenes(int row, double[] out) {
+        checkRow(row);
+        System.arraycopy(genes, row * length, out, 0, length);
+        return out;
+    }
+
+    /**
+     * Direct access to the gene matrix; row <code>i</code> starts at
+     * <code>i * {@link #getLength()}</code>. Changing values invalidates
+     * cached fitness.
+     *
+     * @return the gene matrix
+     */
+    public double[] getGeneMatrix() {
+        return genes;
+    }
+
+    /**
+     * @param row index of an individual
+     * @throws IndexOutOfBoundsException if there is no such individual
+     */
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of range [0, " + size + ")");
+        }
+    }
+
+    /**
+     * @return the index of the fittest individual
+     */
+    public int getFittestIndex() {
+        int best = 0;
+        for (int i = 1; i < size; i++) {
+            if (getFitness(i) > getFitness(best)) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Access the fittest chromosome in this population.
+     * @return a snapshot of the fittest individual.
+     */
+    public Chromosome getFittestChromosome() {
+        return snapshot(getFittestIndex());
+    }
+
+    /**
+     * Copy an individual out of the matrix.
+     *
+     * @param row index of the individual
+     * @return a {@link Row} holding the genes and (possibly not yet computed) fitness of the individual
+     */
+    private Row snapshot(int row) {
+        checkRow(row);
+        return new Row(row, getGenes(row, new double[length]), fitness[row], fitnessFunction);
+    }
+
+    /**
+     * @return the number of genes per individual
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Access the current population size.
+     * @return the current population size.
+     */
+    public int getPopulationSize() {
+        return size;
+    }
+
+    /**
+     * Access the maximum population size.
+     * @return the maximum population size.
+     */
+    public int getPopulationLimit() {
+        return populationLimit;
+    }
+
+    /**
+     * Access the elitism rate.
+     * @return the elitism rate
+     */
+    public double getElitismRate() {
+        return elitismRate;
+    }
+
+    /**
+     * Iterates over {@link Row} snapshots of the individuals. Each call to
+     * <code>next()</code> copies one row.
+     *
+     * @return chromosome iterator
+     */
+    public Iterator<Chromosome> iterator() {
+        return new Iterator<Chromosome>() {
+            private int next = 0;
+
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            public Chromosome next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot(next++);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * {@link Chromosome} copy of one row of the population: the genes and the
+     * fitness of the row when the copy was made. Rows are not affected by
+     * later generations reusing the matrix of their population. A fitness that
+     * was not computed yet is computed from the copied genes when needed.
+     */
+    public static class Row extends Chromosome {
+
+        /** index of the row the copy was taken from */
+        private final int index;
+
+        /** copied genes */
+        private final double[] genes;
+
+        /** fitness of the row, NaN if not computed yet */
+        private volatile double rowFitness;
+
+        /** fitness function of the population */
+        private final ArrayFitnessFunction fitnessFunction;
+
+        /**
+         * @param index index of the row
+         * @param genes copy of the genes of the row
+         * @param fitness fitness of the row, NaN if not computed yet
+         * @param fitnessFunction fitness function of the population
+         */
+        Row(int index, double[] genes, double fitness, ArrayFitnessFunction fitnessFunction) {
+            this.index = index;
+            this.genes = genes;
+            this.rowFitness = fitness;
+            this.fitnessFunction = fitnessFunction;
+        }
+
+        /**
+         * @return index of the row in the population it was copied from
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return a copy of the genes of the row
+         */
+        public double[] getGenes() {
+            return genes.clone();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public double fitness() {
+            double f = rowFitness;
+            if (Double.isNaN(f)) {
+                f = fitnessFunction.fitness(genes, 0, genes.length);
+                rowFitness = f;
+            }
+            return f;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean isFitnessCached() {
+            return !Double.isNaN(rowFitness);
+        }
+    }
+}
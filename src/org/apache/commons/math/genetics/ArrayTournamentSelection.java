@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+/**
+ * Tournament selection on {@link ArrayPopulation} rows: {@link #arity} distinct
+ * rows are drawn at random and the fittest one wins. See
+ * {@link TournamentSelection} for the chromosome based version.
+ *
+ * @version $Id$
+ */
+public class ArrayTournamentSelection implements ArraySelectionPolicy {
+
+    /** number of rows included in the tournament selections */
+    private final int arity;
+
+    /** draws the contestants */
+    private final DistinctIndexSampler sampler = new DistinctIndexSampler();
+
+    /**
+     * Creates a new ArrayTournamentSelection instance. Like
+     * {@link TournamentSelection}, it can be shared between threads.
+     *
+     * @param arity how many rows will be drawn to the tournament
+     */
+    public ArrayTournamentSelection(int arity) {
+        if (arity < 1) {
+            throw new IllegalArgumentException("Tournament arity must be positive.");
+        }
+        this.arity = arity;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int select(ArrayPopulation population) {
+        int size = population.getPopulationSize();
+        if (size < arity) {
+            throw new IllegalArgumentException("Tournament arity cannot be bigger than population size.");
+        }
+        int[] drawn = sampler.sample(size, arity, GeneticAlgorithm.getRandomGenerator());
+        int best = -1;
+        double bestFitness = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < arity; i++) {
+            int row = drawn[i];
+            double fitness = population.getFitness(row);
+            if (best < 0 || fitness > bestFitness) {
+                best = row;
+                bestFitness = fitness;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the arity (number of rows drawn to the tournament).
+     *
+     * @return arity of the tournament
+     */
+    public int getArity() {
+        return arity;
+    }
+
+}
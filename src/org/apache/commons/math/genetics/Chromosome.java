@@ -30,23 +30,115 @@ public abstract class Chromosome implements Comparable<Chromosome>,Fitness {
     /**
      * Cached value of the fitness of this chromosome.
      */
-    private double fitness = Double.MIN_VALUE;
+    private volatile double fitness = Double.MIN_VALUE;
+
+    /**
+     * Shared fitness memo, or null for no memoization.
+     */
+    private static volatile FitnessCache fitnessCache = null;
+
+    /**
+     * Set the (static) fitness cache consulted by {@link #getFitness()}.
+     *
+     * @param cache the cache, or null to disable memoization
+     */
+    public static void setFitnessCache(FitnessCache cache) {
+        fitnessCache = cache;
+    }
+
+    /**
+     * Returns the (static) fitness cache.
+     *
+     * @return the cache, or null if memoization is disabled
+     */
+    public static FitnessCache getFitnessCache() {
+        return fitnessCache;
+    }
 
     /**
      * Access the fitness of this chromosome. The bigger the fitness, the better
      * the chromosome.
      *
      * Computation of fitness is usually very time-consuming task, therefore the
-     * fitness is cached.
+     * fitness is cached. If the chromosome has an
+     * {@link #getEvaluationLock() evaluation lock}, the fitness is computed
+     * holding its monitor.
      *
      * @return the fitness.
      */
     public double getFitness() {
         if (this.fitness == Double.MIN_VALUE) {
+            Object lock = getEvaluationLock();
+            if (lock == null) {
+                computeFitness();
+            } else {
+                synchronized (lock) {
+                    if (this.fitness == Double.MIN_VALUE) {
+                        computeFitness();
+                    }
+                }
+            }
+        }
+        return this.fitness;
+    }
+
+    /**
+     * Compute the fitness, through the {@link FitnessCache} if there is one,
+     * and cache it in this chromosome.
+     */
+    private void computeFitness() {
+        FitnessCache cache = fitnessCache;
+        Object key = (cache != null) ? getFitnessCacheKey() : null;
+        if (key == null) {
             // no cache - compute the fitness
             this.fitness = fitness();
+        } else {
+            double cached = cache.get(getClass(), key);
+            if (Double.isNaN(cached)) {
+                cached = fitness();
+                cache.put(getClass(), key, cached);
+            }
+            this.fitness = cached;
         }
-        return this.fitness;
+    }
+
+    /**
+     * Returns a key identifying the genes of this chromosome for the
+     * {@link FitnessCache}: an immutable value whose <code>equals</code> and
+     * <code>hashCode</code> depend on the genes only. By default, returns null,
+     * which disables memoization for this chromosome.
+     *
+     * @return the genome key, or null
+     */
+    protected Object getFitnessCacheKey() {
+        return null;
+    }
+
+    /**
+     * Returns an object shared by chromosomes whose {@link #fitness()} must not
+     * run at the same time, typically because they evaluate by writing their
+     * genes into the same target object. {@link #getFitness()} always holds
+     * the lock's monitor while computing, whatever thread it is called from;
+     * when fitness is evaluated in parallel (see
+     * {@link GeneticAlgorithm#setEvaluationExecutor}), chromosomes returning
+     * the same (identical) lock are also grouped into a single task, one after
+     * another. By default, returns null: the
+     * chromosome shares nothing and may be evaluated concurrently with any other.
+     *
+     * @return the evaluation lock, or null
+     */
+    protected Object getEvaluationLock() {
+        return null;
+    }
+
+    /**
+     * Returns whether the fitness of this chromosome has already been computed
+     * and cached by {@link #getFitness()}.
+     *
+     * @return true if a call to {@link #getFitness()} will not call {@link #fitness()}
+     */
+    boolean isFitnessCached() {
+        return this.fitness != Double.MIN_VALUE;
     }
 
     /**
@@ -96,12 +188,22 @@ public abstract class Chromosome implements Comparable<Chromosome>,Fitness {
 
     /**
      * Searches the population for a chromosome representing the same solution,
-     * and if it finds one, updates the fitness to its value.
+     * and if it finds one, updates the fitness to its value. The
+     * {@link FitnessCache}, if any, is consulted first.
      *
      * @param population
      *            Population to search
      */
     public void searchForFitnessUpdate(Population population) {
+        FitnessCache cache = fitnessCache;
+        Object key = (cache != null) ? getFitnessCacheKey() : null;
+        if (key != null) {
+            double cached = cache.get(getClass(), key);
+            if (!Double.isNaN(cached)) {
+                fitness = cached;
+                return;
+            }
+        }
         Chromosome sameChromosome = findSameChromosome(population);
         if (sameChromosome != null) {
             fitness = sameChromosome.getFitness();
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Converts chromosomes to and from a binary form, so that they can migrate
+ * between processes (see {@link SocketMigrationTransport}).
+ *
+ * @version $Id$
+ */
+public interface ChromosomeCodec {
+
+    /**
+     * Write a chromosome.
+     * @param chromosome the chromosome
+     * @param out destination
+     * @throws IOException if writing fails
+     */
+    void write(Chromosome chromosome, DataOutput out) throws IOException;
+
+    /**
+     * Read a chromosome written by {@link #write(Chromosome, DataOutput)}.
+     * @param in source
+     * @return the chromosome
+     * @throws IOException if reading fails
+     */
+    Chromosome read(DataInput in) throws IOException;
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+import org.apache.commons.math.random.RandomGenerator;
+
+/**
+ * Draws k distinct indices from [0, n) with Floyd's sampling algorithm, which
+ * needs exactly k random numbers and never touches the other n - k indices.
+ * The indices are written to a per-thread scratch array, so a sampler can be
+ * shared between threads and a draw allocates nothing once the array is big
+ * enough. Used by the tournament selections.
+ *
+ * @version $Id$
+ */
+final class DistinctIndexSampler {
+
+    /** the indices drawn by the last call, per thread */
+    private final ThreadLocal<int[]> scratch = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[0];
+        }
+    };
+
+    /**
+     * Draw k distinct indices. The result is only valid until the calling
+     * thread's next call.
+     *
+     * @param n number of indices to draw from
+     * @param k number of indices to draw, at most n
+     * @param randGen source of randomness
+     * @return an array whose first k entries are the indices drawn
+     */
+    int[] sample(int n, int k, RandomGenerator randGen) {
+        int[] drawn = scratch.get();
+        if (drawn.length < k) {
+            drawn = new int[k];
+            scratch.set(drawn);
+        }
+        int nDrawn = 0;
+        for (int j = n - k; j < n; j++) {
+            // select a random index in [0, j]; if it was already drawn, take j
+            int index = randGen.nextInt(j + 1);
+            for (int i = 0; i < nDrawn; i++) {
+                if (drawn[i] == index) {
+                    index = j;
+                    break;
+                }
+            }
+            drawn[nDrawn++] = index;
+        }
+        return drawn;
+    }
+}
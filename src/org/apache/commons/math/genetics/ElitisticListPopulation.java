@@ -16,7 +16,6 @@
  */
 package org.apache.commons.math.genetics;
 
-import java.util.Collections;
 import java.util.List;
 
 import org.apache.commons.math.util.FastMath;
@@ -25,6 +24,14 @@ import org.apache.commons.math.util.FastMath;
  * Population of chromosomes which uses elitism (certain percentace of the best
  * chromosomes is directly copied to the next generation).
  *
+ * The elite is found on a primitive copy of the fitness values, so no fitness
+ * is boxed. By default it is picked by partial selection in expected O(n), and
+ * copied to the next generation in no particular order. With
+ * {@link #setIncrementalSorting(boolean) incremental sorting}, the elite is
+ * copied in ascending fitness order instead; the next generation then only
+ * needs to sort its offspring and merge them with the elite it inherited,
+ * which is cheaper than a full sort when the elitism rate is high.
+ *
  * @version $Id: ElitisticListPopulation.java 1131229 2011-06-03 20:49:25Z luc $
  * @since 2.0
  */
@@ -33,6 +40,15 @@ public class ElitisticListPopulation extends ListPopulation {
     /** percentage of chromosomes copied to the next generation */
     private double elitismRate = 0.9;
 
+    /** whether the elite is kept sorted from one generation to the next */
+    private boolean incrementalSorting = false;
+
+    /**
+     * number of chromosomes at the start of the list that were inherited in
+     * ascending fitness order from the previous generation
+     */
+    private int sortedPrefix = 0;
+
     /**
      * Creates a new ElitisticListPopulation instance.
      *
@@ -67,24 +83,80 @@ public class ElitisticListPopulation extends ListPopulation {
      * Start the population for the next generation. The
      * <code>{@link #elitismRate}<code> percents of the best
      * chromosomes are directly copied to the next generation.
+     * The list of this population is not reordered.
      *
      * @return the beginnings of the next generation.
      */
     public Population nextGeneration() {
         // initialize a new generation with the same parameters
         ElitisticListPopulation nextGeneration = new ElitisticListPopulation(this.getPopulationLimit(), this.getElitismRate());
+        nextGeneration.setIncrementalSorting(this.incrementalSorting);
 
         List<Chromosome> oldChromosomes = this.getChromosomes();
-        Collections.sort(oldChromosomes);
+        int size = oldChromosomes.size();
+        double[] fitness = new double[size];
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            fitness[i] = oldChromosomes.get(i).getFitness();
+            order[i] = i;
+        }
 
         // index of the last "not good enough" chromosome
-        int boundIndex = (int) FastMath.ceil((1.0 - this.getElitismRate()) * oldChromosomes.size());
-        for (int i=boundIndex; i<oldChromosomes.size(); i++) {
-            nextGeneration.addChromosome(oldChromosomes.get(i));
+        int boundIndex = (int) FastMath.ceil((1.0 - this.getElitismRate()) * size);
+        if (boundIndex >= size) {
+            return nextGeneration;
+        }
+        if (incrementalSorting) {
+            int prefix = validSortedPrefix(fitness);
+            FitnessIndexSort.sortAscending(fitness, order, prefix, size - 1);
+            if (prefix > 0) {
+                FitnessIndexSort.merge(fitness, order, prefix, size, new int[prefix]);
+            }
+            nextGeneration.sortedPrefix = size - boundIndex;
+        } else {
+            FitnessIndexSort.select(fitness, order, size, boundIndex);
+        }
+        for (int i=boundIndex; i<size; i++) {
+            nextGeneration.addChromosome(oldChromosomes.get(order[i]));
         }
         return nextGeneration;
     }
 
+    /**
+     * Length of the inherited sorted prefix that is still in ascending order.
+     * The list may have been changed through {@link #getChromosomes()}, so the
+     * prefix is checked rather than trusted.
+     *
+     * @param fitness fitness of the chromosomes, in list order
+     * @return the length of the valid sorted prefix
+     */
+    private int validSortedPrefix(double[] fitness) {
+        int prefix = Math.min(sortedPrefix, fitness.length);
+        for (int i = 1; i < prefix; i++) {
+            if (fitness[i] < fitness[i - 1]) {
+                return 0;
+            }
+        }
+        return prefix;
+    }
+
+    /**
+     * Sets whether the elite is copied to the next generation in ascending fitness
+     * order, so that later generations only need to sort their new offspring.
+     *
+     * @param incrementalSorting true to keep the elite sorted across generations
+     */
+    public void setIncrementalSorting(boolean incrementalSorting) {
+        this.incrementalSorting = incrementalSorting;
+    }
+
+    /**
+     * @return whether the elite is kept sorted across generations
+     */
+    public boolean isIncrementalSorting() {
+        return incrementalSorting;
+    }
+
     /**
      * Sets the elitism rate, i.e. how many best chromosomes will be directly
      * transferred to the next generation [in %].
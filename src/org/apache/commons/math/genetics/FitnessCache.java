@@ -0,0 +1,368 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded memo of fitness values by genome, consulted by
+ * {@link Chromosome#getFitness()} before calling {@link Chromosome#fitness()},
+ * so that duplicate genomes (common with elitism and low mutation rates) are
+ * only evaluated once.
+ *
+ * Chromosomes take part by returning a key from
+ * {@link Chromosome#getFitnessCacheKey()}: an immutable value with
+ * <code>equals</code>/<code>hashCode</code> defined by the genes. Entries are
+ * also keyed by chromosome class, so different chromosome types can share a
+ * cache, but every chromosome of one class must compute its fitness from its
+ * genes alone, or include what else it depends on in its key (see
+ * {@link #keyOf(Object, Object)}); clear the cache when the fitness function
+ * changes.
+ *
+ * The cache is split into independently locked segments, each evicting its
+ * least recently used entries beyond its share of the capacity.
+ *
+ * @version $Id$
+ */
+public class FitnessCache {
+
+    /** number of segments, a power of two */
+    private static final int SEGMENTS = 16;
+
+    /** the segments */
+    private final Segment[] segments;
+
+    /** number of lookups that found a value */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** number of lookups that found nothing */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** one LRU map */
+    private static class Segment extends LinkedHashMap<Object, Double> {
+        /** Serializable version identifier */
+        private static final long serialVersionUID = 1L;
+
+        /** maximal number of entries */
+        private final int capacity;
+
+        /**
+         * @param capacity maximal number of entries
+         */
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Double> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /** Key made of the chromosome class and its genome key. */
+    private static final class Key {
+        /** chromosome class */
+        private final Class<?> type;
+        /** genome key */
+        private final Object genes;
+        /** cached hash code */
+        private final int hash;
+
+        /**
+         * @param type chromosome class
+         * @param genes genome key
+         */
+        Key(Class<?> type, Object genes) {
+            this.type = type;
+            this.genes = genes;
+            this.hash = 31 * type.hashCode() + genes.hashCode();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return hash == key.hash && type == key.type && genes.equals(key.genes);
+        }
+    }
+
+    /**
+     * Genome key for a vector of doubles, for chromosomes whose genes are a
+     * mutable array. Holds a copy of the genes.
+     */
+    private static final class DoubleArrayKey {
+        /** the genes */
+        private final double[] genes;
+        /** cached hash code */
+        private final int hash;
+
+        /**
+         * @param genes the genes (not copied)
+         */
+        DoubleArrayKey(double[] genes) {
+            this.genes = genes;
+            this.hash = Arrays.hashCode(genes);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof DoubleArrayKey
+                && hash == ((DoubleArrayKey) other).hash
+                && Arrays.equals(genes, ((DoubleArrayKey) other).genes);
+        }
+    }
+
+    /**
+     * Genome key for a packed bit string (see {@link PackedBits}).
+     * Holds a copy of the words.
+     */
+    private static final class LongArrayKey {
+        /** the genes */
+        private final long[] genes;
+        /** cached hash code */
+        private final int hash;
+
+        /**
+         * @param genes the genes (not copied)
+         */
+        LongArrayKey(long[] genes) {
+            this.genes = genes;
+            this.hash = Arrays.hashCode(genes);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof LongArrayKey
+                && hash == ((LongArrayKey) other).hash
+                && Arrays.equals(genes, ((LongArrayKey) other).genes);
+        }
+    }
+
+    /**
+     * Key for a genome evaluated against a particular problem: equal only to
+     * keys for the identical problem instance and an equal genome key.
+     */
+    private static final class ProblemKey {
+        /** the problem, compared by identity */
+        private final Object problem;
+        /** genome key */
+        private final Object genes;
+        /** cached hash code */
+        private final int hash;
+
+        /**
+         * @param problem the problem
+         * @param genes genome key
+         */
+        ProblemKey(Object problem, Object genes) {
+            this.problem = problem;
+            this.genes = genes;
+            this.hash = 31 * System.identityHashCode(problem) + genes.hashCode();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ProblemKey
+                && hash == ((ProblemKey) other).hash
+                && problem == ((ProblemKey) other).problem
+                && genes.equals(((ProblemKey) other).genes);
+        }
+    }
+
+    /**
+     * Creates a cache holding at most about <code>capacity</code> fitness values.
+     *
+     * @param capacity maximal number of entries
+     */
+    public FitnessCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive.");
+        }
+        segments = new Segment[SEGMENTS];
+        int perSegment = Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Genome key for a vector of doubles, suitable as the return value of
+     * {@link Chromosome#getFitnessCacheKey()}.
+     *
+     * @param genes the genes, which are copied
+     * @return a key equal to the key of any other vector with the same values
+     */
+    public static Object keyOf(double[] genes) {
+        return new DoubleArrayKey(genes.clone());
+    }
+
+    /**
+     * Genome key for a vector of longs, such as a packed bit string.
+     *
+     * @param genes the genes, which are copied
+     * @return a key equal to the key of any other vector with the same values
+     */
+    public static Object keyOf(long[] genes) {
+        return new LongArrayKey(genes.clone());
+    }
+
+    /**
+     * Key for a genome whose fitness depends on a problem instance as well as
+     * on the genes, for chromosomes of one class that are used with different
+     * fitness functions (or different data). The key is equal only to keys
+     * made for the identical problem, and holds a reference to it until the
+     * entry is evicted.
+     *
+     * @param problem the object defining the fitness function
+     * @param genes genome key, e.g. from {@link #keyOf(double[])}
+     * @return a key for the genome within the problem
+     */
+    public static Object keyOf(Object problem, Object genes) {
+        return new ProblemKey(problem, genes);
+    }
+
+    /**
+     * Look up the fitness of a genome.
+     *
+     * @param type chromosome class
+     * @param genes genome key
+     * @return the cached fitness, or NaN if there is none
+     */
+    double get(Class<?> type, Object genes) {
+        Key key = new Key(type, genes);
+        Segment segment = segmentFor(key);
+        Double value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value == null) {
+            misses.incrementAndGet();
+            return Double.NaN;
+        }
+        hits.incrementAndGet();
+        return value.doubleValue();
+    }
+
+    /**
+     * Record the fitness of a genome.
+     *
+     * @param type chromosome class
+     * @param genes genome key
+     * @param fitness the fitness
+     */
+    void put(Class<?> type, Object genes, double fitness) {
+        Key key = new Key(type, genes);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, fitness);
+        }
+    }
+
+    /**
+     * @param key a key
+     * @return the segment holding the key
+     */
+    private Segment segmentFor(Key key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Remove all entries and reset the counters.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * @return the number of cached values
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of lookups that found a value
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that found nothing
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the proportion of lookups that found a value, or 0 if there were none
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return (total == 0) ? 0.0 : (double) h / total;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+/**
+ * Sorting helpers for primitive fitness arrays, working on row indices so
+ * that no fitness value is ever boxed.
+ *
+ * @version $Id$
+ */
+final class FitnessIndexSort {
+
+    /** below this size ranges are finished with an insertion sort */
+    private static final int INSERTION_THRESHOLD = 16;
+
+    /** Hidden constructor. */
+    private FitnessIndexSort() {
+    }
+
+    /**
+     * Sort <code>index[0..n)</code> so that the fitness values they point at
+     * are in ascending order (the fittest last, as after sorting chromosomes).
+     *
+     * @param fitness fitness values, indexed by the entries of <code>index</code>
+     * @param index indices to sort
+     * @param n number of indices to sort
+     */
+    static void sortAscending(double[] fitness, int[] index, int n) {
+        quickSort(fitness, index, 0, n - 1);
+    }
+
+    /**
+     * Partially sort <code>index[0..n)</code> so that <code>index[k]</code> points at
+     * the fitness value of rank <code>k</code> (ascending), every index before it at
+     * a value no larger and every index after it at a value no smaller. Expected
+     * O(n) (quickselect).
+     *
+     * @param fitness fitness values, indexed by the entries of <code>index</code>
+     * @param index indices to partition
+     * @param n number of indices
+     * @param k rank to select, in [0, n)
+     */
+    static void select(double[] fitness, int[] index, int n, int k) {
+        int lo = 0;
+        int hi = n - 1;
+        while (hi - lo >= INSERTION_THRESHOLD) {
+            int p = partition(fitness, index, lo, hi);
+            if (p == k) {
+                return;
+            } else if (p < k) {
+                lo = p + 1;
+            } else {
+                hi = p - 1;
+            }
+        }
+        insertionSort(fitness, index, lo, hi);
+    }
+
+    /**
+     * Merge two ascending runs of indices, <code>index[0..mid)</code> and
+     * <code>index[mid..n)</code>, into ascending order. The merge is stable.
+     *
+     * @param fitness fitness values, indexed by the entries of <code>index</code>
+     * @param index the two runs, replaced by the merged run
+     * @param mid start of the second run
+     * @param n total number of indices
+     * @param buffer scratch space of at least <code>mid</code> entries
+     */
+    static void merge(double[] fitness, int[] index, int mid, int n, int[] buffer) {
+        System.arraycopy(index, 0, buffer, 0, mid);
+        int i = 0;
+        int j = mid;
+        int out = 0;
+        while (i < mid && j < n) {
+            if (fitness[index[j]] < fitness[buffer[i]]) {
+                index[out++] = index[j++];
+            } else {
+                index[out++] = buffer[i++];
+            }
+        }
+        while (i < mid) {
+            index[out++] = buffer[i++];
+        }
+        // anything left of the second run is already in place
+    }
+
+    /**
+     * Sort <code>index[lo..hi]</code> in ascending fitness order.
+     *
+     * @param fitness fitness values, indexed by the entries of <code>index</code>
+     * @param index indices to sort
+     * @param lo first position to sort
+     * @param hi last position to sort (inclusive)
+     */
+    static void sortAscending(double[] fitness, int[] index, int lo, int hi) {
+        quickSort(fitness, index, lo, hi);
+    }
+
+    /**
+     * Quicksort of <code>index[lo..hi]</code> with median of three pivots.
+     * Recurses on the smaller part only, so the stack depth stays logarithmic.
+     */
+    private static void quickSort(double[] fitness, int[] index, int lo, int hi) {
+        while (hi - lo >= INSERTION_THRESHOLD) {
+            int p = partition(fitness, index, lo, hi);
+            if (p - lo < hi - p) {
+                quickSort(fitness, index, lo, p - 1);
+                lo = p + 1;
+            } else {
+                quickSort(fitness, index, p + 1, hi);
+                hi = p - 1;
+            }
+        }
+        insertionSort(fitness, index, lo, hi);
+    }
+
+    /**
+     * Partition <code>index[lo..hi]</code> around a median of three pivot.
+     * @return the final position of the pivot
+     */
+    static int partition(double[] fitness, int[] index, int lo, int hi) {
+        int mid = (lo + hi) >>> 1;
+        if (less(fitness, index[mid], index[lo])) {
+            swap(index, mid, lo);
+        }
+        if (less(fitness, index[hi], index[lo])) {
+            swap(index, hi, lo);
+        }
+        if (less(fitness, index[hi], index[mid])) {
+            swap(index, hi, mid);
+        }
+        // pivot (the median) goes to hi - 1; lo and hi are already on the right sides
+        swap(index, mid, hi - 1);
+        double pivot = fitness[index[hi - 1]];
+        int i = lo;
+        int j = hi - 1;
+        while (true) {
+            while (fitness[index[++i]] < pivot) {
+            }
+            while (pivot < fitness[index[--j]]) {
+            }
+            if (i >= j) {
+                break;
+            }
+            swap(index, i, j);
+        }
+        swap(index, i, hi - 1);
+        return i;
+    }
+
+    /** Insertion sort of <code>index[lo..hi]</code>. */
+    private static void insertionSort(double[] fitness, int[] index, int lo, int hi) {
+        for (int i = lo + 1; i <= hi; i++) {
+            int current = index[i];
+            double key = fitness[current];
+            int j = i - 1;
+            while (j >= lo && key < fitness[index[j]]) {
+                index[j + 1] = index[j];
+                j--;
+            }
+            index[j + 1] = current;
+        }
+    }
+
+    /** Compare the fitness of two rows. */
+    private static boolean less(double[] fitness, int a, int b) {
+        return fitness[a] < fitness[b];
+    }
+
+    /** Swap two entries of the index array. */
+    static void swap(int[] index, int a, int b) {
+        int tmp = index[a];
+        index[a] = index[b];
+        index[b] = tmp;
+    }
+}
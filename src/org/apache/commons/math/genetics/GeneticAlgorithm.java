@@ -16,6 +16,16 @@
  */
 package org.apache.commons.math.genetics;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math.MathRuntimeException;
 import org.apache.commons.math.random.RandomGenerator;
 import org.apache.commons.math.random.JDKRandomGenerator;
 
@@ -37,6 +47,24 @@ public class GeneticAlgorithm {
     //@GuardedBy("this")
     private static RandomGenerator randomGenerator = new JDKRandomGenerator();
 
+    /**
+     * Random generator of the chromosome currently being evaluated on each thread
+     * in parallel mode. Each evaluation gets a generator seeded from a draw of the
+     * shared generator, so results do not depend on thread scheduling.
+     */
+    private static final ThreadLocal<RandomGenerator> evaluationGenerator =
+        new ThreadLocal<RandomGenerator>();
+
+    /**
+     * Random generator that replaces the shared one on the current thread, used
+     * by {@link IslandGeneticAlgorithm} to give each island its own generator.
+     */
+    private static final ThreadLocal<RandomGenerator> threadGenerator =
+        new ThreadLocal<RandomGenerator>();
+
+    /** Multiplier used to spread the per-chromosome and per-island seeds. */
+    static final long SEED_SPREAD = 0x9E3779B97F4A7C15L;
+
     /** the crossover policy used by the algorithm. */
     private final CrossoverPolicy crossoverPolicy;
 
@@ -55,6 +83,9 @@ public class GeneticAlgorithm {
     /** the number of generations evolved to reach {@link StoppingCondition} in the last run. */
     private int generationsEvolved = 0;
 
+    /** executor used to evaluate fitness in parallel, or null for lazy serial evaluation. */
+    private ExecutorService evaluationExecutor = null;
+
     /**
      * @param crossoverPolicy The {@link CrossoverPolicy}
      * @param crossoverRate The crossover rate as a percentage (0-1 inclusive)
@@ -89,19 +120,85 @@ public class GeneticAlgorithm {
     }
 
     /**
-     * Returns the (static) random generator.
+     * Returns the (static) random generator, unless the current thread has
+     * been given its own with {@link #setThreadRandomGenerator(RandomGenerator)}.
      *
-     * @return the static random generator shared by GA implementation classes
+     * @return the random generator used by GA implementation classes on this thread
      */
-    public static synchronized RandomGenerator getRandomGenerator() {
-        return randomGenerator;
+    public static RandomGenerator getRandomGenerator() {
+        RandomGenerator local = threadGenerator.get();
+        if (local != null) {
+            return local;
+        }
+        synchronized (GeneticAlgorithm.class) {
+            return randomGenerator;
+        }
+    }
+
+    /**
+     * Make {@link #getRandomGenerator()} return the given generator on the
+     * current thread instead of the shared one.
+     *
+     * @param random generator for this thread, or null to use the shared one again
+     */
+    static void setThreadRandomGenerator(RandomGenerator random) {
+        if (random == null) {
+            threadGenerator.remove();
+        } else {
+            threadGenerator.set(random);
+        }
+    }
+
+    /**
+     * Returns the random generator that fitness functions should use if they
+     * need random numbers and want reproducible results in parallel mode.
+     * While a chromosome is being evaluated by {@link #evaluateFitness(Population)}
+     * this is a per-thread generator seeded deterministically for that chromosome;
+     * otherwise it is the shared generator returned by {@link #getRandomGenerator()}.
+     *
+     * @return the random generator for the current fitness evaluation
+     */
+    public static RandomGenerator getEvaluationRandomGenerator() {
+        RandomGenerator local = evaluationGenerator.get();
+        return (local != null) ? local : getRandomGenerator();
+    }
+
+    /**
+     * Sets the executor used to evaluate fitness. When set, every chromosome
+     * of each new generation (and of the initial population) has its fitness
+     * computed on the executor before the generation is returned, so that
+     * selection and sorting only ever see cached values. When null (the
+     * default), fitness is computed lazily on the calling thread.
+     *
+     * With an executor, {@link Chromosome#fitness()} is called from several
+     * threads at once and must be thread-safe: it may not modify state shared
+     * with other chromosomes, except state guarded by the chromosome's
+     * {@link Chromosome#getEvaluationLock() evaluation lock}, since chromosomes
+     * with the same lock are never evaluated concurrently. The
+     * {@link FitnessCache}, if any, is safe to share.
+     *
+     * The caller owns the executor and is responsible for shutting it down.
+     *
+     * @param executor executor used for fitness evaluation, or null
+     */
+    public void setEvaluationExecutor(ExecutorService executor) {
+        this.evaluationExecutor = executor;
+    }
+
+    /**
+     * Returns the executor used to evaluate fitness.
+     * @return the evaluation executor, or null if evaluation is serial
+     */
+    public ExecutorService getEvaluationExecutor() {
+        return evaluationExecutor;
     }
 
     /**
      * Evolve the given population. Evolution stops when the stopping condition
      * is satisfied. Updates the {@link #getGenerationsEvolved() generationsEvolved}
      * property with the number of generations evolved before the StoppingCondition
-     * is satisfied.
+     * is satisfied. {@link ArrayPopulation}s are evolved with their own array
+     * policies.
      *
      * @param initial the initial, seed population.
      * @param condition the stopping condition used to stop evolution.
@@ -110,6 +207,9 @@ public class GeneticAlgorithm {
     public Population evolve(Population initial, StoppingCondition condition) {
         Population current = initial;
         generationsEvolved = 0;
+        if (evaluationExecutor != null) {
+            evaluateFitness(current);
+        }
         while (!condition.isSatisfied(current)) {
             current = nextGeneration(current);
             generationsEvolved++;
@@ -132,6 +232,8 @@ public class GeneticAlgorithm {
      *        <li>Add offspring individually to nextGeneration,
      *            space permitting</li>
      *    </ul>
+     *    <li>If an evaluation executor is set, compute the fitness of all
+     *        new chromosomes in parallel</li>
      *    <li>Return nextGeneration</li>
      *    </ol>
      * </p>
@@ -140,6 +242,9 @@ public class GeneticAlgorithm {
      * @return the population for the next generation.
      */
     public Population nextGeneration(Population current) {
+        if (current instanceof ArrayPopulation) {
+            return nextGeneration((ArrayPopulation) current);
+        }
         Population nextGeneration = current.nextGeneration();
 
         RandomGenerator randGen = getRandomGenerator();
@@ -171,9 +276,165 @@ public class GeneticAlgorithm {
             }
         }
 
+        if (evaluationExecutor != null) {
+            evaluateFitness(nextGeneration);
+        }
+        return nextGeneration;
+    }
+
+    /**
+     * Evolve an {@link ArrayPopulation} into the next generation. The steps are
+     * those of {@link #nextGeneration(Population)}, but parents are selected and
+     * offspring produced in place by the array policies of the population; only
+     * the crossover and mutation rates of this algorithm are used.
+     *
+     * @param current the current population.
+     * @return the population for the next generation.
+     */
+    private Population nextGeneration(ArrayPopulation current) {
+        ArrayPopulation nextGeneration = current.nextGeneration();
+        nextGeneration.breed(current, getCrossoverRate(), getMutationRate());
+        if (evaluationExecutor != null) {
+            evaluateFitness(nextGeneration);
+        }
         return nextGeneration;
     }
 
+    /**
+     * Computes the fitness of every chromosome in the population that does not
+     * have a cached fitness yet, using the evaluation executor. Blocks until all
+     * evaluations are done.
+     *
+     * Each evaluation gets its own seed for {@link #getEvaluationRandomGenerator()},
+     * derived from one draw of the shared generator and the chromosome's position
+     * in the population, so a seeded run is reproducible whatever the number of
+     * threads.
+     *
+     * An instance that appears several times in the population is evaluated
+     * once, and chromosomes with the same {@link Chromosome#getEvaluationLock()
+     * evaluation lock} are evaluated sequentially in a single task. The rows
+     * of an {@link ArrayPopulation} are evaluated in place.
+     *
+     * @param population the population to evaluate
+     */
+    protected void evaluateFitness(Population population) {
+        final long baseSeed = getRandomGenerator().nextLong();
+        if (population instanceof ArrayPopulation) {
+            evaluateFitness((ArrayPopulation) population, baseSeed);
+            return;
+        }
+        // the same instance can appear more than once (e.g. kept by elitism and
+        // selected again), and must only be evaluated once; chromosomes sharing
+        // an evaluation lock are evaluated in one task, one after another
+        Map<Chromosome, Boolean> seen = new IdentityHashMap<Chromosome, Boolean>();
+        Map<Object, List<Chromosome>> byLock = new IdentityHashMap<Object, List<Chromosome>>();
+        Map<Chromosome, Long> seeds = new IdentityHashMap<Chromosome, Long>();
+        List<List<Chromosome>> groups = new ArrayList<List<Chromosome>>();
+        int index = 0;
+        for (final Chromosome chromosome : population) {
+            final long seed = baseSeed + SEED_SPREAD * index++;
+            if (chromosome.isFitnessCached() || seen.put(chromosome, Boolean.TRUE) != null) {
+                continue;
+            }
+            seeds.put(chromosome, seed);
+            Object lock = chromosome.getEvaluationLock();
+            List<Chromosome> group = (lock != null) ? byLock.get(lock) : null;
+            if (group == null) {
+                group = new ArrayList<Chromosome>();
+                groups.add(group);
+                if (lock != null) {
+                    byLock.put(lock, group);
+                }
+            }
+            group.add(chromosome);
+        }
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(groups.size());
+        for (final List<Chromosome> group : groups) {
+            final long[] groupSeeds = new long[group.size()];
+            for (int i = 0; i < groupSeeds.length; i++) {
+                groupSeeds[i] = seeds.get(group.get(i));
+            }
+            tasks.add(new Callable<Object>() {
+                public Object call() {
+                    for (int i = 0; i < groupSeeds.length; i++) {
+                        Chromosome chromosome = group.get(i);
+                        RandomGenerator local = new JDKRandomGenerator();
+                        local.setSeed(groupSeeds[i]);
+                        evaluationGenerator.set(local);
+                        try {
+                            chromosome.getFitness();
+                        } finally {
+                            evaluationGenerator.remove();
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        invokeAll(tasks);
+    }
+
+    /**
+     * Computes the fitness of every row of an {@link ArrayPopulation} that does
+     * not have a cached fitness yet, writing it into the population's fitness
+     * column, with the seeds {@link #evaluateFitness(Population)} would use.
+     *
+     * @param population the population to evaluate
+     * @param baseSeed seed of the first row
+     */
+    private void evaluateFitness(final ArrayPopulation population, long baseSeed) {
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int i = 0; i < population.getPopulationSize(); i++) {
+            if (population.isFitnessCached(i)) {
+                continue;
+            }
+            final int row = i;
+            final long seed = baseSeed + SEED_SPREAD * i;
+            tasks.add(new Callable<Object>() {
+                public Object call() {
+                    RandomGenerator local = new JDKRandomGenerator();
+                    local.setSeed(seed);
+                    evaluationGenerator.set(local);
+                    try {
+                        population.getFitness(row);
+                    } finally {
+                        evaluationGenerator.remove();
+                    }
+                    return null;
+                }
+            });
+        }
+        invokeAll(tasks);
+    }
+
+    /**
+     * Runs the evaluation tasks on the evaluation executor and waits for all
+     * of them, rethrowing the first failure.
+     *
+     * @param tasks the tasks to run
+     */
+    private void invokeAll(List<Callable<Object>> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        try {
+            for (Future<Object> result : evaluationExecutor.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MathRuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MathRuntimeException(cause);
+        }
+    }
+
     /**
      * Returns the crossover policy.
      * @return crossover policy
@@ -0,0 +1,393 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math.MathRuntimeException;
+import org.apache.commons.math.random.JDKRandomGenerator;
+import org.apache.commons.math.random.RandomGenerator;
+
+/**
+ * Island model genetic algorithm: several sub-populations ("islands") evolve
+ * side by side, each on its own thread, and every {@link #getMigrationInterval()}
+ * generations each island sends its fittest chromosomes to its neighbours in
+ * a {@link MigrationTopology}, where they replace the least fit chromosomes.
+ * Migrants are not copied: a {@link QueueMigrationTransport} hands the same
+ * instances to the receiving island, so that one chromosome can belong to
+ * several islands at once (a {@link SocketMigrationTransport} decodes new
+ * instances). This relies on chromosomes being immutable, as the genetic
+ * operators of this package create new chromosomes rather than modify them.
+ *
+ * All islands evolve with one {@link GeneticAlgorithm} built from the given
+ * policies and rates, so the policies are called from several threads at once
+ * and must be thread safe ({@link TournamentSelection} is; {@link WeightedSelection}
+ * works but serializes the islands). Each island draws its random numbers
+ * from its own generator, returned by {@link GeneticAlgorithm#getRandomGenerator()}
+ * on the island's thread and seeded from one draw of the shared generator and
+ * the island's global id, so a seeded run is reproducible. Fitness is computed
+ * holding each chromosome's {@link Chromosome#getEvaluationLock() evaluation
+ * lock}, so chromosomes of different islands that share a target object are
+ * never evaluated at the same time. The islands of one process advance in
+ * lock step, one generation at a time, and the {@link StoppingCondition} is
+ * checked once per generation against a read-only view of all local islands.
+ *
+ * Islands have global ids, so islands hosted in several processes can
+ * cooperate through a {@link SocketMigrationTransport}: each process evolves
+ * its own range of ids, and migrants from remote islands are merged in at the
+ * next migration step after they arrive.
+ *
+ * Islands must be {@link ListPopulation}s.
+ *
+ * @version $Id$
+ */
+public class IslandGeneticAlgorithm {
+
+    /** the algorithm each island evolves with */
+    private final GeneticAlgorithm algorithm;
+
+    /** who sends migrants to whom */
+    private final MigrationTopology topology;
+
+    /** number of generations between migrations */
+    private final int migrationInterval;
+
+    /** number of chromosomes each island sends to each neighbour */
+    private final int migrantCount;
+
+    /** carrier of migrants */
+    private final MigrationTransport transport;
+
+    /** the number of generations evolved to reach {@link StoppingCondition} in the last run. */
+    private int generationsEvolved = 0;
+
+    /**
+     * @param crossoverPolicy The {@link CrossoverPolicy}
+     * @param crossoverRate The crossover rate as a percentage (0-1 inclusive)
+     * @param mutationPolicy The {@link MutationPolicy}
+     * @param mutationRate The mutation rate as a percentage (0-1 inclusive)
+     * @param selectionPolicy The {@link SelectionPolicy}
+     * @param topology who sends migrants to whom
+     * @param migrationInterval number of generations between migrations
+     * @param migrantCount number of chromosomes each island sends to each neighbour
+     * @param transport carrier of migrants
+     */
+    public IslandGeneticAlgorithm(
+            CrossoverPolicy crossoverPolicy, double crossoverRate,
+            MutationPolicy mutationPolicy, double mutationRate,
+            SelectionPolicy selectionPolicy,
+            MigrationTopology topology, int migrationInterval, int migrantCount,
+            MigrationTransport transport) {
+        if (migrationInterval <= 0) {
+            throw new IllegalArgumentException("migrationInterval must be positive");
+        }
+        if (migrantCount < 0) {
+            throw new IllegalArgumentException("migrantCount must not be negative");
+        }
+        this.algorithm = new GeneticAlgorithm(crossoverPolicy, crossoverRate,
+                                              mutationPolicy, mutationRate, selectionPolicy);
+        this.topology = topology;
+        this.migrationInterval = migrationInterval;
+        this.migrantCount = migrantCount;
+        this.transport = transport;
+    }
+
+    /**
+     * Evolve islands that all live in this process, with ids
+     * <code>0..islands.size()-1</code>.
+     *
+     * @param islands the initial populations of the islands
+     * @param condition the stopping condition used to stop evolution.
+     * @return the populations of the islands when the stopping condition is satisfied.
+     */
+    public List<Population> evolve(List<Population> islands, StoppingCondition condition) {
+        return evolve(islands, 0, islands.size(), condition);
+    }
+
+    /**
+     * Evolve the local islands of a model spread over several processes. The
+     * local islands have ids <code>firstIsland..firstIsland+islands.size()-1</code>
+     * out of <code>islandCount</code> islands in total.
+     *
+     * @param islands the initial populations of the local islands
+     * @param firstIsland global id of the first local island
+     * @param islandCount total number of islands in all processes
+     * @param condition the stopping condition used to stop evolution.
+     * @return the populations of the local islands when the stopping condition is satisfied.
+     */
+    public List<Population> evolve(List<Population> islands, int firstIsland, int islandCount,
+                                   StoppingCondition condition) {
+        if (firstIsland < 0 || firstIsland + islands.size() > islandCount) {
+            throw new IllegalArgumentException("Local islands must lie within [0, islandCount)");
+        }
+        final List<Population> current = new ArrayList<Population>(islands);
+        for (Population island : current) {
+            if (!(island instanceof ListPopulation)) {
+                throw new IllegalArgumentException("Islands must be ListPopulations.");
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, current.size()));
+        try {
+            final long baseSeed = GeneticAlgorithm.getRandomGenerator().nextLong();
+            List<Callable<Population>> tasks = new ArrayList<Callable<Population>>(current.size());
+            for (int i = 0; i < current.size(); i++) {
+                final int island = i;
+                final RandomGenerator generator = new JDKRandomGenerator();
+                generator.setSeed(baseSeed + GeneticAlgorithm.SEED_SPREAD * (firstIsland + i));
+                tasks.add(new Callable<Population>() {
+                    public Population call() {
+                        GeneticAlgorithm.setThreadRandomGenerator(generator);
+                        try {
+                            return algorithm.nextGeneration(current.get(island));
+                        } finally {
+                            GeneticAlgorithm.setThreadRandomGenerator(null);
+                        }
+                    }
+                });
+            }
+            generationsEvolved = 0;
+            while (!condition.isSatisfied(new Archipelago(current))) {
+                List<Future<Population>> results = executor.invokeAll(tasks);
+                for (int i = 0; i < results.size(); i++) {
+                    current.set(i, results.get(i).get());
+                }
+                generationsEvolved++;
+                if (generationsEvolved % migrationInterval == 0) {
+                    migrate(current, firstIsland, islandCount);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MathRuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MathRuntimeException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        return current;
+    }
+
+    /**
+     * Send the fittest chromosomes of every local island to its neighbours,
+     * then let every local island absorb the migrants that have arrived.
+     *
+     * @param islands the local islands
+     * @param firstIsland global id of the first local island
+     * @param islandCount total number of islands
+     */
+    private void migrate(List<Population> islands, int firstIsland, int islandCount) {
+        if (migrantCount == 0) {
+            return;
+        }
+        for (int i = 0; i < islands.size(); i++) {
+            List<Chromosome> chromosomes = ((ListPopulation) islands.get(i)).getChromosomes();
+            int n = Math.min(migrantCount, chromosomes.size());
+            if (n == 0) {
+                continue;
+            }
+            int[] order = rankedIndices(chromosomes, chromosomes.size() - n);
+            List<Chromosome> emigrants = new ArrayList<Chromosome>(n);
+            for (int j = chromosomes.size() - n; j < chromosomes.size(); j++) {
+                emigrants.add(chromosomes.get(order[j]));
+            }
+            emigrants = Collections.unmodifiableList(emigrants);
+            for (int target : topology.targets(firstIsland + i, islandCount)) {
+                transport.send(firstIsland + i, target, emigrants);
+            }
+        }
+        for (int i = 0; i < islands.size(); i++) {
+            List<Chromosome> immigrants = transport.receive(firstIsland + i);
+            List<Chromosome> chromosomes = ((ListPopulation) islands.get(i)).getChromosomes();
+            int n = Math.min(immigrants.size(), chromosomes.size());
+            if (n == 0) {
+                continue;
+            }
+            // the least fit make room; if more arrived than fit, the last ones win
+            int[] order = rankedIndices(chromosomes, n);
+            for (int j = 0; j < n; j++) {
+                chromosomes.set(order[j], immigrants.get(immigrants.size() - n + j));
+            }
+        }
+    }
+
+    /**
+     * Indices of the chromosomes, partitioned so that the first <code>k</code>
+     * point at the least fit ones and the rest at the fittest ones.
+     *
+     * @param chromosomes the chromosomes
+     * @param k size of the least fit part
+     * @return the partitioned indices
+     */
+    private static int[] rankedIndices(List<Chromosome> chromosomes, int k) {
+        int size = chromosomes.size();
+        double[] fitness = new double[size];
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            fitness[i] = chromosomes.get(i).getFitness();
+            order[i] = i;
+        }
+        if (k > 0 && k < size) {
+            FitnessIndexSort.select(fitness, order, size, k);
+        }
+        return order;
+    }
+
+    /**
+     * The fittest chromosome over a set of islands.
+     *
+     * @param islands the islands, as returned by {@link #evolve(List, StoppingCondition)}
+     * @return the fittest chromosome
+     */
+    public static Chromosome getFittestChromosome(List<Population> islands) {
+        return new Archipelago(islands).getFittestChromosome();
+    }
+
+    /**
+     * Returns the number of generations evolved to
+     * reach {@link StoppingCondition} in the last run.
+     *
+     * @return number of generations evolved
+     */
+    public int getGenerationsEvolved() {
+        return generationsEvolved;
+    }
+
+    /**
+     * @return the number of generations between migrations
+     */
+    public int getMigrationInterval() {
+        return migrationInterval;
+    }
+
+    /**
+     * @return the number of chromosomes each island sends to each neighbour
+     */
+    public int getMigrantCount() {
+        return migrantCount;
+    }
+
+    /**
+     * @return the migration topology
+     */
+    public MigrationTopology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Read-only view of several islands as one population, handed to the
+     * stopping condition.
+     */
+    private static class Archipelago implements Population {
+
+        /** the islands */
+        private final List<Population> islands;
+
+        /**
+         * @param islands the islands
+         */
+        Archipelago(List<Population> islands) {
+            this.islands = islands;
+        }
+
+        /** {@inheritDoc} */
+        public int getPopulationSize() {
+            int size = 0;
+            for (Population island : islands) {
+                size += island.getPopulationSize();
+            }
+            return size;
+        }
+
+        /** {@inheritDoc} */
+        public int getPopulationLimit() {
+            int limit = 0;
+            for (Population island : islands) {
+                limit += island.getPopulationLimit();
+            }
+            return limit;
+        }
+
+        /** Not supported: islands evolve separately. */
+        public Population nextGeneration() {
+            throw new UnsupportedOperationException();
+        }
+
+        /** Not supported: the view is read-only. */
+        public void addChromosome(Chromosome chromosome) {
+            throw new UnsupportedOperationException();
+        }
+
+        /** {@inheritDoc} */
+        public Chromosome getFittestChromosome() {
+            Chromosome best = null;
+            for (Population island : islands) {
+                if (island.getPopulationSize() == 0) {
+                    continue;
+                }
+                Chromosome candidate = island.getFittestChromosome();
+                if (best == null || candidate.compareTo(best) > 0) {
+                    best = candidate;
+                }
+            }
+            return best;
+        }
+
+        /** {@inheritDoc} */
+        public Iterator<Chromosome> iterator() {
+            return new Iterator<Chromosome>() {
+                private int island = 0;
+                private Iterator<Chromosome> inner = null;
+
+                public boolean hasNext() {
+                    while (inner == null || !inner.hasNext()) {
+                        if (island >= islands.size()) {
+                            return false;
+                        }
+                        inner = islands.get(island++).iterator();
+                    }
+                    return true;
+                }
+
+                public Chromosome next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return inner.next();
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
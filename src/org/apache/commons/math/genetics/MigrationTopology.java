@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+/**
+ * Which islands of an {@link IslandGeneticAlgorithm} send migrants to which.
+ *
+ * @version $Id$
+ */
+public enum MigrationTopology {
+
+    /** each island sends to the next one, the last one to the first */
+    RING {
+        @Override
+        public int[] targets(int island, int islandCount) {
+            if (islandCount < 2) {
+                return new int[0];
+            }
+            return new int[] {(island + 1) % islandCount};
+        }
+    },
+
+    /** each island sends to every other island */
+    FULLY_CONNECTED {
+        @Override
+        public int[] targets(int island, int islandCount) {
+            int[] result = new int[Math.max(0, islandCount - 1)];
+            int n = 0;
+            for (int i = 0; i < islandCount; i++) {
+                if (i != island) {
+                    result[n++] = i;
+                }
+            }
+            return result;
+        }
+    };
+
+    /**
+     * Islands that receive the migrants of <code>island</code>.
+     *
+     * @param island id of the sending island, in [0, islandCount)
+     * @param islandCount total number of islands
+     * @return ids of the receiving islands
+     */
+    public abstract int[] targets(int island, int islandCount);
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+import java.util.List;
+
+/**
+ * Carries migrants between the islands of an {@link IslandGeneticAlgorithm}.
+ * Islands are identified by a global id, so a transport may connect islands
+ * living in different threads or in different processes.
+ *
+ * @version $Id$
+ */
+public interface MigrationTransport {
+
+    /**
+     * Send migrants. Must not block for long; delivery may be asynchronous,
+     * and migrants may be dropped if the receiving island is unreachable.
+     *
+     * @param fromIsland id of the sending island
+     * @param toIsland id of the receiving island
+     * @param migrants the chromosomes to send
+     */
+    void send(int fromIsland, int toIsland, List<Chromosome> migrants);
+
+    /**
+     * Take all migrants that have arrived for an island since the last call.
+     * Never blocks.
+     *
+     * @param island id of the receiving island
+     * @return the migrants, possibly none
+     */
+    List<Chromosome> receive(int island);
+}
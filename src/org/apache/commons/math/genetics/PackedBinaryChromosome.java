@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+import java.util.Arrays;
+
+/**
+ * Chromosome represented by a fixed length string of bits, packed 64 to a
+ * <code>long</code> (see {@link PackedBits}). This is a compact alternative
+ * to {@link BinaryChromosome}, whose genes are a list of boxed integers;
+ * {@link PackedBinaryCrossover} and {@link PackedBinaryMutation} operate on
+ * whole words.
+ *
+ * @version $Id$
+ */
+public abstract class PackedBinaryChromosome extends Chromosome {
+
+    /** the bits */
+    private final long[] words;
+
+    /** number of bits */
+    private final int length;
+
+    /**
+     * Constructor.
+     * @param words packed bits, copied; bits past <code>length</code> are ignored
+     * @param length number of bits
+     */
+    public PackedBinaryChromosome(long[] words, int length) {
+        if (length < 0 || words.length != PackedBits.wordCount(length)) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid representation for %s: %d words for %d bits",
+                    getClass().getSimpleName(), words.length, length));
+        }
+        this.words = words.clone();
+        this.length = length;
+        PackedBits.clearTail(this.words, length);
+    }
+
+    /**
+     * Returns a random bit string of length <code>length</code>.
+     * @param length number of bits
+     * @return packed random bits
+     */
+    public static long[] randomRepresentation(int length) {
+        return PackedBits.random(length, 0.5, GeneticAlgorithm.getRandomGenerator());
+    }
+
+    /**
+     * Creates a new instance of the same class as <code>this</code> is, with
+     * the given bits and the same length. This is needed in crossover and
+     * mutation operators.
+     *
+     * @param newWords packed bits of the new chromosome
+     * @return new instance with the given bits
+     */
+    public abstract PackedBinaryChromosome newPackedChromosome(long[] newWords);
+
+    /**
+     * Returns the number of bits.
+     * @return the length of the chromosome
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @param index bit index
+     * @return the bit at <code>index</code>
+     */
+    public boolean getBit(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Bit " + index + " out of range [0, " + length + ")");
+        }
+        return PackedBits.get(words, index);
+    }
+
+    /**
+     * Returns a copy of the packed bits.
+     * @return the bits
+     */
+    public long[] getWords() {
+        return words.clone();
+    }
+
+    /**
+     * Returns the packed bits without copying them, for the operators.
+     * @return the bits, which must not be modified
+     */
+    long[] words() {
+        return words;
+    }
+
+    /**
+     * Returns the number of set bits, the usual "one max" fitness.
+     * @return number of set bits
+     */
+    public int cardinality() {
+        return PackedBits.cardinality(words);
+    }
+
+    /**
+     * @param another chromosome of the same length
+     * @return the number of bits in which the two chromosomes differ
+     */
+    public int hammingDistance(PackedBinaryChromosome another) {
+        if (length != another.length) {
+            throw new IllegalArgumentException("Both chromosomes must have same lengths.");
+        }
+        return PackedBits.hammingDistance(words, another.words);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isSame(Chromosome another) {
+        if (!(another instanceof PackedBinaryChromosome)) {
+            return false;
+        }
+        PackedBinaryChromosome anotherPbc = (PackedBinaryChromosome) another;
+        return length == anotherPbc.length && Arrays.equals(words, anotherPbc.words);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Object getFitnessCacheKey() {
+        return FitnessCache.keyOf(words);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        StringBuilder bits = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            bits.append(PackedBits.get(words, i) ? '1' : '0');
+        }
+        return String.format("(f=%s %s)", getFitness(), bits);
+    }
+}
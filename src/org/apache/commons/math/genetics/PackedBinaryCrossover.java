@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+/**
+ * Crossover for {@link PackedBinaryChromosome}s, working a word at a time.
+ * By default this is a one point crossover with the same semantics as
+ * {@link OnePointCrossover}; it can also do a uniform crossover, where each
+ * bit is taken from either parent with equal probability.
+ *
+ * @version $Id$
+ */
+public class PackedBinaryCrossover implements CrossoverPolicy {
+
+    /** whether to do a uniform crossover instead of a one point one */
+    private final boolean uniform;
+
+    /**
+     * One point crossover.
+     */
+    public PackedBinaryCrossover() {
+        this(false);
+    }
+
+    /**
+     * @param uniform true for a uniform crossover, false for a one point one
+     */
+    public PackedBinaryCrossover(boolean uniform) {
+        this.uniform = uniform;
+    }
+
+    /**
+     * Performs the crossover.
+     *
+     * @param first first parent
+     * @param second second parent
+     * @return pair of two children
+     */
+    public ChromosomePair crossover(Chromosome first, Chromosome second) {
+        if (!(first instanceof PackedBinaryChromosome && second instanceof PackedBinaryChromosome)) {
+            throw new IllegalArgumentException("Packed binary crossover works on PackedBinaryChromosome only.");
+        }
+        PackedBinaryChromosome p1 = (PackedBinaryChromosome) first;
+        PackedBinaryChromosome p2 = (PackedBinaryChromosome) second;
+        int length = p1.getLength();
+        if (length != p2.getLength()) {
+            throw new IllegalArgumentException("Both chromosomes must have same lengths.");
+        }
+
+        long[] child1 = new long[p1.words().length];
+        long[] child2 = new long[child1.length];
+        if (uniform) {
+            PackedBits.uniformCrossover(p1.words(), p2.words(), child1, child2,
+                                        GeneticAlgorithm.getRandomGenerator());
+        } else {
+            // select a crossover point at random (0 and length makes no sense)
+            int crossoverIndex = 1 + (GeneticAlgorithm.getRandomGenerator().nextInt(length - 2));
+            PackedBits.onePointCrossover(p1.words(), p2.words(), crossoverIndex, child1, child2);
+        }
+
+        return new ChromosomePair(p1.newPackedChromosome(child1), p2.newPackedChromosome(child2));
+    }
+}
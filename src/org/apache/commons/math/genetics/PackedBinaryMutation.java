@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+/**
+ * Mutation for {@link PackedBinaryChromosome}s. Flips each bit independently
+ * with a given probability, skipping directly from one flipped bit to the
+ * next (see {@link PackedBits#flipRandom}). With the default rate of
+ * <code>1/length</code>, one bit is flipped on average, as in
+ * {@link BinaryMutation}.
+ *
+ * @version $Id$
+ */
+public class PackedBinaryMutation implements MutationPolicy {
+
+    /** probability of flipping each bit, negative for 1/length */
+    private final double rate;
+
+    /**
+     * Mutation flipping one bit per chromosome on average.
+     */
+    public PackedBinaryMutation() {
+        this(-1);
+    }
+
+    /**
+     * @param rate probability of flipping each bit
+     */
+    public PackedBinaryMutation(double rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * Mutate the given chromosome.
+     * @param original the original chromosome.
+     * @return the mutated chromosome.
+     */
+    public Chromosome mutate(Chromosome original) {
+        if (!(original instanceof PackedBinaryChromosome)) {
+            throw new IllegalArgumentException("Packed binary mutation works on PackedBinaryChromosome only.");
+        }
+        PackedBinaryChromosome origChrom = (PackedBinaryChromosome) original;
+        int length = origChrom.getLength();
+        double p = (rate < 0) ? 1.0 / length : rate;
+        long[] words = origChrom.words().clone();
+        PackedBits.flipRandom(words, length, p, GeneticAlgorithm.getRandomGenerator());
+        return origChrom.newPackedChromosome(words);
+    }
+}
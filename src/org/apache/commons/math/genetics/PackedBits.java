@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+import java.util.Arrays;
+
+import org.apache.commons.math.random.RandomGenerator;
+
+/**
+ * Operations on bit strings packed 64 to a <code>long</code>, bit <code>i</code>
+ * being bit <code>i % 64</code> of word <code>i / 64</code>. Bits past the
+ * length in the last word are kept clear, so that words can be compared and
+ * counted directly.
+ *
+ * Crossovers copy whole words and merge the boundary words with masks.
+ * Random mutations draw the distance to the next affected bit from a
+ * geometric distribution instead of drawing one random number per bit, so
+ * their cost is proportional to the number of bits changed, not to the length.
+ *
+ * Used by {@link PackedBinaryChromosome} and its operators; the methods work
+ * on plain arrays so they can be used outside of the genetics framework too.
+ *
+ * @version $Id$
+ */
+public final class PackedBits {
+
+    /** number of bits in a word */
+    private static final int WORD_SIZE = 64;
+
+    /** number of bits to shift an index by to get its word */
+    private static final int WORD_SHIFT = 6;
+
+    /**
+     * Hidden constructor.
+     */
+    private PackedBits() {
+    }
+
+    /**
+     * @param length number of bits
+     * @return number of words needed to hold <code>length</code> bits
+     */
+    public static int wordCount(int length) {
+        return (length + WORD_SIZE - 1) >>> WORD_SHIFT;
+    }
+
+    /**
+     * @param words the bits
+     * @param index bit index
+     * @return the bit at <code>index</code>
+     */
+    public static boolean get(long[] words, int index) {
+        return (words[index >>> WORD_SHIFT] & (1L << index)) != 0;
+    }
+
+    /**
+     * @param words the bits
+     * @param index bit index
+     * @param value new value of the bit
+     */
+    public static void set(long[] words, int index, boolean value) {
+        if (value) {
+            words[index >>> WORD_SHIFT] |= 1L << index;
+        } else {
+            words[index >>> WORD_SHIFT] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * @param words the bits
+     * @param index bit index
+     */
+    public static void flip(long[] words, int index) {
+        words[index >>> WORD_SHIFT] ^= 1L << index;
+    }
+
+    /**
+     * Clear the unused bits of the last word.
+     * @param words the bits
+     * @param length number of bits in use
+     */
+    public static void clearTail(long[] words, int length) {
+        int rest = length & (WORD_SIZE - 1);
+        if (rest != 0) {
+            words[length >>> WORD_SHIFT] &= (1L << rest) - 1;
+        }
+    }
+
+    /**
+     * @param words the bits
+     * @return the number of set bits
+     */
+    public static int cardinality(long[] words) {
+        int count = 0;
+        for (int i = 0; i < words.length; i++) {
+            count += Long.bitCount(words[i]);
+        }
+        return count;
+    }
+
+    /**
+     * @param a first bit string
+     * @param b second bit string, of the same length
+     * @return the number of bits that differ
+     */
+    public static int hammingDistance(long[] a, long[] b) {
+        int count = 0;
+        for (int i = 0; i < a.length; i++) {
+            count += Long.bitCount(a[i] ^ b[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Random bit string.
+     * @param length number of bits
+     * @param probability probability of each bit being set
+     * @param random source of randomness
+     * @return the bits
+     */
+    public static long[] random(int length, double probability, RandomGenerator random) {
+        long[] words = new long[wordCount(length)];
+        if (probability == 0.5) {
+            for (int i = 0; i < words.length; i++) {
+                words[i] = random.nextLong();
+            }
+            clearTail(words, length);
+        } else if (probability > 0.5) {
+            Arrays.fill(words, -1L);
+            clearTail(words, length);
+            flipRandom(words, length, 1.0 - probability, random);
+        } else {
+            flipRandom(words, length, probability, random);
+        }
+        return words;
+    }
+
+    /**
+     * Number of bits to skip before the next event, where each bit is an event
+     * independently with probability <code>rate</code>.
+     *
+     * @param rate probability of an event at each bit
+     * @param random source of randomness
+     * @return a geometrically distributed skip, {@link Integer#MAX_VALUE} if
+     *         <code>rate</code> is not positive
+     */
+    public static int nextSkip(double rate, RandomGenerator random) {
+        if (rate <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        if (rate >= 1) {
+            return 0;
+        }
+        double skip = Math.floor(Math.log(1.0 - random.nextDouble()) / Math.log1p(-rate));
+        return (skip >= Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) skip;
+    }
+
+    /**
+     * Flip each bit independently with probability <code>rate</code>.
+     *
+     * @param words the bits, modified in place
+     * @param length number of bits
+     * @param rate probability of flipping each bit
+     * @param random source of randomness
+     * @return the number of bits flipped
+     */
+    public static int flipRandom(long[] words, int length, double rate, RandomGenerator random) {
+        int flipped = 0;
+        long i = nextSkip(rate, random);
+        while (i < length) {
+            flip(words, (int) i);
+            ++flipped;
+            i += 1L + nextSkip(rate, random);
+        }
+        return flipped;
+    }
+
+    /**
+     * Asymmetric mutation: each set bit is cleared with probability
+     * <code>oneToZeroRate</code> and each clear bit is set with probability
+     * <code>zeroToOneRate</code>. Both skip sequences are walked together in
+     * bit order so that every bit is judged on its original value.
+     *
+     * @param words the bits, modified in place
+     * @param length number of bits
+     * @param oneToZeroRate probability of clearing a set bit
+     * @param zeroToOneRate probability of setting a clear bit
+     * @param random source of randomness
+     */
+    public static void mutate(long[] words, int length, double oneToZeroRate, double zeroToOneRate,
+                              RandomGenerator random) {
+        long nextClear = nextSkip(oneToZeroRate, random);
+        long nextSet = nextSkip(zeroToOneRate, random);
+        while (nextClear < length || nextSet < length) {
+            int index = (int) Math.min(nextClear, nextSet);
+            boolean bit = get(words, index);
+            if (nextClear == index) {
+                if (bit) {
+                    set(words, index, false);
+                }
+                nextClear += 1L + nextSkip(oneToZeroRate, random);
+            }
+            if (nextSet == index) {
+                if (!bit) {
+                    set(words, index, true);
+                }
+                nextSet += 1L + nextSkip(zeroToOneRate, random);
+            }
+        }
+    }
+
+    /**
+     * One point crossover: bits before <code>point</code> come from the same
+     * parent, bits from <code>point</code> on from the other one.
+     *
+     * @param first first parent
+     * @param second second parent
+     * @param point crossover point
+     * @param firstChild receives first[0, point) + second[point, length)
+     * @param secondChild receives second[0, point) + first[point, length)
+     */
+    public static void onePointCrossover(long[] first, long[] second, int point,
+                                         long[] firstChild, long[] secondChild) {
+        int word = point >>> WORD_SHIFT;
+        System.arraycopy(first, 0, firstChild, 0, word);
+        System.arraycopy(second, 0, secondChild, 0, word);
+        if (word < first.length) {
+            // shifts are mod 64, so this is 0 when point is on a word boundary
+            long low = (1L << point) - 1;
+            long a = first[word];
+            long b = second[word];
+            firstChild[word] = (a & low) | (b & ~low);
+            secondChild[word] = (b & low) | (a & ~low);
+            int rest = first.length - word - 1;
+            System.arraycopy(second, word + 1, firstChild, word + 1, rest);
+            System.arraycopy(first, word + 1, secondChild, word + 1, rest);
+        }
+    }
+
+    /**
+     * Uniform crossover: each bit comes from either parent with equal
+     * probability, the complementary bit going to the other child.
+     *
+     * @param first first parent
+     * @param second second parent
+     * @param firstChild first child
+     * @param secondChild second child
+     * @param random source of randomness
+     */
+    public static void uniformCrossover(long[] first, long[] second,
+                                        long[] firstChild, long[] secondChild, RandomGenerator random) {
+        for (int i = 0; i < first.length; i++) {
+            long mask = random.nextLong();
+            long a = first[i];
+            long b = second[i];
+            firstChild[i] = (a & mask) | (b & ~mask);
+            secondChild[i] = (b & mask) | (a & ~mask);
+        }
+    }
+
+    /**
+     * Crossover that walks along both parents copying from one of them, and
+     * switches to the other one after each bit with probability
+     * <code>switchRate</code>.
+     *
+     * @param first first parent
+     * @param second second parent
+     * @param child receives the result
+     * @param length number of bits
+     * @param switchRate probability of switching parents after each bit
+     * @param startOnFirst whether to start copying from the first parent
+     * @param random source of randomness
+     */
+    public static void switchingCrossover(long[] first, long[] second, long[] child, int length,
+                                          double switchRate, boolean startOnFirst, RandomGenerator random) {
+        boolean onFirst = startOnFirst;
+        long start = 0;
+        while (start < length) {
+            long end = Math.min(length, start + 1L + nextSkip(switchRate, random));
+            copyRange(onFirst ? first : second, child, (int) start, (int) end);
+            onFirst = !onFirst;
+            start = end;
+        }
+    }
+
+    /**
+     * Copy bits [from, to) of <code>source</code> into <code>destination</code>.
+     * @param source source bits
+     * @param destination destination bits
+     * @param from first bit to copy
+     * @param to bit after the last one to copy
+     */
+    public static void copyRange(long[] source, long[] destination, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int firstWord = from >>> WORD_SHIFT;
+        int lastWord = (to - 1) >>> WORD_SHIFT;
+        long firstMask = -1L << from;
+        // shifts are mod 64, so this is all ones when to is on a word boundary
+        long lastMask = -1L >>> -to;
+        if (firstWord == lastWord) {
+            long mask = firstMask & lastMask;
+            destination[firstWord] = (destination[firstWord] & ~mask) | (source[firstWord] & mask);
+            return;
+        }
+        destination[firstWord] = (destination[firstWord] & ~firstMask) | (source[firstWord] & firstMask);
+        System.arraycopy(source, firstWord + 1, destination, firstWord + 1, lastWord - firstWord - 1);
+        destination[lastWord] = (destination[lastWord] & ~lastMask) | (source[lastWord] & lastMask);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-process {@link MigrationTransport}: one lock-free queue per island.
+ * Migrants are passed by reference, not copied, so the receiving island
+ * gets the same instances as the sender; this is safe as long as the
+ * chromosomes are never modified after they are created.
+ *
+ * @version $Id$
+ */
+public class QueueMigrationTransport implements MigrationTransport {
+
+    /** arrived migrants of each island */
+    private final ConcurrentMap<Integer, Queue<Chromosome>> queues =
+        new ConcurrentHashMap<Integer, Queue<Chromosome>>();
+
+    /**
+     * {@inheritDoc}
+     */
+    public void send(int fromIsland, int toIsland, List<Chromosome> migrants) {
+        queue(toIsland).addAll(migrants);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Chromosome> receive(int island) {
+        Queue<Chromosome> queue = queue(island);
+        List<Chromosome> result = new ArrayList<Chromosome>();
+        Chromosome migrant;
+        while ((migrant = queue.poll()) != null) {
+            result.add(migrant);
+        }
+        return result;
+    }
+
+    /**
+     * @param island island id
+     * @return the queue of the island, created if needed
+     */
+    private Queue<Chromosome> queue(int island) {
+        Queue<Chromosome> queue = queues.get(island);
+        if (queue == null) {
+            Queue<Chromosome> created = new ConcurrentLinkedQueue<Chromosome>();
+            queue = queues.putIfAbsent(island, created);
+            if (queue == null) {
+                queue = created;
+            }
+        }
+        return queue;
+    }
+}
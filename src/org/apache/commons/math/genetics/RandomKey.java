@@ -99,6 +99,16 @@ public abstract class RandomKey<T> extends AbstractListChromosome<Double> implem
         this(Arrays.asList(representation));
     }
 
+    /**
+     * Random keys that decode to the same permutation have the same fitness
+     * (see {@link #isSame(Chromosome)}), so the permutation is the key.
+     * @return the permutation of the base sequence
+     */
+    @Override
+    protected Object getFitnessCacheKey() {
+        return baseSeqPermutation;
+    }
+
     /**
      * {@inheritDoc}
      */
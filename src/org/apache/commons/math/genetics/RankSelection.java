@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+/**
+ * Linear rank selection: individuals are ranked by fitness, and drawn with
+ * probability depending linearly on their rank only, which keeps the
+ * selection pressure constant whatever the scale of the fitness values.
+ *
+ * With selection pressure <code>s</code> in [1, 2], the fittest individual is
+ * expected to be drawn <code>s</code> times per <code>n</code> draws, and the
+ * least fit <code>2 - s</code> times.
+ *
+ * @version $Id$
+ */
+public class RankSelection extends WeightedSelection {
+
+    /** expected number of draws of the fittest individual per n draws */
+    private final double selectionPressure;
+
+    /** scratch rank order */
+    private int[] order = new int[0];
+
+    /**
+     * Creates a new RankSelection instance.
+     *
+     * @param selectionPressure selection pressure, in [1, 2]
+     */
+    public RankSelection(double selectionPressure) {
+        if (selectionPressure < 1 || selectionPressure > 2) {
+            throw new IllegalArgumentException("Selection pressure has to be in [1,2]");
+        }
+        this.selectionPressure = selectionPressure;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void computeWeights(double[] fitness, double[] out, int n) {
+        if (order.length < n) {
+            order = new int[n];
+        }
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        FitnessIndexSort.sortAscending(fitness, order, n);
+        for (int rank = 0; rank < n; rank++) {
+            double position = (n > 1) ? (double) rank / (n - 1) : 1.0;
+            out[order[rank]] = (2 - selectionPressure) + 2 * (selectionPressure - 1) * position;
+        }
+    }
+
+    /**
+     * @return the selection pressure
+     */
+    public double getSelectionPressure() {
+        return selectionPressure;
+    }
+
+}
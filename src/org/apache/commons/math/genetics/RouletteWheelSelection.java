@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+/**
+ * Fitness proportionate (roulette wheel) selection: each individual is drawn
+ * with probability proportional to its fitness. Draws use an alias table, so
+ * each one is O(1).
+ *
+ * If some fitness values are negative, all values are shifted up so that the
+ * least fit individual has weight zero.
+ *
+ * @version $Id$
+ */
+public class RouletteWheelSelection extends WeightedSelection {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void computeWeights(double[] fitness, double[] out, int n) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            min = Math.min(min, fitness[i]);
+        }
+        double shift = (min < 0) ? -min : 0.0;
+        for (int i = 0; i < n; i++) {
+            out[i] = fitness[i] + shift;
+        }
+    }
+
+}
@@ -0,0 +1,443 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link MigrationTransport} over TCP, so that island models running in
+ * several JVMs on one machine can exchange migrants.
+ *
+ * Each process creates one transport, which listens on a loopback port, and
+ * registers the address of every island hosted by another process with
+ * {@link #addRemoteIsland(int, InetSocketAddress)}. Migrants for islands that
+ * are not registered as remote stay in process. Migrants are encoded with a
+ * {@link ChromosomeCodec}; messages are an island id, a count of at most
+ * 65536 and the encoded chromosomes. A connection sending anything else is
+ * closed.
+ *
+ * {@link #send(int, int, List) send} only queues the migrants: each remote
+ * address has its own daemon thread that connects (with a timeout) and writes,
+ * so an unreachable or stalled peer only holds up migrants bound for it.
+ *
+ * Migration is best effort: if a remote island can not be reached (for
+ * instance because its process has already finished), or too many messages
+ * are already waiting for it, its migrants are dropped and counted in
+ * {@link #getDroppedMigrants()}, and a new connection is attempted for the
+ * next message.
+ *
+ * @version $Id$
+ */
+public class SocketMigrationTransport implements MigrationTransport {
+
+    /** largest number of migrants in one message; larger batches are split */
+    static final int MAX_MESSAGE_MIGRANTS = 1 << 16;
+
+    /** default timeout for connecting to and waiting on a peer, in milliseconds */
+    public static final int DEFAULT_TIMEOUT_MILLIS = 2000;
+
+    /** number of messages that may wait for one remote address before new ones are dropped */
+    static final int MAX_PENDING_MESSAGES = 64;
+
+    /** longest pause after a failed accept, in milliseconds */
+    private static final long MAX_ACCEPT_BACKOFF_MILLIS = 1000;
+
+    /** encoding of migrants */
+    private final ChromosomeCodec codec;
+
+    /** timeout for connecting and for socket operations, in milliseconds */
+    private final int timeoutMillis;
+
+    /** listening socket */
+    private final ServerSocket serverSocket;
+
+    /** migrants that arrived for local islands */
+    private final QueueMigrationTransport local = new QueueMigrationTransport();
+
+    /** addresses of islands hosted by other processes */
+    private final Map<Integer, InetSocketAddress> remoteIslands =
+        new ConcurrentHashMap<Integer, InetSocketAddress>();
+
+    /** senders for outgoing connections, by address */
+    //@GuardedBy("this")
+    private final Map<SocketAddress, Sender> senders = new HashMap<SocketAddress, Sender>();
+
+    /** accepted incoming connections, closed with the transport */
+    private final Set<Socket> accepted =
+        Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+    /** number of migrants that could not be delivered */
+    private final AtomicLong droppedMigrants = new AtomicLong();
+
+    /** set when the transport is closed */
+    private volatile boolean closed = false;
+
+    /** migrants waiting to be written */
+    private static class Message {
+        /** receiving island */
+        private final int toIsland;
+        /** the migrants */
+        private final List<Chromosome> migrants;
+
+        /**
+         * @param toIsland receiving island
+         * @param migrants the migrants
+         */
+        Message(int toIsland, List<Chromosome> migrants) {
+            this.toIsland = toIsland;
+            this.migrants = migrants;
+        }
+    }
+
+    /**
+     * Writes the messages for one remote address on its own thread, connecting
+     * when needed, so that the only lock {@link #send(int, int, List)} takes is
+     * the short one guarding {@link #senders}.
+     */
+    private class Sender implements Runnable {
+        /** address to connect to */
+        private final SocketAddress address;
+        /** messages waiting to be written */
+        private final BlockingQueue<Message> queue = new ArrayBlockingQueue<Message>(MAX_PENDING_MESSAGES);
+        /** the writing thread */
+        private final Thread thread;
+        /** current connection, null while disconnected */
+        private volatile Socket socket;
+
+        /**
+         * @param address address to connect to
+         */
+        Sender(SocketAddress address) {
+            this.address = address;
+            thread = new Thread(this, "migration-sender-" + getPort() + "-" + address);
+            thread.setDaemon(true);
+        }
+
+        /**
+         * Queue a message, dropping it if too many are waiting.
+         * @param message the message
+         */
+        void offer(Message message) {
+            if (!queue.offer(message)) {
+                droppedMigrants.addAndGet(message.migrants.size());
+            }
+        }
+
+        /** {@inheritDoc} */
+        public void run() {
+            DataOutputStream out = null;
+            try {
+                while (!closed) {
+                    Message message = queue.take();
+                    try {
+                        if (out == null) {
+                            out = connect();
+                        }
+                        write(message, out);
+                    } catch (IOException e) {
+                        droppedMigrants.addAndGet(message.migrants.size());
+                        out = null;
+                        disconnect();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // closed
+            } finally {
+                disconnect();
+                for (Message message : queue) {
+                    droppedMigrants.addAndGet(message.migrants.size());
+                }
+                queue.clear();
+            }
+        }
+
+        /**
+         * @return the output of a new connection
+         * @throws IOException if the connection fails
+         */
+        private DataOutputStream connect() throws IOException {
+            Socket s = new Socket();
+            socket = s;
+            s.setTcpNoDelay(true);
+            s.setSoTimeout(timeoutMillis);
+            // don't wait on unsent data when closing a connection to a stalled peer
+            s.setSoLinger(true, 0);
+            s.connect(address, timeoutMillis);
+            if (closed) {
+                throw new IOException("Transport closed");
+            }
+            return new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+        }
+
+        /**
+         * @param message message to write
+         * @param out connection output
+         * @throws IOException if the connection fails
+         */
+        private void write(Message message, DataOutputStream out) throws IOException {
+            List<Chromosome> migrants = message.migrants;
+            for (int start = 0; start < migrants.size(); start += MAX_MESSAGE_MIGRANTS) {
+                int end = Math.min(migrants.size(), start + MAX_MESSAGE_MIGRANTS);
+                out.writeInt(message.toIsland);
+                out.writeInt(end - start);
+                for (int i = start; i < end; i++) {
+                    codec.write(migrants.get(i), out);
+                }
+            }
+            out.flush();
+        }
+
+        /** Close the current connection, if any; also unblocks a write in progress. */
+        void disconnect() {
+            Socket s = socket;
+            socket = null;
+            if (s != null) {
+                closeQuietly(s);
+            }
+        }
+
+        /** Stop the thread and close the connection. */
+        void close() {
+            thread.interrupt();
+            disconnect();
+        }
+    }
+
+    /**
+     * Creates a transport listening on the given loopback port, with the
+     * {@link #DEFAULT_TIMEOUT_MILLIS default timeout}.
+     *
+     * @param port port to listen on, or 0 for any free port
+     * @param codec encoding of migrants
+     * @throws IOException if the port can not be opened
+     */
+    public SocketMigrationTransport(int port, ChromosomeCodec codec) throws IOException {
+        this(port, codec, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates a transport listening on the given loopback port.
+     *
+     * @param port port to listen on, or 0 for any free port
+     * @param codec encoding of migrants
+     * @param timeoutMillis timeout for connecting to a peer, in milliseconds
+     * @throws IOException if the port can not be opened
+     */
+    public SocketMigrationTransport(int port, ChromosomeCodec codec, int timeoutMillis) throws IOException {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("timeout must be positive, got " + timeoutMillis);
+        }
+        this.codec = codec;
+        this.timeoutMillis = timeoutMillis;
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+        Thread acceptor = new Thread(new Runnable() {
+            public void run() {
+                acceptConnections();
+            }
+        }, "migration-acceptor-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @return the port this transport listens on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the address other processes should use to reach islands hosted here
+     */
+    public InetSocketAddress getAddress() {
+        return new InetSocketAddress(serverSocket.getInetAddress(), getPort());
+    }
+
+    /**
+     * Declare that an island is hosted by another process.
+     *
+     * @param island global id of the island
+     * @param address address of the transport of that process
+     */
+    public void addRemoteIsland(int island, InetSocketAddress address) {
+        remoteIslands.put(island, address);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Migrants for remote islands are queued and written in the background.
+     */
+    public void send(int fromIsland, int toIsland, List<Chromosome> migrants) {
+        InetSocketAddress address = remoteIslands.get(toIsland);
+        if (address == null) {
+            local.send(fromIsland, toIsland, migrants);
+            return;
+        }
+        Sender sender;
+        synchronized (this) {
+            if (closed) {
+                droppedMigrants.addAndGet(migrants.size());
+                return;
+            }
+            sender = senders.get(address);
+            if (sender == null) {
+                sender = new Sender(address);
+                senders.put(address, sender);
+                sender.thread.start();
+            }
+        }
+        sender.offer(new Message(toIsland, new ArrayList<Chromosome>(migrants)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Chromosome> receive(int island) {
+        return local.receive(island);
+    }
+
+    /**
+     * @return the number of migrants that could not be delivered
+     */
+    public long getDroppedMigrants() {
+        return droppedMigrants.get();
+    }
+
+    /**
+     * Stop listening and close all connections, incoming and outgoing.
+     * Migrants still waiting to be sent are dropped.
+     */
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // nothing more to do
+        }
+        synchronized (this) {
+            for (Sender sender : senders.values()) {
+                sender.close();
+            }
+            senders.clear();
+        }
+        for (Socket socket : accepted) {
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Accept incoming connections until closed, reading each on its own daemon thread.
+     * Errors while still open (such as running out of file descriptors) are
+     * retried after a pause that doubles up to a second.
+     */
+    private void acceptConnections() {
+        long backoff = 0;
+        while (!closed) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+                backoff = 0;
+            } catch (IOException e) {
+                if (closed) {
+                    return;
+                }
+                backoff = Math.min(MAX_ACCEPT_BACKOFF_MILLIS, Math.max(10, backoff * 2));
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                continue;
+            }
+            accepted.add(socket);
+            if (closed) {
+                // close() may have run before the socket was added
+                accepted.remove(socket);
+                closeQuietly(socket);
+                return;
+            }
+            Thread reader = new Thread(new Runnable() {
+                public void run() {
+                    readMigrants(socket);
+                }
+            }, "migration-reader-" + getPort());
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    /**
+     * Read messages from a connection until it is closed.
+     * @param socket the connection
+     */
+    private void readMigrants(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while (!closed) {
+                int island = in.readInt();
+                int count = in.readInt();
+                if (count < 0 || count > MAX_MESSAGE_MIGRANTS) {
+                    // not a message from a SocketMigrationTransport
+                    return;
+                }
+                List<Chromosome> migrants = new ArrayList<Chromosome>(count);
+                for (int i = 0; i < count; i++) {
+                    migrants.add(codec.read(in));
+                }
+                local.send(-1, island, migrants);
+            }
+        } catch (EOFException e) {
+            // the sender closed the connection
+        } catch (IOException e) {
+            // connection lost; the sender will reconnect
+        } finally {
+            accepted.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * @param socket socket to close, ignoring errors
+     */
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nothing more to do
+        }
+    }
+}
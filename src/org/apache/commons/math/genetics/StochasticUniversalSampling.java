@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+import org.apache.commons.math.random.RandomGenerator;
+
+/**
+ * Stochastic universal sampling (Baker, 1987): a whole generation of parents
+ * is drawn at once with a single random offset and <code>n</code> equally
+ * spaced pointers over the cumulative weights, so each individual is drawn
+ * within one of its expected number of times. The draws are then shuffled
+ * and handed out in order; a new sample is taken when they run out.
+ *
+ * Weights are fitness proportionate, shifted as in {@link RouletteWheelSelection}
+ * when fitness can be negative.
+ *
+ * @version $Id$
+ */
+public class StochasticUniversalSampling extends RouletteWheelSelection {
+
+    /** cumulative weights */
+    private double[] cumulative = new double[0];
+
+    /** current sample */
+    private int[] sample = new int[0];
+
+    /** size of the current sample */
+    private int sampleSize = 0;
+
+    /** next entry of the sample to hand out */
+    private int cursor = 0;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void weightsChanged(double[] weights, int n) {
+        if (cumulative.length < n) {
+            cumulative = new double[n];
+            sample = new int[n];
+        }
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += weights[i];
+            cumulative[i] = total;
+        }
+        if (total <= 0) {
+            // all weights zero: every individual is equally likely
+            for (int i = 0; i < n; i++) {
+                cumulative[i] = i + 1;
+            }
+        }
+        sampleSize = n;
+        cursor = n; // forces a new sample on the next draw
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int next() {
+        if (cursor >= sampleSize) {
+            resample();
+        }
+        return sample[cursor++];
+    }
+
+    /**
+     * Draw a new sample of <code>sampleSize</code> individuals, and shuffle it.
+     */
+    private void resample() {
+        RandomGenerator randGen = GeneticAlgorithm.getRandomGenerator();
+        int n = sampleSize;
+        double spacing = cumulative[n - 1] / n;
+        double pointer = randGen.nextDouble() * spacing;
+        int individual = 0;
+        for (int i = 0; i < n; i++) {
+            while (individual < n - 1 && cumulative[individual] <= pointer) {
+                individual++;
+            }
+            sample[i] = individual;
+            pointer += spacing;
+        }
+        // Fisher-Yates, so that consecutive draws are not from the same region
+        for (int i = n - 1; i > 0; i--) {
+            int j = randGen.nextInt(i + 1);
+            int tmp = sample[i];
+            sample[i] = sample[j];
+            sample[j] = tmp;
+        }
+        cursor = 0;
+    }
+
+}
@@ -16,7 +16,6 @@
  */
 package org.apache.commons.math.genetics;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -33,6 +32,9 @@ public class TournamentSelection implements SelectionPolicy {
     /** number of chromosomes included in the tournament selections */
     private int arity;
 
+    /** draws the contestants */
+    private final DistinctIndexSampler sampler = new DistinctIndexSampler();
+
     /**
      * Creates a new TournamentSelection instance.
      *
@@ -65,32 +67,30 @@ public class TournamentSelection implements SelectionPolicy {
      * chromosomes without replacement from the population, and then select the
      * fittest chromosome among them.
      *
+     * Distinct indices are drawn by a {@link DistinctIndexSampler}, which
+     * never copies the population, and fitness is compared unboxed, so a
+     * tournament allocates nothing.
+     *
      * @param population
      *            the population from which the chromosomes are choosen.
      * @return the selected chromosome.
      */
     private Chromosome tournament(ListPopulation population) {
-        if (population.getPopulationSize() < this.arity)
+        int size = population.getPopulationSize();
+        if (size < this.arity)
             throw new IllegalArgumentException("Tournament arity cannot be bigger than population size.");
-        // auxiliary population
-        ListPopulation tournamentPopulation = new ListPopulation(this.arity) {
-            public Population nextGeneration() {
-                // not useful here
-                return null;
-            }
-        };
+        List<Chromosome> chromosomes = population.getChromosomes();
+        int[] drawn = sampler.sample(size, this.arity, GeneticAlgorithm.getRandomGenerator());
 
-        // create a copy of the chromosome list
-        List<Chromosome> chromosomes = new ArrayList<Chromosome> (population.getChromosomes());
-        for (int i=0; i<this.arity; i++) {
-            // select a random individual and add it to the tournament
-            int rind = GeneticAlgorithm.getRandomGenerator().nextInt(chromosomes.size());
-            tournamentPopulation.addChromosome(chromosomes.get(rind));
-            // do not select it again
-            chromosomes.remove(rind);
+        Chromosome best = null;
+        for (int i = 0; i < this.arity; i++) {
+            // the winner takes it all
+            Chromosome contestant = chromosomes.get(drawn[i]);
+            if (best == null || contestant.getFitness() > best.getFitness()) {
+                best = contestant;
+            }
         }
-        // the winner takes it all
-        return tournamentPopulation.getFittestChromosome();
+        return best;
     }
 
     /**
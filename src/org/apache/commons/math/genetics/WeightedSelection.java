@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math.genetics;
+
+import java.util.List;
+
+/**
+ * Base class for selection schemes that draw individuals with probabilities
+ * derived from the fitness of the whole population (roulette wheel, rank,
+ * stochastic universal sampling).
+ *
+ * The fitness of the population is copied once into a primitive column and
+ * turned into weights, which are kept until selection is asked of a different
+ * population (or the same population with a different size), so each
+ * selection after the first costs O(1) and allocates nothing beyond the
+ * returned {@link ChromosomePair}. Populations must not be modified while
+ * parents are being selected from them, which {@link GeneticAlgorithm} never
+ * does.
+ *
+ * Works on {@link ListPopulation}s through {@link SelectionPolicy} and on
+ * {@link ArrayPopulation}s through {@link ArraySelectionPolicy}. Instances are
+ * synchronized; give each concurrently running algorithm its own instance to
+ * avoid contention.
+ *
+ * @version $Id$
+ */
+public abstract class WeightedSelection implements SelectionPolicy, ArraySelectionPolicy {
+
+    /** population the weights were computed for */
+    private Object population = null;
+
+    /** size of that population */
+    private int populationSize = -1;
+
+    /** fitness column of the population */
+    private double[] fitness = new double[0];
+
+    /** selection weights of the population */
+    private double[] weights = new double[0];
+
+    /** alias table built from the weights */
+    private final AliasTable table = new AliasTable();
+
+    /**
+     * Select two chromosomes from the population.
+     *
+     * @param population the population from which the chromosomes are chosen,
+     *            which must be a {@link ListPopulation}.
+     * @return the selected chromosomes.
+     */
+    public synchronized ChromosomePair select(Population population) {
+        ListPopulation listPopulation = (ListPopulation) population;
+        List<Chromosome> chromosomes = listPopulation.getChromosomes();
+        if (population != this.population || chromosomes.size() != populationSize) {
+            int n = chromosomes.size();
+            ensureCapacity(n);
+            for (int i = 0; i < n; i++) {
+                fitness[i] = chromosomes.get(i).getFitness();
+            }
+            prepare(population, n);
+        }
+        return new ChromosomePair(chromosomes.get(next()), chromosomes.get(next()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int select(ArrayPopulation population) {
+        if (population != this.population || population.getPopulationSize() != populationSize) {
+            int n = population.getPopulationSize();
+            ensureCapacity(n);
+            for (int i = 0; i < n; i++) {
+                fitness[i] = population.getFitness(i);
+            }
+            prepare(population, n);
+        }
+        return next();
+    }
+
+    /**
+     * Grow the scratch columns to hold <code>n</code> individuals.
+     * @param n population size
+     */
+    private void ensureCapacity(int n) {
+        if (fitness.length < n) {
+            fitness = new double[n];
+            weights = new double[n];
+        }
+    }
+
+    /**
+     * Compute the weights for a newly seen population.
+     */
+    private void prepare(Object newPopulation, int n) {
+        if (n == 0) {
+            throw new IllegalArgumentException("Cannot select from an empty population.");
+        }
+        computeWeights(fitness, weights, n);
+        weightsChanged(weights, n);
+        this.population = newPopulation;
+        this.populationSize = n;
+    }
+
+    /**
+     * Turn the fitness column into non-negative selection weights.
+     *
+     * @param fitnessValues fitness of each individual
+     * @param out receives the weight of each individual
+     * @param n population size
+     */
+    protected abstract void computeWeights(double[] fitnessValues, double[] out, int n);
+
+    /**
+     * Called when the weights have been recomputed. By default builds the alias
+     * table used by {@link #next()}.
+     *
+     * @param newWeights the weights
+     * @param n population size
+     */
+    protected void weightsChanged(double[] newWeights, int n) {
+        table.build(newWeights, n);
+    }
+
+    /**
+     * Draw the index of one individual. By default, an independent draw with
+     * probability proportional to its weight.
+     *
+     * @return index of the selected individual
+     */
+    protected int next() {
+        return table.sample(GeneticAlgorithm.getRandomGenerator());
+    }
+}
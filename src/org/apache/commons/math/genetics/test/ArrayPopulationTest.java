@@ -0,0 +1,295 @@
+package org.apache.commons.math.genetics.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.math.genetics.ArrayFitnessFunction;
+import org.apache.commons.math.genetics.ArrayGaussianMutation;
+import org.apache.commons.math.genetics.ArrayOnePointCrossover;
+import org.apache.commons.math.genetics.ArrayPopulation;
+import org.apache.commons.math.genetics.ArrayTournamentSelection;
+import org.apache.commons.math.genetics.Chromosome;
+import org.apache.commons.math.genetics.GeneticAlgorithm;
+import org.apache.commons.math.genetics.Population;
+import org.apache.commons.math.random.JDKRandomGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ArrayPopulationTest {
+	static private final int length = 4;
+
+	/** Number of fitness evaluations so far. */
+	private AtomicInteger evaluations;
+
+	/** Fitness is the first gene, counting calls. */
+	private ArrayFitnessFunction firstGene;
+
+	@Before
+	public void setUp() {
+		JDKRandomGenerator random = new JDKRandomGenerator();
+		random.setSeed(1234);
+		GeneticAlgorithm.setRandomGenerator(random);
+		evaluations = new AtomicInteger();
+		firstGene = new ArrayFitnessFunction() {
+			public double fitness(double[] genes, int offset, int length) {
+				evaluations.incrementAndGet();
+				return genes[offset];
+			}
+		};
+	}
+
+	@After
+	public void tearDown() {
+		GeneticAlgorithm.setRandomGenerator(new JDKRandomGenerator());
+	}
+
+	/** A population of <code>size</code> rows, row i holding the value i in every gene. */
+	private ArrayPopulation population(int size, int limit, double elitismRate) {
+		ArrayPopulation population = new ArrayPopulation(length, limit, elitismRate, firstGene,
+				new ArrayOnePointCrossover(), new ArrayGaussianMutation(0.1), new ArrayTournamentSelection(2));
+		double[] row = new double[length];
+		for (int i=0; i<size; ++i) {
+			for (int j=0; j<length; ++j) row[j] = i;
+			population.addIndividual(row);
+		}
+		return population;
+	}
+
+	/** A GA that only uses the rates; the chromosome policies are not needed for arrays. */
+	static private GeneticAlgorithm arrayGA(double crossoverRate, double mutationRate) {
+		return new GeneticAlgorithm(null, crossoverRate, null, mutationRate, null);
+	}
+
+	@Test
+	public void testFitnessNaNUntilEvaluated() {
+		ArrayPopulation population = population(6, 6, 0.0);
+		for (int i=0; i<6; ++i) assertTrue(!population.isFitnessCached(i));
+		assertTrue(evaluations.get() == 0);
+		assertTrue(population.getFitness(3) == 3.0);
+		assertTrue(population.isFitnessCached(3));
+		assertTrue(population.getFitness(3) == 3.0);
+		assertTrue(evaluations.get() == 1);
+
+		// offspring of crossover are not evaluated until asked
+		ArrayPopulation next = (ArrayPopulation) arrayGA(1.0, 0.0).nextGeneration(population);
+		int before = evaluations.get();
+		for (int i=0; i<next.getPopulationSize(); ++i) assertTrue(!next.isFitnessCached(i));
+		assertTrue(evaluations.get() == before);
+	}
+
+	/** Plain copies of parents keep their parents' fitness. */
+	@Test
+	public void testCopiesKeepFitness() {
+		ArrayPopulation population = population(6, 6, 0.0);
+		for (int i=0; i<6; ++i) population.getFitness(i);
+		ArrayPopulation next = (ArrayPopulation) arrayGA(0.0, 0.0).nextGeneration(population);
+		int before = evaluations.get();
+		double[] genes = new double[length];
+		for (int i=0; i<next.getPopulationSize(); ++i) {
+			assertTrue(next.isFitnessCached(i));
+			assertTrue(next.getFitness(i) == next.getGenes(i, genes)[length-1]);
+		}
+		assertTrue(evaluations.get() == before);
+	}
+
+	@Test
+	public void testElitismCopiesBestRows() {
+		ArrayPopulation population = population(10, 10, 0.3);
+		ArrayPopulation next = population.nextGeneration();
+		assertTrue(next.getPopulationSize() == 3);
+		boolean[] found = new boolean[10];
+		double[] genes = new double[length];
+		for (int i=0; i<3; ++i) {
+			next.getGenes(i, genes);
+			int value = (int) genes[0];
+			for (int j=0; j<length; ++j) assertTrue(genes[j] == value);
+			assertTrue(next.isFitnessCached(i));
+			assertTrue(next.getFitness(i) == value);
+			found[value] = true;
+		}
+		assertTrue(found[7] && found[8] && found[9]);
+	}
+
+	/**
+	 * With an odd number of free rows, the second child of the last pair goes
+	 * to the scratch row and never becomes part of the population.
+	 */
+	@Test
+	public void testOddPopulationUsesScratchRow() {
+		ArrayPopulation population = population(5, 5, 0.0);
+		assertTrue(population.getGeneMatrix().length == (5 + 1) * length);
+		GeneticAlgorithm ga = arrayGA(1.0, 0.0);
+		Population current = population;
+		for (int generation=0; generation<4; ++generation) {
+			current = ga.nextGeneration(current);
+			ArrayPopulation rows = (ArrayPopulation) current;
+			assertTrue(rows.getPopulationSize() == 5);
+			assertTrue(rows.getGeneMatrix().length == (5 + 1) * length);
+			double[] genes = new double[length];
+			for (int i=0; i<5; ++i) {
+				// one point crossover of constant rows: a prefix of one value, a suffix of another
+				rows.getGenes(i, genes);
+				int changes = 0;
+				for (int j=1; j<length; ++j) {
+					if (genes[j] != genes[j-1]) ++changes;
+				}
+				if (generation == 0) assertTrue(changes <= 1);
+				for (int j=0; j<length; ++j) assertTrue(genes[j] >= 0 && genes[j] < 5 && genes[j] == (int) genes[j]);
+			}
+		}
+	}
+
+	/** The fittest chromosome stays valid after the matrix it came from is reused. */
+	@Test
+	public void testFittestChromosomeIsSnapshot() {
+		GeneticAlgorithm ga = arrayGA(1.0, 1.0);
+		ArrayPopulation population = (ArrayPopulation) ga.nextGeneration(population(8, 8, 0.0));
+		ArrayPopulation.Row best = (ArrayPopulation.Row) population.getFittestChromosome();
+		double[] bestGenes = best.getGenes();
+		double bestFitness = best.getFitness();
+		Iterator<Chromosome> rows = population.iterator();
+		ArrayPopulation.Row first = (ArrayPopulation.Row) rows.next();
+		double[] firstGenes = first.getGenes();
+		double firstFitness = first.getFitness();
+		Population current = population;
+		for (int generation=0; generation<2; ++generation) {
+			current = ga.nextGeneration(current);
+		}
+		// the grandchildren were written into the matrix of a generated population
+		assertTrue(((ArrayPopulation) current).getGeneMatrix() == population.getGeneMatrix());
+		assertTrue(Arrays.equals(best.getGenes(), bestGenes));
+		assertTrue(best.getFitness() == bestFitness);
+		assertTrue(Arrays.equals(first.getGenes(), firstGenes));
+		assertTrue(first.getFitness() == firstFitness);
+	}
+
+	/** A population built by the caller is never overwritten by the generations evolved from it. */
+	@Test
+	public void testInitialPopulationIsNotReused() {
+		ArrayPopulation initial = population(8, 8, 0.25);
+		double[] matrix = initial.getGeneMatrix().clone();
+		GeneticAlgorithm ga = arrayGA(1.0, 1.0);
+		Population current = initial;
+		for (int generation=0; generation<5; ++generation) {
+			current = ga.nextGeneration(current);
+			assertTrue(((ArrayPopulation) current).getGeneMatrix() != initial.getGeneMatrix());
+		}
+		assertTrue(Arrays.equals(initial.getGeneMatrix(), matrix));
+		for (int i=0; i<8; ++i) assertTrue(initial.getFitness(i) == i);
+	}
+
+	/** Snapshots can be added to another population with their fitness. */
+	@Test
+	public void testAddChromosomeCopiesSnapshot() {
+		ArrayPopulation population = population(4, 4, 0.0);
+		Chromosome best = population.getFittestChromosome();
+		ArrayPopulation other = population(0, 4, 0.0);
+		other.addChromosome(best);
+		assertTrue(other.getPopulationSize() == 1);
+		assertTrue(other.isFitnessCached(0));
+		assertTrue(other.getFitness(0) == 3.0);
+	}
+
+	@Test
+	public void testOnePointCrossoverSwapsTail() {
+		ArrayOnePointCrossover crossover = new ArrayOnePointCrossover();
+		double[] genes = new double[2 + 2*7];
+		for (int trial=0; trial<50; ++trial) {
+			for (int j=0; j<7; ++j) {
+				genes[2 + j] = 1;
+				genes[2 + 7 + j] = 2;
+			}
+			crossover.crossover(genes, 2, 2 + 7, 7);
+			int cut = 0;
+			while (cut < 7 && genes[2 + cut] == 1) ++cut;
+			assertTrue(cut >= 1 && cut < 7);
+			for (int j=0; j<7; ++j) {
+				assertTrue(genes[2 + j] == (j < cut ? 1 : 2));
+				assertTrue(genes[2 + 7 + j] == (j < cut ? 2 : 1));
+			}
+			assertTrue(genes[0] == 0 && genes[1] == 0);
+		}
+	}
+
+	@Test
+	public void testGaussianMutationChangesOneBoundedGene() {
+		ArrayGaussianMutation mutation = new ArrayGaussianMutation(10.0, -1.0, 1.0);
+		double[] genes = new double[3 + 5];
+		for (int trial=0; trial<50; ++trial) {
+			Arrays.fill(genes, 0.5);
+			mutation.mutate(genes, 3, 5);
+			int changed = 0;
+			for (int j=0; j<genes.length; ++j) {
+				if (genes[j] != 0.5) {
+					assertTrue(j >= 3);
+					assertTrue(genes[j] >= -1.0 && genes[j] <= 1.0);
+					++changed;
+				}
+			}
+			assertTrue(changed <= 1);
+		}
+	}
+
+	/** A tournament of the whole population picks the fittest row. */
+	@Test
+	public void testTournamentOfAllPicksFittest() {
+		ArrayPopulation population = population(6, 6, 0.0);
+		ArrayTournamentSelection selection = new ArrayTournamentSelection(6);
+		for (int trial=0; trial<10; ++trial) assertTrue(selection.select(population) == 5);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testTournamentArityAboveSize() {
+		new ArrayTournamentSelection(4).select(population(3, 6, 0.0));
+	}
+
+	/** Parallel evaluation writes the fitness into the population's column. */
+	@Test
+	public void testParallelEvaluationFillsFitnessColumn() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			GeneticAlgorithm ga = arrayGA(1.0, 1.0);
+			ga.setEvaluationExecutor(executor);
+			ArrayPopulation next = (ArrayPopulation) ga.nextGeneration(population(9, 9, 0.2));
+			for (int i=0; i<next.getPopulationSize(); ++i) assertTrue(next.isFitnessCached(i));
+			int before = evaluations.get();
+			next.getFittestIndex();
+			assertTrue(evaluations.get() == before);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * One array tournament can be shared between threads: a tournament of the
+	 * whole population always picks the fittest row, and one of all but one row
+	 * never picks the worst.
+	 */
+	@Test
+	public void testTournamentSharedBetweenThreads() throws Exception {
+		final ArrayPopulation population = population(6, 6, 0.0);
+		final ArrayTournamentSelection all = new ArrayTournamentSelection(6);
+		final ArrayTournamentSelection allButOne = new ArrayTournamentSelection(5);
+		final AtomicInteger wrong = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		for (int t=0; t<threads.length; ++t) {
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i=0; i<5000; ++i) {
+						if (all.select(population) != 5) wrong.incrementAndGet();
+						if (allButOne.select(population) == 0) wrong.incrementAndGet();
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) thread.join();
+		assertTrue(wrong.get() == 0);
+	}
+}
@@ -0,0 +1,181 @@
+package org.apache.commons.math.genetics.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math.genetics.Chromosome;
+import org.apache.commons.math.genetics.ElitisticListPopulation;
+import org.apache.commons.math.util.FastMath;
+import org.junit.Test;
+
+/**
+ * Compares the elite picked by partial selection, and by the incremental
+ * sort, with the elite of a full sort.
+ */
+public class ElitisticListPopulationTest {
+	static private final int[] sizes = {1, 2, 15, 16, 17, 50, 257, 1000};
+	static private final double[] rates = {0.0, 0.1, 0.5, 0.9, 1.0};
+
+	/** Chromosome with a fixed fitness. */
+	static private class Fixed extends Chromosome {
+		private final double value;
+
+		Fixed(double value) {
+			this.value = value;
+		}
+
+		public double fitness() {
+			return value;
+		}
+	}
+
+	/** Random fitness values, or values from {0, 1, 2} when <code>ties</code>. */
+	static private List<Chromosome> chromosomes(Random random, int size, boolean ties) {
+		List<Chromosome> chromosomes = new ArrayList<Chromosome>();
+		for (int i=0; i<size; ++i) {
+			chromosomes.add(new Fixed(ties ? random.nextInt(3) : random.nextGaussian()));
+		}
+		return chromosomes;
+	}
+
+	static private double[] fitness(List<Chromosome> chromosomes) {
+		double[] fitness = new double[chromosomes.size()];
+		for (int i=0; i<fitness.length; ++i) fitness[i] = chromosomes.get(i).getFitness();
+		return fitness;
+	}
+
+	/** Fitness of the elite of a full sort, in ascending order. */
+	static private double[] expectedElite(List<Chromosome> chromosomes, double rate) {
+		double[] fitness = fitness(chromosomes);
+		Arrays.sort(fitness);
+		int bound = (int) FastMath.ceil((1.0 - rate) * fitness.length);
+		return Arrays.copyOfRange(fitness, bound, fitness.length);
+	}
+
+	/** Whether the elite holds chromosomes of the population, each at most once. */
+	static private boolean fromPopulation(List<Chromosome> elite, List<Chromosome> chromosomes) {
+		List<Chromosome> seen = new ArrayList<Chromosome>();
+		for (Chromosome c : elite) {
+			boolean found = false;
+			for (Chromosome d : chromosomes) {
+				if (c == d) found = true;
+			}
+			for (Chromosome d : seen) {
+				if (c == d) return false;
+			}
+			if (!found) return false;
+			seen.add(c);
+		}
+		return true;
+	}
+
+	static private List<Chromosome> elite(List<Chromosome> chromosomes, double rate, boolean incremental) {
+		ElitisticListPopulation population = new ElitisticListPopulation(
+				new ArrayList<Chromosome>(chromosomes), chromosomes.size(), rate);
+		population.setIncrementalSorting(incremental);
+		return ((ElitisticListPopulation) population.nextGeneration()).getChromosomes();
+	}
+
+	@Test
+	public void testSelectedEliteMatchesFullSort() {
+		Random random = new Random(2468);
+		for (boolean ties : new boolean[] {false, true}) {
+			for (int size : sizes) {
+				for (double rate : rates) {
+					List<Chromosome> chromosomes = chromosomes(random, size, ties);
+					List<Chromosome> elite = elite(chromosomes, rate, false);
+					assertTrue(fromPopulation(elite, chromosomes));
+					double[] picked = fitness(elite);
+					Arrays.sort(picked);
+					assertTrue(Arrays.equals(picked, expectedElite(chromosomes, rate)));
+				}
+			}
+		}
+	}
+
+	/** The list of the parent generation is not reordered. */
+	@Test
+	public void testParentListUnchanged() {
+		List<Chromosome> chromosomes = chromosomes(new Random(1), 100, false);
+		ElitisticListPopulation population = new ElitisticListPopulation(
+				new ArrayList<Chromosome>(chromosomes), 100, 0.3);
+		population.nextGeneration();
+		assertTrue(population.getChromosomes().equals(chromosomes));
+	}
+
+	@Test
+	public void testIncrementalEliteIsSorted() {
+		Random random = new Random(1357);
+		for (boolean ties : new boolean[] {false, true}) {
+			for (int size : sizes) {
+				for (double rate : rates) {
+					List<Chromosome> chromosomes = chromosomes(random, size, ties);
+					List<Chromosome> elite = elite(chromosomes, rate, true);
+					assertTrue(fromPopulation(elite, chromosomes));
+					assertTrue(Arrays.equals(fitness(elite), expectedElite(chromosomes, rate)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * A generation that inherited a sorted elite and then got new offspring
+	 * picks the same elite as a population sorted from scratch.
+	 */
+	@Test
+	public void testIncrementalWithValidPrefix() {
+		Random random = new Random(97);
+		for (boolean ties : new boolean[] {false, true}) {
+			for (int size : sizes) {
+				for (double rate : rates) {
+					ElitisticListPopulation current = new ElitisticListPopulation(chromosomes(random, size, ties), size, rate);
+					current.setIncrementalSorting(true);
+					for (int generation=0; generation<4; ++generation) {
+						ElitisticListPopulation next = (ElitisticListPopulation) current.nextGeneration();
+						for (Chromosome offspring : chromosomes(random, size - next.getPopulationSize(), ties)) {
+							next.addChromosome(offspring);
+						}
+						List<Chromosome> all = new ArrayList<Chromosome>(next.getChromosomes());
+						List<Chromosome> elite = ((ElitisticListPopulation) next.nextGeneration()).getChromosomes();
+						assertTrue(fromPopulation(elite, all));
+						assertTrue(Arrays.equals(fitness(elite), expectedElite(all, rate)));
+						current = next;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * If the inherited elite was reordered through getChromosomes(), it is
+	 * sorted again rather than merged as if it were still in order.
+	 */
+	@Test
+	public void testIncrementalWithInvalidPrefix() {
+		Random random = new Random(531);
+		for (boolean ties : new boolean[] {false, true}) {
+			for (int size : sizes) {
+				if (size < 4) continue;
+				ElitisticListPopulation current = new ElitisticListPopulation(chromosomes(random, size, ties), size, 0.5);
+				current.setIncrementalSorting(true);
+				ElitisticListPopulation next = (ElitisticListPopulation) current.nextGeneration();
+				// the inherited elite is ascending; reverse it (and make sure it is out of order)
+				Collections.reverse(next.getChromosomes());
+				next.getChromosomes().set(0, new Fixed(10));
+				next.getChromosomes().set(1, new Fixed(-10));
+				for (Chromosome offspring : chromosomes(random, size - next.getPopulationSize(), ties)) {
+					next.addChromosome(offspring);
+				}
+				List<Chromosome> all = new ArrayList<Chromosome>(next.getChromosomes());
+				List<Chromosome> elite = ((ElitisticListPopulation) next.nextGeneration()).getChromosomes();
+				assertTrue(fromPopulation(elite, all));
+				assertTrue(Arrays.equals(fitness(elite), expectedElite(all, 0.5)));
+			}
+		}
+	}
+}
@@ -0,0 +1,305 @@
+package org.apache.commons.math.genetics.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.math.genetics.AbstractListChromosome;
+import org.apache.commons.math.genetics.BinaryChromosome;
+import org.apache.commons.math.genetics.BinaryMutation;
+import org.apache.commons.math.genetics.Chromosome;
+import org.apache.commons.math.genetics.ChromosomeCodec;
+import org.apache.commons.math.genetics.ElitisticListPopulation;
+import org.apache.commons.math.genetics.FixedGenerationCount;
+import org.apache.commons.math.genetics.GeneticAlgorithm;
+import org.apache.commons.math.genetics.IslandGeneticAlgorithm;
+import org.apache.commons.math.genetics.MigrationTopology;
+import org.apache.commons.math.genetics.OnePointCrossover;
+import org.apache.commons.math.genetics.Population;
+import org.apache.commons.math.genetics.QueueMigrationTransport;
+import org.apache.commons.math.genetics.SocketMigrationTransport;
+import org.apache.commons.math.genetics.TournamentSelection;
+import org.apache.commons.math.random.JDKRandomGenerator;
+import org.junit.After;
+import org.junit.Test;
+
+public class IslandGeneticAlgorithmTest {
+	/** Fitness is the number of ones. */
+	static private class Ones extends BinaryChromosome {
+		Ones(List<Integer> representation) {
+			super(representation);
+		}
+
+		Ones(Integer... representation) {
+			super(representation);
+		}
+
+		@Override
+		public double fitness() {
+			double ones = 0;
+			for (Integer bit : getRepresentation()) ones += bit;
+			return ones;
+		}
+
+		@Override
+		public AbstractListChromosome<Integer> newFixedLengthChromosome(List<Integer> representation) {
+			return new Ones(representation);
+		}
+
+		List<Integer> bits() {
+			return getRepresentation();
+		}
+	}
+
+	static private final ChromosomeCodec codec = new ChromosomeCodec() {
+		public void write(Chromosome chromosome, DataOutput out) throws IOException {
+			List<Integer> bits = ((Ones)chromosome).bits();
+			out.writeInt(bits.size());
+			for (Integer bit : bits) out.writeByte(bit);
+		}
+
+		public Chromosome read(DataInput in) throws IOException {
+			Integer[] bits = new Integer[in.readInt()];
+			for (int i=0; i<bits.length; ++i) bits[i] = (int)in.readByte();
+			return new Ones(bits);
+		}
+	};
+
+	@After
+	public void tearDown() {
+		GeneticAlgorithm.setRandomGenerator(new JDKRandomGenerator());
+	}
+
+	static private Population island(Chromosome... chromosomes) {
+		return new ElitisticListPopulation(new ArrayList<Chromosome>(Arrays.asList(chromosomes)), chromosomes.length, 0.5);
+	}
+
+	static private boolean contains(Population island, Chromosome chromosome) {
+		for (Chromosome c : island) {
+			if (c == chromosome) return true;
+		}
+		return false;
+	}
+
+	static private List<Population> randomIslands(int count, int size, int length) {
+		List<Population> islands = new ArrayList<Population>();
+		for (int i=0; i<count; ++i) {
+			List<Chromosome> chromosomes = new ArrayList<Chromosome>();
+			for (int j=0; j<size; ++j) {
+				chromosomes.add(new Ones(BinaryChromosome.randomBinaryRepresentation(length)));
+			}
+			islands.add(new ElitisticListPopulation(chromosomes, size, 0.25));
+		}
+		return islands;
+	}
+
+	/**
+	 * Without crossover or mutation, the fittest chromosome of an island can
+	 * only reach the next island of the ring, and only by migration.
+	 */
+	@Test
+	public void testRingMigration() {
+		Chromosome best = new Ones(1, 1, 1, 1);
+		List<Population> islands = new ArrayList<Population>();
+		islands.add(island(best, new Ones(0, 0, 0, 0), new Ones(0, 0, 0, 0), new Ones(0, 0, 0, 0)));
+		islands.add(island(new Ones(1, 0, 0, 0), new Ones(0, 0, 0, 0), new Ones(0, 0, 0, 0), new Ones(0, 0, 0, 0)));
+		islands.add(island(new Ones(0, 1, 0, 0), new Ones(0, 0, 0, 0), new Ones(0, 0, 0, 0), new Ones(0, 0, 0, 0)));
+		IslandGeneticAlgorithm ga = new IslandGeneticAlgorithm(new OnePointCrossover<Integer>(), 0.0,
+				new BinaryMutation(), 0.0, new TournamentSelection(2),
+				MigrationTopology.RING, 1, 1, new QueueMigrationTransport());
+		List<Population> result = ga.evolve(islands, new FixedGenerationCount(1));
+		assertTrue(ga.getGenerationsEvolved() == 1);
+		assertTrue(contains(result.get(0), best)); //kept by elitism
+		assertTrue(contains(result.get(1), best)); //migrated along the ring
+		assertTrue(!contains(result.get(2), best)); //one step only
+		assertTrue(result.get(1).getFittestChromosome().getFitness() == 4.0);
+	}
+
+	/** Each island has its own generator, so a seeded run is reproducible. */
+	@Test
+	public void testSeededRunIsReproducible() {
+		List<Double> first = new ArrayList<Double>();
+		List<Double> second = new ArrayList<Double>();
+		for (List<Double> fitness : Arrays.asList(first, second)) {
+			JDKRandomGenerator random = new JDKRandomGenerator();
+			random.setSeed(42);
+			GeneticAlgorithm.setRandomGenerator(random);
+			IslandGeneticAlgorithm ga = new IslandGeneticAlgorithm(new OnePointCrossover<Integer>(), 0.9,
+					new BinaryMutation(), 0.1, new TournamentSelection(2),
+					MigrationTopology.RING, 2, 2, new QueueMigrationTransport());
+			for (Population island : ga.evolve(randomIslands(3, 12, 16), new FixedGenerationCount(6))) {
+				for (Chromosome c : island) fitness.add(c.getFitness());
+			}
+		}
+		assertTrue(first.equals(second));
+	}
+
+	/** Migrants sent to a remote island arrive decoded on the other transport. */
+	@Test
+	public void testSocketRoundTrip() throws Exception {
+		SocketMigrationTransport a = new SocketMigrationTransport(0, codec);
+		SocketMigrationTransport b = new SocketMigrationTransport(0, codec);
+		try {
+			a.addRemoteIsland(1, b.getAddress());
+			List<Chromosome> sent = new ArrayList<Chromosome>();
+			sent.add(new Ones(1, 0, 1));
+			sent.add(new Ones(0, 0, 1));
+			a.send(0, 1, sent);
+			List<Chromosome> received = new ArrayList<Chromosome>();
+			long deadline = System.currentTimeMillis() + 5000;
+			while (received.size() < sent.size() && System.currentTimeMillis() < deadline) {
+				received.addAll(b.receive(1));
+				Thread.sleep(5);
+			}
+			assertTrue(received.size() == 2);
+			for (int i=0; i<2; ++i) {
+				assertTrue(received.get(i) != sent.get(i));
+				assertTrue(((Ones)received.get(i)).bits().equals(((Ones)sent.get(i)).bits()));
+			}
+			assertTrue(a.getDroppedMigrants() == 0);
+			assertTrue(b.receive(0).isEmpty());
+		} finally {
+			a.close();
+			b.close();
+		}
+	}
+
+	/** A message with a negative count closes the connection instead of allocating. */
+	@Test
+	public void testSocketRejectsBadCount() throws Exception {
+		SocketMigrationTransport b = new SocketMigrationTransport(0, codec);
+		Socket socket = new Socket(b.getAddress().getAddress(), b.getPort());
+		try {
+			socket.setSoTimeout(5000);
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			out.writeInt(1);
+			out.writeInt(-1);
+			out.flush();
+			assertTrue(socket.getInputStream().read() == -1);
+			assertTrue(b.receive(1).isEmpty());
+		} finally {
+			socket.close();
+			b.close();
+		}
+	}
+
+	/** A peer that accepts but never reads fills its queue; sends keep returning at once and the excess is dropped. */
+	@Test
+	public void testSendDoesNotBlockOnStalledPeer() throws Exception {
+		SocketMigrationTransport a = new SocketMigrationTransport(0, codec, 500);
+		ServerSocket stalled = new ServerSocket(0, 1, InetAddress.getByName(null));
+		try {
+			a.addRemoteIsland(1, new InetSocketAddress(stalled.getInetAddress(), stalled.getLocalPort()));
+			List<Chromosome> migrants = new ArrayList<Chromosome>();
+			migrants.add(new Ones(BinaryChromosome.randomBinaryRepresentation(50000)));
+			long start = System.currentTimeMillis();
+			for (int i=0; i<500; ++i) {
+				a.send(0, 1, migrants);
+			}
+			assertTrue(System.currentTimeMillis() - start < 2000);
+			assertTrue(a.getDroppedMigrants() > 0);
+		} finally {
+			a.close();
+			stalled.close();
+		}
+	}
+
+	/** Migrants for an island nobody listens for are counted as dropped. */
+	@Test
+	public void testUnreachablePeerIsDropped() throws Exception {
+		SocketMigrationTransport a = new SocketMigrationTransport(0, codec, 500);
+		ServerSocket gone = new ServerSocket(0, 1, InetAddress.getByName(null));
+		InetSocketAddress address = new InetSocketAddress(gone.getInetAddress(), gone.getLocalPort());
+		gone.close();
+		try {
+			a.addRemoteIsland(1, address);
+			a.send(0, 1, Arrays.<Chromosome>asList(new Ones(1, 0), new Ones(0, 1)));
+			long deadline = System.currentTimeMillis() + 5000;
+			while (a.getDroppedMigrants() < 2 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			assertTrue(a.getDroppedMigrants() == 2);
+		} finally {
+			a.close();
+		}
+	}
+
+	/** Closing a transport also closes the connections it accepted. */
+	@Test
+	public void testCloseClosesIncomingConnections() throws Exception {
+		SocketMigrationTransport b = new SocketMigrationTransport(0, codec);
+		Socket socket = new Socket(b.getAddress().getAddress(), b.getPort());
+		try {
+			socket.setSoTimeout(5000);
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			out.writeInt(1);
+			out.writeInt(1);
+			codec.write(new Ones(1, 1), out);
+			out.flush();
+			long deadline = System.currentTimeMillis() + 5000;
+			while (b.receive(1).isEmpty() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			b.close();
+			assertTrue(socket.getInputStream().read() == -1);
+		} finally {
+			socket.close();
+			b.close();
+		}
+	}
+
+	/** Chromosomes sharing an evaluation lock never compute their fitness at once. */
+	@Test
+	public void testGetFitnessHoldsEvaluationLock() throws Exception {
+		final Object lock = new Object();
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger overlaps = new AtomicInteger();
+		final List<Chromosome> chromosomes = new ArrayList<Chromosome>();
+		for (int i=0; i<20; ++i) {
+			chromosomes.add(new Ones(1, 0) {
+				@Override
+				public double fitness() {
+					if (running.incrementAndGet() > 1) overlaps.incrementAndGet();
+					try {
+						Thread.sleep(1);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					running.decrementAndGet();
+					return 1.0;
+				}
+
+				@Override
+				protected Object getEvaluationLock() {
+					return lock;
+				}
+			});
+		}
+		Thread[] threads = new Thread[3];
+		for (int t=0; t<threads.length; ++t) {
+			final int offset = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i=0; i<chromosomes.size(); ++i) {
+						chromosomes.get((i + offset*7) % chromosomes.size()).getFitness();
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) thread.join();
+		assertTrue(overlaps.get() == 0);
+	}
+}
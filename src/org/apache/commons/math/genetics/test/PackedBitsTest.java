@@ -0,0 +1,408 @@
+package org.apache.commons.math.genetics.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.math.genetics.BinaryChromosome;
+import org.apache.commons.math.genetics.Chromosome;
+import org.apache.commons.math.genetics.ChromosomePair;
+import org.apache.commons.math.genetics.GeneticAlgorithm;
+import org.apache.commons.math.genetics.PackedBinaryChromosome;
+import org.apache.commons.math.genetics.PackedBinaryCrossover;
+import org.apache.commons.math.genetics.PackedBinaryMutation;
+import org.apache.commons.math.genetics.PackedBits;
+import org.apache.commons.math.random.JDKRandomGenerator;
+import org.apache.commons.math.random.RandomGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compares the packed operators against the same operations on plain
+ * boolean arrays, at lengths on both sides of word boundaries.
+ */
+public class PackedBitsTest {
+	static private final int[] lengths = {1, 2, 63, 64, 65, 127, 128, 129, 200};
+
+	private RandomGenerator random;
+
+	@Before
+	public void setUp() {
+		random = new JDKRandomGenerator();
+		random.setSeed(4321);
+		GeneticAlgorithm.setRandomGenerator(random);
+	}
+
+	@After
+	public void tearDown() {
+		GeneticAlgorithm.setRandomGenerator(new JDKRandomGenerator());
+	}
+
+	/** Random bits from the seeded generator. */
+	private boolean[] randomBits(int length) {
+		boolean[] bits = new boolean[length];
+		for (int i=0; i<length; ++i) bits[i] = random.nextBoolean();
+		return bits;
+	}
+
+	static private long[] pack(boolean[] bits) {
+		long[] words = new long[PackedBits.wordCount(bits.length)];
+		for (int i=0; i<bits.length; ++i) PackedBits.set(words, i, bits[i]);
+		return words;
+	}
+
+	static private boolean[] unpack(long[] words, int length) {
+		boolean[] bits = new boolean[length];
+		for (int i=0; i<length; ++i) bits[i] = PackedBits.get(words, i);
+		return bits;
+	}
+
+	static private boolean equal(long[] words, boolean[] bits) {
+		if (words.length != PackedBits.wordCount(bits.length)) return false;
+		for (int i=0; i<bits.length; ++i) {
+			if (PackedBits.get(words, i) != bits[i]) return false;
+		}
+		return true;
+	}
+
+	/** Whether the bits past <code>length</code> in the last word are clear. */
+	static private boolean tailClear(long[] words, int length) {
+		long[] copy = words.clone();
+		PackedBits.clearTail(copy, length);
+		return copy.length == 0 || copy[copy.length-1] == words[words.length-1];
+	}
+
+	/** Crossover points at both ends, around every word edge, and a few in between. */
+	static private List<Integer> points(int length) {
+		List<Integer> points = new ArrayList<Integer>();
+		for (int p=0; p<=length; ++p) {
+			int inWord = p & 63;
+			if (p == 0 || p == length || inWord == 0 || inWord == 1 || inWord == 63 || p % 17 == 0) points.add(p);
+		}
+		return points;
+	}
+
+	@Test
+	public void testWordCountAndClearTail() {
+		assertTrue(PackedBits.wordCount(0) == 0);
+		assertTrue(PackedBits.wordCount(1) == 1);
+		assertTrue(PackedBits.wordCount(64) == 1);
+		assertTrue(PackedBits.wordCount(65) == 2);
+		for (int length : lengths) {
+			long[] words = new long[PackedBits.wordCount(length)];
+			Arrays.fill(words, -1L);
+			PackedBits.clearTail(words, length);
+			assertTrue(PackedBits.cardinality(words) == length);
+			for (int i=0; i<length; ++i) assertTrue(PackedBits.get(words, i));
+		}
+	}
+
+	@Test
+	public void testGetSetFlipCardinality() {
+		for (int length : lengths) {
+			boolean[] bits = randomBits(length);
+			long[] words = pack(bits);
+			assertTrue(equal(words, bits));
+			int index = random.nextInt(length);
+			PackedBits.flip(words, index);
+			bits[index] = !bits[index];
+			assertTrue(equal(words, bits));
+			int ones = 0;
+			for (boolean bit : bits) if (bit) ++ones;
+			assertTrue(PackedBits.cardinality(words) == ones);
+			assertTrue(tailClear(words, length));
+		}
+	}
+
+	@Test
+	public void testHammingDistance() {
+		for (int length : lengths) {
+			boolean[] a = randomBits(length);
+			boolean[] b = randomBits(length);
+			int distance = 0;
+			for (int i=0; i<length; ++i) if (a[i] != b[i]) ++distance;
+			assertTrue(PackedBits.hammingDistance(pack(a), pack(b)) == distance);
+		}
+	}
+
+	@Test
+	public void testRandomKeepsTailClear() {
+		for (int length : lengths) {
+			for (double probability : new double[] {0.0, 0.1, 0.5, 0.9, 1.0}) {
+				long[] words = PackedBits.random(length, probability, random);
+				assertTrue(words.length == PackedBits.wordCount(length));
+				assertTrue(tailClear(words, length));
+			}
+			assertTrue(PackedBits.cardinality(PackedBits.random(length, 1.0, random)) == length);
+			assertTrue(PackedBits.cardinality(PackedBits.random(length, 0.0, random)) == 0);
+		}
+	}
+
+	@Test
+	public void testOnePointCrossover() {
+		for (int length : lengths) {
+			boolean[] a = randomBits(length);
+			boolean[] b = randomBits(length);
+			long[] first = pack(a);
+			long[] second = pack(b);
+			for (int point : points(length)) {
+				long[] firstChild = new long[first.length];
+				long[] secondChild = new long[first.length];
+				PackedBits.onePointCrossover(first, second, point, firstChild, secondChild);
+				boolean[] expectedFirst = new boolean[length];
+				boolean[] expectedSecond = new boolean[length];
+				for (int i=0; i<length; ++i) {
+					expectedFirst[i] = (i < point) ? a[i] : b[i];
+					expectedSecond[i] = (i < point) ? b[i] : a[i];
+				}
+				assertTrue(equal(firstChild, expectedFirst));
+				assertTrue(equal(secondChild, expectedSecond));
+				assertTrue(tailClear(firstChild, length));
+				assertTrue(tailClear(secondChild, length));
+			}
+		}
+	}
+
+	@Test
+	public void testUniformCrossoverIsComplementary() {
+		for (int length : lengths) {
+			boolean[] a = randomBits(length);
+			boolean[] b = randomBits(length);
+			long[] firstChild = new long[PackedBits.wordCount(length)];
+			long[] secondChild = new long[firstChild.length];
+			PackedBits.uniformCrossover(pack(a), pack(b), firstChild, secondChild, random);
+			boolean[] c = unpack(firstChild, length);
+			boolean[] d = unpack(secondChild, length);
+			for (int i=0; i<length; ++i) {
+				assertTrue((c[i] == a[i] && d[i] == b[i]) || (c[i] == b[i] && d[i] == a[i]));
+			}
+			assertTrue(tailClear(firstChild, length));
+			assertTrue(tailClear(secondChild, length));
+		}
+	}
+
+	@Test
+	public void testCopyRange() {
+		for (int length : lengths) {
+			boolean[] source = randomBits(length);
+			for (int from : points(length)) {
+				for (int to : points(length)) {
+					boolean[] expected = randomBits(length);
+					long[] destination = pack(expected);
+					PackedBits.copyRange(pack(source), destination, from, to);
+					for (int i=from; i<to; ++i) expected[i] = source[i];
+					assertTrue(equal(destination, expected));
+					assertTrue(tailClear(destination, length));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSwitchingCrossover() {
+		for (int length : lengths) {
+			boolean[] a = randomBits(length);
+			boolean[] b = new boolean[length];
+			for (int i=0; i<length; ++i) b[i] = !a[i];
+			for (double rate : new double[] {0.0, 0.05, 0.5, 1.0}) {
+				long[] child = new long[PackedBits.wordCount(length)];
+				PackedBits.switchingCrossover(pack(a), pack(b), child, length, rate, true, random);
+				assertTrue(tailClear(child, length));
+				// b is the complement of a, so each bit tells which parent it came from
+				boolean[] c = unpack(child, length);
+				assertTrue(c[0] == a[0]);
+				int switches = 0;
+				for (int i=1; i<length; ++i) {
+					if ((c[i] == a[i]) != (c[i-1] == a[i-1])) ++switches;
+				}
+				if (rate == 0.0) assertTrue(switches == 0);
+				if (rate == 1.0) assertTrue(switches == length - 1);
+			}
+		}
+	}
+
+	@Test
+	public void testMutateAgainstOriginalValues() {
+		for (int length : lengths) {
+			boolean[] bits = randomBits(length);
+			long[] words = pack(bits);
+			// clearing every set bit and setting every clear one inverts all bits exactly once
+			PackedBits.mutate(words, length, 1.0, 1.0, random);
+			for (int i=0; i<length; ++i) assertTrue(PackedBits.get(words, i) == !bits[i]);
+			assertTrue(tailClear(words, length));
+
+			words = pack(bits);
+			PackedBits.mutate(words, length, 1.0, 0.0, random);
+			assertTrue(PackedBits.cardinality(words) == 0);
+			words = pack(bits);
+			PackedBits.mutate(words, length, 0.0, 1.0, random);
+			assertTrue(PackedBits.cardinality(words) == length);
+			assertTrue(tailClear(words, length));
+		}
+	}
+
+	@Test
+	public void testMutationRates() {
+		int length = 100000;
+		long[] ones = new long[PackedBits.wordCount(length)];
+		Arrays.fill(ones, -1L);
+		PackedBits.clearTail(ones, length);
+		PackedBits.mutate(ones, length, 0.1, 0.5, random);
+		// 10000 expected clears, standard deviation about 95
+		int cleared = length - PackedBits.cardinality(ones);
+		assertTrue(Math.abs(cleared - 10000) < 500);
+	}
+
+	@Test
+	public void testFlipRandomRate() {
+		for (double rate : new double[] {0.001, 0.01, 0.3}) {
+			int length = 200000;
+			long[] words = new long[PackedBits.wordCount(length)];
+			int flipped = PackedBits.flipRandom(words, length, rate, random);
+			// each bit is flipped at most once
+			assertTrue(PackedBits.cardinality(words) == flipped);
+			assertTrue(tailClear(words, length));
+			double expected = rate * length;
+			double sd = Math.sqrt(length * rate * (1 - rate));
+			assertTrue(Math.abs(flipped - expected) < 5 * sd);
+		}
+		long[] words = new long[2];
+		assertTrue(PackedBits.flipRandom(words, 100, 0.0, random) == 0);
+		assertTrue(PackedBits.flipRandom(words, 100, 1.0, random) == 100);
+		assertTrue(PackedBits.cardinality(words) == 100);
+	}
+
+	/** Skips are geometric: mean (1-p)/p, and P(skip = 0) = p. */
+	@Test
+	public void testNextSkipDistribution() {
+		double rate = 0.2;
+		int n = 100000;
+		double sum = 0;
+		int zeros = 0;
+		for (int i=0; i<n; ++i) {
+			int skip = PackedBits.nextSkip(rate, random);
+			assertTrue(skip >= 0);
+			sum += skip;
+			if (skip == 0) ++zeros;
+		}
+		assertTrue(Math.abs(sum / n - (1 - rate) / rate) < 0.05);
+		assertTrue(Math.abs((double) zeros / n - rate) < 0.01);
+		assertTrue(PackedBits.nextSkip(0.0, random) == Integer.MAX_VALUE);
+		assertTrue(PackedBits.nextSkip(1.0, random) == 0);
+	}
+
+	/** One max on packed bits. */
+	static private class PackedOnes extends PackedBinaryChromosome {
+		PackedOnes(long[] words, int length) {
+			super(words, length);
+		}
+
+		@Override
+		public double fitness() {
+			return cardinality();
+		}
+
+		@Override
+		public PackedBinaryChromosome newPackedChromosome(long[] newWords) {
+			return new PackedOnes(newWords, getLength());
+		}
+	}
+
+	/** One max on the list representation, as a reference. */
+	static private class Ones extends BinaryChromosome {
+		Ones(List<Integer> representation) {
+			super(representation);
+		}
+
+		@Override
+		public double fitness() {
+			double ones = 0;
+			for (Integer bit : getRepresentation()) ones += bit;
+			return ones;
+		}
+
+		@Override
+		public BinaryChromosome newFixedLengthChromosome(List<Integer> representation) {
+			return new Ones(representation);
+		}
+	}
+
+	@Test
+	public void testChromosomeMatchesBinaryChromosome() {
+		for (int length : lengths) {
+			boolean[] bits = randomBits(length);
+			long[] words = pack(bits);
+			// a dirty tail is cleared by the constructor
+			if ((length & 63) != 0) words[words.length-1] |= -1L << length;
+			PackedOnes packed = new PackedOnes(words, length);
+			List<Integer> list = new ArrayList<Integer>();
+			for (boolean bit : bits) list.add(bit ? 1 : 0);
+			Ones reference = new Ones(list);
+			assertTrue(packed.getFitness() == reference.getFitness());
+			assertTrue(tailClear(packed.getWords(), length));
+			StringBuilder expected = new StringBuilder();
+			for (boolean bit : bits) expected.append(bit ? '1' : '0');
+			assertTrue(packed.toString().contains(expected.toString()));
+			for (int i=0; i<length; ++i) assertTrue(packed.getBit(i) == bits[i]);
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testChromosomeRejectsWrongWordCount() {
+		new PackedOnes(new long[1], 65);
+	}
+
+	@Test
+	public void testPackedCrossover() {
+		for (int length : new int[] {3, 63, 64, 65, 128, 129}) {
+			boolean[] a = randomBits(length);
+			boolean[] b = randomBits(length);
+			for (boolean uniform : new boolean[] {false, true}) {
+				PackedBinaryCrossover crossover = new PackedBinaryCrossover(uniform);
+				for (int trial=0; trial<20; ++trial) {
+					ChromosomePair pair = crossover.crossover(new PackedOnes(pack(a), length), new PackedOnes(pack(b), length));
+					PackedOnes c = (PackedOnes) pair.getFirst();
+					PackedOnes d = (PackedOnes) pair.getSecond();
+					assertTrue(tailClear(c.getWords(), length) && tailClear(d.getWords(), length));
+					int fromSecond = -1;
+					for (int i=0; i<length; ++i) {
+						boolean swapped = (c.getBit(i) != a[i]) || (d.getBit(i) != b[i]);
+						if (swapped) {
+							assertTrue(c.getBit(i) == b[i] && d.getBit(i) == a[i]);
+							if (fromSecond < 0) fromSecond = i;
+						} else if (!uniform && fromSecond >= 0 && a[i] != b[i]) {
+							fail("one point crossover swapped back at bit " + i);
+						}
+					}
+					if (!uniform && fromSecond >= 0) assertTrue(fromSecond >= 1);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testPackedMutation() {
+		int length = 129;
+		PackedOnes original = new PackedOnes(pack(randomBits(length)), length);
+		PackedBinaryMutation mutation = new PackedBinaryMutation();
+		int trials = 20000;
+		long changed = 0;
+		for (int trial=0; trial<trials; ++trial) {
+			Chromosome mutated = mutation.mutate(original);
+			PackedOnes m = (PackedOnes) mutated;
+			assertTrue(tailClear(m.getWords(), length));
+			changed += m.hammingDistance(original);
+		}
+		// one flip per chromosome on average
+		assertTrue(Math.abs((double) changed / trials - 1.0) < 0.05);
+
+		PackedBinaryMutation always = new PackedBinaryMutation(1.0);
+		PackedOnes inverted = (PackedOnes) always.mutate(original);
+		assertTrue(inverted.hammingDistance(original) == length);
+		assertTrue(inverted.cardinality() == length - original.cardinality());
+	}
+}
@@ -0,0 +1,211 @@
+package org.apache.commons.math.genetics.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.math.genetics.AbstractListChromosome;
+import org.apache.commons.math.genetics.BinaryChromosome;
+import org.apache.commons.math.genetics.BinaryMutation;
+import org.apache.commons.math.genetics.Chromosome;
+import org.apache.commons.math.genetics.ElitisticListPopulation;
+import org.apache.commons.math.genetics.FixedGenerationCount;
+import org.apache.commons.math.genetics.GeneticAlgorithm;
+import org.apache.commons.math.genetics.OnePointCrossover;
+import org.apache.commons.math.genetics.Population;
+import org.apache.commons.math.genetics.TournamentSelection;
+import org.apache.commons.math.random.JDKRandomGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelEvaluationTest {
+	/** Fitness is the number of ones; counts its evaluations. */
+	static private class Ones extends BinaryChromosome {
+		final AtomicInteger evaluations = new AtomicInteger();
+
+		Ones(List<Integer> representation) {
+			super(representation);
+		}
+
+		@Override
+		public double fitness() {
+			evaluations.incrementAndGet();
+			double ones = 0;
+			for (Integer bit : getRepresentation()) ones += bit;
+			return ones;
+		}
+
+		@Override
+		public AbstractListChromosome<Integer> newFixedLengthChromosome(List<Integer> representation) {
+			return new Ones(representation);
+		}
+
+		Ones copy() {
+			return new Ones(getRepresentation());
+		}
+	}
+
+	/**
+	 * Adds a little noise from the evaluation generator, so the fitness
+	 * depends on the seed each evaluation gets.
+	 */
+	static private class NoisyOnes extends Ones {
+		NoisyOnes(List<Integer> representation) {
+			super(representation);
+		}
+
+		@Override
+		public double fitness() {
+			return super.fitness() + 0.01 * GeneticAlgorithm.getEvaluationRandomGenerator().nextDouble();
+		}
+
+		@Override
+		public AbstractListChromosome<Integer> newFixedLengthChromosome(List<Integer> representation) {
+			return new NoisyOnes(representation);
+		}
+	}
+
+	/** Exposes {@link GeneticAlgorithm#evaluateFitness(Population)}. */
+	static private class EvaluatingGA extends GeneticAlgorithm {
+		EvaluatingGA() {
+			super(new OnePointCrossover<Integer>(), 0.9, new BinaryMutation(), 0.1, new TournamentSelection(2));
+		}
+
+		void evaluate(Population population) {
+			evaluateFitness(population);
+		}
+	}
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+		seed(42);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+		GeneticAlgorithm.setRandomGenerator(new JDKRandomGenerator());
+	}
+
+	static private void seed(long seed) {
+		JDKRandomGenerator random = new JDKRandomGenerator();
+		random.setSeed(seed);
+		GeneticAlgorithm.setRandomGenerator(random);
+	}
+
+	static private List<Chromosome> chromosomes(int size, int length) {
+		List<Chromosome> chromosomes = new ArrayList<Chromosome>();
+		for (int i=0; i<size; ++i) chromosomes.add(new NoisyOnes(BinaryChromosome.randomBinaryRepresentation(length)));
+		return chromosomes;
+	}
+
+	static private double[] fitness(Population population) {
+		List<Double> values = new ArrayList<Double>();
+		for (Chromosome c : population) values.add(c.getFitness());
+		double[] res = new double[values.size()];
+		for (int i=0; i<res.length; ++i) res[i] = values.get(i);
+		return res;
+	}
+
+	/** A seeded run gives the same fitness values on one thread and on four. */
+	@Test
+	public void testParallelMatchesSingleThread() {
+		ExecutorService single = Executors.newSingleThreadExecutor();
+		try {
+			double[][] results = new double[2][];
+			ExecutorService[] executors = {single, executor};
+			for (int run=0; run<2; ++run) {
+				seed(7);
+				GeneticAlgorithm ga = new GeneticAlgorithm(new OnePointCrossover<Integer>(), 0.9,
+						new BinaryMutation(), 0.1, new TournamentSelection(2));
+				ga.setEvaluationExecutor(executors[run]);
+				Population initial = new ElitisticListPopulation(chromosomes(40, 24), 40, 0.2);
+				results[run] = fitness(ga.evolve(initial, new FixedGenerationCount(8)));
+			}
+			assertTrue(Arrays.equals(results[0], results[1]));
+		} finally {
+			single.shutdown();
+		}
+	}
+
+	/** Evaluating a population in parallel gives the fitness values of serial evaluation. */
+	@Test
+	public void testParallelMatchesSerial() {
+		List<Chromosome> chromosomes = new ArrayList<Chromosome>();
+		List<Chromosome> copies = new ArrayList<Chromosome>();
+		for (int i=0; i<50; ++i) {
+			Ones c = new Ones(BinaryChromosome.randomBinaryRepresentation(16));
+			chromosomes.add(c);
+			copies.add(c.copy());
+		}
+		EvaluatingGA ga = new EvaluatingGA();
+		ga.setEvaluationExecutor(executor);
+		ga.evaluate(new ElitisticListPopulation(chromosomes, 50, 0.2));
+		for (int i=0; i<chromosomes.size(); ++i) {
+			assertTrue(((Ones) chromosomes.get(i)).evaluations.get() == 1);
+			assertTrue(chromosomes.get(i).getFitness() == copies.get(i).getFitness());
+		}
+	}
+
+	/** An instance that is in the population twice is evaluated once. */
+	@Test
+	public void testDuplicateEvaluatedOnce() {
+		List<Chromosome> chromosomes = chromosomes(10, 8);
+		Ones twice = (Ones) chromosomes.get(3);
+		chromosomes.add(twice);
+		chromosomes.add(0, twice);
+		EvaluatingGA ga = new EvaluatingGA();
+		ga.setEvaluationExecutor(executor);
+		ga.evaluate(new ElitisticListPopulation(chromosomes, chromosomes.size(), 0.2));
+		for (Chromosome c : chromosomes) assertTrue(((Ones) c).evaluations.get() == 1);
+		// already evaluated chromosomes are not evaluated again
+		ga.evaluate(new ElitisticListPopulation(chromosomes, chromosomes.size(), 0.2));
+		for (Chromosome c : chromosomes) assertTrue(((Ones) c).evaluations.get() == 1);
+	}
+
+	/** Chromosomes sharing an evaluation lock are never evaluated at the same time. */
+	@Test
+	public void testSharedLockNeverConcurrent() {
+		final Object[] locks = {new Object(), new Object()};
+		final AtomicInteger[] running = {new AtomicInteger(), new AtomicInteger()};
+		final AtomicInteger overlaps = new AtomicInteger();
+		final AtomicInteger total = new AtomicInteger();
+		List<Chromosome> chromosomes = new ArrayList<Chromosome>();
+		for (int i=0; i<40; ++i) {
+			final int group = i % 2;
+			chromosomes.add(new Ones(BinaryChromosome.randomBinaryRepresentation(4)) {
+				@Override
+				public double fitness() {
+					if (running[group].incrementAndGet() > 1) overlaps.incrementAndGet();
+					try {
+						Thread.sleep(1);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					running[group].decrementAndGet();
+					total.incrementAndGet();
+					return 1.0;
+				}
+
+				@Override
+				protected Object getEvaluationLock() {
+					return locks[group];
+				}
+			});
+		}
+		EvaluatingGA ga = new EvaluatingGA();
+		ga.setEvaluationExecutor(executor);
+		ga.evaluate(new ElitisticListPopulation(chromosomes, 40, 0.2));
+		assertTrue(overlaps.get() == 0);
+		assertTrue(total.get() == 40);
+	}
+}
@@ -0,0 +1,228 @@
+package org.apache.commons.math.genetics.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.math.genetics.ArrayFitnessFunction;
+import org.apache.commons.math.genetics.ArrayGaussianMutation;
+import org.apache.commons.math.genetics.ArrayOnePointCrossover;
+import org.apache.commons.math.genetics.ArrayPopulation;
+import org.apache.commons.math.genetics.ArraySelectionPolicy;
+import org.apache.commons.math.genetics.Chromosome;
+import org.apache.commons.math.genetics.ChromosomePair;
+import org.apache.commons.math.genetics.ElitisticListPopulation;
+import org.apache.commons.math.genetics.GeneticAlgorithm;
+import org.apache.commons.math.genetics.RankSelection;
+import org.apache.commons.math.genetics.RouletteWheelSelection;
+import org.apache.commons.math.genetics.StochasticUniversalSampling;
+import org.apache.commons.math.genetics.TournamentSelection;
+import org.apache.commons.math.genetics.WeightedSelection;
+import org.apache.commons.math.random.JDKRandomGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SelectionTest {
+	static private final int draws = 100000;
+
+	/** Fitness is the only gene. */
+	static private final ArrayFitnessFunction onlyGene = new ArrayFitnessFunction() {
+		public double fitness(double[] genes, int offset, int length) {
+			return genes[offset];
+		}
+	};
+
+	@Before
+	public void setUp() {
+		JDKRandomGenerator random = new JDKRandomGenerator();
+		random.setSeed(97531);
+		GeneticAlgorithm.setRandomGenerator(random);
+	}
+
+	@After
+	public void tearDown() {
+		GeneticAlgorithm.setRandomGenerator(new JDKRandomGenerator());
+	}
+
+	/** A one gene population whose fitness values are the given ones. */
+	static private ArrayPopulation population(double... fitness) {
+		ArrayPopulation population = new ArrayPopulation(1, fitness.length, 0.0, onlyGene,
+				new ArrayOnePointCrossover(), new ArrayGaussianMutation(1.0), null);
+		for (double f : fitness) population.addIndividual(new double[] {f});
+		return population;
+	}
+
+	/** Fraction of <code>draws</code> selections that picked each row. */
+	static private double[] frequencies(ArraySelectionPolicy selection, ArrayPopulation population) {
+		double[] counts = new double[population.getPopulationSize()];
+		for (int i=0; i<draws; ++i) counts[selection.select(population)]++;
+		for (int i=0; i<counts.length; ++i) counts[i] /= draws;
+		return counts;
+	}
+
+	/** Whether the frequencies are within a few standard deviations of the probabilities. */
+	static private boolean matches(double[] frequencies, double... probabilities) {
+		for (int i=0; i<probabilities.length; ++i) {
+			double sd = Math.sqrt(probabilities[i] * (1 - probabilities[i]) / draws);
+			if (Math.abs(frequencies[i] - probabilities[i]) > 5 * sd + 1e-12) return false;
+		}
+		return true;
+	}
+
+	@Test
+	public void testRouletteFrequencies() {
+		double[] f = frequencies(new RouletteWheelSelection(), population(0, 1, 2, 3, 4));
+		assertTrue(f[0] == 0.0);
+		assertTrue(matches(f, 0.0, 0.1, 0.2, 0.3, 0.4));
+	}
+
+	/** A zero weight is never drawn, even next to tiny positive weights. */
+	@Test
+	public void testZeroWeightsNeverDrawn() {
+		double[] f = frequencies(new RouletteWheelSelection(), population(1e-3, 0, 0, 1e-3, 0));
+		assertTrue(f[1] == 0.0 && f[2] == 0.0 && f[4] == 0.0);
+		assertTrue(matches(f, 0.5, 0.0, 0.0, 0.5, 0.0));
+	}
+
+	@Test
+	public void testAllZeroWeightsAreUniform() {
+		double[] f = frequencies(new RouletteWheelSelection(), population(0, 0, 0, 0));
+		assertTrue(matches(f, 0.25, 0.25, 0.25, 0.25));
+	}
+
+	@Test
+	public void testAllEqualWeightsAreUniform() {
+		double[] f = frequencies(new RouletteWheelSelection(), population(3, 3, 3, 3, 3));
+		assertTrue(matches(f, 0.2, 0.2, 0.2, 0.2, 0.2));
+	}
+
+	/** Negative fitness is shifted so the worst individual gets weight zero. */
+	@Test
+	public void testRouletteShiftsNegativeFitness() {
+		double[] f = frequencies(new RouletteWheelSelection(), population(-1, 0, 1));
+		assertTrue(matches(f, 0.0, 1.0/3, 2.0/3));
+	}
+
+	@Test
+	public void testRankFrequencies() {
+		// ranks 0, 2, 1; with pressure 2 the weights are 0, 2, 1
+		double[] f = frequencies(new RankSelection(2.0), population(10, 30, 20));
+		assertTrue(matches(f, 0.0, 2.0/3, 1.0/3));
+		// with pressure 1 every rank has the same weight
+		f = frequencies(new RankSelection(1.0), population(10, 30, 20));
+		assertTrue(matches(f, 1.0/3, 1.0/3, 1.0/3));
+	}
+
+	/** Each sample of n draws holds every individual floor or ceil of its expected count times. */
+	@Test
+	public void testStochasticUniversalSamplingSpread() {
+		double[] fitness = {1, 0, 2.5, 0.5, 4, 2};
+		double total = 10;
+		ArrayPopulation population = population(fitness);
+		StochasticUniversalSampling selection = new StochasticUniversalSampling();
+		for (int sample=0; sample<100; ++sample) {
+			int[] counts = new int[fitness.length];
+			for (int i=0; i<fitness.length; ++i) counts[selection.select(population)]++;
+			for (int i=0; i<fitness.length; ++i) {
+				double expected = fitness[i] * fitness.length / total;
+				assertTrue(counts[i] >= Math.floor(expected) && counts[i] <= Math.ceil(expected));
+			}
+		}
+		assertTrue(matches(frequencies(selection, population), 0.1, 0.0, 0.25, 0.05, 0.4, 0.2));
+	}
+
+	/** Weights cached for one population are not reused for another one of the same size. */
+	@Test
+	public void testWeightsRebuiltForNewPopulation() {
+		for (WeightedSelection selection : new WeightedSelection[] {
+				new RouletteWheelSelection(), new StochasticUniversalSampling()}) {
+			ArrayPopulation first = population(1, 0, 0, 0);
+			ArrayPopulation second = population(0, 0, 0, 1);
+			for (int i=0; i<20; ++i) assertTrue(selection.select(first) == 0);
+			for (int i=0; i<20; ++i) assertTrue(selection.select(second) == 3);
+			for (int i=0; i<20; ++i) assertTrue(selection.select(first) == 0);
+		}
+		RankSelection rank = new RankSelection(2.0);
+		ArrayPopulation first = population(5, 1, 2);
+		ArrayPopulation second = population(1, 2, 5);
+		for (int i=0; i<20; ++i) assertTrue(rank.select(first) != 1);
+		for (int i=0; i<20; ++i) assertTrue(rank.select(second) != 0);
+	}
+
+	/** The same weights through the chromosome interface. */
+	@Test
+	public void testListPopulationFrequencies() {
+		List<Chromosome> chromosomes = new ArrayList<Chromosome>();
+		for (int i=0; i<4; ++i) chromosomes.add(new Fixed(i));
+		ElitisticListPopulation population = new ElitisticListPopulation(chromosomes, 4, 0.5);
+		RouletteWheelSelection selection = new RouletteWheelSelection();
+		double[] f = new double[4];
+		for (int i=0; i<draws/2; ++i) {
+			ChromosomePair pair = selection.select(population);
+			f[(int) pair.getFirst().getFitness()] += 1.0 / draws;
+			f[(int) pair.getSecond().getFitness()] += 1.0 / draws;
+		}
+		assertTrue(matches(f, 0.0, 1.0/6, 2.0/6, 3.0/6));
+	}
+
+	/** Chromosome with a fixed fitness. */
+	static private class Fixed extends Chromosome {
+		private final double value;
+
+		Fixed(double value) {
+			this.value = value;
+		}
+
+		public double fitness() {
+			return value;
+		}
+	}
+
+	/**
+	 * A tournament of the whole population always has the fittest among its
+	 * contestants, and one of all but one never lets the worst one win.
+	 */
+	@Test
+	public void testTournamentContestantsAreDistinct() {
+		List<Chromosome> chromosomes = new ArrayList<Chromosome>();
+		for (int i=0; i<5; ++i) chromosomes.add(new Fixed(i));
+		ElitisticListPopulation population = new ElitisticListPopulation(chromosomes, 5, 0.5);
+		TournamentSelection all = new TournamentSelection(5);
+		TournamentSelection allButOne = new TournamentSelection(4);
+		for (int i=0; i<2000; ++i) {
+			ChromosomePair pair = all.select(population);
+			assertTrue(pair.getFirst().getFitness() == 4 && pair.getSecond().getFitness() == 4);
+			pair = allButOne.select(population);
+			assertTrue(pair.getFirst().getFitness() >= 3 && pair.getSecond().getFitness() >= 3);
+		}
+	}
+
+	/**
+	 * With two distinct contestants out of four, the fittest wins half the
+	 * time (it would be 7/16 with replacement), and every pair is equally likely.
+	 */
+	@Test
+	public void testTournamentFrequencies() {
+		List<Chromosome> chromosomes = new ArrayList<Chromosome>();
+		for (int i=0; i<4; ++i) chromosomes.add(new Fixed(i));
+		ElitisticListPopulation population = new ElitisticListPopulation(chromosomes, 4, 0.5);
+		TournamentSelection selection = new TournamentSelection(2);
+		double[] f = new double[4];
+		for (int i=0; i<draws/2; ++i) {
+			ChromosomePair pair = selection.select(population);
+			f[(int) pair.getFirst().getFitness()] += 1.0 / draws;
+			f[(int) pair.getSecond().getFitness()] += 1.0 / draws;
+		}
+		// of the 6 equally likely pairs, individual i wins the i it forms with a less fit one
+		assertTrue(matches(f, 0.0, 1.0/6, 2.0/6, 3.0/6));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testTournamentArityAboveSize() {
+		List<Chromosome> chromosomes = new ArrayList<Chromosome>();
+		for (int i=0; i<3; ++i) chromosomes.add(new Fixed(i));
+		new TournamentSelection(4).select(new ElitisticListPopulation(chromosomes, 3, 0.5));
+	}
+}